@@ -0,0 +1,136 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of a {@link FutureOperation}'s lifecycle.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec}; the profile 
+ * passes {@code -prof gc} so the {@code gc.alloc.rate.norm} column reports 
+ * the bytes allocated per operation. Running the same benchmark against 
+ * an earlier revision gives the allocation saved by a change.
+ * </p>
+ * 
+ * @since 2.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FutureOperationBenchmark
+{
+    private final RiakMessage response = new RiakMessage((byte) 0, new byte[0]);
+    private final RiakFutureListener<String> listener = new RiakFutureListener<String>()
+    {
+        @Override
+        public void handle(RiakFuture<String> f)
+        {
+        }
+    };
+
+    @Benchmark
+    public String singleResponse() throws InterruptedException, ExecutionException
+    {
+        BenchmarkOperation operation = new BenchmarkOperation(1);
+        operation.channelMessage();
+        operation.setResponse(response);
+        return operation.get();
+    }
+
+    @Benchmark
+    public String singleResponseWithListener() throws InterruptedException, ExecutionException
+    {
+        BenchmarkOperation operation = new BenchmarkOperation(1);
+        operation.addListener(listener);
+        operation.channelMessage();
+        operation.setResponse(response);
+        return operation.get();
+    }
+
+    @Benchmark
+    public String streamingResponse() throws InterruptedException, ExecutionException
+    {
+        BenchmarkOperation operation = new BenchmarkOperation(10);
+        operation.addListener(listener);
+        operation.channelMessage();
+        for (int i = 0; i < 10; i++)
+        {
+            operation.setResponse(response);
+        }
+        return operation.get();
+    }
+
+    @Benchmark
+    public void failure(Blackhole bh) throws InterruptedException
+    {
+        BenchmarkOperation operation = new BenchmarkOperation(1);
+        operation.addListener(listener);
+        operation.channelMessage();
+        operation.setException(new Exception());
+        try
+        {
+            bh.consume(operation.get());
+        }
+        catch (ExecutionException ex)
+        {
+            bh.consume(ex);
+        }
+    }
+
+    private static class BenchmarkOperation extends FutureOperation<String, RiakMessage>
+    {
+        private int remaining;
+
+        BenchmarkOperation(int responses)
+        {
+            this.remaining = responses;
+        }
+
+        @Override
+        protected boolean done(RiakMessage message)
+        {
+            return --remaining <= 0;
+        }
+
+        @Override
+        protected String convert(List<RiakMessage> rawResponse) throws ExecutionException
+        {
+            return "done";
+        }
+
+        @Override
+        protected RiakMessage createChannelMessage()
+        {
+            return null;
+        }
+
+        @Override
+        protected RiakMessage decode(RiakMessage rawMessage)
+        {
+            return rawMessage;
+        }
+    }
+}
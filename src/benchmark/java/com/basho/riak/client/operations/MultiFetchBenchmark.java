@@ -0,0 +1,121 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.convert.PassThroughConverter;
+import com.basho.riak.client.core.converters.RiakObjectConverter;
+import com.basho.riak.client.query.RiakObject;
+import com.basho.riak.client.util.BinaryValue;
+import com.basho.riak.protobuf.RiakKvPB;
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the client side cost of the {@link MultiFetch} strategies.
+ * <p>
+ * Each benchmark decodes one batch of small objects: as the map phase 
+ * output of a MapReduce job, and as one get response per key. The 
+ * network saving of MapReduce, a round trip per key, and the extra load 
+ * a job puts on the cluster are not measured here, so these figures are 
+ * only one input to the key count at which 
+ * {@link MultiFetch.Strategy#AUTO} should switch.
+ * </p>
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec}.
+ * </p>
+ *
+ * @since 2.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MultiFetchBenchmark
+{
+    @Param({"10", "100", "1000"})
+    public int batchSize;
+
+    private final PassThroughConverter converter = new PassThroughConverter();
+    private List<BinaryValue> mapReduceResults;
+    private List<byte[]> getResponses;
+
+    @Setup
+    public void setup()
+    {
+        StringBuilder json = new StringBuilder("[");
+        getResponses = new ArrayList<byte[]>(batchSize);
+        for (int i = 0; i < batchSize; i++)
+        {
+            String value = "{\"name\":\"object " + i + "\",\"count\":" + i + "}";
+            if (i > 0)
+            {
+                json.append(',');
+            }
+            json.append("{\"bucket\":\"bucket\",\"key\":\"key").append(i)
+                .append("\",\"vclock\":\"a85hYGBgzGDKBVIcypz/fgaUHjTIYEpkzGNlMP/a\",\"values\":[{\"metadata\":")
+                .append("{\"content-type\":\"application/json\",\"X-Riak-VTag\":\"4Xv2zGjmNRDrHDxDvMTjCf\",")
+                .append("\"X-Riak-Last-Modified\":\"Mon, 03 Feb 2014 20:03:44 GMT\"},\"data\":")
+                .append(quote(value)).append("}]}");
+
+            RiakKvPB.RpbContent content = RiakKvPB.RpbContent.newBuilder()
+                .setValue(ByteString.copyFromUtf8(value))
+                .setContentType(ByteString.copyFromUtf8("application/json"))
+                .setVtag(ByteString.copyFromUtf8("4Xv2zGjmNRDrHDxDvMTjCf"))
+                .setLastMod(1391457824)
+                .build();
+            getResponses.add(RiakKvPB.RpbGetResp.newBuilder()
+                .addContent(content)
+                .setVclock(ByteString.copyFromUtf8("a85hYGBgzGDKBVIcypz/fgaUHjTIYEpkzGNlMP/a"))
+                .build()
+                .toByteArray());
+        }
+        json.append(']');
+        mapReduceResults = Collections.singletonList(BinaryValue.create(json.toString()));
+    }
+
+    @Benchmark
+    public Map<BinaryValue, FetchValue.Response<RiakObject>> mapReduce()
+    {
+        return MapReduceFetcher.parseResults(mapReduceResults, converter);
+    }
+
+    @Benchmark
+    public void get(Blackhole bh) throws Exception
+    {
+        for (byte[] response : getResponses)
+        {
+            RiakKvPB.RpbGetResp resp = RiakKvPB.RpbGetResp.parseFrom(response);
+            bh.consume(RiakObjectConverter.convert(resp.getContentList()));
+        }
+    }
+
+    private static String quote(String value)
+    {
+        return "\"" + value.replace("\"", "\\\"") + "\"";
+    }
+}
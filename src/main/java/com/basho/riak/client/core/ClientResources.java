@@ -0,0 +1,228 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Threads shared by any number of {@link RiakCluster}s and 
+ * {@link RiakNode}s in a JVM.
+ * <p>
+ * Without shared resources every RiakCluster creates its own Netty event loop
+ * group and scheduler, and every node schedules its own maintenance tasks. A 
+ * ClientResources holds one event loop group and one housekeeping 
+ * scheduler. The maintenance of all the nodes using it is run by a single 
+ * sweeper task.
+ * </p>
+ * <p>
+ * The resources are reference counted. A new instance has a count of one,
+ * owned by its creator; each cluster (or standalone node) using it retains
+ * it and releases it when shut down. When the count reaches zero the threads
+ * are stopped. The creator calls {@link #release()} once it has no further
+ * use for the instance.
+ * </p>
+ * <pre>
+ * ClientResources resources = new ClientResources.Builder().build();
+ * RiakCluster c1 = new RiakCluster.Builder(nodes1).withClientResources(resources).build();
+ * RiakCluster c2 = new RiakCluster.Builder(nodes2).withClientResources(resources).build();
+ * resources.release(); // stopped once both clusters have shut down
+ * </pre>
+ *
+ * @since 2.0
+ */
+public class ClientResources
+{
+    private final Logger logger = LoggerFactory.getLogger(ClientResources.class);
+    private final EventLoopGroup eventLoopGroup;
+    private final ScheduledExecutorService scheduler;
+    private final NodeSweeper sweeper = new NodeSweeper();
+    private final ScheduledFuture<?> sweeperFuture;
+    private final AtomicInteger referenceCount = new AtomicInteger(1);
+    
+    private ClientResources(Builder builder)
+    {
+        this.eventLoopGroup = new NioEventLoopGroup(builder.eventLoopThreads);
+        this.scheduler = new ScheduledThreadPoolExecutor(builder.schedulerThreads);
+        this.sweeperFuture = scheduler.scheduleWithFixedDelay(sweeper, 
+                                                              builder.sweepIntervalMillis, 
+                                                              builder.sweepIntervalMillis, 
+                                                              TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Returns the shared Netty event loop group.
+     * @return the event loop group
+     */
+    public EventLoopGroup getEventLoopGroup()
+    {
+        return eventLoopGroup;
+    }
+    
+    /**
+     * Returns the shared housekeeping scheduler.
+     * <p>
+     * Tasks run here must not block; they share a small number of threads 
+     * with every cluster using these resources.
+     * </p>
+     * @return the scheduler
+     */
+    public ScheduledExecutorService getScheduler()
+    {
+        return scheduler;
+    }
+    
+    NodeSweeper getSweeper()
+    {
+        return sweeper;
+    }
+    
+    /**
+     * Increments the reference count.
+     * @return this
+     * @throws IllegalStateException if the resources have already been released.
+     */
+    public ClientResources retain()
+    {
+        while (true)
+        {
+            int count = referenceCount.get();
+            if (count == 0)
+            {
+                throw new IllegalStateException("ClientResources have been released");
+            }
+            if (referenceCount.compareAndSet(count, count + 1))
+            {
+                return this;
+            }
+        }
+    }
+    
+    /**
+     * Decrements the reference count, stopping all threads when it reaches zero.
+     * @return true if this call released the resources.
+     */
+    public boolean release()
+    {
+        int count = referenceCount.decrementAndGet();
+        if (count < 0)
+        {
+            referenceCount.incrementAndGet();
+            throw new IllegalStateException("ClientResources have already been released");
+        }
+        if (count == 0)
+        {
+            logger.info("Releasing shared client resources");
+            sweeperFuture.cancel(false);
+            scheduler.shutdown();
+            eventLoopGroup.shutdownGracefully();
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Returns the current reference count.
+     * @return the count; 0 once released.
+     */
+    public int referenceCount()
+    {
+        return referenceCount.get();
+    }
+    
+    /**
+     * Builder used to construct ClientResources.
+     */
+    public static class Builder
+    {
+        /**
+         * The default number of event loop threads: {@value #DEFAULT_EVENT_LOOP_THREADS} (Netty's default, 2 x cores)
+         */
+        public final static int DEFAULT_EVENT_LOOP_THREADS = 0;
+        /**
+         * The default number of housekeeping threads: {@value #DEFAULT_SCHEDULER_THREADS}
+         */
+        public final static int DEFAULT_SCHEDULER_THREADS = 2;
+        /**
+         * The default interval between node sweeps in milliseconds: {@value #DEFAULT_SWEEP_INTERVAL}
+         */
+        public final static int DEFAULT_SWEEP_INTERVAL = 500;
+        
+        private int eventLoopThreads = DEFAULT_EVENT_LOOP_THREADS;
+        private int schedulerThreads = DEFAULT_SCHEDULER_THREADS;
+        private int sweepIntervalMillis = DEFAULT_SWEEP_INTERVAL;
+        
+        public Builder()
+        {
+        }
+        
+        /**
+         * Set the number of Netty event loop threads.
+         * @param threads the number of threads; 0 for Netty's default
+         * @return this
+         * @see #DEFAULT_EVENT_LOOP_THREADS
+         */
+        public Builder withEventLoopThreads(int threads)
+        {
+            this.eventLoopThreads = threads;
+            return this;
+        }
+        
+        /**
+         * Set the number of housekeeping threads.
+         * @param threads the number of threads
+         * @return this
+         * @see #DEFAULT_SCHEDULER_THREADS
+         */
+        public Builder withSchedulerThreads(int threads)
+        {
+            this.schedulerThreads = threads;
+            return this;
+        }
+        
+        /**
+         * Set how often node maintenance runs.
+         * @param intervalMillis the interval in milliseconds
+         * @return this
+         * @see #DEFAULT_SWEEP_INTERVAL
+         */
+        public Builder withSweepInterval(int intervalMillis)
+        {
+            this.sweepIntervalMillis = intervalMillis;
+            return this;
+        }
+        
+        /**
+         * Builds ClientResources with a reference count of one.
+         * @return new ClientResources
+         */
+        public ClientResources build()
+        {
+            if (schedulerThreads < 1)
+            {
+                throw new IllegalArgumentException("At least one scheduler thread is required");
+            }
+            return new ClientResources(this);
+        }
+    }
+}
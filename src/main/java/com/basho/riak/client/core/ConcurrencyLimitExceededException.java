@@ -0,0 +1,31 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+/**
+ * Set on an operation rejected by a {@link RiakCluster}'s {@link ConcurrencyLimiter}.
+ *
+ * @since 2.0
+ */
+public class ConcurrencyLimitExceededException extends Exception
+{
+    private static final long serialVersionUID = 4204851318307052442L;
+
+    public ConcurrencyLimitExceededException(int limit)
+    {
+        super("Concurrency limit of " + limit + " reached");
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+/**
+ * Limits the number of operations that may be in flight at once.
+ * <p>
+ * A limiter can be installed on a {@link RiakCluster} (bounding all the
+ * operations submitted to the cluster) and/or on individual {@link RiakNode}s.
+ * Every successful call to {@link #tryAcquire()} must be matched by exactly
+ * one call to {@link #release(long, boolean)} once the operation finishes. The
+ * round trip time reported on release is what adaptive implementations use to
+ * adjust the limit.
+ * </p>
+ *
+ * @since 2.0
+ * @see VegasConcurrencyLimiter
+ */
+public interface ConcurrencyLimiter
+{
+    /**
+     * Attempt to reserve a slot for a new operation.
+     * @return true if the operation may proceed, false if the limit has been reached.
+     */
+    boolean tryAcquire();
+
+    /**
+     * Release a slot previously reserved with {@link #tryAcquire()}.
+     * @param rttNanos the time the operation took, in nanoseconds.
+     * @param dropped true if the operation failed in a way that indicates
+     * overload (timeout, connection failure, etc).
+     */
+    void release(long rttNanos, boolean dropped);
+
+    /**
+     * Returns the current concurrency limit.
+     * @return the number of operations currently allowed in flight.
+     */
+    int getLimit();
+
+    /**
+     * Returns the number of operations currently holding a slot.
+     * @return the in flight count.
+     */
+    int getInFlight();
+}
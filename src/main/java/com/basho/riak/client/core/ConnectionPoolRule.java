@@ -0,0 +1,38 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+/**
+ * Chooses which of a {@link RiakNode}'s connection pools an operation uses.
+ * <p>
+ * Rules are consulted in the order they were added to the 
+ * {@link RiakNode.Builder}; the first to return a pool name wins. Operations
+ * no rule claims use the node's default pool.
+ * </p>
+ *
+ * @since 2.0
+ * @see ConnectionPoolRules
+ * @see RiakNode.Builder#withConnectionPool(java.lang.String, int, int) 
+ */
+public interface ConnectionPoolRule
+{
+    /**
+     * Returns the pool the operation should use.
+     * @param operation the operation about to be executed
+     * @return the name of a pool, or null if this rule doesn't apply.
+     */
+    String selectPool(FutureOperation operation);
+}
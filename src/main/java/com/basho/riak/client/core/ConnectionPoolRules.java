@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Factory methods for common {@link ConnectionPoolRule}s.
+ *
+ * @since 2.0
+ */
+public final class ConnectionPoolRules
+{
+    private ConnectionPoolRules()
+    {
+    }
+    
+    /**
+     * Routes operations of the given types (or their subclasses) to a pool.
+     * <p>
+     * Useful for keeping long running streaming operations such as 
+     * list keys, 2i queries and MapReduce away from the connections 
+     * used by gets and puts.
+     * </p>
+     * @param pool the name of the pool
+     * @param types the operation classes
+     * @return a new rule
+     */
+    public static ConnectionPoolRule byOperationType(final String pool, 
+                                                     Class<?>... types)
+    {
+        final List<Class<?>> typeList = Arrays.asList(types);
+        return new ConnectionPoolRule()
+        {
+            @Override
+            public String selectPool(FutureOperation operation)
+            {
+                for (Class<?> type : typeList)
+                {
+                    if (type.isInstance(operation))
+                    {
+                        return pool;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+    
+    /**
+     * Routes operations whose request payload is at least the given size to a pool.
+     * @param pool the name of the pool
+     * @param minBytes the smallest payload routed to the pool
+     * @return a new rule
+     * @see FutureOperation#getPayloadSize() 
+     */
+    public static ConnectionPoolRule byPayloadSize(final String pool, final int minBytes)
+    {
+        return new ConnectionPoolRule()
+        {
+            @Override
+            public String selectPool(FutureOperation operation)
+            {
+                return operation.getPayloadSize() >= minBytes ? pool : null;
+            }
+        };
+    }
+}
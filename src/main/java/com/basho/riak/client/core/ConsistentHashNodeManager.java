@@ -0,0 +1,255 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link NodeManager} that routes operations for the same object to the 
+ * same node.
+ * <p>
+ * Every node in the cluster is placed on a hash ring at a number of points 
+ * (virtual nodes). An operation's {@link FutureOperation#getRoutingKey() routing key}
+ * is hashed onto the ring and the operation is sent to the first node found 
+ * walking clockwise from that point. Because nodes stay on the ring while they
+ * are health checking, and only the points of a node added or removed through
+ * {@link RiakCluster#addNode(RiakNode)} / {@link RiakCluster#removeNode(RiakNode)} 
+ * change, only the keys owned by that node move.
+ * </p>
+ * <p>
+ * If the preferred node is unhealthy or refuses the operation the walk 
+ * continues to the next distinct node. Operations without a routing key
+ * (queries, bucket operations, etc.) are round-robined as in the 
+ * {@link DefaultNodeManager}.
+ * </p>
+ *
+ * @since 2.0
+ */
+public class ConsistentHashNodeManager extends DefaultNodeManager
+{
+    /**
+     * The default number of points each node has on the ring: {@value #DEFAULT_VIRTUAL_NODES}
+     */
+    public final static int DEFAULT_VIRTUAL_NODES = 160;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    private static final ThreadLocal<MessageDigest> md5 = new ThreadLocal<MessageDigest>()
+    {
+        @Override
+        protected MessageDigest initialValue()
+        {
+            try
+            {
+                return MessageDigest.getInstance("MD5");
+            }
+            catch (NoSuchAlgorithmException ex)
+            {
+                throw new IllegalStateException(ex);
+            }
+        }
+    };
+    
+    private final int virtualNodes;
+    private final Object ringLock = new Object();
+    private final List<RiakNode> members = new ArrayList<RiakNode>();
+    private final AtomicLong preferredCount = new AtomicLong();
+    private final AtomicLong fallbackCount = new AtomicLong();
+    
+    // Both replaced wholesale on change; readers never lock.
+    private volatile TreeMap<Long, RiakNode> ring = new TreeMap<Long, RiakNode>();
+    private volatile Set<RiakNode> healthyNodes = Collections.emptySet();
+    
+    public ConsistentHashNodeManager()
+    {
+        this(DEFAULT_VIRTUAL_NODES);
+    }
+    
+    /**
+     * Creates a ConsistentHashNodeManager.
+     * @param virtualNodes the number of points each node has on the ring
+     */
+    public ConsistentHashNodeManager(int virtualNodes)
+    {
+        if (virtualNodes < 1)
+        {
+            throw new IllegalArgumentException("Virtual nodes must be >= 1");
+        }
+        this.virtualNodes = virtualNodes;
+    }
+    
+    @Override
+    public void init(List<RiakNode> nodes)
+    {
+        synchronized (ringLock)
+        {
+            members.addAll(nodes);
+            rebuildRing();
+        }
+        super.init(nodes);
+    }
+    
+    @Override
+    public void addNode(RiakNode newNode)
+    {
+        synchronized (ringLock)
+        {
+            members.add(newNode);
+            rebuildRing();
+        }
+        super.addNode(newNode);
+    }
+    
+    @Override
+    public boolean removeNode(RiakNode node)
+    {
+        synchronized (ringLock)
+        {
+            if (members.remove(node))
+            {
+                rebuildRing();
+            }
+        }
+        return super.removeNode(node);
+    }
+    
+    @Override
+    protected void healthyNodesChanged(List<RiakNode> healthy)
+    {
+        Set<RiakNode> set = Collections.newSetFromMap(new IdentityHashMap<RiakNode, Boolean>());
+        set.addAll(healthy);
+        healthyNodes = set;
+    }
+    
+    private void rebuildRing()
+    {
+        TreeMap<Long, RiakNode> newRing = new TreeMap<Long, RiakNode>();
+        for (RiakNode node : members)
+        {
+            String id = node.getRemoteAddress() + ":" + node.getPort() + "#";
+            for (int i = 0; i < virtualNodes; i++)
+            {
+                newRing.put(hash((id + i).getBytes(UTF8)), node);
+            }
+        }
+        ring = newRing;
+    }
+    
+    @Override
+    public boolean executeOnNode(FutureOperation operation, RiakNode previousNode)
+    {
+        byte[] routingKey = operation.getRoutingKey();
+        TreeMap<Long, RiakNode> currentRing = ring;
+        if (routingKey == null || currentRing.isEmpty())
+        {
+            return super.executeOnNode(operation, previousNode);
+        }
+        
+        Set<RiakNode> healthy = healthyNodes;
+        long point = hash(routingKey);
+        Set<RiakNode> tried = new HashSet<RiakNode>();
+        boolean preferred = true;
+        for (Map<Long, RiakNode> segment : segments(currentRing, point))
+        {
+            for (RiakNode node : segment.values())
+            {
+                if (tried.add(node))
+                {
+                    if (healthy.contains(node) && node.execute(operation))
+                    {
+                        if (preferred)
+                        {
+                            preferredCount.incrementAndGet();
+                        }
+                        else
+                        {
+                            fallbackCount.incrementAndGet();
+                        }
+                        return true;
+                    }
+                    preferred = false;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private List<Map<Long, RiakNode>> segments(TreeMap<Long, RiakNode> ring, long point)
+    {
+        List<Map<Long, RiakNode>> segments = new ArrayList<Map<Long, RiakNode>>(2);
+        segments.add(ring.tailMap(point, true));
+        segments.add(ring.headMap(point, false));
+        return segments;
+    }
+    
+    /**
+     * Returns the node that owns the given routing key, regardless of its health.
+     * @param routingKey a routing key
+     * @return the owning node or null if there are no nodes.
+     */
+    public RiakNode getOwner(byte[] routingKey)
+    {
+        TreeMap<Long, RiakNode> currentRing = ring;
+        if (currentRing.isEmpty())
+        {
+            return null;
+        }
+        Map.Entry<Long, RiakNode> entry = currentRing.ceilingEntry(hash(routingKey));
+        return entry == null ? currentRing.firstEntry().getValue() : entry.getValue();
+    }
+    
+    /**
+     * Returns the number of keyed operations executed on the node that owns the key.
+     * @return the count
+     */
+    public long getPreferredCount()
+    {
+        return preferredCount.get();
+    }
+    
+    /**
+     * Returns the number of keyed operations executed on another node because 
+     * the owner was unhealthy or refused them.
+     * @return the count
+     */
+    public long getFallbackCount()
+    {
+        return fallbackCount.get();
+    }
+    
+    private static long hash(byte[] bytes)
+    {
+        MessageDigest digest = md5.get();
+        digest.reset();
+        byte[] d = digest.digest(bytes);
+        long h = 0;
+        for (int i = 0; i < 8; i++)
+        {
+            h = (h << 8) | (d[i] & 0xFF);
+        }
+        return h;
+    }
+}
@@ -34,8 +34,8 @@ import org.slf4j.LoggerFactory;
  * is again running. If the selected node cannot accept the operation because all 
  * connections are in use or it unable to make a new connection, the next node in 
  * the list is tried until either the operation is accepted or all nodes have 
- * been tried. If no nodes are able to accept the operation its setException() 
- * method is called with a {@link NoNodesAvailableException}.
+ * been tried. If no nodes are able to accept the operation false is returned
+ * to the {@link RiakCluster}.
  * 
  * @author Brian Roach <roach at basho dot com>
  * @since 2.0
@@ -55,6 +55,7 @@ public class DefaultNodeManager implements NodeManager, NodeStateListener
         {
             lock.writeLock().lock();
             healthy.addAll(nodes);
+            healthyNodesChanged(new ArrayList<RiakNode>(healthy));
         }
         finally
         {
@@ -62,8 +63,22 @@ public class DefaultNodeManager implements NodeManager, NodeStateListener
         }
     }
 
+    /**
+     * Called whenever the set of healthy nodes changes.
+     * <p>
+     * Subclasses that route differently can override this to rebuild their
+     * own view of the nodes. It is called while the write lock is held, so 
+     * the calls arrive in order.
+     * </p>
+     * @param healthyNodes a copy of the current healthy nodes
+     */
+    protected void healthyNodesChanged(List<RiakNode> healthyNodes)
+    {
+        // no-op
+    }
+
     @Override
-    public void executeOnNode(FutureOperation operation, RiakNode previousNode)
+    public boolean executeOnNode(FutureOperation operation, RiakNode previousNode)
     {
         try
         {
@@ -90,10 +105,7 @@ public class DefaultNodeManager implements NodeManager, NodeStateListener
                 executed = healthy.get(0).execute(operation);
             }
             
-            if (!executed)
-            {
-                operation.setException(new NoNodesAvailableException());
-            }
+            return executed;
         }
         finally
         {
@@ -113,6 +125,7 @@ public class DefaultNodeManager implements NodeManager, NodeStateListener
                     if (unhealthy.remove(node))
                     {
                         healthy.add(node);
+                        healthyNodesChanged(new ArrayList<RiakNode>(healthy));
                         logger.info("NodeManager moved node to healthy list; {}:{}", 
                                     node.getRemoteAddress(), node.getPort());
                     }
@@ -129,6 +142,7 @@ public class DefaultNodeManager implements NodeManager, NodeStateListener
                     if (healthy.remove(node))
                     {
                         unhealthy.add(node);
+                        healthyNodesChanged(new ArrayList<RiakNode>(healthy));
                         logger.info("NodeManager moved node to unhealthy list; {}:{}", 
                                     node.getRemoteAddress(), node.getPort());
                     }
@@ -149,6 +163,10 @@ public class DefaultNodeManager implements NodeManager, NodeStateListener
                     {
                         unhealthy.remove(node);
                     }
+                    else
+                    {
+                        healthyNodesChanged(new ArrayList<RiakNode>(healthy));
+                    }
                 }
                 finally
                 {
@@ -172,6 +190,7 @@ public class DefaultNodeManager implements NodeManager, NodeStateListener
         {
             lock.writeLock().lock();
             healthy.add(newNode);
+            healthyNodesChanged(new ArrayList<RiakNode>(healthy));
         }
         finally
         {
@@ -188,7 +207,11 @@ public class DefaultNodeManager implements NodeManager, NodeStateListener
         {
             lock.writeLock().lock();
             removed = healthy.remove(node);
-            if (!removed)
+            if (removed)
+            {
+                healthyNodesChanged(new ArrayList<RiakNode>(healthy));
+            }
+            else
             {
                 removed = unhealthy.remove(node);
             }
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link RiakFuture} completed by calling {@link #setResponse(Object)} or
+ * {@link #setException(Throwable)}.
+ * <p>
+ * Used by commands whose result is derived from one or more 
+ * {@link FutureOperation}s; the command completes it from a listener on 
+ * the operation rather than by blocking on it. Only the first call 
+ * to either setter has any effect.
+ * </p>
+ *
+ * @param <V> the result type
+ * @since 2.0
+ */
+public class DefaultRiakFuture<V> implements RiakFuture<V>
+{
+    private final CountDownLatch latch = new CountDownLatch(1);
+    // Listeners, or ListenerNotifier.Registrations for those added with an executor
+    private final List<Object> listeners = new LinkedList<Object>();
+    private volatile boolean done;
+    private volatile V response;
+    private volatile Throwable exception;
+    
+    /**
+     * Completes this future successfully.
+     * @param response the result
+     * @return true if this call completed the future.
+     */
+    public boolean setResponse(V response)
+    {
+        synchronized (listeners)
+        {
+            if (done)
+            {
+                return false;
+            }
+            this.response = response;
+            done = true;
+        }
+        complete();
+        return true;
+    }
+    
+    /**
+     * Completes this future with a failure.
+     * @param t the cause, thrown from {@code get()} wrapped in an {@link ExecutionException}
+     * @return true if this call completed the future.
+     */
+    public boolean setException(Throwable t)
+    {
+        synchronized (listeners)
+        {
+            if (done)
+            {
+                return false;
+            }
+            this.exception = t;
+            done = true;
+        }
+        complete();
+        return true;
+    }
+    
+    private void complete()
+    {
+        latch.countDown();
+        // Nothing is added once done is set, so no lock is needed to read the list.
+        ListenerNotifier.fire(this, listeners, null);
+    }
+    
+    /**
+     * Cancellation is not supported.
+     * @return false
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning)
+    {
+        return false;
+    }
+
+    @Override
+    public V get() throws InterruptedException, ExecutionException
+    {
+        latch.await();
+        return getNow();
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+    {
+        if (!latch.await(timeout, unit))
+        {
+            throw new TimeoutException();
+        }
+        return getNow();
+    }
+    
+    private V getNow() throws ExecutionException
+    {
+        if (exception != null)
+        {
+            throw new ExecutionException(exception);
+        }
+        return response;
+    }
+
+    @Override
+    public boolean isCancelled()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean isDone()
+    {
+        return done;
+    }
+
+    @Override
+    public void addListener(RiakFutureListener<V> listener)
+    {
+        addListener(listener, null);
+    }
+
+    @Override
+    public void addListener(RiakFutureListener<V> listener, Executor executor)
+    {
+        Object registered = ListenerNotifier.register(listener, executor);
+        synchronized (listeners)
+        {
+            if (!done)
+            {
+                listeners.add(registered);
+                return;
+            }
+        }
+        // Already complete, fire on the caller's thread or the listener's executor
+        ListenerNotifier.fire(this, registered, null);
+    }
+
+    @Override
+    public void removeListener(RiakFutureListener<V> listener)
+    {
+        synchronized (listeners)
+        {
+            if (!done)
+            {
+                Iterator<Object> i = listeners.iterator();
+                while (i.hasNext())
+                {
+                    if (ListenerNotifier.matches(i.next(), listener))
+                    {
+                        i.remove();
+                        break;
+                    }
+                }
+            } // else, they're being or have been fired
+        }
+    }
+}
@@ -16,20 +16,31 @@
 package com.basho.riak.client.core;
 
 
+import io.netty.channel.Channel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
+ * The base class for all operations executed by a {@link RiakCluster}.
+ * <p>
+ * The lifecycle is a lock free state machine; every transition is a CAS on
+ * the operation's state, and the thread that moves the operation to 
+ * COMPLETING is the only one that publishes a result, wakes waiters and fires 
+ * listeners. Nothing is allocated for the common case of one response and 
+ * one listener; a list is created only for a second response or listener, 
+ * and a latch only if a thread blocks in {@code get()} before completion.
+ * </p>
  * @author Brian Roach <roach at basho dot com>
  * @since 2.0
  */
@@ -38,100 +49,159 @@ public abstract class FutureOperation<T, U> implements RiakFuture<T>
 
     private enum State
     {
-        CREATED, WRITTEN, RETRY, COMPLETE, CANCELLED
+        CREATED, WRITTEN, RETRY, COMPLETING, COMPLETE, CANCELLED
     }
 
-    private final Logger logger = LoggerFactory.getLogger(FutureOperation.class);
-    private final CountDownLatch latch = new CountDownLatch(1);
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<FutureOperation, State> STATE =
+        AtomicReferenceFieldUpdater.newUpdater(FutureOperation.class, State.class, "state");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<FutureOperation, Object> LISTENERS =
+        AtomicReferenceFieldUpdater.newUpdater(FutureOperation.class, Object.class, "listeners");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<FutureOperation, CountDownLatch> LATCH =
+        AtomicReferenceFieldUpdater.newUpdater(FutureOperation.class, CountDownLatch.class, "latch");
+    // Stored in the listeners slot once they have been fired
+    private static final Object FIRED = new Object();
+
+    private static final byte[] DEFAULT_BUCKET_TYPE = { 'd', 'e', 'f', 'a', 'u', 'l', 't' };
+    private static final Logger logger = LoggerFactory.getLogger(FutureOperation.class);
+    private volatile CountDownLatch latch;
     private volatile OperationRetrier retrier;
     private volatile int remainingTries = 1;
-    private volatile List<U> rawResponse = new LinkedList<U>();
+    // The first response, and any after it; only written by the I/O thread 
+    // and published by the volatile write of COMPLETE
+    private U firstResponse;
+    private List<U> moreResponses;
+    private int responseCount;
     private volatile Throwable exception;
     private volatile T converted;
     private volatile State state = State.CREATED;
     private volatile RiakNode lastNode;
-
-    private final ReentrantLock listenersLock = new ReentrantLock();
-    private final HashSet<RiakFutureListener<T>> listeners =
-        new HashSet<RiakFutureListener<T>>();
-    private volatile boolean listenersFired = false;
+    private volatile long startTime;
+    private volatile long dispatchTime;
+    private volatile long deadline;
+    private volatile OperationPriority priority = OperationPriority.NORMAL;
+    // null, a single listener or ListenerNotifier.Registration, 
+    // a ListenerArray of them, or FIRED
+    private volatile Object listeners;
+    private volatile Executor listenerExecutor;
+    private volatile StreamingResult<?> streamingResult;
+    private volatile ResponseStream<U> responseStream;
+    private volatile boolean streamed;
+    private volatile Channel channel;
+    private volatile boolean readPaused;
 
     @Override
     public void addListener(RiakFutureListener<T> listener)
     {
+        addListener(listener, null);
+    }
 
-        boolean fireNow = false;
-        listenersLock.lock();
-        try
+    @Override
+    public void addListener(RiakFutureListener<T> listener, Executor executor)
+    {
+        Object registered = ListenerNotifier.register(listener, executor);
+        while (true)
         {
-            if (listenersFired)
+            Object current = listeners;
+            Object next;
+            if (current == FIRED)
+            {
+                // the future has already been completed, fire on caller's 
+                // thread or the listener's executor
+                ListenerNotifier.fire(this, registered, null);
+                return;
+            }
+            else if (current == null)
+            {
+                next = registered;
+            }
+            else if (current instanceof ListenerArray)
             {
-                fireNow = true;
+                ListenerArray array = (ListenerArray) current;
+                if (array.contains(listener))
+                {
+                    return;
+                }
+                next = array.add(registered);
+            }
+            else if (ListenerNotifier.matches(current, listener))
+            {
+                return;
             }
             else
             {
-                listeners.add(listener);
+                next = new ListenerArray(new Object[] { current, registered });
             }
-        }
-        finally
-        {
-            listenersLock.unlock();
-        }
 
-        // the future has already been completed, fire on caller's thread
-        if (fireNow)
-        {
-            listener.handle(this);
+            if (LISTENERS.compareAndSet(this, current, next))
+            {
+                return;
+            }
         }
-
     }
 
     @Override
     public void removeListener(RiakFutureListener<T> listener)
     {
-        listenersLock.lock();
-        try
+        while (true)
         {
-            if (!listenersFired)
+            Object current = listeners;
+            Object next;
+            if (current == FIRED || current == null)
             {
-                listeners.remove(listener);
-            } // else, we don't care, they've already been fired
-        }
-        finally
-        {
-            listenersLock.unlock();
+                // else, we don't care, they've already been fired
+                return;
+            }
+            else if (current instanceof ListenerArray)
+            {
+                next = ((ListenerArray) current).remove(listener);
+            }
+            else if (ListenerNotifier.matches(current, listener))
+            {
+                next = null;
+            }
+            else
+            {
+                return;
+            }
+
+            if (LISTENERS.compareAndSet(this, current, next))
+            {
+                return;
+            }
         }
     }
 
     private void fireListeners()
     {
-
-        boolean fireNow = false;
-        listenersLock.lock();
-        try
+        Object current = LISTENERS.getAndSet(this, FIRED);
+        if (current == FIRED || current == null)
         {
-            if (!listenersFired)
-            {
-                fireNow = true;
-                listenersFired = true;
-            }
+            return;
         }
-        finally
+        else if (current instanceof ListenerArray)
         {
-            listenersLock.unlock();
+            ListenerNotifier.fire(this, Arrays.asList(((ListenerArray) current).listeners), 
+                                  listenerExecutor);
         }
-
-        if (fireNow)
+        else
         {
-            for (RiakFutureListener<T> listener : listeners)
-            {
-                listener.handle(this);
-            }
+            ListenerNotifier.fire(this, current, listenerExecutor);
         }
+    }
 
+    /**
+     * Sets the executor used for listeners added without one.
+     * Set by the {@link RiakCluster} when the operation is submitted.
+     */
+    final void setListenerExecutor(Executor executor)
+    {
+        this.listenerExecutor = executor;
     }
 
-    final synchronized void setRetrier(OperationRetrier retrier, int numTries)
+    final void setRetrier(OperationRetrier retrier, int numTries)
     {
         stateCheck(State.CREATED);
         this.retrier = retrier;
@@ -148,23 +218,256 @@ public abstract class FutureOperation<T, U> implements RiakFuture<T>
         this.lastNode = node;
     }
 
+    /**
+     * The time (System.nanoTime()) this operation was accepted by a RiakCluster.
+     */
+    final long getStartTime()
+    {
+        return startTime;
+    }
+
+    final void setStartTime(long startTime)
+    {
+        this.startTime = startTime;
+    }
+
+    /**
+     * The time (System.nanoTime()) this operation was last written to a RiakNode.
+     */
+    final long getDispatchTime()
+    {
+        return dispatchTime;
+    }
+
+    final void setDispatchTime(long dispatchTime)
+    {
+        this.dispatchTime = dispatchTime;
+    }
+
+    /**
+     * Sets a deadline for this operation, relative to now.
+     * <p>
+     * This is a client side deadline and is not sent to Riak. When the 
+     * operation is submitted to a {@link RiakCluster} that estimates it will 
+     * not complete in time, it is failed immediately with an 
+     * {@link OperationShedException}. An operation still waiting in the 
+     * cluster's operation queue when the deadline passes is failed with a
+     * {@link NoNodesAvailableException}.
+     * </p>
+     * @param timeout the amount of time the caller is willing to wait
+     * @param unit the unit for timeout
+     */
+    public final void setDeadline(long timeout, TimeUnit unit)
+    {
+        this.deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (this.deadline == 0)
+        {
+            this.deadline = 1;
+        }
+    }
+
+    /**
+     * Returns whether a deadline was set for this operation.
+     * @return true if {@link #setDeadline(long, java.util.concurrent.TimeUnit)} was called.
+     */
+    public final boolean hasDeadline()
+    {
+        return deadline != 0;
+    }
+
+    /**
+     * Returns the time remaining before this operation's deadline.
+     * @return the remaining time in nanoseconds (negative if passed) or 
+     * {@code Long.MAX_VALUE} if no deadline was set.
+     */
+    public final long getRemainingNanos()
+    {
+        return hasDeadline() ? deadline - System.nanoTime() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Sets the scheduling class of this operation.
+     * @param priority the priority; the default is {@link OperationPriority#NORMAL}
+     */
+    public final void setPriority(OperationPriority priority)
+    {
+        if (priority == null)
+        {
+            throw new IllegalArgumentException("Priority can not be null");
+        }
+        this.priority = priority;
+    }
+
+    /**
+     * Returns the scheduling class of this operation.
+     * @return the priority
+     */
+    public final OperationPriority getPriority()
+    {
+        return priority;
+    }
+
+    /**
+     * Returns the size of the data this operation sends to Riak.
+     * <p>
+     * Used to route operations with large payloads; operations that don't
+     * carry a meaningful payload return 0.
+     * </p>
+     * @return the payload size in bytes
+     * @see ConnectionPoolRules#byPayloadSize(java.lang.String, int) 
+     */
+    public int getPayloadSize()
+    {
+        return 0;
+    }
+
+    /**
+     * Returns the key used to route this operation to a node.
+     * <p>
+     * Operations on a single object return a key built from the bucket type, 
+     * bucket and key so that a {@link NodeManager} such as the 
+     * {@link ConsistentHashNodeManager} can send every operation for that 
+     * object to the same node.
+     * </p>
+     * @return the routing key, or null if the operation isn't for a single object.
+     */
+    public byte[] getRoutingKey()
+    {
+        return null;
+    }
+
+    /**
+     * Builds a routing key from an object's location.
+     * An empty bucket type is treated as the default type.
+     * @param bucketType the bucket type; may be empty
+     * @param bucket the bucket
+     * @param key the key
+     * @return the routing key
+     */
+    protected static byte[] createRoutingKey(byte[] bucketType, byte[] bucket, byte[] key)
+    {
+        if (bucketType.length == 0)
+        {
+            bucketType = DEFAULT_BUCKET_TYPE;
+        }
+        byte[] routingKey = new byte[bucketType.length + bucket.length + key.length + 2];
+        System.arraycopy(bucketType, 0, routingKey, 0, bucketType.length);
+        System.arraycopy(bucket, 0, routingKey, bucketType.length + 1, bucket.length);
+        System.arraycopy(key, 0, routingKey, bucketType.length + bucket.length + 2, key.length);
+        return routingKey;
+    }
+
     // Exposed for testing.
-    public synchronized final void setResponse(RiakMessage rawResponse)
+    public final void setResponse(RiakMessage rawResponse)
     {
         stateCheck(State.CREATED, State.WRITTEN, State.RETRY);
         U decodedMessage = decode(rawResponse);
-        this.rawResponse.add(decodedMessage);
-        exception = null;
+        ResponseStream<U> stream = responseStream;
+        if (stream == null)
+        {
+            addResponse(decodedMessage);
+        }
+        else
+        {
+            streamed = true;
+            stream.streamResponse(decodedMessage);
+        }
         if (done(decodedMessage))
         {
+            State current;
+            do
+            {
+                current = state;
+                checkState(current, State.CREATED, State.WRITTEN, State.RETRY);
+            }
+            while (!STATE.compareAndSet(this, current, State.COMPLETING));
+
+            // Clear any failure from a previous attempt
+            exception = null;
             remainingTries--;
             if (retrier != null)
             {
                 retrier.operationComplete(this, remainingTries);
             }
-            state = State.COMPLETE;
-            latch.countDown();
-            fireListeners();
+            complete();
+        }
+    }
+
+    private void addResponse(U decodedMessage)
+    {
+        if (responseCount == 0)
+        {
+            firstResponse = decodedMessage;
+        }
+        else
+        {
+            if (moreResponses == null)
+            {
+                moreResponses = new ArrayList<U>();
+            }
+            moreResponses.add(decodedMessage);
+        }
+        responseCount++;
+    }
+
+    private List<U> responses()
+    {
+        if (responseCount == 0)
+        {
+            return new ArrayList<U>(0);
+        }
+        else if (moreResponses == null)
+        {
+            return Collections.singletonList(firstResponse);
+        }
+        List<U> all = new ArrayList<U>(responseCount);
+        all.add(firstResponse);
+        all.addAll(moreResponses);
+        return all;
+    }
+
+    /**
+     * Streams results to the supplied StreamingResult rather than retaining 
+     * responses until the operation completes.
+     * <p>
+     * Each response is passed to the supplied ResponseStream and 
+     * discarded; {@link #convert(java.util.List)} is called with an empty 
+     * list. Once a response has been streamed a failure is not retried, 
+     * as the consumer would see the same results twice.
+     * </p>
+     * @param result the result the operation delivers to
+     * @param stream hands each decoded response to the result
+     */
+    protected final void setStreamingResult(StreamingResult<?> result, ResponseStream<U> stream)
+    {
+        if (result == null || stream == null)
+        {
+            throw new IllegalArgumentException("StreamingResult and ResponseStream can not be null");
+        }
+        stateCheck(State.CREATED);
+        this.streamingResult = result;
+        this.responseStream = stream;
+    }
+
+    /**
+     * Sets the connection the operation is being read from.
+     * Called by the {@link RiakNode} when the operation is written.
+     */
+    final void setChannel(Channel channel)
+    {
+        this.channel = channel;
+    }
+
+    /**
+     * Stops or resumes reading responses from this operation's connection.
+     */
+    final void setAutoRead(boolean autoRead)
+    {
+        Channel c = channel;
+        if (c != null)
+        {
+            readPaused = !autoRead;
+            c.config().setAutoRead(autoRead);
         }
     }
 
@@ -179,34 +482,107 @@ public abstract class FutureOperation<T, U> implements RiakFuture<T>
         return true;
     }
 
-    synchronized final void setException(Throwable t)
+    final void setException(Throwable t)
     {
-        stateCheck(State.CREATED, State.WRITTEN, State.RETRY);
-        this.exception = t;
+        if (!fail(t, false))
+        {
+            stateCheck(State.CREATED, State.WRITTEN, State.RETRY);
+        }
+    }
 
-        remainingTries--;
-        if (remainingTries == 0)
+    /**
+     * Fails this operation regardless of how many retries remain.
+     * <p>
+     * Unlike {@link #setException(java.lang.Throwable)} this is a no-op if 
+     * the operation has already completed, so it can race with a response.
+     * </p>
+     * @return true if this call completed the operation.
+     */
+    final boolean setTerminalException(Throwable t)
+    {
+        return fail(t, true);
+    }
+
+    /**
+     * The exception this operation last failed with, or null.
+     */
+    final Throwable getFailureCause()
+    {
+        return exception;
+    }
+
+    private boolean fail(Throwable t, boolean terminal)
+    {
+        State current;
+        boolean last;
+        do
         {
-            state = State.COMPLETE;
-            latch.countDown();
-            fireListeners();
+            current = state;
+            if (current.compareTo(State.COMPLETING) >= 0)
+            {
+                return false;
+            }
+            last = terminal || streamed || remainingTries <= 1;
+        }
+        while (!STATE.compareAndSet(this, current, last ? State.COMPLETING : State.RETRY));
+
+        this.exception = t;
+        if (last)
+        {
+            remainingTries = 0;
+            complete();
         }
         else
         {
-            state = State.RETRY;
+            remainingTries--;
         }
 
         if (retrier != null)
         {
             retrier.operationFailed(this, remainingTries);
         }
+        return true;
+    }
 
+    /**
+     * Publishes the result; only called by the thread that moved the 
+     * operation to COMPLETING.
+     */
+    private void complete()
+    {
+        if (readPaused)
+        {
+            // The connection is going back to the pool
+            setAutoRead(true);
+        }
+        channel = null;
+        state = State.COMPLETE;
+        CountDownLatch waiters = latch;
+        if (waiters != null)
+        {
+            waiters.countDown();
+        }
+        StreamingResult<?> result = streamingResult;
+        if (result != null)
+        {
+            result.finish();
+        }
+        fireListeners();
     }
 
-    public synchronized final Object channelMessage()
+    public final Object channelMessage()
     {
         Object message = createChannelMessage();
-        state = State.WRITTEN;
+        State current;
+        do
+        {
+            current = state;
+            if (current.compareTo(State.COMPLETING) >= 0)
+            {
+                break;
+            }
+        }
+        while (!STATE.compareAndSet(this, current, State.WRITTEN));
         return message;
     }
 
@@ -231,31 +607,52 @@ public abstract class FutureOperation<T, U> implements RiakFuture<T>
     @Override
     public final T get() throws InterruptedException, ExecutionException
     {
-        latch.await();
-
-        if (exception != null)
-        {
-            throw new ExecutionException(exception);
-        }
-
-        if (null == converted)
+        if (!isDone())
         {
-            converted = convert(rawResponse);
+            CountDownLatch waiters = waitLatch();
+            if (!isDone())
+            {
+                waiters.await();
+            }
         }
-
-        return converted;
+        return result();
     }
 
     @Override
     public final T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
     {
-        boolean succeed = latch.await(timeout, unit);
+        if (!isDone())
+        {
+            CountDownLatch waiters = waitLatch();
+            if (!isDone() && !waiters.await(timeout, unit))
+            {
+                throw new TimeoutException();
+            }
+        }
+        return result();
+    }
 
-        if (!succeed)
+    /**
+     * Installs the latch waiters block on. complete() writes the state before
+     * reading the latch and waiters install the latch before re-reading the 
+     * state, so one of them always sees the other.
+     */
+    private CountDownLatch waitLatch()
+    {
+        CountDownLatch waiters = latch;
+        if (waiters == null)
         {
-            throw new TimeoutException();
+            waiters = new CountDownLatch(1);
+            if (!LATCH.compareAndSet(this, null, waiters))
+            {
+                waiters = latch;
+            }
         }
+        return waiters;
+    }
 
+    private T result() throws ExecutionException
+    {
         if (exception != null)
         {
             throw new ExecutionException(exception);
@@ -263,22 +660,26 @@ public abstract class FutureOperation<T, U> implements RiakFuture<T>
 
         if (null == converted)
         {
-            converted = convert(rawResponse);
+            converted = convert(responses());
         }
 
         return converted;
     }
 
-
     private void stateCheck(State... allowedStates)
     {
-        if (Arrays.binarySearch(allowedStates, state) < 0)
+        checkState(state, allowedStates);
+    }
+
+    private void checkState(State current, State... allowedStates)
+    {
+        if (Arrays.binarySearch(allowedStates, current) < 0)
         {
             logger.debug("IllegalStateException; required: {} current: {} ",
-                Arrays.toString(allowedStates), state);
+                Arrays.toString(allowedStates), current);
             throw new IllegalStateException("required: "
                 + Arrays.toString(allowedStates)
-                + " current: " + state);
+                + " current: " + current);
         }
     }
 
@@ -288,5 +689,69 @@ public abstract class FutureOperation<T, U> implements RiakFuture<T>
 
     abstract protected U decode(RiakMessage rawMessage);
 
+    /**
+     * Hands the decoded responses of a streaming operation to its 
+     * StreamingResult.
+     * @param <U> the decoded response type
+     * @see FutureOperation#setStreamingResult(StreamingResult, ResponseStream) 
+     */
+    protected interface ResponseStream<U>
+    {
+        /**
+         * Called on the I/O thread with each decoded response.
+         * @param message the decoded response
+         */
+        void streamResponse(U message);
+    }
 
+    /**
+     * An immutable, copy on write array of listeners and registrations.
+     */
+    private static final class ListenerArray
+    {
+        private final Object[] listeners;
+
+        ListenerArray(Object[] listeners)
+        {
+            this.listeners = listeners;
+        }
+
+        boolean contains(Object listener)
+        {
+            for (Object o : listeners)
+            {
+                if (ListenerNotifier.matches(o, listener))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        ListenerArray add(Object listener)
+        {
+            Object[] copy = Arrays.copyOf(listeners, listeners.length + 1);
+            copy[listeners.length] = listener;
+            return new ListenerArray(copy);
+        }
+
+        Object remove(Object listener)
+        {
+            for (int i = 0; i < listeners.length; i++)
+            {
+                if (ListenerNotifier.matches(listeners[i], listener))
+                {
+                    if (listeners.length == 2)
+                    {
+                        return listeners[1 - i];
+                    }
+                    Object[] copy = new Object[listeners.length - 1];
+                    System.arraycopy(listeners, 0, copy, 0, i);
+                    System.arraycopy(listeners, i + 1, copy, i, copy.length - i);
+                    return new ListenerArray(copy);
+                }
+            }
+            return this;
+        }
+    }
 }
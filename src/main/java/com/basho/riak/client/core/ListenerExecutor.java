@@ -0,0 +1,275 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link Executor} for {@link RiakFutureListener} callbacks.
+ * <p>
+ * By default listeners are called on the thread that completes the future, 
+ * which is usually a Netty event loop thread; a slow listener then delays 
+ * every other connection served by that thread. Giving a RiakCluster a 
+ * ListenerExecutor (see {@link RiakCluster.Builder#withListenerExecutor(Executor)}) 
+ * or passing one to {@link RiakFuture#addListener(RiakFutureListener, Executor)} 
+ * moves the callbacks off the event loop.
+ * </p>
+ * <p>
+ * Built with no executor it runs a bounded pool of daemon threads. When the 
+ * pool's queue is full the callback runs on the submitting thread instead 
+ * of being dropped; {@link #getOverflowCount()} counts how often that 
+ * happened. Built with {@link Builder#withExecutor(Executor)} it wraps the 
+ * supplied executor and only adds the metrics.
+ * </p>
+ * <p>
+ * The time between a callback being submitted and starting to run is 
+ * recorded as its queue delay.
+ * </p>
+ *
+ * @since 2.0
+ */
+public class ListenerExecutor implements Executor
+{
+    private final Executor executor;
+    private final ThreadPoolExecutor pool;
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong startedCount = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicLong totalQueueDelayNanos = new AtomicLong();
+    private final AtomicLong maxQueueDelayNanos = new AtomicLong();
+
+    private ListenerExecutor(Builder builder)
+    {
+        if (builder.executor != null)
+        {
+            this.executor = builder.executor;
+            this.pool = null;
+        }
+        else
+        {
+            this.pool = new ThreadPoolExecutor(builder.threads, builder.threads,
+                                               0, TimeUnit.MILLISECONDS,
+                                               new ArrayBlockingQueue<Runnable>(builder.queueSize),
+                                               new ListenerThreadFactory());
+            this.executor = pool;
+        }
+    }
+
+    @Override
+    public void execute(Runnable command)
+    {
+        TimedTask task = new TimedTask(command);
+        submittedCount.incrementAndGet();
+        try
+        {
+            executor.execute(task);
+        }
+        catch (RejectedExecutionException ex)
+        {
+            if (pool == null || pool.isShutdown())
+            {
+                submittedCount.decrementAndGet();
+                throw ex;
+            }
+            overflowCount.incrementAndGet();
+            task.run();
+        }
+    }
+
+    /**
+     * Stops the built-in pool once queued callbacks have run. 
+     * A supplied executor is not shut down.
+     */
+    public void shutdown()
+    {
+        if (pool != null)
+        {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Returns the number of callbacks that have started running.
+     * @return the number of callbacks run
+     */
+    public long getExecutedCount()
+    {
+        return startedCount.get();
+    }
+
+    /**
+     * Returns the number of callbacks waiting to run.
+     * @return the number of queued callbacks
+     */
+    public long getQueueSize()
+    {
+        return Math.max(0, submittedCount.get() - startedCount.get());
+    }
+
+    /**
+     * Returns the number of callbacks run on the submitting thread because 
+     * the built-in pool's queue was full.
+     * @return the number of overflowed callbacks
+     */
+    public long getOverflowCount()
+    {
+        return overflowCount.get();
+    }
+
+    /**
+     * Returns the mean time callbacks waited before running.
+     * @return the mean queue delay in nanoseconds, 0 if nothing has run.
+     */
+    public long getMeanQueueDelayNanos()
+    {
+        long count = startedCount.get();
+        return count == 0 ? 0 : totalQueueDelayNanos.get() / count;
+    }
+
+    /**
+     * Returns the longest time a callback waited before running.
+     * @return the max queue delay in nanoseconds
+     */
+    public long getMaxQueueDelayNanos()
+    {
+        return maxQueueDelayNanos.get();
+    }
+
+    private void recordQueueDelay(long delayNanos)
+    {
+        startedCount.incrementAndGet();
+        totalQueueDelayNanos.addAndGet(delayNanos);
+        long max = maxQueueDelayNanos.get();
+        while (delayNanos > max && !maxQueueDelayNanos.compareAndSet(max, delayNanos))
+        {
+            max = maxQueueDelayNanos.get();
+        }
+    }
+
+    private class TimedTask implements Runnable
+    {
+        private final Runnable command;
+        private final long submittedAt = System.nanoTime();
+
+        TimedTask(Runnable command)
+        {
+            this.command = command;
+        }
+
+        @Override
+        public void run()
+        {
+            recordQueueDelay(System.nanoTime() - submittedAt);
+            command.run();
+        }
+    }
+
+    private static class ListenerThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread t = new Thread(r, "riak-listener-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+    /**
+     * Builder used to construct a ListenerExecutor.
+     */
+    public static class Builder
+    {
+        /**
+         * The default number of threads in the built-in pool: {@value #DEFAULT_THREADS}
+         */
+        public final static int DEFAULT_THREADS = 2;
+        /**
+         * The default capacity of the built-in pool's queue: {@value #DEFAULT_QUEUE_SIZE}
+         */
+        public final static int DEFAULT_QUEUE_SIZE = 1024;
+
+        private int threads = DEFAULT_THREADS;
+        private int queueSize = DEFAULT_QUEUE_SIZE;
+        private Executor executor;
+
+        public Builder()
+        {
+        }
+
+        /**
+         * Set the number of threads in the built-in pool.
+         * @param threads the number of threads
+         * @return this
+         * @see #DEFAULT_THREADS
+         */
+        public Builder withThreads(int threads)
+        {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Set the number of callbacks the built-in pool will queue.
+         * @param queueSize the queue capacity
+         * @return this
+         * @see #DEFAULT_QUEUE_SIZE
+         */
+        public Builder withQueueSize(int queueSize)
+        {
+            this.queueSize = queueSize;
+            return this;
+        }
+
+        /**
+         * Run callbacks on the supplied executor rather than a built-in pool.
+         * @param executor the executor to wrap
+         * @return this
+         */
+        public Builder withExecutor(Executor executor)
+        {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Builds a ListenerExecutor.
+         * @return a new ListenerExecutor
+         * @throws IllegalArgumentException if the pool settings are invalid.
+         */
+        public ListenerExecutor build()
+        {
+            if (threads < 1)
+            {
+                throw new IllegalArgumentException("Threads must be >= 1");
+            }
+            if (queueSize < 1)
+            {
+                throw new IllegalArgumentException("Queue size must be >= 1");
+            }
+            return new ListenerExecutor(this);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Calls the listeners of a completed {@link RiakFuture}.
+ * <p>
+ * A listener is stored either as itself, when it was added without an 
+ * executor, or as an {@link Registration} pairing it with one. Listeners 
+ * added without an executor use the future's default executor, or run 
+ * inline on the completing thread if there is none.
+ * </p>
+ * <p>
+ * Listeners that share an executor are called, in the order they were 
+ * added, from a single task submitted to that executor. Listeners on 
+ * different executors have no order relative to each other. Tasks are 
+ * submitted before any inline listener runs so a slow inline listener 
+ * can't delay them. A RuntimeException thrown by a listener is logged and 
+ * doesn't stop the listeners after it.
+ * </p>
+ *
+ * @since 2.0
+ */
+final class ListenerNotifier
+{
+    private static final Logger logger = LoggerFactory.getLogger(ListenerNotifier.class);
+
+    private ListenerNotifier()
+    {
+    }
+
+    /**
+     * Pairs a listener with the executor it was added with.
+     */
+    static final class Registration<V>
+    {
+        final RiakFutureListener<V> listener;
+        final Executor executor;
+
+        Registration(RiakFutureListener<V> listener, Executor executor)
+        {
+            this.listener = listener;
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * Wraps a listener in a Registration if it was given an executor.
+     */
+    static <V> Object register(RiakFutureListener<V> listener, Executor executor)
+    {
+        if (executor == null)
+        {
+            return listener;
+        }
+        return new Registration<V>(listener, executor);
+    }
+
+    /**
+     * Returns whether a stored listener is the given listener.
+     */
+    static boolean matches(Object stored, Object listener)
+    {
+        if (stored instanceof Registration)
+        {
+            stored = ((Registration<?>) stored).listener;
+        }
+        return stored.equals(listener);
+    }
+
+    /**
+     * Calls a single stored listener.
+     */
+    @SuppressWarnings("unchecked")
+    static <V> void fire(RiakFuture<V> future, Object stored, Executor defaultExecutor)
+    {
+        RiakFutureListener<V> listener;
+        Executor executor;
+        if (stored instanceof Registration)
+        {
+            listener = ((Registration<V>) stored).listener;
+            executor = ((Registration<V>) stored).executor;
+        }
+        else
+        {
+            listener = (RiakFutureListener<V>) stored;
+            executor = defaultExecutor;
+        }
+
+        if (executor == null)
+        {
+            handleQuietly(future, listener);
+        }
+        else
+        {
+            List<RiakFutureListener<V>> single = new ArrayList<RiakFutureListener<V>>(1);
+            single.add(listener);
+            submit(future, executor, single);
+        }
+    }
+
+    /**
+     * Calls stored listeners, grouping them by executor.
+     */
+    @SuppressWarnings("unchecked")
+    static <V> void fire(RiakFuture<V> future, Iterable<?> stored, Executor defaultExecutor)
+    {
+        List<RiakFutureListener<V>> inline = null;
+        Map<Executor, List<RiakFutureListener<V>>> byExecutor = null;
+        for (Object o : stored)
+        {
+            RiakFutureListener<V> listener;
+            Executor executor;
+            if (o instanceof Registration)
+            {
+                listener = ((Registration<V>) o).listener;
+                executor = ((Registration<V>) o).executor;
+            }
+            else
+            {
+                listener = (RiakFutureListener<V>) o;
+                executor = defaultExecutor;
+            }
+
+            List<RiakFutureListener<V>> group;
+            if (executor == null)
+            {
+                if (inline == null)
+                {
+                    inline = new ArrayList<RiakFutureListener<V>>();
+                }
+                group = inline;
+            }
+            else
+            {
+                if (byExecutor == null)
+                {
+                    byExecutor = new LinkedHashMap<Executor, List<RiakFutureListener<V>>>();
+                }
+                group = byExecutor.get(executor);
+                if (group == null)
+                {
+                    group = new ArrayList<RiakFutureListener<V>>();
+                    byExecutor.put(executor, group);
+                }
+            }
+            group.add(listener);
+        }
+
+        if (byExecutor != null)
+        {
+            for (Map.Entry<Executor, List<RiakFutureListener<V>>> e : byExecutor.entrySet())
+            {
+                submit(future, e.getKey(), e.getValue());
+            }
+        }
+        if (inline != null)
+        {
+            for (RiakFutureListener<V> listener : inline)
+            {
+                handleQuietly(future, listener);
+            }
+        }
+    }
+
+    private static <V> void submit(final RiakFuture<V> future, Executor executor,
+                                   final List<RiakFutureListener<V>> listeners)
+    {
+        Runnable task = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (RiakFutureListener<V> listener : listeners)
+                {
+                    handleQuietly(future, listener);
+                }
+            }
+        };
+
+        try
+        {
+            executor.execute(task);
+        }
+        catch (RejectedExecutionException ex)
+        {
+            logger.warn("Listener executor rejected callback; running inline");
+            task.run();
+        }
+    }
+
+    private static <V> void handleQuietly(RiakFuture<V> future, RiakFutureListener<V> listener)
+    {
+        try
+        {
+            listener.handle(future);
+        }
+        catch (RuntimeException ex)
+        {
+            logger.error("Exception thrown from RiakFutureListener", ex);
+        }
+    }
+}
@@ -22,5 +22,15 @@ package com.basho.riak.client.core;
  */
 public class NoNodesAvailableException extends Exception
 {
+    private static final long serialVersionUID = -1567245429335839567L;
+
+    public NoNodesAvailableException()
+    {
+        super();
+    }
     
+    public NoNodesAvailableException(String message)
+    {
+        super(message);
+    }
 }
@@ -25,7 +25,23 @@ import java.util.List;
 public interface NodeManager extends NodeStateListener
 {
     void init(List<RiakNode> nodes);
-    void executeOnNode(FutureOperation operation, RiakNode previousNode);
+    /**
+     * Attempt to execute the operation on one of the managed nodes.
+     * <p>
+     * If no node accepts the operation the NodeManager must not fail it; 
+     * the {@link RiakCluster} decides whether to queue it or set a 
+     * {@link NoNodesAvailableException}.
+     * </p>
+     * <p>
+     * This method used to return void and fail the operation itself. Custom 
+     * implementations written against that signature must be changed to 
+     * return false rather than set an exception.
+     * </p>
+     * @param operation the operation to execute
+     * @param previousNode the node the operation was last tried on, or null.
+     * @return true if a node accepted the operation, false otherwise.
+     */
+    boolean executeOnNode(FutureOperation operation, RiakNode previousNode);
     void addNode(RiakNode newNode);
     boolean removeNode(RiakNode node);
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the periodic maintenance (health monitoring and idle connection 
+ * reaping) of many {@link RiakNode}s from a single scheduled task. 
+ *
+ * @since 2.0
+ * @see ClientResources
+ */
+class NodeSweeper implements Runnable
+{
+    private final Logger logger = LoggerFactory.getLogger(NodeSweeper.class);
+    private final CopyOnWriteArrayList<RiakNode> nodes = new CopyOnWriteArrayList<RiakNode>();
+    
+    void register(RiakNode node)
+    {
+        nodes.addIfAbsent(node);
+    }
+    
+    void unregister(RiakNode node)
+    {
+        nodes.remove(node);
+    }
+    
+    int size()
+    {
+        return nodes.size();
+    }
+    
+    @Override
+    public void run()
+    {
+        for (RiakNode node : nodes)
+        {
+            try
+            {
+                node.sweep();
+            }
+            catch (RuntimeException ex)
+            {
+                // An exception would cancel the scheduled sweeper for every node
+                logger.error("Exception sweeping node {}:{}; {}", 
+                             node.getRemoteAddress(), node.getPort(), ex);
+            }
+        }
+    }
+}
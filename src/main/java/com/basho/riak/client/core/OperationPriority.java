@@ -0,0 +1,62 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+/**
+ * The scheduling class of a {@link FutureOperation}.
+ * <p>
+ * When operations have to wait in a {@link RiakCluster}'s operation queue 
+ * they are dispatched using weighted fair queuing across these classes, so
+ * a burst of batch work cannot starve interactive requests and batch work 
+ * still makes progress. A {@link RiakNode} can also hold back connections for
+ * {@link #INTERACTIVE} operations.
+ * </p>
+ *
+ * @since 2.0
+ * @see RiakCluster.Builder#withPriorityWeight(OperationPriority, int)
+ * @see RiakNode.Builder#withReservedConnections(int)
+ */
+public enum OperationPriority
+{
+    /**
+     * User facing requests. Default weight: 8
+     */
+    INTERACTIVE(8),
+    /**
+     * The default class for operations. Default weight: 4
+     */
+    NORMAL(4),
+    /**
+     * Background work such as listing keys, 2i queries and MapReduce. Default weight: 1
+     */
+    BATCH(1);
+    
+    private final int defaultWeight;
+    
+    private OperationPriority(int defaultWeight)
+    {
+        this.defaultWeight = defaultWeight;
+    }
+    
+    /**
+     * Returns the share of the operation queue this class receives by default.
+     * @return the default weight
+     */
+    public int getDefaultWeight()
+    {
+        return defaultWeight;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Set on an operation that a {@link RiakCluster} refused to execute because
+ * it was not expected to complete before its deadline.
+ *
+ * @since 2.0
+ * @see FutureOperation#setDeadline(long, java.util.concurrent.TimeUnit)
+ */
+public class OperationShedException extends Exception
+{
+    private static final long serialVersionUID = -6716230934414927706L;
+    private final long estimatedNanos;
+    private final long remainingNanos;
+
+    public OperationShedException(long estimatedNanos, long remainingNanos)
+    {
+        super("Operation shed; estimated completion "
+            + TimeUnit.NANOSECONDS.toMillis(estimatedNanos)
+            + "ms, remaining deadline "
+            + TimeUnit.NANOSECONDS.toMillis(remainingNanos) + "ms");
+        this.estimatedNanos = estimatedNanos;
+        this.remainingNanos = remainingNanos;
+    }
+
+    /**
+     * Returns the cluster's estimate of how long the operation would have taken.
+     * @return the estimate in nanoseconds
+     */
+    public long getEstimatedNanos()
+    {
+        return estimatedNanos;
+    }
+
+    /**
+     * Returns the time that remained before the operation's deadline.
+     * @return the remaining time in nanoseconds; negative if already passed.
+     */
+    public long getRemainingNanos()
+    {
+        return remainingNanos;
+    }
+}
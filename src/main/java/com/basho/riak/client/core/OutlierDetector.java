@@ -0,0 +1,431 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Temporarily removes nodes that are much slower, or fail much more often,
+ * than the rest of the cluster.
+ * <p>
+ * When installed on a {@link RiakCluster} each node records the success and 
+ * latency of its operations in a {@link SlidingWindowStats}. At every interval 
+ * the detector compares each node that has enough samples against the 
+ * cluster median: a node whose latency percentile exceeds the median by 
+ * the latency factor, or whose success rate is lower than the median by more
+ * than the allowed deviation, is ejected. An ejected node refuses new 
+ * operations, so the {@link NodeManager} routes around it. 
+ * </p>
+ * <p>
+ * No more than the maximum ejection fraction of the nodes is ejected at any 
+ * time. A node is returned after its ejection time; each consecutive ejection
+ * doubles that time (up to the maximum) and every interval the node is 
+ * evaluated as healthy halves it again.
+ * </p>
+ *
+ * @since 2.0
+ * @see RiakCluster.Builder#withOutlierDetector(OutlierDetector) 
+ */
+public class OutlierDetector
+{
+    private final Logger logger = LoggerFactory.getLogger(OutlierDetector.class);
+    private final long intervalNanos;
+    private final long windowNanos;
+    private final int windowCapacity;
+    private final int minRequests;
+    private final int minHosts;
+    private final double latencyPercentile;
+    private final double latencyFactor;
+    private final double successRateDeviation;
+    private final double maxEjectionFraction;
+    private final long baseEjectionNanos;
+    private final long maxEjectionNanos;
+    private final AtomicLong ejectionCount = new AtomicLong();
+    
+    // Only touched from evaluate(), which the cluster runs on one thread at a time.
+    private final Map<RiakNode, Ejection> ejections = new WeakHashMap<RiakNode, Ejection>();
+    
+    private OutlierDetector(Builder builder)
+    {
+        this.intervalNanos = builder.intervalNanos;
+        this.windowNanos = builder.windowNanos;
+        this.windowCapacity = builder.windowCapacity;
+        this.minRequests = builder.minRequests;
+        this.minHosts = builder.minHosts;
+        this.latencyPercentile = builder.latencyPercentile;
+        this.latencyFactor = builder.latencyFactor;
+        this.successRateDeviation = builder.successRateDeviation;
+        this.maxEjectionFraction = builder.maxEjectionFraction;
+        this.baseEjectionNanos = builder.baseEjectionNanos;
+        this.maxEjectionNanos = builder.maxEjectionNanos;
+    }
+    
+    SlidingWindowStats createStatistics()
+    {
+        return new SlidingWindowStats(windowNanos, TimeUnit.NANOSECONDS, windowCapacity);
+    }
+    
+    long getIntervalNanos()
+    {
+        return intervalNanos;
+    }
+    
+    /**
+     * Returns the total number of ejections.
+     * @return the number of times a node has been ejected
+     */
+    public long getEjectionCount()
+    {
+        return ejectionCount.get();
+    }
+    
+    /**
+     * Returns ejected nodes whose time is up and ejects new outliers.
+     * @param nodes all of the cluster's nodes
+     */
+    synchronized void evaluate(List<RiakNode> nodes)
+    {
+        long now = System.nanoTime();
+        int ejected = 0;
+        for (RiakNode node : nodes)
+        {
+            Ejection ejection = ejections.get(node);
+            if (node.isEjected() && ejection != null && now - ejection.until >= 0)
+            {
+                logger.info("Outlier detection returning node {}:{}", 
+                            node.getRemoteAddress(), node.getPort());
+                // Start the node off with a clean slate
+                node.getStatistics().clear();
+                node.setEjected(false);
+            }
+            else if (node.isEjected())
+            {
+                ejected++;
+            }
+        }
+        
+        List<RiakNode> candidates = new ArrayList<RiakNode>();
+        List<SlidingWindowStats.Snapshot> snapshots = new ArrayList<SlidingWindowStats.Snapshot>();
+        for (RiakNode node : nodes)
+        {
+            SlidingWindowStats stats = node.getStatistics();
+            if (!node.isEjected() && stats != null && node.getNodeState() == RiakNode.State.RUNNING)
+            {
+                SlidingWindowStats.Snapshot snapshot = stats.snapshot();
+                if (snapshot.getCount() >= minRequests)
+                {
+                    candidates.add(node);
+                    snapshots.add(snapshot);
+                }
+            }
+        }
+        if (candidates.size() < minHosts)
+        {
+            return;
+        }
+        
+        long[] latencies = new long[snapshots.size()];
+        double[] successRates = new double[snapshots.size()];
+        for (int i = 0; i < snapshots.size(); i++)
+        {
+            latencies[i] = snapshots.get(i).getLatencyPercentile(latencyPercentile);
+            successRates[i] = snapshots.get(i).getSuccessRate();
+        }
+        long medianLatency = median(latencies.clone());
+        double medianSuccessRate = median(successRates.clone());
+        int maxEjected = (int) (nodes.size() * maxEjectionFraction);
+        
+        for (int i = 0; i < candidates.size(); i++)
+        {
+            RiakNode node = candidates.get(i);
+            boolean slow = latencies[i] > medianLatency * latencyFactor;
+            boolean failing = successRates[i] < medianSuccessRate - successRateDeviation;
+            Ejection ejection = ejections.get(node);
+            
+            if (!slow && !failing)
+            {
+                if (ejection != null && ejection.multiplier > 0)
+                {
+                    ejection.multiplier--;
+                }
+            }
+            else if (ejected < maxEjected)
+            {
+                if (ejection == null)
+                {
+                    ejection = new Ejection();
+                    ejections.put(node, ejection);
+                }
+                long duration = ejectionNanos(ejection.multiplier);
+                if (duration < maxEjectionNanos)
+                {
+                    // Past the max it would only take longer to decay
+                    ejection.multiplier++;
+                }
+                ejection.until = now + duration;
+                node.setEjected(true);
+                ejected++;
+                ejectionCount.incrementAndGet();
+                logger.warn("Outlier detection ejecting node {}:{} for {}ms; p{} latency {}ns (median {}ns), success rate {} (median {})",
+                            node.getRemoteAddress(), node.getPort(), 
+                            TimeUnit.NANOSECONDS.toMillis(duration), (int) (latencyPercentile * 100),
+                            latencies[i], medianLatency, successRates[i], medianSuccessRate);
+            }
+        }
+    }
+    
+    /**
+     * Returns how long a node is ejected for, doubling with each multiple 
+     * of the base time up to the max.
+     */
+    long ejectionNanos(int multiplier)
+    {
+        // Compared before shifting so the shift can't overflow
+        if (multiplier >= Long.SIZE - 1 || baseEjectionNanos > maxEjectionNanos >> multiplier)
+        {
+            return maxEjectionNanos;
+        }
+        return baseEjectionNanos << multiplier;
+    }
+    
+    private static long median(long[] values)
+    {
+        Arrays.sort(values);
+        return values[values.length / 2];
+    }
+    
+    private static double median(double[] values)
+    {
+        Arrays.sort(values);
+        return values[values.length / 2];
+    }
+    
+    private static class Ejection
+    {
+        private int multiplier;
+        private long until;
+    }
+    
+    /**
+     * Builder used to construct an OutlierDetector.
+     */
+    public static class Builder
+    {
+        /**
+         * The default evaluation interval in milliseconds: {@value #DEFAULT_INTERVAL}
+         */
+        public final static int DEFAULT_INTERVAL = 1000;
+        /**
+         * The default sliding window in milliseconds: {@value #DEFAULT_WINDOW}
+         */
+        public final static int DEFAULT_WINDOW = 10000;
+        /**
+         * The default number of samples kept per node: {@value #DEFAULT_WINDOW_CAPACITY}
+         */
+        public final static int DEFAULT_WINDOW_CAPACITY = 1024;
+        /**
+         * The default number of samples needed to evaluate a node: {@value #DEFAULT_MIN_REQUESTS}
+         */
+        public final static int DEFAULT_MIN_REQUESTS = 100;
+        /**
+         * The default number of nodes needed to compute a median: {@value #DEFAULT_MIN_HOSTS}
+         */
+        public final static int DEFAULT_MIN_HOSTS = 3;
+        /**
+         * The default latency percentile compared: {@value #DEFAULT_LATENCY_PERCENTILE}
+         */
+        public final static double DEFAULT_LATENCY_PERCENTILE = 0.99;
+        /**
+         * The default multiple of the median latency that is an outlier: {@value #DEFAULT_LATENCY_FACTOR}
+         */
+        public final static double DEFAULT_LATENCY_FACTOR = 3.0;
+        /**
+         * The default amount a success rate may fall below the median: {@value #DEFAULT_SUCCESS_RATE_DEVIATION}
+         */
+        public final static double DEFAULT_SUCCESS_RATE_DEVIATION = 0.1;
+        /**
+         * The default maximum fraction of nodes ejected at once: {@value #DEFAULT_MAX_EJECTION_FRACTION}
+         */
+        public final static double DEFAULT_MAX_EJECTION_FRACTION = 0.34;
+        /**
+         * The default base ejection time in milliseconds: {@value #DEFAULT_BASE_EJECTION_TIME}
+         */
+        public final static int DEFAULT_BASE_EJECTION_TIME = 30000;
+        /**
+         * The default maximum ejection time in milliseconds: {@value #DEFAULT_MAX_EJECTION_TIME}
+         */
+        public final static int DEFAULT_MAX_EJECTION_TIME = 300000;
+        
+        private long intervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_INTERVAL);
+        private long windowNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_WINDOW);
+        private int windowCapacity = DEFAULT_WINDOW_CAPACITY;
+        private int minRequests = DEFAULT_MIN_REQUESTS;
+        private int minHosts = DEFAULT_MIN_HOSTS;
+        private double latencyPercentile = DEFAULT_LATENCY_PERCENTILE;
+        private double latencyFactor = DEFAULT_LATENCY_FACTOR;
+        private double successRateDeviation = DEFAULT_SUCCESS_RATE_DEVIATION;
+        private double maxEjectionFraction = DEFAULT_MAX_EJECTION_FRACTION;
+        private long baseEjectionNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_BASE_EJECTION_TIME);
+        private long maxEjectionNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_EJECTION_TIME);
+        
+        public Builder()
+        {
+        }
+        
+        /**
+         * Set how often nodes are evaluated.
+         * @param interval the interval
+         * @param unit the unit of the interval
+         * @return this
+         * @see #DEFAULT_INTERVAL
+         */
+        public Builder withInterval(long interval, TimeUnit unit)
+        {
+            this.intervalNanos = unit.toNanos(interval);
+            return this;
+        }
+        
+        /**
+         * Set the sliding window and the maximum number of samples kept in it per node.
+         * @param window the length of the window
+         * @param unit the unit of the window
+         * @param capacity the maximum samples kept
+         * @return this
+         * @see #DEFAULT_WINDOW
+         * @see #DEFAULT_WINDOW_CAPACITY
+         */
+        public Builder withWindow(long window, TimeUnit unit, int capacity)
+        {
+            this.windowNanos = unit.toNanos(window);
+            this.windowCapacity = capacity;
+            return this;
+        }
+        
+        /**
+         * Set the number of operations a node must have in the window to be evaluated.
+         * @param minRequests the minimum number of samples
+         * @return this
+         * @see #DEFAULT_MIN_REQUESTS
+         */
+        public Builder withMinRequests(int minRequests)
+        {
+            this.minRequests = minRequests;
+            return this;
+        }
+        
+        /**
+         * Set how many nodes must have enough samples before any are ejected.
+         * @param minHosts the minimum number of nodes
+         * @return this
+         * @see #DEFAULT_MIN_HOSTS
+         */
+        public Builder withMinHosts(int minHosts)
+        {
+            this.minHosts = minHosts;
+            return this;
+        }
+        
+        /**
+         * Set the latency percentile compared and how many times the median 
+         * it must exceed for a node to be an outlier.
+         * @param percentile the percentile, e.g. 0.99
+         * @param factor the multiple of the median
+         * @return this
+         * @see #DEFAULT_LATENCY_PERCENTILE
+         * @see #DEFAULT_LATENCY_FACTOR
+         */
+        public Builder withLatencyThreshold(double percentile, double factor)
+        {
+            this.latencyPercentile = percentile;
+            this.latencyFactor = factor;
+            return this;
+        }
+        
+        /**
+         * Set how far below the median success rate a node may fall.
+         * @param deviation the allowed deviation, e.g. 0.1
+         * @return this
+         * @see #DEFAULT_SUCCESS_RATE_DEVIATION
+         */
+        public Builder withSuccessRateDeviation(double deviation)
+        {
+            this.successRateDeviation = deviation;
+            return this;
+        }
+        
+        /**
+         * Set the largest fraction of the nodes that may be ejected at once.
+         * @param fraction a value in [0, 1)
+         * @return this
+         * @see #DEFAULT_MAX_EJECTION_FRACTION
+         */
+        public Builder withMaxEjectionFraction(double fraction)
+        {
+            this.maxEjectionFraction = fraction;
+            return this;
+        }
+        
+        /**
+         * Set the ejection time for a first ejection and the maximum it can grow to.
+         * @param base the first ejection time
+         * @param max the maximum ejection time
+         * @param unit the unit of both times
+         * @return this
+         * @see #DEFAULT_BASE_EJECTION_TIME
+         * @see #DEFAULT_MAX_EJECTION_TIME
+         */
+        public Builder withEjectionTime(long base, long max, TimeUnit unit)
+        {
+            this.baseEjectionNanos = unit.toNanos(base);
+            this.maxEjectionNanos = unit.toNanos(max);
+            return this;
+        }
+        
+        /**
+         * Builds an OutlierDetector.
+         * @return a new OutlierDetector
+         * @throws IllegalArgumentException if the settings are inconsistent.
+         */
+        public OutlierDetector build()
+        {
+            if (maxEjectionFraction < 0 || maxEjectionFraction >= 1)
+            {
+                throw new IllegalArgumentException("Max ejection fraction must be in [0, 1)");
+            }
+            if (latencyPercentile <= 0 || latencyPercentile > 1)
+            {
+                throw new IllegalArgumentException("Latency percentile must be in (0, 1]");
+            }
+            if (minHosts < 1 || windowCapacity < 1)
+            {
+                throw new IllegalArgumentException("Min hosts and window capacity must be >= 1");
+            }
+            if (maxEjectionNanos < baseEjectionNanos)
+            {
+                throw new IllegalArgumentException("Max ejection time less than base ejection time");
+            }
+            return new OutlierDetector(this);
+        }
+    }
+}
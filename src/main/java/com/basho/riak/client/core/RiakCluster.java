@@ -16,21 +16,32 @@
 package com.basho.riak.client.core;
 
 
+import com.basho.riak.client.core.netty.RiakResponseException;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,6 +60,7 @@ import org.slf4j.LoggerFactory;
 public class  RiakCluster implements OperationRetrier, NodeStateListener
 {
     enum State { CREATED, RUNNING, SHUTTING_DOWN, SHUTDOWN }
+    private static final long QUEUE_MONITOR_INTERVAL_MILLIS = 50;
     private final Logger logger = LoggerFactory.getLogger(RiakCluster.class);
     private final int executionAttempts;
     private final NodeManager nodeManager;
@@ -59,10 +71,51 @@ public class  RiakCluster implements OperationRetrier, NodeStateListener
     private final ReentrantReadWriteLock nodeListLock = new ReentrantReadWriteLock();
     private final LinkedBlockingQueue<FutureOperation> retryQueue =
         new LinkedBlockingQueue<FutureOperation>();
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong shedCount = new AtomicLong();
     
+    private final int operationQueueMaxDepth;
+    private final long operationQueueTimeoutNanos;
+    private final WeightedFairQueue<QueuedOperation> operationQueue;
+    private final ReentrantLock operationQueueLock = new ReentrantLock();
+    private final ReentrantLock dispatchLock = new ReentrantLock();
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+    private final AtomicInteger operationQueueDepth = new AtomicInteger();
+    private final AtomicLong queuedCount = new AtomicLong();
+    private final AtomicLong queueRejectedCount = new AtomicLong();
+    private final AtomicLong queueExpiredCount = new AtomicLong();
+    private final AtomicLong dequeuedCount = new AtomicLong();
+    private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+    private final AtomicLong averageQueueWaitNanos = new AtomicLong();
+    private final Runnable dispatchTask = new DispatchTask();
+    private final RiakNode.CapacityListener capacityListener = 
+        new RiakNode.CapacityListener()
+        {
+            @Override
+            public void capacityAvailable(RiakNode node)
+            {
+                if (operationQueueDepth.get() > 0)
+                {
+                    scheduleDispatch();
+                }
+            }
+        };
     
-    private volatile ScheduledFuture<?> shutdownFuture;
-    private volatile ScheduledFuture<?> retrierFuture;
+    private final AtomicBoolean nodeShutdownStarted = new AtomicBoolean();
+    private volatile boolean shutdownDeadlinePassed;
+    private volatile ScheduledFuture<?> shutdownDeadlineFuture;
+    private final AtomicBoolean retryScheduled = new AtomicBoolean();
+    private final Runnable retryTask = new RetryTask();
+    private volatile boolean retrierStarted;
+    private volatile ScheduledFuture<?> queueMonitorFuture;
+    private volatile ScheduledFuture<?> outlierDetectorFuture;
+    private final OutlierDetector outlierDetector;
+    private final ClientResources clientResources;
+    private final Executor listenerExecutor;
+    private final boolean sharedExecutor;
+    private final boolean sharedEventLoop;
     
     private volatile State state;
     private final CountDownLatch shutdownLatch = new CountDownLatch(1);
@@ -70,6 +123,19 @@ public class  RiakCluster implements OperationRetrier, NodeStateListener
     private RiakCluster(Builder builder) throws UnknownHostException
     {
         this.executionAttempts = builder.executionAttempts;
+        this.concurrencyLimiter = builder.concurrencyLimiter;
+        this.operationQueueMaxDepth = builder.operationQueueMaxDepth;
+        this.outlierDetector = builder.outlierDetector;
+        this.listenerExecutor = builder.listenerExecutor;
+        this.operationQueueTimeoutNanos = builder.operationQueueTimeoutNanos;
+        if (operationQueueMaxDepth > 0)
+        {
+            operationQueue = new WeightedFairQueue<QueuedOperation>(builder.priorityWeights);
+        }
+        else
+        {
+            operationQueue = null;
+        }
         
         if (null == builder.nodeManager)
         {
@@ -80,25 +146,50 @@ public class  RiakCluster implements OperationRetrier, NodeStateListener
             this.nodeManager = builder.nodeManager;
         }
             
+        if (builder.clientResources != null)
+        {
+            this.clientResources = builder.clientResources.retain();
+        }
+        else
+        {
+            this.clientResources = null;
+        }
+            
         if (builder.bootstrap != null)
         {
             this.bootstrap = builder.bootstrap.clone();
+            sharedEventLoop = false;
+        }
+        else if (clientResources != null)
+        {
+            this.bootstrap = new Bootstrap()
+                .group(clientResources.getEventLoopGroup())
+                .channel(NioSocketChannel.class);
+            sharedEventLoop = true;
         }
         else
         {
             this.bootstrap = new Bootstrap()
                 .group(new NioEventLoopGroup())
                 .channel(NioSocketChannel.class);
+            sharedEventLoop = false;
         }
         
         if (builder.executor != null)
         {
             executor = builder.executor;
+            sharedExecutor = false;
+        }
+        else if (clientResources != null)
+        {
+            executor = clientResources.getScheduler();
+            sharedExecutor = true;
         }
         else
         {
             // We still need an executor if none was provided. 
             executor = new ScheduledThreadPoolExecutor(2);
+            sharedExecutor = false;
         }
         
         nodeList = new ArrayList<RiakNode>(builder.riakNodes.size());
@@ -106,7 +197,19 @@ public class  RiakCluster implements OperationRetrier, NodeStateListener
         {
             node.setExecutor(executor);
             node.setBootstrap(bootstrap);
+            if (clientResources != null)
+            {
+                node.setSweeper(clientResources.getSweeper());
+            }
             node.addStateListener(nodeManager);
+            if (operationQueue != null)
+            {
+                node.setCapacityListener(capacityListener);
+            }
+            if (outlierDetector != null)
+            {
+                node.setStatistics(outlierDetector.createStatistics());
+            }
             nodeList.add(node);
         }
         
@@ -139,7 +242,24 @@ public class  RiakCluster implements OperationRetrier, NodeStateListener
             node.start();
         }
         
-        retrierFuture = executor.schedule(new RetryTask(), 0, TimeUnit.SECONDS);
+        retrierStarted = true;
+        scheduleRetry();
+        if (operationQueue != null)
+        {
+            queueMonitorFuture = 
+                executor.scheduleWithFixedDelay(new QueueMonitorTask(), 
+                                                QUEUE_MONITOR_INTERVAL_MILLIS, 
+                                                QUEUE_MONITOR_INTERVAL_MILLIS, 
+                                                TimeUnit.MILLISECONDS);
+        }
+        if (outlierDetector != null)
+        {
+            outlierDetectorFuture = 
+                executor.scheduleWithFixedDelay(new OutlierDetectorTask(), 
+                                                outlierDetector.getIntervalNanos(), 
+                                                outlierDetector.getIntervalNanos(), 
+                                                TimeUnit.NANOSECONDS);
+        }
         logger.info("RiakCluster is starting.");
         state = State.RUNNING;
     }
@@ -150,11 +270,9 @@ public class  RiakCluster implements OperationRetrier, NodeStateListener
         logger.info("RiakCluster is shutting down.");
         state = State.SHUTTING_DOWN;
         
-        // Wait for all in-progress operations to drain
-        // then shut down nodes.
-        shutdownFuture = executor.scheduleWithFixedDelay(new ShutdownTask(), 
-                                                         500, 500, 
-                                                         TimeUnit.MILLISECONDS);
+        // The nodes are shut down as soon as the last in-flight operation 
+        // completes; see checkDrained()
+        checkDrained();
         
         return new Future<Boolean>() {
             @Override
@@ -188,9 +306,83 @@ public class  RiakCluster implements OperationRetrier, NodeStateListener
         
     }
     
+    /**
+     * Shuts down this cluster, failing any operations still in progress
+     * when the deadline passes.
+     * <p>
+     * As with {@link #shutdown()} no new operations are accepted and the 
+     * nodes are shut down as soon as the last in-flight operation completes.
+     * If that hasn't happened before the deadline, queued and retrying 
+     * operations and those in progress on the nodes are failed with a 
+     * {@link ClusterShutdownException} and their connections closed.
+     * </p>
+     * @param timeout how long to wait for in-flight operations
+     * @param unit the unit of the timeout
+     * @return a Future that completes when the cluster has shut down
+     */
+    public synchronized Future<Boolean> shutdown(long timeout, TimeUnit unit)
+    {
+        Future<Boolean> f = shutdown();
+        if (!nodeShutdownStarted.get())
+        {
+            shutdownDeadlineFuture = 
+                executor.schedule(new ShutdownDeadlineTask(), timeout, unit);
+        }
+        return f;
+    }
+    
+    /**
+     * Execute the supplied operation on this cluster.
+     * <p>
+     * If the operation has a deadline and the cluster estimates, from the 
+     * state of the nodes' connection pools and their recent latency, that it 
+     * cannot complete in time, it is failed immediately with an 
+     * {@link OperationShedException}. 
+     * </p>
+     * <p>
+     * If a {@link ConcurrencyLimiter} has been supplied and the limit has been
+     * reached, the operation is failed immediately with a 
+     * {@link ConcurrencyLimitExceededException}. 
+     * </p>
+     * <p>
+     * In both cases the operation is not retried.
+     * </p>
+     * <p>
+     * If no node can accept the operation and an operation queue has been 
+     * configured, the operation waits in the queue until a node returns a 
+     * connection to its pool. Otherwise it fails with a 
+     * {@link NoNodesAvailableException}.
+     * </p>
+     * @param operation the operation to execute
+     * @return the operation, as a RiakFuture
+     * @see FutureOperation#setDeadline(long, java.util.concurrent.TimeUnit) 
+     */
     public <V> RiakFuture<V> execute(FutureOperation<V, ?> operation)
     {
         stateCheck(State.RUNNING);
+        submittedCount.incrementAndGet();
+        operation.setListenerExecutor(listenerExecutor);
+        if (operation.hasDeadline())
+        {
+            long remaining = operation.getRemainingNanos();
+            long estimate = estimateCompletionNanos();
+            if (remaining <= 0 || estimate > remaining)
+            {
+                shedCount.incrementAndGet();
+                logger.debug("Operation shed; estimate {}ns remaining {}ns", estimate, remaining);
+                operation.setException(new OperationShedException(estimate, remaining));
+                return operation;
+            }
+        }
+        if (concurrencyLimiter != null && !concurrencyLimiter.tryAcquire())
+        {
+            logger.debug("Operation rejected; concurrency limit of {} reached", 
+                         concurrencyLimiter.getLimit());
+            // No retrier has been set so this completes the operation
+            operation.setException(new ConcurrencyLimitExceededException(concurrencyLimiter.getLimit()));
+            return operation;
+        }
+        operation.setStartTime(System.nanoTime());
         operation.setRetrier(this, executionAttempts); 
         inFlightCount.incrementAndGet();
         this.execute(operation, null);
@@ -199,7 +391,272 @@ public class  RiakCluster implements OperationRetrier, NodeStateListener
     
     private void execute(FutureOperation operation, RiakNode previousNode) 
     {
-        nodeManager.executeOnNode(operation, previousNode);
+        if (shutdownDeadlinePassed)
+        {
+            operation.setTerminalException(new ClusterShutdownException());
+        }
+        else if (operationQueue == null)
+        {
+            if (!nodeManager.executeOnNode(operation, previousNode))
+            {
+                operation.setException(new NoNodesAvailableException());
+            }
+        }
+        // If operations are already waiting, join the back of the queue rather
+        // than taking a connection out from under them.
+        else if (operationQueueDepth.get() > 0 
+                 || !nodeManager.executeOnNode(operation, previousNode))
+        {
+            enqueue(operation, previousNode);
+        }
+    }
+    
+    private void enqueue(FutureOperation operation, RiakNode previousNode)
+    {
+        boolean queued = false;
+        try
+        {
+            operationQueueLock.lock();
+            if (operationQueue.size() < operationQueueMaxDepth)
+            {
+                operationQueue.add(operation.getPriority(), 
+                                   new QueuedOperation(operation, previousNode));
+                operationQueueDepth.incrementAndGet();
+                queued = true;
+            }
+        }
+        finally
+        {
+            operationQueueLock.unlock();
+        }
+        
+        if (queued)
+        {
+            queuedCount.incrementAndGet();
+            // A node may have freed a connection before we were queued.
+            scheduleDispatch();
+        }
+        else
+        {
+            queueRejectedCount.incrementAndGet();
+            logger.debug("Operation queue full; depth {}", operationQueueMaxDepth);
+            operation.setException(new NoNodesAvailableException("Operation queue is full"));
+        }
+    }
+    
+    private void scheduleDispatch()
+    {
+        if (dispatchScheduled.compareAndSet(false, true))
+        {
+            try
+            {
+                executor.execute(dispatchTask);
+            }
+            catch (RejectedExecutionException ex)
+            {
+                dispatchScheduled.set(false);
+            }
+        }
+    }
+    
+    /**
+     * Sends queued operations in weighted fair order until the nodes refuse 
+     * the head of every priority lane. A lower priority operation being 
+     * refused (e.g. because the remaining connections are reserved) doesn't
+     * hold up the other lanes.
+     * Only one thread dispatches at a time; it is the only one that removes 
+     * entries from the queue.
+     */
+    private void dispatchQueued()
+    {
+        try
+        {
+            dispatchLock.lock();
+            boolean sent = true;
+            while (sent)
+            {
+                sent = false;
+                List<OperationPriority> order;
+                try
+                {
+                    operationQueueLock.lock();
+                    order = operationQueue.serviceOrder();
+                }
+                finally
+                {
+                    operationQueueLock.unlock();
+                }
+                
+                for (OperationPriority priority : order)
+                {
+                    QueuedOperation queued;
+                    try
+                    {
+                        operationQueueLock.lock();
+                        queued = operationQueue.peek(priority);
+                    }
+                    finally
+                    {
+                        operationQueueLock.unlock();
+                    }
+                    
+                    if (nodeManager.executeOnNode(queued.operation, queued.previousNode))
+                    {
+                        try
+                        {
+                            operationQueueLock.lock();
+                            operationQueue.poll(priority);
+                            operationQueueDepth.decrementAndGet();
+                        }
+                        finally
+                        {
+                            operationQueueLock.unlock();
+                        }
+                        recordQueueWait(System.nanoTime() - queued.enqueuedAt);
+                        sent = true;
+                        break;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            dispatchLock.unlock();
+        }
+    }
+    
+    /**
+     * Fails queued operations whose deadline, or the queue timeout, has passed.
+     */
+    private void expireQueued()
+    {
+        List<QueuedOperation> expired = new ArrayList<QueuedOperation>();
+        try
+        {
+            dispatchLock.lock();
+            long now = System.nanoTime();
+            try
+            {
+                operationQueueLock.lock();
+                for (Iterator<QueuedOperation> i = operationQueue.iterator(); i.hasNext(); )
+                {
+                    QueuedOperation queued = i.next();
+                    if (queued.isExpired(now))
+                    {
+                        i.remove();
+                        operationQueueDepth.decrementAndGet();
+                        expired.add(queued);
+                    }
+                }
+            }
+            finally
+            {
+                operationQueueLock.unlock();
+            }
+        }
+        finally
+        {
+            dispatchLock.unlock();
+        }
+        
+        for (QueuedOperation queued : expired)
+        {
+            queueExpiredCount.incrementAndGet();
+            recordQueueWait(System.nanoTime() - queued.enqueuedAt);
+            // There's no point in retrying something that has run out of time.
+            queued.operation.setTerminalException(
+                new NoNodesAvailableException("Timed out waiting in operation queue"));
+        }
+    }
+    
+    /**
+     * Fails every queued operation; used when the shutdown deadline passes.
+     */
+    private void failQueued()
+    {
+        List<QueuedOperation> failed = new ArrayList<QueuedOperation>();
+        try
+        {
+            dispatchLock.lock();
+            try
+            {
+                operationQueueLock.lock();
+                QueuedOperation queued = operationQueue.poll();
+                while (queued != null)
+                {
+                    operationQueueDepth.decrementAndGet();
+                    failed.add(queued);
+                    queued = operationQueue.poll();
+                }
+            }
+            finally
+            {
+                operationQueueLock.unlock();
+            }
+        }
+        finally
+        {
+            dispatchLock.unlock();
+        }
+        
+        for (QueuedOperation queued : failed)
+        {
+            queued.operation.setTerminalException(new ClusterShutdownException());
+        }
+    }
+    
+    private void recordQueueWait(long waitNanos)
+    {
+        dequeuedCount.incrementAndGet();
+        totalQueueWaitNanos.addAndGet(waitNanos);
+        long max = maxQueueWaitNanos.get();
+        while (waitNanos > max && !maxQueueWaitNanos.compareAndSet(max, waitNanos))
+        {
+            max = maxQueueWaitNanos.get();
+        }
+        // EWMA with a weight of 1/8
+        long average;
+        do
+        {
+            average = averageQueueWaitNanos.get();
+        }
+        while (!averageQueueWaitNanos.compareAndSet(average, average + ((waitNanos - average) >> 3)));
+    }
+    
+    /**
+     * Estimates how long an operation submitted now would take to complete
+     * on the least loaded running node.
+     * @return the estimate in nanoseconds, 0 if there is nothing to base it on.
+     */
+    private long estimateCompletionNanos()
+    {
+        long best = Long.MAX_VALUE;
+        try
+        {
+            nodeListLock.readLock().lock();
+            for (RiakNode node : nodeList)
+            {
+                if (node.getNodeState() == RiakNode.State.RUNNING)
+                {
+                    long estimate = node.getEstimatedWaitNanos() + node.getAverageLatencyNanos();
+                    best = Math.min(best, estimate);
+                }
+            }
+        }
+        finally
+        {
+            nodeListLock.readLock().unlock();
+        }
+        if (best == Long.MAX_VALUE)
+        {
+            best = 0;
+        }
+        // Anything submitted now waits behind what is already queued.
+        if (operationQueueDepth.get() > 0)
+        {
+            best += averageQueueWaitNanos.get();
+        }
+        return best;
     }
     
     /**
@@ -215,6 +672,18 @@ public class  RiakCluster implements OperationRetrier, NodeStateListener
         stateCheck(State.CREATED, State.RUNNING);
         node.setExecutor(executor);
         node.setBootstrap(bootstrap);
+        if (clientResources != null)
+        {
+            node.setSweeper(clientResources.getSweeper());
+        }
+        if (operationQueue != null)
+        {
+            node.setCapacityListener(capacityListener);
+        }
+        if (outlierDetector != null)
+        {
+            node.setStatistics(outlierDetector.createStatistics());
+        }
         
         try
         {
@@ -270,11 +739,166 @@ public class  RiakCluster implements OperationRetrier, NodeStateListener
         
     }
     
+    /**
+     * Returns the executor this cluster runs its scheduled tasks on.
+     * <p>
+     * Commands use it for short, delayed tasks such as pacing a batch; 
+     * anything submitted must not block.
+     * </p>
+     * @return the executor
+     * @see Builder#withExecutor(java.util.concurrent.ScheduledExecutorService) 
+     */
+    public ScheduledExecutorService getExecutor()
+    {
+        return executor;
+    }
+    
     int inFlightCount()
     {
         return inFlightCount.get();
     }
     
+    /**
+     * Returns the {@link ConcurrencyLimiter} for this cluster.
+     * @return the limiter, or null if none was supplied.
+     * @see Builder#withConcurrencyLimiter(com.basho.riak.client.core.ConcurrencyLimiter) 
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter()
+    {
+        return concurrencyLimiter;
+    }
+    
+    /**
+     * Returns the number of operations submitted to {@link #execute(com.basho.riak.client.core.FutureOperation)}.
+     * Together with {@link #getShedCount()} this gives the shed rate.
+     * @return the number of operations submitted since the cluster was created.
+     */
+    public long getSubmittedCount()
+    {
+        return submittedCount.get();
+    }
+    
+    /**
+     * Returns the number of operations shed because they were not expected 
+     * to complete before their deadline.
+     * @return the number of operations failed with an {@link OperationShedException}
+     */
+    public long getShedCount()
+    {
+        return shedCount.get();
+    }
+    
+    /**
+     * Returns the number of operations currently waiting in the operation queue.
+     * @return the queue depth; always 0 if no queue was configured.
+     * @see Builder#withOperationQueueMaxDepth(int) 
+     */
+    public int getOperationQueueDepth()
+    {
+        return operationQueueDepth.get();
+    }
+    
+    /**
+     * Returns the number of operations that have been placed in the operation queue.
+     * @return the number of operations queued since the cluster was created.
+     */
+    public long getQueuedCount()
+    {
+        return queuedCount.get();
+    }
+    
+    /**
+     * Returns the number of operations failed because the operation queue was full.
+     * @return the number of rejected operations
+     */
+    public long getQueueRejectedCount()
+    {
+        return queueRejectedCount.get();
+    }
+    
+    /**
+     * Returns the number of operations that timed out in the operation queue.
+     * @return the number of expired operations
+     */
+    public long getQueueExpiredCount()
+    {
+        return queueExpiredCount.get();
+    }
+    
+    /**
+     * Returns the mean time operations spent in the operation queue.
+     * @return the mean wait in nanoseconds, 0 if nothing has left the queue.
+     */
+    public long getMeanQueueWaitNanos()
+    {
+        long count = dequeuedCount.get();
+        return count == 0 ? 0 : totalQueueWaitNanos.get() / count;
+    }
+    
+    /**
+     * Returns the longest time an operation spent in the operation queue.
+     * @return the max wait in nanoseconds
+     */
+    public long getMaxQueueWaitNanos()
+    {
+        return maxQueueWaitNanos.get();
+    }
+    
+    /**
+     * Returns the {@link OutlierDetector} for this cluster.
+     * @return the detector, or null if outlier detection is not enabled.
+     */
+    public OutlierDetector getOutlierDetector()
+    {
+        return outlierDetector;
+    }
+    
+    /**
+     * Returns the number of nodes currently ejected by outlier detection.
+     * @return the number of ejected nodes
+     */
+    public int getEjectedNodeCount()
+    {
+        int ejected = 0;
+        for (RiakNode node : getNodes())
+        {
+            if (node.isEjected())
+            {
+                ejected++;
+            }
+        }
+        return ejected;
+    }
+    
+    private void releaseLimit(FutureOperation operation, boolean dropped)
+    {
+        if (concurrencyLimiter != null)
+        {
+            concurrencyLimiter.release(System.nanoTime() - operation.getStartTime(), dropped);
+        }
+    }
+    
+    /**
+     * Only failures that say the cluster is saturated count as drops for 
+     * the concurrency limiter: connection and I/O failures, timeouts, and 
+     * Riak's own overload error. Not found, precondition and other 
+     * application errors are ordinary completions as far as the limit is 
+     * concerned.
+     */
+    static boolean isOverload(Throwable cause)
+    {
+        if (cause instanceof RiakResponseException)
+        {
+            String message = cause.getMessage();
+            return message != null && message.contains("overload");
+        }
+        return cause instanceof IOException
+            || cause instanceof ConnectionFailedException
+            || cause instanceof NoNodesAvailableException
+            || cause instanceof TimeoutException
+            || cause instanceof io.netty.handler.timeout.TimeoutException;
+    }
+    
     @Override
     public void nodeStateChanged(RiakNode node, RiakNode.State state)
     {
@@ -292,9 +916,19 @@ public class  RiakCluster implements OperationRetrier, NodeStateListener
                 if (nodeList.isEmpty())
                 {
                     this.state = State.SHUTDOWN;
-                    executor.shutdown();
-                    bootstrap.group().shutdownGracefully();
-                    logger.debug("RiakCluster shut down bootstrap");
+                    if (!sharedExecutor)
+                    {
+                        executor.shutdown();
+                    }
+                    if (!sharedEventLoop)
+                    {
+                        bootstrap.group().shutdownGracefully();
+                        logger.debug("RiakCluster shut down bootstrap");
+                    }
+                    if (clientResources != null)
+                    {
+                        clientResources.release();
+                    }
                     logger.info("RiakCluster has shut down");
                     shutdownLatch.countDown();
                 }
@@ -312,11 +946,21 @@ public class  RiakCluster implements OperationRetrier, NodeStateListener
         logger.debug("operation failed; remaining retries: {}", remainingRetries);
         if (remainingRetries > 0)
         {
-            retryQueue.add(operation);
+            if (shutdownDeadlinePassed)
+            {
+                operation.setTerminalException(new ClusterShutdownException());
+            }
+            else
+            {
+                retryQueue.add(operation);
+                scheduleRetry();
+            }
         }
         else
         {
             inFlightCount.decrementAndGet();
+            releaseLimit(operation, isOverload(operation.getFailureCause()));
+            checkDrained();
         }
     }
 
@@ -324,35 +968,138 @@ public class  RiakCluster implements OperationRetrier, NodeStateListener
     public void operationComplete(FutureOperation operation, int remainingRetries)
     {
         inFlightCount.decrementAndGet();
+        releaseLimit(operation, false);
         logger.debug("operation complete; remaining retries: {}", remainingRetries);
+        checkDrained();
+    }
+    
+    /**
+     * Starts shutting down the nodes if the cluster is shutting down and 
+     * nothing is in flight. Called on shutdown and from the completion 
+     * callbacks, which may be on a Netty I/O thread, so the work is handed 
+     * to the executor. If the executor has already been shut down (e.g. a 
+     * shared executor stopped by its owner) the nodes are shut down on the 
+     * calling thread instead.
+     */
+    private void checkDrained()
+    {
+        if (state == State.SHUTTING_DOWN && inFlightCount.get() == 0
+            && nodeShutdownStarted.compareAndSet(false, true))
+        {
+            logger.info("All operations have completed");
+            ShutdownTask task = new ShutdownTask();
+            try
+            {
+                executor.execute(task);
+            }
+            catch (RejectedExecutionException ex)
+            {
+                logger.warn("Executor rejected shutdown task; shutting down nodes on calling thread");
+                task.run();
+            }
+        }
     }
 
-    private void retryOperation() throws InterruptedException
+    private void scheduleRetry()
     {
-        FutureOperation operation = retryQueue.take();
-        execute(operation, operation.getLastNode());
+        if (retrierStarted && !retryQueue.isEmpty() && retryScheduled.compareAndSet(false, true))
+        {
+            try
+            {
+                executor.execute(retryTask);
+            }
+            catch (RejectedExecutionException ex)
+            {
+                retryScheduled.set(false);
+            }
+        }
     }
     
+    /**
+     * Resubmits failed operations until the retry queue is empty. 
+     * Runs to completion rather than waiting on the queue so it doesn't 
+     * hold a thread of a shared executor.
+     */
     private class RetryTask implements Runnable
     {
         @Override
         public void run()
         {
-            while (!Thread.interrupted())
+            // Cleared first; anything queued from here on schedules another pass.
+            retryScheduled.set(false);
+            FutureOperation operation;
+            while ((operation = retryQueue.poll()) != null)
             {
-                try
-                {
-                    retryOperation();
-                }
-                catch (InterruptedException ex)
-                {
-                    break;
-                }
+                execute(operation, operation.getLastNode());
+            }
+        }
+    }
+    
+    private class DispatchTask implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            // Cleared first so a release during the dispatch schedules another pass.
+            dispatchScheduled.set(false);
+            dispatchQueued();
+        }
+    }
+    
+    private class OutlierDetectorTask implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            outlierDetector.evaluate(getNodes());
+        }
+    }
+    
+    private class QueueMonitorTask implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            if (operationQueueDepth.get() > 0)
+            {
+                expireQueued();
+                // Picks up nodes that have come back from health checking
+                dispatchQueued();
             }
+        }
+    }
+    
+    private class QueuedOperation
+    {
+        private final FutureOperation operation;
+        private final RiakNode previousNode;
+        private final long enqueuedAt;
+        private final long expiresAt;
+        private final boolean expires;
+        
+        QueuedOperation(FutureOperation operation, RiakNode previousNode)
+        {
+            this.operation = operation;
+            this.previousNode = previousNode;
+            this.enqueuedAt = System.nanoTime();
             
-            logger.info("Retrier shutting down.");
+            long remaining = Long.MAX_VALUE;
+            if (operation.hasDeadline())
+            {
+                remaining = operation.getRemainingNanos();
+            }
+            if (operationQueueTimeoutNanos > 0)
+            {
+                remaining = Math.min(remaining, operationQueueTimeoutNanos);
+            }
+            this.expires = remaining != Long.MAX_VALUE;
+            this.expiresAt = enqueuedAt + remaining;
         }
         
+        boolean isExpired(long now)
+        {
+            return expires && now - expiresAt >= 0;
+        }
     }
     
     private class ShutdownTask implements Runnable
@@ -360,24 +1107,65 @@ public class  RiakCluster implements OperationRetrier, NodeStateListener
         @Override
         public void run()
         {
-            if (inFlightCount.get() == 0)
+            retrierStarted = false;
+            if (queueMonitorFuture != null)
             {
-                logger.info("All operations have completed");
-
-                retrierFuture.cancel(true);
-                
-                // Copying the list avoids any potential deadlocks on the callbacks.
-                for (RiakNode node : getNodes())
+                queueMonitorFuture.cancel(false);
+            }
+            if (outlierDetectorFuture != null)
+            {
+                outlierDetectorFuture.cancel(false);
+            }
+            if (shutdownDeadlineFuture != null)
+            {
+                shutdownDeadlineFuture.cancel(false);
+            }
+            
+            // Copying the list avoids any potential deadlocks on the callbacks.
+            for (RiakNode node : getNodes())
+            {
+                node.addStateListener(RiakCluster.this);
+                logger.debug("calling shutdown on node {}:{}", node.getRemoteAddress(), node.getPort());
+                node.shutdown();
+                if (shutdownDeadlinePassed)
                 {
-                    node.addStateListener(RiakCluster.this);
-                    logger.debug("calling shutdown on node {}:{}", node.getRemoteAddress(), node.getPort());
-                    node.shutdown();
+                    node.abortInProgress(new ClusterShutdownException());
                 }
-                
-                shutdownFuture.cancel(false);
             }
         }
-        
+    }
+    
+    private class ShutdownDeadlineTask implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            if (nodeShutdownStarted.get())
+            {
+                return;
+            }
+            logger.warn("RiakCluster shutdown deadline reached; failing {} operations", 
+                        inFlightCount.get());
+            shutdownDeadlinePassed = true;
+            
+            // Anything retried or dispatched from here on is failed in execute()
+            FutureOperation retry = retryQueue.poll();
+            while (retry != null)
+            {
+                retry.setTerminalException(new ClusterShutdownException());
+                retry = retryQueue.poll();
+            }
+            if (operationQueue != null)
+            {
+                failQueued();
+            }
+            
+            // Whatever is left is on the nodes.
+            if (nodeShutdownStarted.compareAndSet(false, true))
+            {
+                new ShutdownTask().run();
+            }
+        }
     }
     
 
@@ -397,6 +1185,10 @@ public class  RiakCluster implements OperationRetrier, NodeStateListener
     public static class Builder
     {
         public final static int DEFAULT_EXECUTION_ATTEMPTS = 3;
+        /**
+         * The default operation queue depth: {@value #DEFAULT_OPERATION_QUEUE_MAX_DEPTH} (disabled)
+         */
+        public final static int DEFAULT_OPERATION_QUEUE_MAX_DEPTH = 0;
         
         private final List<RiakNode> riakNodes;
         
@@ -404,6 +1196,14 @@ public class  RiakCluster implements OperationRetrier, NodeStateListener
         private NodeManager nodeManager;
         private ScheduledExecutorService executor;
         private Bootstrap bootstrap;
+        private ConcurrencyLimiter concurrencyLimiter;
+        private int operationQueueMaxDepth = DEFAULT_OPERATION_QUEUE_MAX_DEPTH;
+        private long operationQueueTimeoutNanos;
+        private OutlierDetector outlierDetector;
+        private ClientResources clientResources;
+        private Executor listenerExecutor;
+        private final Map<OperationPriority, Integer> priorityWeights = 
+            new EnumMap<OperationPriority, Integer>(OperationPriority.class);
         
         /**
          * Instantiate a Builder containing the supplied {@link RiakNode}s
@@ -482,6 +1282,144 @@ public class  RiakCluster implements OperationRetrier, NodeStateListener
             return this;
         }
         
+        /**
+         * Sets a {@link ConcurrencyLimiter} for this cluster.
+         * <p>
+         * When set, operations submitted once the limit has been reached are 
+         * failed immediately with a {@link ConcurrencyLimitExceededException}
+         * rather than being sent to a node. By default no limit is applied.
+         * </p>
+         * @param limiter the ConcurrencyLimiter, e.g. a {@link VegasConcurrencyLimiter}
+         * @return this
+         */
+        public Builder withConcurrencyLimiter(ConcurrencyLimiter limiter)
+        {
+            this.concurrencyLimiter = limiter;
+            return this;
+        }
+        
+        /**
+         * Enables the operation queue and sets its maximum depth.
+         * <p>
+         * When no node can accept an operation it is placed in this queue 
+         * rather than being failed with a {@link NoNodesAvailableException}. 
+         * Queued operations are sent as soon as a node returns a connection to
+         * its pool; operations of the same {@link OperationPriority} are sent
+         * in the order they were queued, and the priority classes are served
+         * by weighted fair queuing. An operation that has a 
+         * deadline is failed if the deadline passes while it is queued.
+         * If the queue is full the operation fails as though no queue was 
+         * configured.
+         * </p>
+         * @param maxDepth the maximum number of queued operations; 0 disables the queue.
+         * @return this
+         * @see #DEFAULT_OPERATION_QUEUE_MAX_DEPTH
+         * @see FutureOperation#setDeadline(long, java.util.concurrent.TimeUnit) 
+         */
+        public Builder withOperationQueueMaxDepth(int maxDepth)
+        {
+            if (maxDepth < 0)
+            {
+                throw new IllegalArgumentException("Operation queue depth must be >= 0");
+            }
+            this.operationQueueMaxDepth = maxDepth;
+            return this;
+        }
+        
+        /**
+         * Sets the longest an operation may wait in the operation queue.
+         * <p>
+         * Operations still queued after this time are failed with a 
+         * {@link NoNodesAvailableException} and not retried. By default 
+         * only an operation's own deadline limits how long it waits.
+         * </p>
+         * @param timeout the timeout; 0 for none.
+         * @param unit the unit of the timeout
+         * @return this
+         */
+        public Builder withOperationQueueTimeout(long timeout, TimeUnit unit)
+        {
+            this.operationQueueTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+        
+        /**
+         * Sets the weight of a priority class in the operation queue.
+         * <p>
+         * When operations of several priorities are waiting, each class is
+         * dispatched in proportion to its weight. The defaults are given 
+         * by {@link OperationPriority#getDefaultWeight()}.
+         * </p>
+         * @param priority the priority class
+         * @param weight a positive weight
+         * @return this
+         * @see #withOperationQueueMaxDepth(int) 
+         */
+        public Builder withPriorityWeight(OperationPriority priority, int weight)
+        {
+            if (weight < 1)
+            {
+                throw new IllegalArgumentException("Weight must be positive");
+            }
+            priorityWeights.put(priority, weight);
+            return this;
+        }
+        
+        /**
+         * Enables outlier detection using the supplied detector.
+         * <p>
+         * Nodes record the latency and success of each operation and are 
+         * periodically compared; nodes that are much slower or fail much more
+         * often than the cluster median are temporarily ejected. By default 
+         * only connection failures take a node out of rotation.
+         * </p>
+         * @param detector the detector; it must not be shared with another cluster.
+         * @return this
+         */
+        public Builder withOutlierDetector(OutlierDetector detector)
+        {
+            this.outlierDetector = detector;
+            return this;
+        }
+        
+        /**
+         * Provides shared {@link ClientResources} for this cluster to use.
+         * <p>
+         * Unless an executor or Bootstrap are also provided the cluster 
+         * uses the shared scheduler and event loop group instead of creating
+         * its own, and the maintenance tasks of its nodes are run by the 
+         * shared sweeper. The cluster retains the resources when built and 
+         * releases them when shut down.
+         * </p>
+         * @param resources the shared resources
+         * @return this
+         */
+        public Builder withClientResources(ClientResources resources)
+        {
+            this.clientResources = resources;
+            return this;
+        }
+        
+        /**
+         * Sets the executor that calls the listeners of this cluster's operations.
+         * <p>
+         * By default a {@link RiakFutureListener} runs on the thread that 
+         * completes the operation, usually a Netty event loop thread. With 
+         * an executor set, listeners added without one of their own are 
+         * submitted to it instead; see {@link ListenerExecutor} for a 
+         * bounded pool that records queueing delay. The cluster does not 
+         * shut the executor down.
+         * </p>
+         * @param executor the executor for listener callbacks
+         * @return this
+         * @see RiakFuture#addListener(RiakFutureListener, java.util.concurrent.Executor) 
+         */
+        public Builder withListenerExecutor(Executor executor)
+        {
+            this.listenerExecutor = executor;
+            return this;
+        }
+        
         /**
          * Instantiates the {@link RiakCluster}
          * @return a new RiakCluster
@@ -16,6 +16,7 @@
 package com.basho.riak.client.core;
 
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -39,5 +40,23 @@ public interface RiakFuture<V> extends Future<V>
     @Override
     boolean isDone();
     void addListener(RiakFutureListener<V> listener);
+    /**
+     * Adds a listener that is called on the supplied executor.
+     * <p>
+     * Listeners added with the same executor are called in the order they 
+     * were added, from a single task. There is no ordering between listeners 
+     * on different executors. If the future is already done the listener is 
+     * submitted to the executor immediately.
+     * </p>
+     * <p>
+     * This method was added to the interface after its first release; 
+     * classes implementing RiakFuture directly must add it. Extending 
+     * {@link DefaultRiakFuture} provides it.
+     * </p>
+     * @param listener the listener
+     * @param executor the executor the listener is called on
+     * @see ListenerExecutor
+     */
+    void addListener(RiakFutureListener<V> listener, Executor executor);
     void removeListener(RiakFutureListener<V> listener);
 }
@@ -31,6 +31,8 @@ import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author Brian Roach <roach at basho dot com>
@@ -42,6 +44,13 @@ public class RiakNode implements RiakResponseListener
     {
         CREATED, RUNNING, HEALTH_CHECKING, SHUTTING_DOWN, SHUTDOWN;
     }
+    
+    /**
+     * The name of the pool used by operations no {@link ConnectionPoolRule} claims.
+     */
+    public static final String DEFAULT_POOL = "default";
+    
+    static final long IDLE_REAP_INTERVAL_MILLIS = 5000;
 
     private final Logger logger = LoggerFactory.getLogger(RiakNode.class);
 
@@ -56,6 +65,8 @@ public class RiakNode implements RiakResponseListener
 
     private final Sync permits;
     private final String remoteAddress;
+    private final String zone;
+    private final String rack;
     private final int port;
     private volatile Bootstrap bootstrap;
     private volatile boolean ownsBootstrap;
@@ -64,10 +75,28 @@ public class RiakNode implements RiakResponseListener
     private volatile State state;
     private volatile ScheduledFuture<?> idleReaperFuture;
     private volatile ScheduledFuture<?> healthMonitorFuture;
+    private volatile NodeSweeper sweeper;
+    private volatile ClientResources clientResources;
+    private volatile long lastReapNanos;
     private volatile int minConnections;
     private volatile long idleTimeoutInNanos;
     private volatile int connectionTimeout;
     private volatile boolean blockOnMaxConnections;
+    private volatile ConcurrencyLimiter concurrencyLimiter;
+    private volatile long averageLatencyNanos;
+    private volatile CapacityListener capacityListener;
+    private volatile int reservedConnections;
+    private volatile SlidingWindowStats statistics;
+    private volatile boolean ejected;
+    
+    // The default pool wraps available and permits; additional named pools
+    // are created from the builder. A channel belonging to a named pool is 
+    // recorded in channelPools so it can be returned to the right place.
+    private final SubPool defaultPool;
+    private final Map<String, SubPool> pools = new LinkedHashMap<String, SubPool>();
+    private final List<ConnectionPoolRule> poolRules;
+    private final Map<Channel, SubPool> channelPools = 
+        new ConcurrentHashMap<Channel, SubPool>();
 
     private final ChannelFutureListener writeListener =
         new ChannelFutureListener()
@@ -87,6 +116,7 @@ public class RiakNode implements RiakResponseListener
                     FutureOperation inProgress = inProgressMap.remove(future.channel());
                     if (inProgress != null)
                     {
+                        recordCompletion(inProgress, true, false);
                         future.channel().close();
                         returnConnection(future.channel()); // to release permit
                         recentlyClosed.add(new ChannelWithIdleTime(future.channel()));
@@ -130,6 +160,7 @@ public class RiakNode implements RiakResponseListener
                              future.channel().hashCode(), remoteAddress, port);
                 if (inProgress != null)
                 {
+                    recordCompletion(inProgress, true, false);
                     returnConnection(future.channel()); // to release permit
                     recentlyClosed.add(new ChannelWithIdleTime(future.channel()));
                     
@@ -150,16 +181,27 @@ public class RiakNode implements RiakResponseListener
 
 
     private final CountDownLatch shutdownLatch = new CountDownLatch(1);
+    private final AtomicBoolean shutdownComplete = new AtomicBoolean();
+    private final AtomicBoolean healthCheckInProgress = new AtomicBoolean();
     
     private RiakNode(Builder builder) throws UnknownHostException
     {
         this.executor = builder.executor;
+        this.clientResources = builder.clientResources;
         this.connectionTimeout = builder.connectionTimeout;
         this.idleTimeoutInNanos = TimeUnit.NANOSECONDS.convert(builder.idleTimeout, TimeUnit.MILLISECONDS);
         this.minConnections = builder.minConnections;
         this.port = builder.port;
         this.remoteAddress = builder.remoteAddress;
+        this.zone = builder.zone;
+        this.rack = builder.rack;
         this.blockOnMaxConnections = builder.blockOnMaxConnections;
+        this.reservedConnections = builder.reservedConnections;
+        
+        if (builder.adaptiveConcurrencyLimit)
+        {
+            this.concurrencyLimiter = new VegasConcurrencyLimiter.Builder().build();
+        }
 
         if (builder.bootstrap != null)
         {
@@ -174,6 +216,17 @@ public class RiakNode implements RiakResponseListener
         {
             permits = new Sync(builder.maxConnections);
         }
+        
+        defaultPool = new SubPool(DEFAULT_POOL, available, permits, 0);
+        pools.put(DEFAULT_POOL, defaultPool);
+        for (PoolConfig config : builder.poolConfigs)
+        {
+            Sync poolPermits = new Sync(config.maxConnections < 1 ? Integer.MAX_VALUE : config.maxConnections);
+            pools.put(config.name, 
+                      new SubPool(config.name, new LinkedBlockingDeque<ChannelWithIdleTime>(), 
+                                  poolPermits, config.minConnections));
+        }
+        this.poolRules = new ArrayList<ConnectionPoolRule>(builder.poolRules);
 
 
         this.state = State.CREATED;
@@ -205,6 +258,25 @@ public class RiakNode implements RiakResponseListener
     {
         stateCheck(State.CREATED);
         
+        if (clientResources != null)
+        {
+            clientResources.retain();
+            if (executor == null)
+            {
+                executor = clientResources.getScheduler();
+            }
+            if (bootstrap == null)
+            {
+                bootstrap = new Bootstrap()
+                    .group(clientResources.getEventLoopGroup())
+                    .channel(NioSocketChannel.class);
+            }
+            if (sweeper == null)
+            {
+                sweeper = clientResources.getSweeper();
+            }
+        }
+        
         if (executor == null)
         {
             executor = Executors.newSingleThreadScheduledExecutor();
@@ -250,9 +322,37 @@ public class RiakNode implements RiakResponseListener
                 c.closeFuture().addListener(inAvailableCloseListener);
             }
         }
+        
+        for (SubPool pool : pools.values())
+        {
+            if (pool != defaultPool)
+            {
+                for (int i = 0; i < pool.minConnections; i++)
+                {
+                    try
+                    {
+                        Channel c = doGetConnection(pool);
+                        pool.available.offerFirst(new ChannelWithIdleTime(c));
+                        c.closeFuture().addListener(inAvailableCloseListener);
+                    }
+                    catch (ConnectionFailedException ex)
+                    {
+                        // no-op, we don't care right now
+                    }
+                }
+            }
+        }
 
-        idleReaperFuture = executor.scheduleWithFixedDelay(new IdleReaper(), 1, 5, TimeUnit.SECONDS);
-        healthMonitorFuture = executor.scheduleWithFixedDelay(new HealthMonitorTask(), 1000, 500, TimeUnit.MILLISECONDS);
+        if (sweeper != null)
+        {
+            lastReapNanos = System.nanoTime();
+            sweeper.register(this);
+        }
+        else
+        {
+            idleReaperFuture = executor.scheduleWithFixedDelay(new IdleReaper(), 1, 5, TimeUnit.SECONDS);
+            healthMonitorFuture = executor.scheduleWithFixedDelay(new HealthMonitorTask(), 1000, 500, TimeUnit.MILLISECONDS);
+        }
 
         state = State.RUNNING;
         logger.info("RiakNode started; {}:{}", remoteAddress, port);
@@ -266,17 +366,29 @@ public class RiakNode implements RiakResponseListener
         state = State.SHUTTING_DOWN;
         logger.info("RiakNode shutting down; {}:{}", remoteAddress, port);
         notifyStateListeners();
-        idleReaperFuture.cancel(true);
-        healthMonitorFuture.cancel(true);
-        ChannelWithIdleTime cwi = available.poll();
-        while (cwi != null)
+        if (sweeper != null)
         {
-            Channel c = cwi.getChannel();
-            closeConnection(c);
-            cwi = available.poll();
+            sweeper.unregister(this);
+        }
+        else if (idleReaperFuture != null)
+        {
+            idleReaperFuture.cancel(true);
+            healthMonitorFuture.cancel(true);
+        }
+        for (SubPool pool : pools.values())
+        {
+            ChannelWithIdleTime cwi = pool.available.poll();
+            while (cwi != null)
+            {
+                Channel c = cwi.getChannel();
+                closeConnection(c);
+                cwi = pool.available.poll();
+            }
         }
 
-        executor.schedule(new ShutdownTask(), 0, TimeUnit.SECONDS);
+        // Connections still in use are closed as their operations complete;
+        // the last one to be returned completes the shutdown.
+        checkShutdownComplete();
         
         return new Future<Boolean>() {
             @Override
@@ -352,6 +464,62 @@ public class RiakNode implements RiakResponseListener
         return this;
     }
 
+    /**
+     * Has this node's maintenance tasks run by a shared {@link NodeSweeper}
+     * rather than scheduled individually on its executor.
+     * @param sweeper the sweeper
+     * @throws IllegalStateException if the node has already been started.
+     */
+    void setSweeper(NodeSweeper sweeper)
+    {
+        stateCheck(State.CREATED);
+        this.sweeper = sweeper;
+    }
+    
+    /**
+     * Runs one pass of this node's maintenance; called by a {@link NodeSweeper}.
+     * The health monitor runs on every pass, the idle reaper at most every
+     * {@value #IDLE_REAP_INTERVAL_MILLIS}ms.
+     */
+    void sweep()
+    {
+        new HealthMonitorTask().run();
+        long now = System.nanoTime();
+        if (now - lastReapNanos >= TimeUnit.MILLISECONDS.toNanos(IDLE_REAP_INTERVAL_MILLIS))
+        {
+            lastReapNanos = now;
+            reapIdleConnections();
+        }
+    }
+
+    /**
+     * Sets the {@link ConcurrencyLimiter} for this Node.
+     * <p>
+     * When the limit is reached the node refuses new operations in the same
+     * way it does when all connections are in use. The limiter must not be 
+     * shared with any other node.
+     * </p>
+     * @param limiter - the ConcurrencyLimiter to use
+     * @return a reference to this RiakNode
+     * @throws IllegalStateException if the node has already been started.
+     * @see Builder#withAdaptiveConcurrencyLimit(boolean) 
+     */
+    public RiakNode setConcurrencyLimiter(ConcurrencyLimiter limiter)
+    {
+        stateCheck(State.CREATED);
+        this.concurrencyLimiter = limiter;
+        return this;
+    }
+    
+    /**
+     * Returns the {@link ConcurrencyLimiter} for this node.
+     * @return the limiter or null if none is set.
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter()
+    {
+        return concurrencyLimiter;
+    }
+
     /**
      * Sets the maximum number of connections allowed.
      *
@@ -517,6 +685,15 @@ public class RiakNode implements RiakResponseListener
         return stateListeners.remove(listener);
     }
 
+    /**
+     * Sets the listener told when this node returns a connection to its pool.
+     * Used by the {@link RiakCluster} to dispatch queued operations.
+     */
+    void setCapacityListener(CapacityListener listener)
+    {
+        this.capacityListener = listener;
+    }
+
     private void notifyStateListeners()
     {
         synchronized (stateListeners)
@@ -542,10 +719,41 @@ public class RiakNode implements RiakResponseListener
     {
         stateCheck(State.RUNNING, State.HEALTH_CHECKING);
 
+        if (ejected)
+        {
+            return false;
+        }
+        
+        if (concurrencyLimiter != null && !concurrencyLimiter.tryAcquire())
+        {
+            logger.debug("Operation not being executed Riaknode {}:{}; concurrency limit reached",
+                            remoteAddress, port);
+            return false;
+        }
+        
+        SubPool pool = selectPool(operation);
+        
+        // Best effort; two callers can race past this check, which at worst
+        // lets one lower priority operation use a reserved connection.
+        if (reservedConnections > 0 
+            && operation.getPriority() != OperationPriority.INTERACTIVE
+            && pool.permits.availablePermits() <= reservedConnections)
+        {
+            logger.debug("Operation not being executed Riaknode {}:{}; remaining connections reserved",
+                            remoteAddress, port);
+            if (concurrencyLimiter != null)
+            {
+                concurrencyLimiter.release(0, false);
+            }
+            return false;
+        }
+        
         operation.setLastNode(this);
-        Channel channel = getConnection();
+        Channel channel = acquireConnection(pool);
         if (channel != null)
         {
+            operation.setDispatchTime(System.nanoTime());
+            operation.setChannel(channel);
             inProgressMap.put(channel, operation);
             ChannelFuture writeFuture = channel.writeAndFlush(operation);
             writeFuture.addListener(writeListener);
@@ -554,11 +762,156 @@ public class RiakNode implements RiakResponseListener
         }
         else
         {
-            logger.debug("Operation not being executed Riaknode {}:{}; no connections available",
-                            remoteAddress, port);
+            logger.debug("Operation not being executed Riaknode {}:{}; no connections available in pool {}",
+                            remoteAddress, port, pool.name);
+            if (concurrencyLimiter != null)
+            {
+                concurrencyLimiter.release(0, false);
+            }
             return false;
         }
     }
+    
+    private SubPool selectPool(FutureOperation operation)
+    {
+        for (ConnectionPoolRule rule : poolRules)
+        {
+            String name = rule.selectPool(operation);
+            if (name != null)
+            {
+                SubPool pool = pools.get(name);
+                if (pool != null)
+                {
+                    return pool;
+                }
+                logger.warn("Connection pool rule selected unknown pool {}; using default", name);
+                break;
+            }
+        }
+        return defaultPool;
+    }
+    
+    /**
+     * Sets the statistics this node records each completed operation in.
+     * Installed by the {@link RiakCluster} when outlier detection is enabled.
+     */
+    void setStatistics(SlidingWindowStats statistics)
+    {
+        this.statistics = statistics;
+    }
+    
+    /**
+     * Returns the recent success rate and latency of this node.
+     * @return the statistics, or null if outlier detection is not enabled.
+     * @see RiakCluster.Builder#withOutlierDetector(OutlierDetector) 
+     */
+    public SlidingWindowStats getStatistics()
+    {
+        return statistics;
+    }
+    
+    void setEjected(boolean ejected)
+    {
+        this.ejected = ejected;
+    }
+    
+    /**
+     * Returns whether this node has been ejected by outlier detection.
+     * An ejected node refuses new operations until it is returned.
+     * @return true if ejected
+     * @see OutlierDetector
+     */
+    public boolean isEjected()
+    {
+        return ejected;
+    }
+    
+    /**
+     * Returns the names of this node's connection pools, including {@link #DEFAULT_POOL}.
+     * @return the pool names
+     * @see Builder#withConnectionPool(java.lang.String, int, int) 
+     */
+    public Set<String> getPoolNames()
+    {
+        return Collections.unmodifiableSet(pools.keySet());
+    }
+    
+    /**
+     * Returns a snapshot of a connection pool's usage.
+     * @param name the name of the pool
+     * @return the pool's stats
+     * @throws IllegalArgumentException if there is no such pool
+     */
+    public PoolStats getPoolStats(String name)
+    {
+        SubPool pool = pools.get(name);
+        if (pool == null)
+        {
+            throw new IllegalArgumentException("No such pool: " + name);
+        }
+        int max = pool.permits.getMaxPermits();
+        return new PoolStats(name, max, max - pool.permits.availablePermits(), 
+                             pool.available.size(), pool.acquiredCount.get(), 
+                             pool.refusedCount.get());
+    }
+    
+    private void recordCompletion(FutureOperation operation, boolean dropped, boolean success)
+    {
+        long latency = System.nanoTime() - operation.getDispatchTime();
+        
+        SlidingWindowStats stats = statistics;
+        if (stats != null)
+        {
+            stats.record(latency, success);
+        }
+        
+        // EWMA with a weight of 1/8 for the new sample. Racing updates 
+        // may lose a sample; this is only used as an estimate.
+        long average = averageLatencyNanos;
+        averageLatencyNanos = average == 0 ? latency : average + (latency - average) / 8;
+        
+        if (concurrencyLimiter != null)
+        {
+            concurrencyLimiter.release(latency, dropped);
+        }
+    }
+    
+    /**
+     * Returns the moving average of the time operations spend on this node.
+     * This is measured from when the operation is written until its 
+     * response (or failure) is received.
+     * @return the average latency in nanoseconds, or 0 if no operation has completed.
+     */
+    public long getAverageLatencyNanos()
+    {
+        return averageLatencyNanos;
+    }
+    
+    /**
+     * Estimates how long an operation submitted now would wait before 
+     * being written to a connection.
+     * <p>
+     * If a permit is available this is zero. Otherwise each of the 
+     * connections is assumed to free up once every average latency; the
+     * operation waits for its turn behind any threads already blocked
+     * on the pool.
+     * </p>
+     * @return the estimated wait in nanoseconds.
+     */
+    public long getEstimatedWaitNanos()
+    {
+        boolean limited = concurrencyLimiter != null 
+            && concurrencyLimiter.getInFlight() >= concurrencyLimiter.getLimit();
+        if (permits.availablePermits() > 0 && !limited)
+        {
+            return 0;
+        }
+        
+        int connections = limited 
+            ? Math.max(1, concurrencyLimiter.getLimit()) 
+            : Math.max(1, permits.getMaxPermits());
+        return averageLatencyNanos * (permits.getQueueLength() + 1) / connections;
+    }
 
     // ConnectionPool Stuff
 
@@ -579,6 +932,11 @@ public class RiakNode implements RiakResponseListener
      * @see Builder#withBlockOnMaxConnections(boolean) 
      */
     private Channel getConnection()
+    {
+        return acquireConnection(defaultPool);
+    }
+    
+    private Channel acquireConnection(SubPool pool)
     {
         stateCheck(State.RUNNING, State.HEALTH_CHECKING);
         boolean acquired = false;
@@ -586,11 +944,11 @@ public class RiakNode implements RiakResponseListener
         {
             try
             {
-                if (!permits.tryAcquire())
+                if (!pool.permits.tryAcquire())
                 {
-                    logger.info("All connections in use for {}; had to wait for one.", 
-                                remoteAddress);
-                    permits.acquire();
+                    logger.info("All connections in use for {} pool {}; had to wait for one.", 
+                                remoteAddress, pool.name);
+                    pool.permits.acquire();
                 }
                 acquired = true;
             }
@@ -601,7 +959,7 @@ public class RiakNode implements RiakResponseListener
         }
         else
         {
-            acquired = permits.tryAcquire();
+            acquired = pool.permits.tryAcquire();
         }
         
         Channel channel = null;
@@ -609,21 +967,31 @@ public class RiakNode implements RiakResponseListener
         {
             try
             {
-                channel = doGetConnection();
+                channel = doGetConnection(pool);
                 channel.closeFuture().removeListener(inAvailableCloseListener);
+                pool.acquiredCount.incrementAndGet();
             }
             catch (ConnectionFailedException ex)
             {
-                permits.release();
+                pool.permits.release();
             }
         }
+        else
+        {
+            pool.refusedCount.incrementAndGet();
+        }
         return channel;
     }
 
     private Channel doGetConnection() throws ConnectionFailedException
+    {
+        return doGetConnection(defaultPool);
+    }
+    
+    private Channel doGetConnection(SubPool pool) throws ConnectionFailedException
     {
         ChannelWithIdleTime cwi;
-        while ((cwi = available.poll()) != null)
+        while ((cwi = pool.available.poll()) != null)
         {
             Channel channel = cwi.getChannel();
             // If the channel from available is closed, try again. This will result in
@@ -634,6 +1002,7 @@ public class RiakNode implements RiakResponseListener
             {
                 return channel;
             }
+            channelPools.remove(channel);
         }
 
         ChannelFuture f = bootstrap.connect();
@@ -656,7 +1025,11 @@ public class RiakNode implements RiakResponseListener
                 remoteAddress, port, f.cause());
             throw new ConnectionFailedException(f.cause());
         }
-
+        
+        if (pool != defaultPool)
+        {
+            channelPools.put(f.channel(), pool);
+        }
         return f.channel();
 
     }
@@ -673,6 +1046,8 @@ public class RiakNode implements RiakResponseListener
             case SHUTTING_DOWN:
             case SHUTDOWN:
                 closeConnection(c);
+                channelPools.remove(c);
+                checkShutdownComplete();
                 break;
             case RUNNING:
             case HEALTH_CHECKING:
@@ -684,19 +1059,30 @@ public class RiakNode implements RiakResponseListener
                 }
                 else
                 {
+                    SubPool pool = channelPools.get(c);
+                    if (pool == null)
+                    {
+                        pool = defaultPool;
+                    }
                     if (c.isOpen())
                     {
                         logger.debug("Channel id:{} returned to pool", c.hashCode());
                         c.closeFuture().removeListener(inProgressCloseListener);
                         c.closeFuture().addListener(inAvailableCloseListener);
-                        available.offerFirst(new ChannelWithIdleTime(c));
+                        pool.available.offerFirst(new ChannelWithIdleTime(c));
                     }
                     else
                     {
                         logger.debug("Closed channel id:{} returned to pool; discarding", c.hashCode());
+                        channelPools.remove(c);
                     }
                     logger.debug("Released pool permit");
-                    permits.release();
+                    pool.permits.release();
+                    CapacityListener listener = capacityListener;
+                    if (listener != null)
+                    {
+                        listener.capacityAvailable(this);
+                    }
                 }
             }
     }
@@ -730,6 +1116,7 @@ public class RiakNode implements RiakResponseListener
             if (inProgress.isDone())
             {
                 inProgressMap.remove(channel);
+                recordCompletion(inProgress, false, true);
                 returnConnection(channel); // return permit
             }
         }
@@ -742,6 +1129,7 @@ public class RiakNode implements RiakResponseListener
         final FutureOperation inProgress = inProgressMap.remove(channel);
         if (inProgress != null)
         {
+            recordCompletion(inProgress, false, false);
             inProgress.setException(ex);
             returnConnection(channel); // release permit
         }
@@ -760,11 +1148,34 @@ public class RiakNode implements RiakResponseListener
         // already been handled. 
         if (inProgress != null)
         {
+            recordCompletion(inProgress, true, false);
             inProgress.setException(t);
             returnConnection(channel); // release permit
         }
     }
 
+    /**
+     * Returns the zone (e.g. availability zone) this node is in.
+     *
+     * @return the zone label or null if none was set
+     * @see Builder#withZone(java.lang.String) 
+     */
+    public String getZone()
+    {
+        return zone;
+    }
+
+    /**
+     * Returns the rack this node is in.
+     *
+     * @return the rack label or null if none was set
+     * @see Builder#withRack(java.lang.String) 
+     */
+    public String getRack()
+    {
+        return rack;
+    }
+
     /**
      * Returns the {@code remoteAddress} for this RiakNode
      *
@@ -873,9 +1284,26 @@ public class RiakNode implements RiakResponseListener
 
     private void reapIdleConnections()
     {
+        for (SubPool pool : pools.values())
+        {
+            if (pool == defaultPool)
+            {
+                reapIdleConnections(pool, minConnections);
+            }
+            else
+            {
+                reapIdleConnections(pool, pool.minConnections);
+            }
+        }
+    }
+    
+    private void reapIdleConnections(SubPool pool, int minConnections)
+    {
+        Deque<ChannelWithIdleTime> available = pool.available;
         // with all the concurrency there's really no reason to keep 
         // checking the sizes. This is really just a "best guess"
-        int currentNum = inProgressMap.size() + available.size();
+        int inUse = pool.permits.getMaxPermits() - pool.permits.availablePermits();
+        int currentNum = inUse + available.size();
         if (currentNum > minConnections)
         {
             // Note this will not throw a ConncurrentModificationException
@@ -894,6 +1322,7 @@ public class RiakNode implements RiakResponseListener
                         Channel c = cwi.getChannel();
                         logger.debug("Idle channel closed; {}:{}", remoteAddress, port);
                         closeConnection(c);
+                        channelPools.remove(c);
                         currentNum--;
                     }
                 }
@@ -944,72 +1373,253 @@ public class RiakNode implements RiakResponseListener
         }
     }
 
+    /**
+     * Checks the node by opening a new connection. 
+     * <p>
+     * The connect is asynchronous and its outcome is handled by a listener 
+     * on the event loop, so a node that is down doesn't hold up the 
+     * scheduler (shared with other nodes when using {@link ClientResources})
+     * for the connect timeout. At most one check per node is outstanding.
+     * </p>
+     */
     private void checkHealth()
     {
-        try
+        // Purge closed connections from the available queue
+        for (SubPool pool : pools.values())
         {
-            // See: doGetConnection() - this will purge closed
-            // connections from the available queue and either 
-            // return/create a new one (meaning the node is up) or throw
-            // an exception if a connection can't be made.
-            Channel c = doGetConnection();
-            closeConnection(c);
-
-            if (state == State.HEALTH_CHECKING)
+            for (Iterator<ChannelWithIdleTime> i = pool.available.iterator(); i.hasNext();)
             {
-                logger.info("RiakNode recovered; {}:{}", remoteAddress, port);
-                state = State.RUNNING;
-                notifyStateListeners();
+                Channel channel = i.next().getChannel();
+                if (!channel.isOpen())
+                {
+                    i.remove();
+                    channelPools.remove(channel);
+                }
             }
-
         }
-        catch (ConnectionFailedException ex)
+        
+        if (!healthCheckInProgress.compareAndSet(false, true))
         {
-            if (state == State.RUNNING)
-            {
-                logger.error("RiakNode offline; health checking; {}:{} {}",
-                    remoteAddress, port, ex);
-                state = State.HEALTH_CHECKING;
-                notifyStateListeners();
-            }
-            else
+            return;
+        }
+        
+        try
+        {
+            bootstrap.connect().addListener(new ChannelFutureListener()
             {
-                logger.error("RiakNode failed health check; {}:{} {}",
-                    remoteAddress, port, ex);
-            }
+                @Override
+                public void operationComplete(ChannelFuture f) throws Exception
+                {
+                    healthCheckInProgress.set(false);
+                    if (f.isSuccess())
+                    {
+                        closeConnection(f.channel());
+                        healthCheckSucceeded();
+                    }
+                    else
+                    {
+                        healthCheckFailed(f.cause());
+                    }
+                }
+            });
         }
         catch (IllegalStateException e)
         {
             // no-op; there's a race condition where the bootstrap is shutting down
             // right when a healthcheck occurs and netty will throw this
+            healthCheckInProgress.set(false);
+        }
+    }
+    
+    private synchronized void healthCheckSucceeded()
+    {
+        if (state == State.HEALTH_CHECKING)
+        {
+            logger.info("RiakNode recovered; {}:{}", remoteAddress, port);
+            state = State.RUNNING;
+            notifyStateListeners();
+        }
+    }
+    
+    private synchronized void healthCheckFailed(Throwable cause)
+    {
+        if (state == State.RUNNING)
+        {
+            logger.error("RiakNode offline; health checking; {}:{} {}",
+                remoteAddress, port, cause);
+            state = State.HEALTH_CHECKING;
+            notifyStateListeners();
+        }
+        else
+        {
+            logger.error("RiakNode failed health check; {}:{} {}",
+                remoteAddress, port, cause);
         }
-
-
     }
 
-    private class ShutdownTask implements Runnable
+    /**
+     * Fails the operations still in progress on this node and closes their 
+     * connections. Used to enforce a shutdown deadline; the node must already
+     * be shutting down.
+     * @param cause the exception set on each operation
+     */
+    void abortInProgress(Throwable cause)
     {
-        @Override
-        public void run()
+        stateCheck(State.SHUTTING_DOWN, State.SHUTDOWN);
+        for (Channel c : inProgressMap.keySet())
         {
-            if (inProgressMap.isEmpty())
+            FutureOperation inProgress = inProgressMap.remove(c);
+            if (inProgress != null)
             {
-                state = State.SHUTDOWN;
-                notifyStateListeners();
-                if (ownsExecutor)
-                {
-                    executor.shutdown();
-                }
-                if (ownsBootstrap)
-                {
-                    bootstrap.group().shutdownGracefully();
-                }
-                logger.debug("RiakNode shut down {}:{}", remoteAddress, port);
-                shutdownLatch.countDown();
+                logger.debug("Aborting operation on shutdown; {}:{} id: {}", 
+                             remoteAddress, port, c.hashCode());
+                recordCompletion(inProgress, true, false);
+                // A no-op if a response completed it after we removed it.
+                inProgress.setTerminalException(cause);
+                returnConnection(c);
+            }
+        }
+        checkShutdownComplete();
+    }
+    
+    private void checkShutdownComplete()
+    {
+        if (state == State.SHUTTING_DOWN && inProgressMap.isEmpty() 
+            && shutdownComplete.compareAndSet(false, true))
+        {
+            state = State.SHUTDOWN;
+            notifyStateListeners();
+            if (ownsExecutor)
+            {
+                executor.shutdown();
+            }
+            if (ownsBootstrap)
+            {
+                bootstrap.group().shutdownGracefully();
+            }
+            if (clientResources != null)
+            {
+                clientResources.release();
             }
+            logger.debug("RiakNode shut down {}:{}", remoteAddress, port);
+            shutdownLatch.countDown();
         }
     }
 
+    private class SubPool
+    {
+        private final String name;
+        private final LinkedBlockingDeque<ChannelWithIdleTime> available;
+        private final Sync permits;
+        private final int minConnections;
+        private final AtomicLong acquiredCount = new AtomicLong();
+        private final AtomicLong refusedCount = new AtomicLong();
+        
+        SubPool(String name, LinkedBlockingDeque<ChannelWithIdleTime> available, 
+                Sync permits, int minConnections)
+        {
+            this.name = name;
+            this.available = available;
+            this.permits = permits;
+            this.minConnections = minConnections;
+        }
+    }
+    
+    private static class PoolConfig
+    {
+        private final String name;
+        private final int minConnections;
+        private final int maxConnections;
+        
+        PoolConfig(String name, int minConnections, int maxConnections)
+        {
+            this.name = name;
+            this.minConnections = minConnections;
+            this.maxConnections = maxConnections;
+        }
+    }
+    
+    /**
+     * A point in time view of one of a node's connection pools.
+     * @see RiakNode#getPoolStats(java.lang.String) 
+     */
+    public static class PoolStats
+    {
+        private final String name;
+        private final int maxConnections;
+        private final int inUse;
+        private final int idle;
+        private final long acquiredCount;
+        private final long refusedCount;
+        
+        PoolStats(String name, int maxConnections, int inUse, int idle, 
+                  long acquiredCount, long refusedCount)
+        {
+            this.name = name;
+            this.maxConnections = maxConnections;
+            this.inUse = inUse;
+            this.idle = idle;
+            this.acquiredCount = acquiredCount;
+            this.refusedCount = refusedCount;
+        }
+        
+        /**
+         * @return the name of the pool
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return the maximum number of connections; {@code Integer.MAX_VALUE} if unlimited.
+         */
+        public int getMaxConnections()
+        {
+            return maxConnections;
+        }
+
+        /**
+         * @return the number of connections currently executing operations.
+         */
+        public int getInUse()
+        {
+            return inUse;
+        }
+
+        /**
+         * @return the number of idle connections in the pool.
+         */
+        public int getIdle()
+        {
+            return idle;
+        }
+
+        /**
+         * @return the number of times a connection was handed out.
+         */
+        public long getAcquiredCount()
+        {
+            return acquiredCount;
+        }
+
+        /**
+         * @return the number of times an operation was refused because the pool was exhausted.
+         */
+        public long getRefusedCount()
+        {
+            return refusedCount;
+        }
+    }
+
+    /**
+     * Notified when a node has capacity to accept another operation.
+     */
+    interface CapacityListener
+    {
+        void capacityAvailable(RiakNode node);
+    }
+
     /**
      * Builder used to construct a RiakNode.
      */
@@ -1061,7 +1671,14 @@ public class RiakNode implements RiakResponseListener
         private int connectionTimeout = DEFAULT_CONNECTION_TIMEOUT;
         private Bootstrap bootstrap;
         private ScheduledExecutorService executor;
+        private ClientResources clientResources;
         private boolean blockOnMaxConnections;
+        private boolean adaptiveConcurrencyLimit;
+        private int reservedConnections;
+        private String zone;
+        private String rack;
+        private final List<PoolConfig> poolConfigs = new ArrayList<PoolConfig>();
+        private final List<ConnectionPoolRule> poolRules = new ArrayList<ConnectionPoolRule>();
 
 
         /**
@@ -1099,6 +1716,34 @@ public class RiakNode implements RiakResponseListener
             return this;
         }
 
+        /**
+         * Sets the zone (e.g. availability zone or datacenter) this node is in.
+         * <p>
+         * The label is opaque to the node; it is used by locality aware
+         * {@link NodeManager}s such as the {@link ZoneAwareNodeManager}.
+         * </p>
+         * @param zone the zone label
+         * @return this
+         */
+        public Builder withZone(String zone)
+        {
+            this.zone = zone;
+            return this;
+        }
+
+        /**
+         * Sets the rack this node is in, within its zone.
+         *
+         * @param rack the rack label
+         * @return this
+         * @see #withZone(java.lang.String) 
+         */
+        public Builder withRack(String rack)
+        {
+            this.rack = rack;
+            return this;
+        }
+
         /**
          * Set the minimum number of active connections to maintain.
          * These connections are exempt from the idle timeout.
@@ -1198,6 +1843,23 @@ public class RiakNode implements RiakResponseListener
             return this;
         }
 
+        /**
+         * Provides shared {@link ClientResources} for this node to use.
+         * <p>
+         * Unless an executor or Bootstrap are also provided the node uses
+         * the shared scheduler and event loop group, and its maintenance 
+         * tasks are run by the shared sweeper. The node retains the 
+         * resources when started and releases them when shut down.
+         * </p>
+         * @param resources the shared resources
+         * @return this
+         */
+        public Builder withClientResources(ClientResources resources)
+        {
+            this.clientResources = resources;
+            return this;
+        }
+
         /**
          * Set whether to block if all connections are in use.
          * <p>
@@ -1218,6 +1880,89 @@ public class RiakNode implements RiakResponseListener
             return this;
         }
         
+        /**
+         * Set whether to adaptively limit the number of in-flight operations.
+         * <p>
+         * When enabled each node built gets its own {@link VegasConcurrencyLimiter}
+         * with default settings. The node will refuse operations beyond the 
+         * learned limit even when connections are available, allowing the 
+         * {@link NodeManager} to route them elsewhere. To supply a differently
+         * configured limiter use {@link RiakNode#setConcurrencyLimiter(ConcurrencyLimiter)}.
+         * </p>
+         * @param adaptive true to enable the limit.
+         * @return this
+         */
+        public Builder withAdaptiveConcurrencyLimit(boolean adaptive)
+        {
+            this.adaptiveConcurrencyLimit = adaptive;
+            return this;
+        }
+        
+        /**
+         * Set the number of connections held back for {@link OperationPriority#INTERACTIVE} operations.
+         * <p>
+         * Operations of other priorities are refused once only this many 
+         * connection permits remain, even when blocking on max connections,
+         * so a flood of batch work can't take every connection. This 
+         * is only meaningful when a maximum number of connections is set.
+         * </p>
+         * @param reserved the number of reserved connections
+         * @return this
+         * @see #withMaxConnections(int)
+         */
+        public Builder withReservedConnections(int reserved)
+        {
+            if (reserved < 0)
+            {
+                throw new IllegalArgumentException("Reserved connections must be >= 0");
+            }
+            this.reservedConnections = reserved;
+            return this;
+        }
+        
+        /**
+         * Adds a named connection pool (bulkhead) to the node.
+         * <p>
+         * Each pool has its own connections and limits, so work routed to 
+         * one pool can't exhaust the connections of another. Operations are 
+         * assigned to pools by {@link ConnectionPoolRule}s; anything not 
+         * claimed by a rule uses the {@link RiakNode#DEFAULT_POOL default pool},
+         * which is configured with {@link #withMinConnections(int)} and 
+         * {@link #withMaxConnections(int)}.
+         * </p>
+         * @param name the pool's name
+         * @param minConnections connections to maintain in the pool
+         * @param maxConnections the maximum connections; 0 for unlimited
+         * @return this
+         * @see #withConnectionPoolRule(ConnectionPoolRule) 
+         */
+        public Builder withConnectionPool(String name, int minConnections, int maxConnections)
+        {
+            if (DEFAULT_POOL.equals(name))
+            {
+                throw new IllegalArgumentException("The default pool is configured with withMin/MaxConnections()");
+            }
+            if (maxConnections > 0 && minConnections > maxConnections)
+            {
+                throw new IllegalArgumentException("Min connections greater than max connections");
+            }
+            poolConfigs.add(new PoolConfig(name, minConnections, maxConnections));
+            return this;
+        }
+        
+        /**
+         * Adds a rule used to route operations to a connection pool.
+         * Rules are evaluated in the order they are added.
+         * @param rule the rule
+         * @return this
+         * @see ConnectionPoolRules
+         */
+        public Builder withConnectionPoolRule(ConnectionPoolRule rule)
+        {
+            poolRules.add(rule);
+            return this;
+        }
+        
         /**
          * Builds a RiakNode.
          * If a Netty {@code Bootstrap} and/or a {@code ScheduledExecutorService} has not been provided they
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Success rate and latency of the most recent operations on a node.
+ * <p>
+ * The last {@code capacity} completions are kept in a ring buffer; a 
+ * {@link #snapshot() snapshot} only considers those that completed within 
+ * the window. Memory use is fixed regardless of throughput. 
+ * </p>
+ *
+ * @since 2.0
+ * @see OutlierDetector
+ */
+public class SlidingWindowStats
+{
+    private final long windowNanos;
+    private final long[] latencies;
+    private final long[] timestamps;
+    private final boolean[] successes;
+    private int next;
+    private int size;
+    
+    /**
+     * Creates a SlidingWindowStats.
+     * @param window the length of the window
+     * @param unit the unit of the window
+     * @param capacity the maximum number of samples kept
+     */
+    public SlidingWindowStats(long window, TimeUnit unit, int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Capacity must be >= 1");
+        }
+        this.windowNanos = unit.toNanos(window);
+        this.latencies = new long[capacity];
+        this.timestamps = new long[capacity];
+        this.successes = new boolean[capacity];
+    }
+    
+    /**
+     * Records a completed operation.
+     * @param latencyNanos how long the operation took
+     * @param success false if the operation failed
+     */
+    public synchronized void record(long latencyNanos, boolean success)
+    {
+        latencies[next] = latencyNanos;
+        timestamps[next] = System.nanoTime();
+        successes[next] = success;
+        next = (next + 1) % latencies.length;
+        if (size < latencies.length)
+        {
+            size++;
+        }
+    }
+    
+    /**
+     * Discards all samples.
+     */
+    public synchronized void clear()
+    {
+        next = 0;
+        size = 0;
+    }
+    
+    /**
+     * Returns the statistics for the samples within the window.
+     * @return a new Snapshot
+     */
+    public Snapshot snapshot()
+    {
+        long[] windowLatencies;
+        int count = 0;
+        int successCount = 0;
+        synchronized (this)
+        {
+            long now = System.nanoTime();
+            windowLatencies = new long[size];
+            for (int i = 0; i < size; i++)
+            {
+                if (now - timestamps[i] <= windowNanos)
+                {
+                    windowLatencies[count++] = latencies[i];
+                    if (successes[i])
+                    {
+                        successCount++;
+                    }
+                }
+            }
+        }
+        long[] sorted = Arrays.copyOf(windowLatencies, count);
+        Arrays.sort(sorted);
+        return new Snapshot(sorted, successCount);
+    }
+    
+    /**
+     * An immutable view of a SlidingWindowStats.
+     */
+    public static class Snapshot
+    {
+        private final long[] sortedLatencies;
+        private final int successCount;
+        
+        Snapshot(long[] sortedLatencies, int successCount)
+        {
+            this.sortedLatencies = sortedLatencies;
+            this.successCount = successCount;
+        }
+        
+        /**
+         * @return the number of operations in the window
+         */
+        public int getCount()
+        {
+            return sortedLatencies.length;
+        }
+        
+        /**
+         * @return the fraction of operations that succeeded; 1.0 if there were none
+         */
+        public double getSuccessRate()
+        {
+            return sortedLatencies.length == 0 ? 1.0 : (double) successCount / sortedLatencies.length;
+        }
+        
+        /**
+         * Returns a latency percentile.
+         * @param quantile a value between 0 and 1, e.g. 0.99
+         * @return the latency in nanoseconds; 0 if there were no operations
+         */
+        public long getLatencyPercentile(double quantile)
+        {
+            if (sortedLatencies.length == 0)
+            {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))];
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The results of a streaming operation, delivered as they arrive from Riak.
+ * <p>
+ * Streaming operations such as listing keys normally keep every response 
+ * until the last one arrives. An operation given a StreamingResult instead 
+ * hands each response's results to it and keeps nothing, so the caller can 
+ * start consuming the first results while the rest are still being sent.
+ * </p>
+ * <p>
+ * Memory is bounded by demand. When more than {@code maxBufferedChunks} 
+ * responses are waiting to be consumed, the operation stops reading from 
+ * its connection (Netty's {@code autoRead}) and Riak is held back by TCP 
+ * flow control. Reading resumes once the consumer has drained half of them.
+ * </p>
+ * <p>
+ * {@link #hasNext()} blocks until a result is available or the operation 
+ * completes. If the operation fails, the failure is thrown from 
+ * {@code hasNext()} as a {@link StreamingResult.StreamFailedException}. A 
+ * streaming operation is never retried once it has delivered a result.
+ * This iterator is meant to be used by a single consumer thread.
+ * </p>
+ *
+ * @param <E> the type of the results
+ * @since 2.0
+ */
+public class StreamingResult<E> implements Iterator<E>
+{
+    /**
+     * The default number of responses buffered before reading is paused: 
+     * {@value #DEFAULT_MAX_BUFFERED_CHUNKS}
+     */
+    public final static int DEFAULT_MAX_BUFFERED_CHUNKS = 16;
+
+    // Queued after the last chunk
+    private static final Object END = new Object();
+
+    private final FutureOperation<?, ?> operation;
+    private final int maxBufferedChunks;
+    private final BlockingQueue<Object> chunks = new LinkedBlockingQueue<Object>();
+    private final AtomicBoolean paused = new AtomicBoolean();
+    private Iterator<E> current = Collections.<E>emptyList().iterator();
+    private boolean finished;
+
+    /**
+     * Creates a StreamingResult for an operation.
+     * @param operation the operation producing the results
+     * @param maxBufferedChunks the number of responses buffered before 
+     * reading from the connection is paused
+     */
+    public StreamingResult(FutureOperation<?, ?> operation, int maxBufferedChunks)
+    {
+        if (maxBufferedChunks < 1)
+        {
+            throw new IllegalArgumentException("maxBufferedChunks must be >= 1");
+        }
+        this.operation = operation;
+        this.maxBufferedChunks = maxBufferedChunks;
+    }
+
+    /**
+     * Adds the results of one response.
+     * <p>
+     * Called by the operation on the I/O thread as each response is decoded.
+     * </p>
+     * @param chunk the results from the response; may be empty
+     */
+    public void offer(List<E> chunk)
+    {
+        if (chunk.isEmpty())
+        {
+            return;
+        }
+        chunks.add(chunk);
+        if (chunks.size() >= maxBufferedChunks && paused.compareAndSet(false, true))
+        {
+            operation.setAutoRead(false);
+            // The consumer may have drained the queue before we paused
+            resumeIfDrained();
+        }
+    }
+
+    /**
+     * Marks the end of the results. Called by the operation once it 
+     * completes, successfully or not.
+     */
+    void finish()
+    {
+        chunks.add(END);
+    }
+
+    private void resumeIfDrained()
+    {
+        if (chunks.size() <= maxBufferedChunks / 2 && paused.compareAndSet(true, false))
+        {
+            operation.setAutoRead(true);
+        }
+    }
+
+    /**
+     * Returns the number of responses waiting to be consumed.
+     * @return the number of buffered responses
+     */
+    public int getBufferedChunks()
+    {
+        return chunks.size();
+    }
+
+    /**
+     * Returns whether more results are available, blocking until one 
+     * arrives or the operation completes.
+     * @return true if {@link #next()} will return a result
+     * @throws StreamFailedException if the operation failed or the thread was interrupted
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean hasNext()
+    {
+        while (!current.hasNext())
+        {
+            if (finished)
+            {
+                return false;
+            }
+            Object chunk;
+            try
+            {
+                chunk = chunks.take();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new StreamFailedException(ex);
+            }
+            resumeIfDrained();
+            if (chunk == END)
+            {
+                finished = true;
+                checkFailed();
+            }
+            else
+            {
+                current = ((List<E>) chunk).iterator();
+            }
+        }
+        return true;
+    }
+
+    private void checkFailed()
+    {
+        try
+        {
+            operation.get();
+        }
+        catch (ExecutionException ex)
+        {
+            throw new StreamFailedException(ex.getCause());
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new StreamFailedException(ex);
+        }
+    }
+
+    @Override
+    public E next()
+    {
+        if (!hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Thrown from {@link StreamingResult#hasNext()} when the streaming 
+     * operation fails.
+     */
+    public static class StreamFailedException extends RuntimeException
+    {
+        private static final long serialVersionUID = 2915243380573140219L;
+
+        public StreamFailedException(Throwable cause)
+        {
+            super(cause);
+        }
+    }
+}
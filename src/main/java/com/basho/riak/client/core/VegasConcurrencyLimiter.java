@@ -0,0 +1,319 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An adaptive {@link ConcurrencyLimiter} modeled on TCP Vegas.
+ * <p>
+ * The limiter keeps track of the lowest round trip time it has seen (the
+ * "no load" RTT) and uses it to estimate how many operations are queued
+ * somewhere between the client and Riak:
+ * </p>
+ * <pre>
+ * queued = limit * (1 - rttNoLoad / rtt)
+ * </pre>
+ * <p>
+ * When the estimated queue is small the limit is increased, when it grows
+ * beyond {@code beta} the limit is decreased. A dropped operation (timeout,
+ * closed connection) reduces the limit multiplicatively. The result is a
+ * limit that tracks the concurrency at which latency stays near its minimum.
+ * </p>
+ * <p>
+ * Because the no load RTT can only go down, it is periodically reset
+ * (see {@link Builder#withProbeInterval(int)}) so the limiter can learn
+ * a new baseline if the cluster's latency profile changes.
+ * </p>
+ *
+ * @since 2.0
+ */
+public class VegasConcurrencyLimiter implements ConcurrencyLimiter
+{
+    private final Logger logger = LoggerFactory.getLogger(VegasConcurrencyLimiter.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double backoffRatio;
+    private final int probeInterval;
+
+    private volatile double limit;
+    private long rttNoLoad;
+    private int samplesSinceProbe;
+
+    private VegasConcurrencyLimiter(Builder builder)
+    {
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.smoothing = builder.smoothing;
+        this.backoffRatio = builder.backoffRatio;
+        this.probeInterval = builder.probeInterval;
+        this.limit = builder.initialLimit;
+    }
+
+    @Override
+    public boolean tryAcquire()
+    {
+        while (true)
+        {
+            int current = inFlight.get();
+            if (current >= (int) limit)
+            {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1))
+            {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void release(long rttNanos, boolean dropped)
+    {
+        int current = inFlight.getAndDecrement();
+        if (rttNanos > 0)
+        {
+            update(rttNanos, current, dropped);
+        }
+    }
+
+    private synchronized void update(long rtt, int currentInFlight, boolean dropped)
+    {
+        if (++samplesSinceProbe >= probeInterval)
+        {
+            // Forget the baseline; the next sample becomes the new one.
+            rttNoLoad = 0;
+            samplesSinceProbe = 0;
+        }
+
+        double newLimit;
+        if (dropped)
+        {
+            // Failures such as a refused connection can be faster than any 
+            // real response, so a drop never becomes the baseline.
+            newLimit = limit * backoffRatio;
+        }
+        else if (rttNoLoad == 0 || rtt < rttNoLoad)
+        {
+            rttNoLoad = rtt;
+            return;
+        }
+        else if (currentInFlight * 2 < limit)
+        {
+            // We're not using the limit we have; there's no signal here.
+            return;
+        }
+        else
+        {
+            double log = Math.max(1, Math.log10(limit));
+            double alpha = 3 * log;
+            double beta = 6 * log;
+            double queued = limit * (1 - (double) rttNoLoad / rtt);
+
+            if (queued <= log)
+            {
+                newLimit = limit + beta;
+            }
+            else if (queued < alpha)
+            {
+                newLimit = limit + log;
+            }
+            else if (queued > beta)
+            {
+                newLimit = limit - log;
+            }
+            else
+            {
+                return;
+            }
+        }
+
+        newLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        newLimit = (1 - smoothing) * limit + smoothing * newLimit;
+        if ((int) newLimit != (int) limit)
+        {
+            logger.debug("Concurrency limit changed; {} -> {}", (int) limit, (int) newLimit);
+        }
+        limit = newLimit;
+    }
+
+    @Override
+    public int getLimit()
+    {
+        return (int) limit;
+    }
+
+    @Override
+    public int getInFlight()
+    {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the lowest RTT observed since the last probe.
+     * @return the no load RTT in nanoseconds, or 0 if not yet known.
+     */
+    public synchronized long getNoLoadRtt()
+    {
+        return rttNoLoad;
+    }
+
+    /**
+     * Builder used to construct a VegasConcurrencyLimiter.
+     */
+    public static class Builder
+    {
+        /**
+         * The default initial limit: {@value #DEFAULT_INITIAL_LIMIT}
+         */
+        public final static int DEFAULT_INITIAL_LIMIT = 20;
+        /**
+         * The default minimum limit: {@value #DEFAULT_MIN_LIMIT}
+         */
+        public final static int DEFAULT_MIN_LIMIT = 1;
+        /**
+         * The default maximum limit: {@value #DEFAULT_MAX_LIMIT}
+         */
+        public final static int DEFAULT_MAX_LIMIT = 1000;
+        /**
+         * The default smoothing factor: {@value #DEFAULT_SMOOTHING}
+         */
+        public final static double DEFAULT_SMOOTHING = 1.0;
+        /**
+         * The default multiplicative decrease on a drop: {@value #DEFAULT_BACKOFF_RATIO}
+         */
+        public final static double DEFAULT_BACKOFF_RATIO = 0.9;
+        /**
+         * The default number of samples between no load RTT resets: {@value #DEFAULT_PROBE_INTERVAL}
+         */
+        public final static int DEFAULT_PROBE_INTERVAL = 1000;
+
+        private int initialLimit = DEFAULT_INITIAL_LIMIT;
+        private int minLimit = DEFAULT_MIN_LIMIT;
+        private int maxLimit = DEFAULT_MAX_LIMIT;
+        private double smoothing = DEFAULT_SMOOTHING;
+        private double backoffRatio = DEFAULT_BACKOFF_RATIO;
+        private int probeInterval = DEFAULT_PROBE_INTERVAL;
+
+        public Builder()
+        {
+        }
+
+        /**
+         * Set the limit used before any samples have been taken.
+         * @param initialLimit the initial limit
+         * @return this
+         * @see #DEFAULT_INITIAL_LIMIT
+         */
+        public Builder withInitialLimit(int initialLimit)
+        {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * Set the lower bound for the limit.
+         * @param minLimit the minimum limit
+         * @return this
+         * @see #DEFAULT_MIN_LIMIT
+         */
+        public Builder withMinLimit(int minLimit)
+        {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        /**
+         * Set the upper bound for the limit.
+         * @param maxLimit the maximum limit
+         * @return this
+         * @see #DEFAULT_MAX_LIMIT
+         */
+        public Builder withMaxLimit(int maxLimit)
+        {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * Set the smoothing factor applied to limit changes.
+         * A value of 1.0 applies each change in full, smaller values
+         * dampen the response.
+         * @param smoothing a value in (0, 1]
+         * @return this
+         * @see #DEFAULT_SMOOTHING
+         */
+        public Builder withSmoothing(double smoothing)
+        {
+            this.smoothing = smoothing;
+            return this;
+        }
+
+        /**
+         * Set the ratio the limit is multiplied by when an operation is dropped.
+         * @param backoffRatio a value in (0, 1)
+         * @return this
+         * @see #DEFAULT_BACKOFF_RATIO
+         */
+        public Builder withBackoffRatio(double backoffRatio)
+        {
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        /**
+         * Set how many samples are taken before the no load RTT is reset.
+         * @param probeInterval number of samples
+         * @return this
+         * @see #DEFAULT_PROBE_INTERVAL
+         */
+        public Builder withProbeInterval(int probeInterval)
+        {
+            this.probeInterval = probeInterval;
+            return this;
+        }
+
+        /**
+         * Builds a VegasConcurrencyLimiter.
+         * @return a new VegasConcurrencyLimiter
+         * @throws IllegalArgumentException if the limits are inconsistent.
+         */
+        public VegasConcurrencyLimiter build()
+        {
+            if (minLimit < 1 || maxLimit < minLimit)
+            {
+                throw new IllegalArgumentException("Limits must satisfy 1 <= min <= max");
+            }
+            if (initialLimit < minLimit || initialLimit > maxLimit)
+            {
+                throw new IllegalArgumentException("Initial limit must be between min and max");
+            }
+            if (smoothing <= 0 || smoothing > 1)
+            {
+                throw new IllegalArgumentException("Smoothing must be in (0, 1]");
+            }
+            if (backoffRatio <= 0 || backoffRatio >= 1)
+            {
+                throw new IllegalArgumentException("Backoff ratio must be in (0, 1)");
+            }
+            return new VegasConcurrencyLimiter(this);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A queue with one FIFO lane per {@link OperationPriority}, served by 
+ * weighted fair queuing.
+ * <p>
+ * Each entry is stamped with a virtual finish time of 
+ * {@code max(virtualTime, lane's last finish) + 1 / weight}; the lane whose 
+ * head has the earliest finish time is served next. Over time each busy lane
+ * receives service in proportion to its weight, and a lane that has been idle
+ * does not build up credit.
+ * </p>
+ * <p>
+ * Not thread safe.
+ * </p>
+ * @since 2.0
+ */
+class WeightedFairQueue<T> implements Iterable<T>
+{
+    private final EnumMap<OperationPriority, Lane> lanes = 
+        new EnumMap<OperationPriority, Lane>(OperationPriority.class);
+    private double virtualTime;
+    private int size;
+    
+    WeightedFairQueue(Map<OperationPriority, Integer> weights)
+    {
+        for (OperationPriority priority : OperationPriority.values())
+        {
+            Integer weight = weights.get(priority);
+            lanes.put(priority, new Lane(weight == null ? priority.getDefaultWeight() : weight));
+        }
+    }
+    
+    void add(OperationPriority priority, T item)
+    {
+        Lane lane = lanes.get(priority);
+        double start = Math.max(virtualTime, lane.lastFinish);
+        lane.lastFinish = start + 1.0 / lane.weight;
+        lane.entries.add(new Entry<T>(item, start, lane.lastFinish));
+        size++;
+    }
+    
+    int size()
+    {
+        return size;
+    }
+    
+    boolean isEmpty()
+    {
+        return size == 0;
+    }
+    
+    /**
+     * Returns the priorities of the non-empty lanes, in the order their heads
+     * should be served.
+     */
+    List<OperationPriority> serviceOrder()
+    {
+        List<OperationPriority> order = new ArrayList<OperationPriority>(lanes.size());
+        for (Map.Entry<OperationPriority, Lane> e : lanes.entrySet())
+        {
+            if (!e.getValue().entries.isEmpty())
+            {
+                order.add(e.getKey());
+            }
+        }
+        Collections.sort(order, new Comparator<OperationPriority>()
+        {
+            @Override
+            public int compare(OperationPriority o1, OperationPriority o2)
+            {
+                return Double.compare(lanes.get(o1).entries.peek().finish, 
+                                      lanes.get(o2).entries.peek().finish);
+            }
+        });
+        return order;
+    }
+    
+    T peek(OperationPriority priority)
+    {
+        Entry<T> head = lanes.get(priority).entries.peek();
+        return head == null ? null : head.item;
+    }
+    
+    T poll(OperationPriority priority)
+    {
+        Entry<T> head = lanes.get(priority).entries.poll();
+        if (head == null)
+        {
+            return null;
+        }
+        size--;
+        virtualTime = Math.max(virtualTime, head.start);
+        return head.item;
+    }
+    
+    /**
+     * Removes and returns the entry that would be served next.
+     */
+    T poll()
+    {
+        List<OperationPriority> order = serviceOrder();
+        return order.isEmpty() ? null : poll(order.get(0));
+    }
+    
+    /**
+     * Iterates over all queued items, lane by lane. Supports removal.
+     */
+    @Override
+    public Iterator<T> iterator()
+    {
+        return new Iterator<T>()
+        {
+            private final Iterator<Lane> laneIterator = lanes.values().iterator();
+            private Iterator<Entry<T>> current;
+            
+            @Override
+            public boolean hasNext()
+            {
+                while (current == null || !current.hasNext())
+                {
+                    if (!laneIterator.hasNext())
+                    {
+                        return false;
+                    }
+                    current = laneIterator.next().entries.iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public T next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+                return current.next().item;
+            }
+
+            @Override
+            public void remove()
+            {
+                current.remove();
+                size--;
+            }
+        };
+    }
+    
+    private class Lane
+    {
+        private final int weight;
+        private final ArrayDeque<Entry<T>> entries = new ArrayDeque<Entry<T>>();
+        private double lastFinish;
+        
+        Lane(int weight)
+        {
+            this.weight = weight;
+        }
+    }
+    
+    private static class Entry<T>
+    {
+        private final T item;
+        private final double start;
+        private final double finish;
+        
+        Entry(T item, double start, double finish)
+        {
+            this.item = item;
+            this.start = start;
+            this.finish = finish;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link NodeManager} that prefers nodes close to the client.
+ * <p>
+ * Healthy nodes are grouped into three tiers using the labels set with 
+ * {@link RiakNode.Builder#withZone(java.lang.String)} and 
+ * {@link RiakNode.Builder#withRack(java.lang.String)}: nodes in the client's 
+ * rack, other nodes in the client's zone, and everything else. Each tier is 
+ * round-robined in turn; an operation only spills over to the next tier when
+ * every node in the closer tiers is unhealthy or refuses it because its 
+ * connections are in use. Nodes without a zone are treated as remote.
+ * </p>
+ * <p>
+ * Counters report how many operations were placed in each tier, giving the
+ * amount of traffic that crossed zones.
+ * </p>
+ *
+ * @since 2.0
+ */
+public class ZoneAwareNodeManager extends DefaultNodeManager
+{
+    private final String localZone;
+    private final String localRack;
+    private final AtomicInteger index = new AtomicInteger();
+    private final AtomicLong localRackCount = new AtomicLong();
+    private final AtomicLong localZoneCount = new AtomicLong();
+    private final AtomicLong crossZoneCount = new AtomicLong();
+    
+    // Replaced wholesale when the healthy nodes change. 
+    private volatile List<List<RiakNode>> tiers = new ArrayList<List<RiakNode>>();
+    
+    /**
+     * Creates a ZoneAwareNodeManager for a client in the given zone.
+     * @param localZone the client's zone
+     */
+    public ZoneAwareNodeManager(String localZone)
+    {
+        this(localZone, null);
+    }
+    
+    /**
+     * Creates a ZoneAwareNodeManager for a client in the given zone and rack.
+     * @param localZone the client's zone
+     * @param localRack the client's rack; may be null
+     */
+    public ZoneAwareNodeManager(String localZone, String localRack)
+    {
+        if (localZone == null)
+        {
+            throw new IllegalArgumentException("Local zone can not be null");
+        }
+        this.localZone = localZone;
+        this.localRack = localRack;
+    }
+    
+    @Override
+    protected void healthyNodesChanged(List<RiakNode> healthyNodes)
+    {
+        List<RiakNode> rack = new ArrayList<RiakNode>();
+        List<RiakNode> zone = new ArrayList<RiakNode>();
+        List<RiakNode> remote = new ArrayList<RiakNode>();
+        for (RiakNode node : healthyNodes)
+        {
+            if (localZone.equals(node.getZone()))
+            {
+                if (localRack != null && localRack.equals(node.getRack()))
+                {
+                    rack.add(node);
+                }
+                else
+                {
+                    zone.add(node);
+                }
+            }
+            else
+            {
+                remote.add(node);
+            }
+        }
+        List<List<RiakNode>> newTiers = new ArrayList<List<RiakNode>>(3);
+        newTiers.add(rack);
+        newTiers.add(zone);
+        newTiers.add(remote);
+        tiers = newTiers;
+    }
+    
+    @Override
+    public boolean executeOnNode(FutureOperation operation, RiakNode previousNode)
+    {
+        List<List<RiakNode>> current = tiers;
+        int start = index.getAndIncrement();
+        for (int tier = 0; tier < current.size(); tier++)
+        {
+            List<RiakNode> nodes = current.get(tier);
+            for (int i = 0; i < nodes.size(); i++)
+            {
+                if (nodes.get(Math.abs((start + i) % nodes.size())).execute(operation))
+                {
+                    recordPlacement(tier);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private void recordPlacement(int tier)
+    {
+        switch (tier)
+        {
+            case 0:
+                localRackCount.incrementAndGet();
+                break;
+            case 1:
+                localZoneCount.incrementAndGet();
+                break;
+            default:
+                crossZoneCount.incrementAndGet();
+                break;
+        }
+    }
+    
+    /**
+     * Returns the number of operations executed on a node in the client's rack.
+     * @return the count
+     */
+    public long getLocalRackCount()
+    {
+        return localRackCount.get();
+    }
+    
+    /**
+     * Returns the number of operations executed on a node in the client's 
+     * zone, including those in the client's rack.
+     * @return the count
+     */
+    public long getLocalZoneCount()
+    {
+        return localZoneCount.get() + localRackCount.get();
+    }
+    
+    /**
+     * Returns the number of operations executed on a node in another zone.
+     * @return the count
+     */
+    public long getCrossZoneCount()
+    {
+        return crossZoneCount.get();
+    }
+}
@@ -57,6 +57,18 @@ public class DeleteOperation extends FutureOperation<Boolean, Void>
         return null;
     }
 
+    @Override
+    public byte[] getRoutingKey()
+    {
+        if (!reqBuilder.hasKey())
+        {
+            return null;
+        }
+        return createRoutingKey(reqBuilder.getType().toByteArray(),
+                                reqBuilder.getBucket().toByteArray(),
+                                reqBuilder.getKey().toByteArray());
+    }
+
     @Override
     protected RiakMessage createChannelMessage()
     {
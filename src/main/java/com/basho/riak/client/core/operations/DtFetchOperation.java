@@ -64,6 +64,18 @@ public class DtFetchOperation extends FutureOperation<DtFetchOperation.Response,
 
     }
 
+    @Override
+    public byte[] getRoutingKey()
+    {
+        if (!reqBuilder.hasKey())
+        {
+            return null;
+        }
+        return createRoutingKey(reqBuilder.getType().toByteArray(),
+                                reqBuilder.getBucket().toByteArray(),
+                                reqBuilder.getKey().toByteArray());
+    }
+
     @Override
     protected RiakMessage createChannelMessage()
     {
@@ -70,6 +70,18 @@ public class DtUpdateOperation extends FutureOperation<DtUpdateOperation.Respons
 
     }
 
+    @Override
+    public byte[] getRoutingKey()
+    {
+        if (!reqBuilder.hasKey())
+        {
+            return null;
+        }
+        return createRoutingKey(reqBuilder.getType().toByteArray(),
+                                reqBuilder.getBucket().toByteArray(),
+                                reqBuilder.getKey().toByteArray());
+    }
+
     @Override
     protected RiakMessage createChannelMessage()
     {
@@ -81,8 +81,18 @@ public class FetchOperation extends FutureOperation<FetchOperation.Response, Ria
             logger.error("Received {} responses when only one was expected.", responses.size());
         }
         
-        RiakKvPB.RpbGetResp response = responses.get(0);
-        
+        return toResponse(responses.get(0));
+    }
+
+    /**
+     * Builds the response to a fetch from the message Riak replied with. 
+     * Also used to rebuild responses kept in their encoded form.
+     * @param response the message, or null for not found
+     * @return the response
+     * @throws ExecutionException if the message has an unknown index type
+     */
+    public static Response toResponse(RiakKvPB.RpbGetResp response) throws ExecutionException
+    {
         FetchOperation.Response.Builder responseBuilder =
                 new FetchOperation.Response.Builder();
         
@@ -115,6 +125,18 @@ public class FetchOperation extends FutureOperation<FetchOperation.Response, Ria
         return responseBuilder.build();
     }
 
+    @Override
+    public byte[] getRoutingKey()
+    {
+        if (!reqBuilder.hasKey())
+        {
+            return null;
+        }
+        return createRoutingKey(reqBuilder.getType().toByteArray(),
+                                reqBuilder.getBucket().toByteArray(),
+                                reqBuilder.getKey().toByteArray());
+    }
+
     @Override
     protected RiakMessage createChannelMessage()
     {
@@ -16,7 +16,9 @@
 package com.basho.riak.client.core.operations;
 
 import com.basho.riak.client.core.FutureOperation;
+import com.basho.riak.client.core.OperationPriority;
 import com.basho.riak.client.core.RiakMessage;
+import com.basho.riak.client.core.StreamingResult;
 import com.basho.riak.client.util.BinaryValue;
 import com.basho.riak.client.util.RiakMessageCodes;
 import com.basho.riak.protobuf.RiakKvPB;
@@ -30,10 +32,40 @@ import java.util.concurrent.ExecutionException;
 public class ListBucketsOperation extends FutureOperation<List<BinaryValue>, RiakKvPB.RpbListBucketsResp>
 {
     private final RiakKvPB.RpbListBucketsReq.Builder reqBuilder;
+    private final StreamingResult<BinaryValue> streamingResult;
     
     private ListBucketsOperation(Builder builder)
     {
         this.reqBuilder = builder.reqBuilder;
+        setPriority(OperationPriority.BATCH);
+        if (builder.maxBufferedChunks > 0)
+        {
+            streamingResult = new StreamingResult<BinaryValue>(this, builder.maxBufferedChunks);
+            setStreamingResult(streamingResult, new ResponseStream<RiakKvPB.RpbListBucketsResp>()
+            {
+                @Override
+                public void streamResponse(RiakKvPB.RpbListBucketsResp message)
+                {
+                    List<BinaryValue> buckets = new ArrayList<BinaryValue>(message.getBucketsCount());
+                    addBuckets(message, buckets);
+                    streamingResult.offer(buckets);
+                }
+            });
+        }
+        else
+        {
+            streamingResult = null;
+        }
+    }
+
+    /**
+     * Returns the bucket names as they arrive from Riak.
+     * @return the streaming result, or null if streaming was not requested.
+     * @see Builder#withStreaming(int) 
+     */
+    public StreamingResult<BinaryValue> getStreamingResult()
+    {
+        return streamingResult;
     }
 
     @Override
@@ -48,13 +80,18 @@ public class ListBucketsOperation extends FutureOperation<List<BinaryValue>, Ria
         List<BinaryValue> buckets = new ArrayList<BinaryValue>(rawResponse.size());
         for (RiakKvPB.RpbListBucketsResp resp : rawResponse)
         {
-            for (ByteString bucket : resp.getBucketsList())
-            {
-                buckets.add(BinaryValue.unsafeCreate(bucket.toByteArray()));
-            }
+            addBuckets(resp, buckets);
         }
         return buckets;
     }
+    
+    private void addBuckets(RiakKvPB.RpbListBucketsResp resp, List<BinaryValue> buckets)
+    {
+        for (ByteString bucket : resp.getBucketsList())
+        {
+            buckets.add(BinaryValue.unsafeCreate(bucket.toByteArray()));
+        }
+    }
 
     @Override
     protected RiakMessage createChannelMessage()
@@ -81,6 +118,7 @@ public class ListBucketsOperation extends FutureOperation<List<BinaryValue>, Ria
     {
         RiakKvPB.RpbListBucketsReq.Builder reqBuilder = 
             RiakKvPB.RpbListBucketsReq.newBuilder().setStream(true);
+        int maxBufferedChunks;
         
         /**
          * Create a Builder for a ListBucketsOperation.
@@ -119,6 +157,24 @@ public class ListBucketsOperation extends FutureOperation<List<BinaryValue>, Ria
             return this;
         }
         
+        /**
+         * Deliver bucket names through a {@link StreamingResult} as they 
+         * arrive rather than as a single list once all have been received.
+         * @param maxBufferedChunks the number of responses buffered before 
+         * reading from the connection is paused
+         * @return a reference to this object
+         * @see ListBucketsOperation#getStreamingResult() 
+         */
+        public Builder withStreaming(int maxBufferedChunks)
+        {
+            if (maxBufferedChunks < 1)
+            {
+                throw new IllegalArgumentException("maxBufferedChunks must be >= 1");
+            }
+            this.maxBufferedChunks = maxBufferedChunks;
+            return this;
+        }
+        
         public ListBucketsOperation build()
         {
             return new ListBucketsOperation(this);
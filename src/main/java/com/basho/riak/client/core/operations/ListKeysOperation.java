@@ -16,7 +16,9 @@
 package com.basho.riak.client.core.operations;
 
 import com.basho.riak.client.core.FutureOperation;
+import com.basho.riak.client.core.OperationPriority;
 import com.basho.riak.client.core.RiakMessage;
+import com.basho.riak.client.core.StreamingResult;
 import com.basho.riak.client.util.BinaryValue;
 import com.basho.riak.client.util.RiakMessageCodes;
 import com.basho.riak.protobuf.RiakKvPB;
@@ -30,10 +32,40 @@ import java.util.concurrent.ExecutionException;
 public class ListKeysOperation extends FutureOperation<List<BinaryValue>, RiakKvPB.RpbListKeysResp>
 {
     private final RiakKvPB.RpbListKeysReq.Builder reqBuilder;
+    private final StreamingResult<BinaryValue> streamingResult;
     
     private ListKeysOperation(Builder builder)
     {
         this.reqBuilder = builder.reqBuilder;
+        setPriority(OperationPriority.BATCH);
+        if (builder.maxBufferedChunks > 0)
+        {
+            streamingResult = new StreamingResult<BinaryValue>(this, builder.maxBufferedChunks);
+            setStreamingResult(streamingResult, new ResponseStream<RiakKvPB.RpbListKeysResp>()
+            {
+                @Override
+                public void streamResponse(RiakKvPB.RpbListKeysResp message)
+                {
+                    List<BinaryValue> keys = new ArrayList<BinaryValue>(message.getKeysCount());
+                    addKeys(message, keys);
+                    streamingResult.offer(keys);
+                }
+            });
+        }
+        else
+        {
+            streamingResult = null;
+        }
+    }
+
+    /**
+     * Returns the keys as they arrive from Riak.
+     * @return the streaming result, or null if streaming was not requested.
+     * @see Builder#withStreaming(int) 
+     */
+    public StreamingResult<BinaryValue> getStreamingResult()
+    {
+        return streamingResult;
     }
 
     @Override
@@ -42,13 +74,18 @@ public class ListKeysOperation extends FutureOperation<List<BinaryValue>, RiakKv
         List<BinaryValue> keys = new ArrayList<BinaryValue>(rawResponse.size());
         for (RiakKvPB.RpbListKeysResp resp : rawResponse)
         {
-            for (ByteString bucket : resp.getKeysList())
-            {
-                keys.add(BinaryValue.unsafeCreate(bucket.toByteArray()));
-            }
+            addKeys(resp, keys);
         }
         return keys;
     }
+    
+    private void addKeys(RiakKvPB.RpbListKeysResp resp, List<BinaryValue> keys)
+    {
+        for (ByteString bucket : resp.getKeysList())
+        {
+            keys.add(BinaryValue.unsafeCreate(bucket.toByteArray()));
+        }
+    }
 
     @Override
     protected RiakMessage createChannelMessage()
@@ -80,6 +117,7 @@ public class ListKeysOperation extends FutureOperation<List<BinaryValue>, RiakKv
     {
         RiakKvPB.RpbListKeysReq.Builder reqBuilder =
             RiakKvPB.RpbListKeysReq.newBuilder();
+        int maxBufferedChunks;
         
         public Builder(BinaryValue bucketName)
         {
@@ -116,6 +154,24 @@ public class ListKeysOperation extends FutureOperation<List<BinaryValue>, RiakKv
             return this;
         }
         
+        /**
+         * Deliver keys through a {@link StreamingResult} as they arrive 
+         * rather than as a single list once all have been received.
+         * @param maxBufferedChunks the number of responses buffered before 
+         * reading from the connection is paused
+         * @return A reference to this object.
+         * @see ListKeysOperation#getStreamingResult() 
+         */
+        public Builder withStreaming(int maxBufferedChunks)
+        {
+            if (maxBufferedChunks < 1)
+            {
+                throw new IllegalArgumentException("maxBufferedChunks must be >= 1");
+            }
+            this.maxBufferedChunks = maxBufferedChunks;
+            return this;
+        }
+        
         public ListKeysOperation build()
         {
             return new ListKeysOperation(this);
@@ -16,7 +16,9 @@
 package com.basho.riak.client.core.operations;
 
 import com.basho.riak.client.core.FutureOperation;
+import com.basho.riak.client.core.OperationPriority;
 import com.basho.riak.client.core.RiakMessage;
+import com.basho.riak.client.core.StreamingResult;
 import com.basho.riak.client.util.BinaryValue;
 import com.basho.riak.client.util.RiakMessageCodes;
 import com.basho.riak.protobuf.RiakKvPB;
@@ -34,10 +36,43 @@ import java.util.concurrent.ExecutionException;
 public class MapReduceOperation extends FutureOperation<List<BinaryValue>, RiakKvPB.RpbMapRedResp>
 {
     private final RiakKvPB.RpbMapRedReq.Builder reqBuilder;
+    private final StreamingResult<BinaryValue> streamingResult;
     
     private MapReduceOperation(Builder builder)
     {
         this.reqBuilder = builder.reqBuilder;
+        setPriority(OperationPriority.BATCH);
+        if (builder.maxBufferedChunks > 0)
+        {
+            streamingResult = new StreamingResult<BinaryValue>(this, builder.maxBufferedChunks);
+            setStreamingResult(streamingResult, new ResponseStream<RiakKvPB.RpbMapRedResp>()
+            {
+                @Override
+                public void streamResponse(RiakKvPB.RpbMapRedResp message)
+                {
+                    if (message.hasResponse())
+                    {
+                        List<BinaryValue> results = new ArrayList<BinaryValue>(1);
+                        results.add(BinaryValue.create(message.getResponse().toByteArray()));
+                        streamingResult.offer(results);
+                    }
+                }
+            });
+        }
+        else
+        {
+            streamingResult = null;
+        }
+    }
+
+    /**
+     * Returns the phase results as they arrive from Riak.
+     * @return the streaming result, or null if streaming was not requested.
+     * @see Builder#withStreaming(int) 
+     */
+    public StreamingResult<BinaryValue> getStreamingResult()
+    {
+        return streamingResult;
     }
 
     @Override
@@ -85,6 +120,7 @@ public class MapReduceOperation extends FutureOperation<List<BinaryValue>, RiakK
     {
         private final RiakKvPB.RpbMapRedReq.Builder reqBuilder =
             RiakKvPB.RpbMapRedReq.newBuilder();
+        private int maxBufferedChunks;
         
         /**
      * Create a MapReduce operation builder with the given function.
@@ -110,6 +146,24 @@ public class MapReduceOperation extends FutureOperation<List<BinaryValue>, RiakK
         
         }
         
+        /**
+         * Deliver results through a {@link StreamingResult} as they 
+         * arrive rather than as a single list once the job completes.
+         * @param maxBufferedChunks the number of responses buffered before 
+         * reading from the connection is paused
+         * @return a reference to this object
+         * @see MapReduceOperation#getStreamingResult() 
+         */
+        public Builder withStreaming(int maxBufferedChunks)
+        {
+            if (maxBufferedChunks < 1)
+            {
+                throw new IllegalArgumentException("maxBufferedChunks must be >= 1");
+            }
+            this.maxBufferedChunks = maxBufferedChunks;
+            return this;
+        }
+        
         public MapReduceOperation build()
         {
             return new MapReduceOperation(this);
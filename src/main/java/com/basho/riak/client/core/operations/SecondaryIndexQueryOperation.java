@@ -16,7 +16,9 @@
 package com.basho.riak.client.core.operations;
 
 import com.basho.riak.client.core.FutureOperation;
+import com.basho.riak.client.core.OperationPriority;
 import com.basho.riak.client.core.RiakMessage;
+import com.basho.riak.client.core.StreamingResult;
 import com.basho.riak.client.util.BinaryValue;
 import com.basho.riak.client.util.RiakMessageCodes;
 import com.basho.riak.protobuf.RiakKvPB;
@@ -36,12 +38,51 @@ import java.util.concurrent.ExecutionException;
 public class SecondaryIndexQueryOperation extends FutureOperation<SecondaryIndexQueryOperation.Response, RiakKvPB.RpbIndexResp>
 {
     private final RiakKvPB.RpbIndexReq pbReq;
+    private final StreamingResult<Response.Entry> streamingResult;
+    private volatile BinaryValue streamedContinuation;
     
     private SecondaryIndexQueryOperation(Builder builder)
     {
         // Yo dawg, we don't ever not want to use streaming.
         builder.pbReqBuilder.setStream(true);
         this.pbReq = builder.pbReqBuilder.build();
+        setPriority(OperationPriority.BATCH);
+        if (builder.maxBufferedChunks > 0)
+        {
+            streamingResult = new StreamingResult<Response.Entry>(this, builder.maxBufferedChunks);
+            setStreamingResult(streamingResult, new ResponseStream<RiakKvPB.RpbIndexResp>()
+            {
+                @Override
+                public void streamResponse(RiakKvPB.RpbIndexResp message)
+                {
+                    List<Response.Entry> entries = new ArrayList<Response.Entry>();
+                    addEntries(message, entries);
+                    if (message.hasContinuation())
+                    {
+                        streamedContinuation = BinaryValue.unsafeCreate(message.getContinuation().toByteArray());
+                    }
+                    streamingResult.offer(entries);
+                }
+            });
+        }
+        else
+        {
+            streamingResult = null;
+        }
+    }
+
+    /**
+     * Returns the query results as they arrive from Riak.
+     * <p>
+     * When streaming, the Response returned by {@code get()} has no entries
+     * but does carry the continuation, if any.
+     * </p>
+     * @return the streaming result, or null if streaming was not requested.
+     * @see Builder#withStreaming(int) 
+     */
+    public StreamingResult<Response.Entry> getStreamingResult()
+    {
+        return streamingResult;
     }
 
     @Override
@@ -52,50 +93,59 @@ public class SecondaryIndexQueryOperation extends FutureOperation<SecondaryIndex
         
         for (RiakKvPB.RpbIndexResp pbEntry : rawResponse)
         {
-            /**
-             * The 2i API is inconsistent on the Riak side. If it's not 
-             * a range query, return_terms is ignored it only returns the 
-             * list of object keys and you have to have
-             * preserved the index key if you want to return it to the user
-             * with the results. 
-             */
+            addEntries(pbEntry, responseBuilder.entryList);
             
-            if (pbReq.getReturnTerms())
+            if (pbEntry.hasContinuation())
             {
-                if (pbReq.hasRangeMin())
-                {
-                    for (RpbPair pair : pbEntry.getResultsList())
-                    {
-                        responseBuilder.addEntry(new Response.Entry(BinaryValue.unsafeCreate(pair.getKey().toByteArray()), 
-                                                             BinaryValue.unsafeCreate(pair.getValue().toByteArray())));
-                    }
-                }
-                else
+                responseBuilder.withContinuation(BinaryValue.unsafeCreate(pbEntry.getContinuation().toByteArray()));
+            }
+        }
+        if (streamedContinuation != null)
+        {
+            responseBuilder.withContinuation(streamedContinuation);
+        }
+        return responseBuilder.build();
+    }
+    
+    private void addEntries(RiakKvPB.RpbIndexResp pbEntry, List<Response.Entry> entries)
+    {
+        /**
+         * The 2i API is inconsistent on the Riak side. If it's not 
+         * a range query, return_terms is ignored it only returns the 
+         * list of object keys and you have to have
+         * preserved the index key if you want to return it to the user
+         * with the results. 
+         */
+
+        if (pbReq.getReturnTerms())
+        {
+            if (pbReq.hasRangeMin())
+            {
+                for (RpbPair pair : pbEntry.getResultsList())
                 {
-                    for (ByteString objKey : pbEntry.getKeysList())
-                    {
-                        responseBuilder.addEntry(new Response.Entry(BinaryValue.unsafeCreate(pbReq.getKey().toByteArray()),
-                                                             BinaryValue.unsafeCreate(objKey.toByteArray())));
-                    }
+                    entries.add(new Response.Entry(BinaryValue.unsafeCreate(pair.getKey().toByteArray()), 
+                                                   BinaryValue.unsafeCreate(pair.getValue().toByteArray())));
                 }
             }
             else
             {
-                /**
-                 * If return_terms wasn't specified only the object keys are returned
-                 */
                 for (ByteString objKey : pbEntry.getKeysList())
                 {
-                    responseBuilder.addEntry(new Response.Entry(BinaryValue.unsafeCreate(objKey.toByteArray())));
+                    entries.add(new Response.Entry(BinaryValue.unsafeCreate(pbReq.getKey().toByteArray()),
+                                                   BinaryValue.unsafeCreate(objKey.toByteArray())));
                 }
             }
-            
-            if (pbEntry.hasContinuation())
+        }
+        else
+        {
+            /**
+             * If return_terms wasn't specified only the object keys are returned
+             */
+            for (ByteString objKey : pbEntry.getKeysList())
             {
-                responseBuilder.withContinuation(BinaryValue.unsafeCreate(pbEntry.getContinuation().toByteArray()));
+                entries.add(new Response.Entry(BinaryValue.unsafeCreate(objKey.toByteArray())));
             }
         }
-        return responseBuilder.build();
     }
 
     @Override
@@ -131,6 +181,7 @@ public class SecondaryIndexQueryOperation extends FutureOperation<SecondaryIndex
     public static class Builder
     {
         private final RiakKvPB.RpbIndexReq.Builder pbReqBuilder = RiakKvPB.RpbIndexReq.newBuilder();
+        private int maxBufferedChunks;
         
         /**
          * Constructs a builder using the supplied bucket name and index name. 
@@ -150,7 +201,6 @@ public class SecondaryIndexQueryOperation extends FutureOperation<SecondaryIndex
                 throw new IllegalArgumentException("Index name cannot be null or zero length");
             }
 
-
             pbReqBuilder.setBucket(ByteString.copyFrom(bucketName.unsafeGetValue()))
                         .setIndex(ByteString.copyFrom(indexName.unsafeGetValue()));
         }
@@ -275,6 +325,24 @@ public class SecondaryIndexQueryOperation extends FutureOperation<SecondaryIndex
             return this;
         }
         
+        /**
+         * Deliver results through a {@link StreamingResult} as they arrive 
+         * rather than in a single Response once all have been received.
+         * @param maxBufferedChunks the number of responses buffered before 
+         * reading from the connection is paused
+         * @return a reference to this object.
+         * @see SecondaryIndexQueryOperation#getStreamingResult() 
+         */
+        public Builder withStreaming(int maxBufferedChunks)
+        {
+            if (maxBufferedChunks < 1)
+            {
+                throw new IllegalArgumentException("maxBufferedChunks must be >= 1");
+            }
+            this.maxBufferedChunks = maxBufferedChunks;
+            return this;
+        }
+        
         /**
          * Construct a new SecondaryIndexQueryOperation.
          * @return a SecondaryIndexQueryOperation
@@ -96,6 +96,24 @@ public class StoreOperation extends FutureOperation<StoreOperation.Response, Ria
         }
     }
 
+    @Override
+    public int getPayloadSize()
+    {
+        return reqBuilder.hasContent() ? reqBuilder.getContent().getValue().size() : 0;
+    }
+
+    @Override
+    public byte[] getRoutingKey()
+    {
+        if (!reqBuilder.hasKey())
+        {
+            return null;
+        }
+        return createRoutingKey(reqBuilder.getType().toByteArray(),
+                                reqBuilder.getBucket().toByteArray(),
+                                reqBuilder.getKey().toByteArray());
+    }
+
     @Override
     protected RiakMessage createChannelMessage()
     {
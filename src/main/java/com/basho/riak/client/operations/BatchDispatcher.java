@@ -0,0 +1,243 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.core.DefaultRiakFuture;
+import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.core.RiakFutureListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a command for each item of a batch, keeping a bounded number in 
+ * flight.
+ * <p>
+ * As each command completes the next item is started, so the window stays 
+ * full until the items run out. A failed command is recorded as that 
+ * item's entry rather than failing the batch. Once every item has an 
+ * entry this future completes with a response built from the entries in 
+ * item order.
+ * </p>
+ * <p>
+ * If {@link #abortCause(Object)} returns a cause for an entry, this future 
+ * fails with it immediately and no more items are started.
+ * </p>
+ * <p>
+ * With a {@link RateLimiter}, starts that would exceed the rate are 
+ * delayed on the cluster's executor rather than blocking the completing 
+ * thread.
+ * </p>
+ *
+ * @param <I> the item type
+ * @param <V> the result of the command run for an item
+ * @param <E> the per item entry
+ * @param <R> the response built from all the entries
+ * @since 2.0
+ */
+abstract class BatchDispatcher<I, V, E, R> extends DefaultRiakFuture<R>
+{
+    private static final Logger logger = LoggerFactory.getLogger(BatchDispatcher.class);
+    private final RiakCluster cluster;
+    private final List<I> items;
+    private final int window;
+    private final RateLimiter rateLimiter;
+    private final AtomicReferenceArray<E> entries;
+    private final AtomicInteger remaining;
+    // Dispatch requests; only the thread that takes it from 0 dispatches
+    private final AtomicInteger pendingDispatches = new AtomicInteger();
+    private int nextItem;
+
+    BatchDispatcher(RiakCluster cluster, List<I> items, int window, RateLimiter rateLimiter)
+    {
+        this.cluster = cluster;
+        this.items = items;
+        this.window = window;
+        this.rateLimiter = rateLimiter;
+        this.entries = new AtomicReferenceArray<E>(items.size());
+        this.remaining = new AtomicInteger(items.size());
+    }
+
+    /**
+     * Starts the command for an item.
+     */
+    abstract RiakFuture<V> execute(RiakCluster cluster, I item);
+
+    /**
+     * Creates the entry for an item; exactly one of value and cause is set.
+     */
+    abstract E createEntry(I item, V value, Throwable cause);
+
+    /**
+     * Creates the response from the entries, in item order.
+     */
+    abstract R createResponse(List<E> entries);
+
+    /**
+     * Returns the cause to fail the whole batch with when an entry is 
+     * created, or null to carry on.
+     */
+    Throwable abortCause(E entry)
+    {
+        return null;
+    }
+
+    /**
+     * Called as each entry is created, in completion order. A 
+     * RuntimeException thrown from here is logged and otherwise ignored.
+     */
+    void entryCompleted(E entry)
+    {
+    }
+
+    BatchDispatcher<I, V, E, R> start()
+    {
+        if (items.isEmpty())
+        {
+            setResponse(createResponse(new ArrayList<E>(0)));
+            return this;
+        }
+        requestDispatch(Math.min(window, items.size()));
+        return this;
+    }
+
+    /**
+     * Dispatches items without recursing when commands complete on the 
+     * calling thread; a completion during the loop adds to its count.
+     */
+    private void requestDispatch(int count)
+    {
+        if (pendingDispatches.getAndAdd(count) != 0)
+        {
+            return;
+        }
+        do
+        {
+            if (nextItem < items.size() && !isDone())
+            {
+                schedule(nextItem++);
+            }
+        }
+        while (pendingDispatches.decrementAndGet() != 0);
+    }
+
+    private void schedule(final int index)
+    {
+        long delay = rateLimiter == null ? 0 : rateLimiter.reserve();
+        if (delay > 0)
+        {
+            try
+            {
+                cluster.getExecutor().schedule(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        dispatch(index);
+                    }
+                }, delay, TimeUnit.NANOSECONDS);
+                return;
+            }
+            catch (RejectedExecutionException ex)
+            {
+                complete(index, createEntry(items.get(index), null, ex));
+                return;
+            }
+        }
+        dispatch(index);
+    }
+
+    private void dispatch(final int index)
+    {
+        final I item = items.get(index);
+        RiakFuture<V> f;
+        try
+        {
+            f = execute(cluster, item);
+        }
+        catch (RuntimeException ex)
+        {
+            complete(index, createEntry(item, null, ex));
+            return;
+        }
+        f.addListener(new RiakFutureListener<V>()
+        {
+            @Override
+            public void handle(RiakFuture<V> f)
+            {
+                complete(index, entry(item, f));
+            }
+        });
+    }
+
+    private E entry(I item, RiakFuture<V> f)
+    {
+        try
+        {
+            return createEntry(item, f.get(), null);
+        }
+        catch (ExecutionException ex)
+        {
+            return createEntry(item, null, ex.getCause());
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            return createEntry(item, null, ex);
+        }
+    }
+
+    private void complete(int index, E entry)
+    {
+        entries.set(index, entry);
+        try
+        {
+            entryCompleted(entry);
+        }
+        catch (RuntimeException ex)
+        {
+            // Must not stop the batch from completing or dispatching
+            logger.error("Exception thrown handling completed entry", ex);
+        }
+        Throwable abort = abortCause(entry);
+        if (abort != null)
+        {
+            setException(abort);
+            return;
+        }
+        if (remaining.decrementAndGet() == 0)
+        {
+            List<E> ordered = new ArrayList<E>(entries.length());
+            for (int i = 0; i < entries.length(); i++)
+            {
+                ordered.add(entries.get(i));
+            }
+            setResponse(createResponse(ordered));
+        }
+        else
+        {
+            requestDispatch(1);
+        }
+    }
+}
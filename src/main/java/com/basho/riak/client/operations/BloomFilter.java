@@ -0,0 +1,123 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.util.BinaryValue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter over keys, safe for concurrent use.
+ * <p>
+ * Sized for an expected number of keys and false positive probability; 
+ * adding more keys than expected raises the false positive rate.
+ * </p>
+ *
+ * @since 2.0
+ */
+class BloomFilter
+{
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final AtomicLong keyCount = new AtomicLong();
+
+    BloomFilter(long expectedKeys, double falsePositiveProbability)
+    {
+        long n = Math.max(1, expectedKeys);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        // Whole words, and no more than an int's worth of them
+        long words = Math.min(Integer.MAX_VALUE, Math.max(1, (m + 63) >>> 6));
+        this.bits = new AtomicLongArray((int) words);
+        this.bitCount = words << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    void put(BinaryValue key)
+    {
+        long hash = hash(key);
+        long step = Long.rotateLeft(hash, 32) | 1;
+        for (int i = 1; i <= hashCount; i++)
+        {
+            long bit = index(hash + i * step);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            while (true)
+            {
+                long current = bits.get(word);
+                if ((current & mask) != 0 || bits.compareAndSet(word, current, current | mask))
+                {
+                    break;
+                }
+            }
+        }
+        keyCount.incrementAndGet();
+    }
+
+    boolean mightContain(BinaryValue key)
+    {
+        long hash = hash(key);
+        long step = Long.rotateLeft(hash, 32) | 1;
+        for (int i = 1; i <= hashCount; i++)
+        {
+            long bit = index(hash + i * step);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of keys added, counting repeats.
+     */
+    long getKeyCount()
+    {
+        return keyCount.get();
+    }
+
+    /**
+     * @return the size of the filter in bytes.
+     */
+    long getSizeBytes()
+    {
+        return bitCount >>> 3;
+    }
+
+    private long index(long combined)
+    {
+        return (combined & Long.MAX_VALUE) % bitCount;
+    }
+
+    // FNV-1a, finished with the MurmurHash3 mixer to spread both halves
+    private static long hash(BinaryValue key)
+    {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.unsafeGetValue())
+        {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.core.DefaultRiakFuture;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.core.RiakFutureListener;
+import com.basho.riak.client.query.BucketProperties;
+import com.basho.riak.client.util.BinaryValue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process cache of {@link FetchBucketProperties} results, keyed by 
+ * bucket type and bucket.
+ * <p>
+ * Used by a {@link RiakClient} built with 
+ * {@link RiakClient.Builder#withBucketPropertiesCache(BucketPropertiesCache)}. 
+ * Fetches of a bucket's properties made through that client are answered 
+ * from the cache for the TTL; concurrent fetches of a bucket that isn't 
+ * cached share one round trip. 
+ * </p>
+ * <p>
+ * {@link StoreBucketProperties} and {@link ResetBucketProperties} made 
+ * through the same client invalidate the bucket before they are sent and 
+ * again when they complete, and a fetch that was in flight across one of 
+ * them isn't cached. Changes made by other clients are only seen once the 
+ * entry expires.
+ * </p>
+ * <p>
+ * Code that needs a bucket's properties but mustn't wait for them, such as 
+ * choosing how to write, can use {@link #getIfPresent(Location)}. The 
+ * client uses the cache to run {@link UpdateValue}s that ignore the 
+ * original value as blind writes on buckets that allow them.
+ * </p>
+ *
+ * @since 2.0
+ */
+public class BucketPropertiesCache
+{
+    private final long ttlNanos;
+
+    // Keyed by bucket type and name
+    private final ConcurrentHashMap<List<BinaryValue>, Entry> entries =
+        new ConcurrentHashMap<List<BinaryValue>, Entry>();
+    private final WriteStamps written = new WriteStamps();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+    private final AtomicLong blindWriteCount = new AtomicLong();
+
+    BucketPropertiesCache(Builder builder)
+    {
+        this.ttlNanos = builder.ttlNanos;
+    }
+
+    /**
+     * Executes a command through the cache.
+     */
+    @SuppressWarnings("unchecked")
+    <T> RiakFuture<T> execute(RiakCommand<T> command, CommandExecutor next)
+    {
+        if (command instanceof FetchBucketProperties)
+        {
+            FetchBucketProperties fetch = (FetchBucketProperties) command;
+            return (RiakFuture<T>) get(fetch.getLocation(), fetch, next);
+        }
+        if (command instanceof UpdateValue && ((UpdateValue<?>) command).dependsOnBucketProperties())
+        {
+            return update((UpdateValue<?>) command, next);
+        }
+        Location bucket = null;
+        if (command instanceof StoreBucketProperties)
+        {
+            bucket = ((StoreBucketProperties) command).getLocation();
+        }
+        else if (command instanceof ResetBucketProperties)
+        {
+            bucket = ((ResetBucketProperties) command).getLocation();
+        }
+        if (bucket != null)
+        {
+            return write(command, bucket, next);
+        }
+        return next.execute(command);
+    }
+
+    private <T> RiakFuture<T> write(RiakCommand<T> command, final Location bucket, CommandExecutor next)
+    {
+        invalidate(bucket);
+        RiakFuture<T> future = next.execute(command);
+        future.addListener(new RiakFutureListener<T>()
+        {
+            @Override
+            public void handle(RiakFuture<T> f)
+            {
+                // Also drops fetches that overlapped the write
+                invalidate(bucket);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Runs an update that ignores the original value as a blind write if 
+     * the bucket's properties allow it, fetching them first if needed.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> RiakFuture<T> update(final UpdateValue<?> update, final CommandExecutor next)
+    {
+        Location bucket = update.getLocation();
+        BucketProperties properties = getIfPresent(bucket);
+        if (properties != null)
+        {
+            hitCount.incrementAndGet();
+            return (RiakFuture<T>) next.execute(decide(update, properties));
+        }
+        CoreFutureAdapter<T, BucketProperties> future = new ChainedFutureAdapter<T, BucketProperties>()
+        {
+            @Override
+            void onResponse(BucketProperties properties)
+            {
+                completeFrom((RiakFuture<T>) next.execute(decide(update, properties)));
+            }
+
+            @Override
+            void onFailure(Throwable cause)
+            {
+                // Fall back to fetching the object
+                onResponse(null);
+            }
+        };
+        return future.listenTo(get(bucket, next));
+    }
+
+    private UpdateValue<?> decide(UpdateValue<?> update, BucketProperties properties)
+    {
+        boolean blind = properties != null && UpdateValue.allowsBlindWrites(properties);
+        if (blind)
+        {
+            blindWriteCount.incrementAndGet();
+        }
+        return update.withBlindWrite(blind);
+    }
+
+    /**
+     * Returns a bucket's properties, fetching them through next if they 
+     * aren't cached.
+     */
+    RiakFuture<BucketProperties> get(Location bucket, CommandExecutor next)
+    {
+        return get(bucket, new FetchBucketProperties.Builder(bucket).build(), next);
+    }
+
+    private RiakFuture<BucketProperties> get(final Location bucket, FetchBucketProperties fetch, CommandExecutor next)
+    {
+        final List<BinaryValue> id = bucketOf(bucket);
+        while (true)
+        {
+            Entry entry = entries.get(id);
+            if (entry != null)
+            {
+                if (System.nanoTime() - entry.createdNanos < ttlNanos)
+                {
+                    hitCount.incrementAndGet();
+                    return entry.future;
+                }
+                entries.remove(id, entry);
+            }
+            final Entry loading = new Entry();
+            if (entries.putIfAbsent(id, loading) != null)
+            {
+                continue;
+            }
+            missCount.incrementAndGet();
+            final long started = written.current();
+            RiakFuture<BucketProperties> future;
+            try
+            {
+                future = next.execute(fetch);
+            }
+            catch (RuntimeException ex)
+            {
+                // e.g. the cluster isn't running; fail anyone who joined
+                entries.remove(id, loading);
+                loading.future.setException(ex);
+                throw ex;
+            }
+            future.addListener(new RiakFutureListener<BucketProperties>()
+            {
+                @Override
+                public void handle(RiakFuture<BucketProperties> f)
+                {
+                    BucketProperties properties;
+                    try
+                    {
+                        properties = f.get();
+                    }
+                    catch (ExecutionException ex)
+                    {
+                        entries.remove(id, loading);
+                        loading.future.setException(ex.getCause());
+                        return;
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        Thread.currentThread().interrupt();
+                        entries.remove(id, loading);
+                        loading.future.setException(ex);
+                        return;
+                    }
+                    if (written.writtenSince(bucket, started))
+                    {
+                        entries.remove(id, loading);
+                    }
+                    else
+                    {
+                        loading.properties = properties;
+                    }
+                    loading.future.setResponse(properties);
+                }
+            });
+            return loading.future;
+        }
+    }
+
+    /**
+     * Returns a bucket's properties if they are cached, without fetching them.
+     * @param bucket the bucket, and its type if it has one
+     * @return the properties, or null if they aren't cached, have expired 
+     * or are still being fetched.
+     */
+    public BucketProperties getIfPresent(Location bucket)
+    {
+        Entry entry = entries.get(bucketOf(bucket));
+        if (entry == null || System.nanoTime() - entry.createdNanos >= ttlNanos)
+        {
+            return null;
+        }
+        return entry.properties;
+    }
+
+    /**
+     * Removes a bucket's properties.
+     * <p>
+     * Fetches of them already in flight won't cache their result.
+     * </p>
+     * @param bucket the bucket, and its type if it has one
+     */
+    public void invalidate(Location bucket)
+    {
+        written.stamp(bucket);
+        entries.remove(bucketOf(bucket));
+        invalidationCount.incrementAndGet();
+    }
+
+    /**
+     * Removes every bucket's properties.
+     */
+    public void invalidateAll()
+    {
+        written.stampAll();
+        entries.clear();
+        invalidationCount.incrementAndGet();
+    }
+
+    private static List<BinaryValue> bucketOf(Location location)
+    {
+        return Arrays.asList(location.getType(), location.getBucket());
+    }
+
+    /**
+     * @return the number of fetches answered from the cache, including 
+     * those that joined a fetch in flight.
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of fetches that went to Riak.
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of invalidations, including those made by writes.
+     */
+    public long getInvalidationCount()
+    {
+        return invalidationCount.get();
+    }
+
+    /**
+     * @return the number of updates stored without a fetch because their 
+     * bucket's properties allowed it.
+     */
+    public long getBlindWriteCount()
+    {
+        return blindWriteCount.get();
+    }
+
+    /**
+     * @return the number of buckets cached or being fetched.
+     */
+    public int getEntryCount()
+    {
+        return entries.size();
+    }
+
+    private static class Entry
+    {
+        final DefaultRiakFuture<BucketProperties> future = new DefaultRiakFuture<BucketProperties>();
+        final long createdNanos = System.nanoTime();
+        // Set once the fetch succeeds
+        volatile BucketProperties properties;
+    }
+
+    public static class Builder
+    {
+        /**
+         * The default time properties are served from the cache: {@value #DEFAULT_TTL_MILLIS}ms
+         */
+        public final static long DEFAULT_TTL_MILLIS = 60000;
+
+        private long ttlNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TTL_MILLIS);
+
+        public Builder()
+        {
+        }
+
+        /**
+         * Set how long properties are served from the cache.
+         * @param ttl the time to live
+         * @param unit the unit for ttl
+         * @return this
+         * @see #DEFAULT_TTL_MILLIS
+         */
+        public Builder withTtl(long ttl, TimeUnit unit)
+        {
+            if (ttl <= 0)
+            {
+                throw new IllegalArgumentException("TTL must be positive");
+            }
+            this.ttlNanos = unit.toNanos(ttl);
+            return this;
+        }
+
+        public BucketPropertiesCache build()
+        {
+            return new BucketPropertiesCache(this);
+        }
+    }
+}
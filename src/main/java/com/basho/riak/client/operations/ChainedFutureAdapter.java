@@ -0,0 +1,46 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A {@link CoreFutureAdapter} for a command with further steps. The core 
+ * result isn't converted; it starts the next step, and this future is 
+ * completed from that.
+ *
+ * @param <T> the command's result type
+ * @param <U> the core future's result type
+ * @since 2.0
+ * @see #completeFrom(com.basho.riak.client.core.RiakFuture) 
+ */
+abstract class ChainedFutureAdapter<T, U> extends CoreFutureAdapter<T, U>
+{
+    /**
+     * Called with the core result to start the next step.
+     * @param coreResponse the core result
+     * @throws ExecutionException to fail this future
+     */
+    @Override
+    abstract void onResponse(U coreResponse) throws ExecutionException;
+
+    // Never called; onResponse completes this future
+    @Override
+    final T convertResponse(U coreResponse)
+    {
+        throw new IllegalStateException();
+    }
+}
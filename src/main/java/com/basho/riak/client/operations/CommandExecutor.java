@@ -0,0 +1,29 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.core.RiakFuture;
+
+/**
+ * Starts commands; lets client side layers such as {@link NotFoundCache} 
+ * pass commands on to the layers beneath them.
+ *
+ * @since 2.0
+ */
+interface CommandExecutor
+{
+    <T> RiakFuture<T> execute(RiakCommand<T> command);
+}
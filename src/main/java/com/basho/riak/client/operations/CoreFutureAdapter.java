@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.core.DefaultRiakFuture;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.core.RiakFutureListener;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Completes a command's future from the future of the core operation (or
+ * command) it runs, converting the result.
+ * <p>
+ * The conversion runs on the thread that completed the core future, usually
+ * a Netty I/O thread; it must not block.
+ * </p>
+ *
+ * @param <T> the command's result type
+ * @param <U> the core future's result type
+ * @since 2.0
+ */
+abstract class CoreFutureAdapter<T, U> extends DefaultRiakFuture<T> implements RiakFutureListener<U>
+{
+    /**
+     * Starts listening to the core future. Not done in the constructor so 
+     * that an already completed future doesn't call into a subclass before 
+     * it has been initialized.
+     * @param coreFuture the future to convert
+     * @return this
+     */
+    CoreFutureAdapter<T, U> listenTo(RiakFuture<U> coreFuture)
+    {
+        coreFuture.addListener(this);
+        return this;
+    }
+    
+    @Override
+    public void handle(RiakFuture<U> f)
+    {
+        try
+        {
+            U coreResponse;
+            try
+            {
+                coreResponse = f.get();
+            }
+            catch (ExecutionException ex)
+            {
+                onFailure(ex.getCause());
+                return;
+            }
+            onResponse(coreResponse);
+        }
+        catch (InterruptedException ex)
+        {
+            // The future is complete; get() doesn't wait.
+            Thread.currentThread().interrupt();
+            setException(ex);
+        }
+        catch (ExecutionException ex)
+        {
+            // e.g. an UnresolvedConflictException from a resolver
+            setException(ex);
+        }
+        catch (RuntimeException ex)
+        {
+            setException(ex);
+        }
+    }
+    
+    /**
+     * Called with the core result. Converts it and completes this future; 
+     * commands with further steps use a {@link ChainedFutureAdapter} 
+     * instead.
+     * @param coreResponse the core result
+     * @throws ExecutionException to fail this future
+     */
+    void onResponse(U coreResponse) throws ExecutionException
+    {
+        setResponse(convertResponse(coreResponse));
+    }
+    
+    /**
+     * Called with the cause if the core future failed. The default fails 
+     * this future with it.
+     * @param cause the core failure
+     * @throws ExecutionException to fail this future
+     */
+    void onFailure(Throwable cause) throws ExecutionException
+    {
+        setException(cause);
+    }
+    
+    /**
+     * Converts the core result.
+     * @param coreResponse the core result
+     * @return the command's result
+     * @throws ExecutionException to fail this future
+     */
+    abstract T convertResponse(U coreResponse) throws ExecutionException;
+    
+    /**
+     * Completes this future with the outcome of another.
+     * @param next the future whose result or failure this one takes
+     */
+    void completeFrom(RiakFuture<T> next)
+    {
+        next.addListener(new RiakFutureListener<T>()
+        {
+            @Override
+            public void handle(RiakFuture<T> f)
+            {
+                try
+                {
+                    setResponse(f.get());
+                }
+                catch (ExecutionException ex)
+                {
+                    setException(ex.getCause());
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                    setException(ex);
+                }
+            }
+        });
+    }
+}
@@ -1,10 +1,9 @@
 package com.basho.riak.client.operations;
 
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
 import com.basho.riak.client.core.operations.YzDeleteIndexOperation;
 
-import java.util.concurrent.ExecutionException;
-
 public class DeleteSearchIndex extends RiakCommand<Boolean>
 {
 	private final String index;
@@ -15,10 +14,10 @@ public class DeleteSearchIndex extends RiakCommand<Boolean>
 	}
 
 	@Override
-	Boolean execute(RiakCluster cluster) throws ExecutionException, InterruptedException
+	RiakFuture<Boolean> executeAsync(RiakCluster cluster)
 	{
 		YzDeleteIndexOperation operation = new YzDeleteIndexOperation.Builder(index).build();
-		return cluster.execute(operation).get();
+		return cluster.execute(operation);
 	}
 
 	public static class Builder
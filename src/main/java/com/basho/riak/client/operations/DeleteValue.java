@@ -18,6 +18,7 @@ package com.basho.riak.client.operations;
 import com.basho.riak.client.cap.Quorum;
 import com.basho.riak.client.cap.VClock;
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
 import com.basho.riak.client.core.operations.DeleteOperation;
 
 import java.util.HashMap;
@@ -42,8 +43,13 @@ public class DeleteValue extends RiakCommand<DeleteValue.Response>
         this.vClock = builder.vClock;
     }
 
+    Location getLocation()
+    {
+        return location;
+    }
+
     @Override
-    public Response execute(RiakCluster cluster) throws ExecutionException, InterruptedException
+    public RiakFuture<Response> executeAsync(RiakCluster cluster)
     {
 
         DeleteOperation.Builder builder = new DeleteOperation.Builder(location.getBucket(), location.getKey());
@@ -102,9 +108,16 @@ public class DeleteValue extends RiakCommand<DeleteValue.Response>
         }
 
         DeleteOperation operation = builder.build();
-        cluster.execute(operation).get();
-
-        return new Response(true);
+        CoreFutureAdapter<Response, Boolean> future =
+            new CoreFutureAdapter<Response, Boolean>()
+            {
+                @Override
+                Response convertResponse(Boolean deleted) throws ExecutionException
+                {
+                    return new Response(true);
+                }
+            };
+        return future.listenTo(cluster.execute(operation));
 
     }
 
@@ -1,11 +1,10 @@
 package com.basho.riak.client.operations;
 
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
 import com.basho.riak.client.core.operations.FetchBucketPropsOperation;
 import com.basho.riak.client.query.BucketProperties;
 
-import java.util.concurrent.ExecutionException;
-
 public class FetchBucketProperties extends RiakCommand<BucketProperties>
 {
 
@@ -16,8 +15,13 @@ public class FetchBucketProperties extends RiakCommand<BucketProperties>
 		this.location = builder.location;
 	}
 
+	Location getLocation()
+	{
+		return location;
+	}
+
 	@Override
-	BucketProperties execute(RiakCluster cluster) throws ExecutionException, InterruptedException
+	RiakFuture<BucketProperties> executeAsync(RiakCluster cluster)
 	{
 		FetchBucketPropsOperation.Builder operation = new FetchBucketPropsOperation.Builder(location.getBucket());
 
@@ -26,7 +30,7 @@ public class FetchBucketProperties extends RiakCommand<BucketProperties>
 			operation.withBucketType(location.getType());
 		}
 
-		return cluster.execute(operation.build()).get();
+		return cluster.execute(operation.build());
 	}
 
 	public static class Builder
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.core.DefaultRiakFuture;
+import com.basho.riak.client.core.FutureOperation;
+import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.core.RiakFutureListener;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares one in-flight fetch between concurrent identical fetches.
+ * <p>
+ * A {@link FetchValue} or {@link FetchDatatype} given a coalescer first 
+ * looks for a fetch of the same location with equal options that is still 
+ * waiting for Riak. If there is one, it takes that fetch's result instead 
+ * of sending its own request; otherwise its request becomes the one later 
+ * fetches join. Once a fetch completes it is no longer joined, so a result 
+ * is never older than the request that produced it.
+ * </p>
+ * <p>
+ * Each caller converts the shared result with its own converter, but with 
+ * the default pass-through converter the {@link com.basho.riak.client.query.RiakObject}s 
+ * are shared between the callers and should be treated as read only. 
+ * Conditional fetches, those with {@link FetchOption#IF_MODIFIED}, are 
+ * never coalesced since their result depends on the caller's vclock. A 
+ * joined fetch runs with the priority and deadline of the fetch that 
+ * started it.
+ * </p>
+ *
+ * @since 2.0
+ * @see FetchValue.Builder#withCoalescer(FetchCoalescer)
+ * @see FetchDatatype#withCoalescer(FetchCoalescer)
+ */
+public class FetchCoalescer
+{
+    private final ConcurrentMap<Object, RiakFuture<?>> inFlight =
+        new ConcurrentHashMap<Object, RiakFuture<?>>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * Executes the operation unless an operation with the same key is in 
+     * flight, in which case that operation's future is returned.
+     * @param key identifies equivalent operations
+     * @param cluster the cluster to execute on
+     * @param operation the operation to execute if none is in flight
+     * @return the future for the operation that will provide the result
+     */
+    @SuppressWarnings("unchecked")
+    <V> RiakFuture<V> execute(final Object key, RiakCluster cluster, FutureOperation<V, ?> operation)
+    {
+        requestCount.incrementAndGet();
+        final DefaultRiakFuture<V> shared = new DefaultRiakFuture<V>();
+        RiakFuture<?> existing = inFlight.putIfAbsent(key, shared);
+        if (existing != null)
+        {
+            coalescedCount.incrementAndGet();
+            return (RiakFuture<V>) existing;
+        }
+        RiakFuture<V> future;
+        try
+        {
+            future = cluster.execute(operation);
+        }
+        catch (RuntimeException ex)
+        {
+            // e.g. the cluster isn't running; fail anyone who joined
+            inFlight.remove(key, shared);
+            shared.setException(ex);
+            throw ex;
+        }
+        future.addListener(new RiakFutureListener<V>()
+        {
+            @Override
+            public void handle(RiakFuture<V> f)
+            {
+                // No longer joinable before anyone sees the result
+                inFlight.remove(key, shared);
+                try
+                {
+                    shared.setResponse(f.get());
+                }
+                catch (ExecutionException ex)
+                {
+                    shared.setException(ex.getCause());
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                    shared.setException(ex);
+                }
+            }
+        });
+        return shared;
+    }
+
+    /**
+     * Returns the number of fetches made through this coalescer.
+     * @return the number of fetches
+     */
+    public long getRequestCount()
+    {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the number of fetches that joined one already in flight.
+     * @return the number of fetches that sent no request
+     */
+    public long getCoalescedCount()
+    {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Returns the fraction of fetches that joined one already in flight.
+     * @return between 0 and 1; 0 if there have been no fetches.
+     */
+    public double getCoalescingRatio()
+    {
+        long requests = requestCount.get();
+        return requests == 0 ? 0 : (double) coalescedCount.get() / requests;
+    }
+
+    /**
+     * Returns the number of distinct fetches currently in flight.
+     * @return the number of fetches that can be joined
+     */
+    public int getInFlightCount()
+    {
+        return inFlight.size();
+    }
+}
@@ -17,6 +17,7 @@ package com.basho.riak.client.operations;
 
 import com.basho.riak.client.cap.Quorum;
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
 import com.basho.riak.client.core.operations.DtFetchOperation;
 import com.basho.riak.client.operations.datatypes.DatatypeConverter;
 import com.basho.riak.client.operations.datatypes.RiakCounter;
@@ -26,6 +27,7 @@ import com.basho.riak.client.operations.datatypes.RiakSet;
 import com.basho.riak.client.query.crdt.types.CrdtElement;
 import com.basho.riak.client.util.BinaryValue;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -36,6 +38,7 @@ public class FetchDatatype<T extends RiakDatatype> extends RiakCommand<FetchData
     private final Location location;
     private final DatatypeConverter<T> converter;
     private final Map<DtFetchOption<?>, Object> options = new HashMap<DtFetchOption<?>, Object>();
+    private FetchCoalescer coalescer;
 
     public FetchDatatype(Location location, DatatypeConverter<T> converter)
     {
@@ -65,8 +68,20 @@ public class FetchDatatype<T extends RiakDatatype> extends RiakCommand<FetchData
         return this;
     }
 
+    /**
+     * Share this fetch with identical fetches already in flight.
+     * @param coalescer the coalescer shared by the fetches to combine
+     * @return this
+     * @see FetchCoalescer
+     */
+    public FetchDatatype<T> withCoalescer(FetchCoalescer coalescer)
+    {
+        this.coalescer = coalescer;
+        return this;
+    }
+
     @Override
-    public Response<T> execute(RiakCluster cluster) throws ExecutionException, InterruptedException
+    public RiakFuture<Response<T>> executeAsync(RiakCluster cluster)
     {
         DtFetchOperation.Builder builder = new DtFetchOperation.Builder(location.getBucket(), location.getKey());
 
@@ -113,13 +128,26 @@ public class FetchDatatype<T extends RiakDatatype> extends RiakCommand<FetchData
 
         DtFetchOperation operation = builder.build();
 
-        DtFetchOperation.Response response = cluster.execute(operation).get();
-        CrdtElement element = response.getCrdtElement();
-        BinaryValue context = response.getContext();
-
-        T datatype = converter.convert(element);
-
-        return new Response<T>(datatype, context.getValue());
+        CoreFutureAdapter<Response<T>, DtFetchOperation.Response> future =
+            new CoreFutureAdapter<Response<T>, DtFetchOperation.Response>()
+            {
+                @Override
+                Response<T> convertResponse(DtFetchOperation.Response response) throws ExecutionException
+                {
+                    CrdtElement element = response.getCrdtElement();
+                    BinaryValue context = response.getContext();
+
+                    T datatype = converter.convert(element);
+
+                    return new Response<T>(datatype, context.getValue());
+                }
+            };
+        if (coalescer != null)
+        {
+            Object key = Arrays.asList(DtFetchOperation.class, location, new HashMap<DtFetchOption<?>, Object>(options));
+            return future.listenTo(coalescer.execute(key, cluster, operation));
+        }
+        return future.listenTo(cluster.execute(operation));
 
     }
 
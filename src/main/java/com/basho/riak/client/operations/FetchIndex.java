@@ -15,7 +15,10 @@
  */
 package com.basho.riak.client.operations;
 
+import com.basho.riak.client.core.DefaultRiakFuture;
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.core.StreamingResult;
 import com.basho.riak.client.core.operations.SecondaryIndexQueryOperation;
 import com.basho.riak.client.util.BinaryValue;
 
@@ -32,6 +35,7 @@ public class FetchIndex<T> extends RiakCommand<FetchIndex.Response<T>>
     private final Map<IndexOption<?>, Object> options = new HashMap<IndexOption<?>, Object>();
     private final Index<T> index;
     private final BinaryValue continuation;
+    private final int maxBufferedChunks;
 
     FetchIndex(Builder<T> builder)
     {
@@ -39,10 +43,11 @@ public class FetchIndex<T> extends RiakCommand<FetchIndex.Response<T>>
         this.op = builder.op;
         this.index = builder.index;
         this.continuation = builder.continuation;
+        this.maxBufferedChunks = builder.maxBufferedChunks;
     }
 
     @Override
-    public Response<T> execute(RiakCluster cluster) throws ExecutionException, InterruptedException
+    public RiakFuture<Response<T>> executeAsync(RiakCluster cluster)
     {
 
         BinaryValue indexName = BinaryValue.create(index.getFullName());
@@ -71,28 +76,77 @@ public class FetchIndex<T> extends RiakCommand<FetchIndex.Response<T>>
             builder.withContinuation(continuation);
         }
 
+        if (maxBufferedChunks > 0)
+        {
+            builder.withStreaming(maxBufferedChunks);
+            SecondaryIndexQueryOperation operation = builder.build();
+            cluster.execute(operation);
+            // The entries are consumed as they arrive; failures surface from the iterator
+            DefaultRiakFuture<Response<T>> future = new DefaultRiakFuture<Response<T>>();
+            future.setResponse(new Response<T>(new StreamItr(operation.getStreamingResult()), operation));
+            return future;
+        }
+
         SecondaryIndexQueryOperation operation = builder.build();
-        cluster.execute(operation);
+        CoreFutureAdapter<Response<T>, SecondaryIndexQueryOperation.Response> future =
+            new CoreFutureAdapter<Response<T>, SecondaryIndexQueryOperation.Response>()
+            {
+                @Override
+                Response<T> convertResponse(SecondaryIndexQueryOperation.Response opResponse) throws ExecutionException
+                {
+                    ArrayList<IndexEntry<T>> indexEntries = new ArrayList<IndexEntry<T>>(opResponse.getEntryList().size());
+
+                    for (SecondaryIndexQueryOperation.Response.Entry entry : opResponse.getEntryList())
+                    {
+                        indexEntries.add(toIndexEntry(entry));
+                    }
+
+                    byte[] continuation = null;
+                    if (opResponse.hasContinuation())
+                    {
+                        continuation = opResponse.getContinuation().getValue();
+                    }
+
+                    return new Response<T>(continuation, indexEntries);
+                }
+            };
+        return future.listenTo(cluster.execute(operation));
 
-        SecondaryIndexQueryOperation.Response opResponse = operation.get();
+    }
 
-        ArrayList<IndexEntry<T>> indexEntries = new ArrayList<IndexEntry<T>>(opResponse.getEntryList().size());
+    private IndexEntry<T> toIndexEntry(SecondaryIndexQueryOperation.Response.Entry entry)
+    {
+        Location key = new Location(bucket.getBucket(), entry.getIndexKey()).withType(bucket.getType());
+        T objectKey = index.convert(entry.getObjectKey());
+        return new IndexEntry<T>(key, objectKey);
+    }
 
-        for (SecondaryIndexQueryOperation.Response.Entry entry : opResponse.getEntryList())
+    private class StreamItr implements Iterator<IndexEntry<T>>
+    {
+        private final Iterator<SecondaryIndexQueryOperation.Response.Entry> entries;
+
+        StreamItr(Iterator<SecondaryIndexQueryOperation.Response.Entry> entries)
         {
-            Location key = new Location(bucket.getBucket(), entry.getIndexKey()).withType(bucket.getType());
-            T objectKey = index.convert(entry.getObjectKey());
-            IndexEntry<T> indexEntry = new IndexEntry<T>(key, objectKey);
-            indexEntries.add(indexEntry);
+            this.entries = entries;
         }
 
-        byte[] continuation = null;
-        if (opResponse.hasContinuation())
+        @Override
+        public boolean hasNext()
+        {
+            return entries.hasNext();
+        }
+
+        @Override
+        public IndexEntry<T> next()
         {
-            continuation = opResponse.getContinuation().getValue();
+            return toIndexEntry(entries.next());
         }
 
-        return new Response<T>(continuation, indexEntries);
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
     }
 
     public static Criteria range(int start, int end)
@@ -197,26 +251,76 @@ public class FetchIndex<T> extends RiakCommand<FetchIndex.Response<T>>
 
 	    private final byte[] continuation;
         private final List<IndexEntry<T>> entries;
+        private final Iterator<IndexEntry<T>> stream;
+        private final RiakFuture<SecondaryIndexQueryOperation.Response> operation;
 
         Response(byte[] continuation, List<IndexEntry<T>> entries)
         {
 	        this.continuation = continuation;
             this.entries = entries;
+            this.stream = null;
+            this.operation = null;
         }
 
+        Response(Iterator<IndexEntry<T>> stream, RiakFuture<SecondaryIndexQueryOperation.Response> operation)
+        {
+            this.continuation = null;
+            this.entries = null;
+            this.stream = stream;
+            this.operation = operation;
+        }
+
+        /**
+         * Returns whether there are more results to fetch.
+         * <p>
+         * For a streaming query the continuation is only known once the 
+         * iterator has been exhausted.
+         * </p>
+         */
         public boolean hasContinuation()
         {
-            return continuation != null;
+            return getContinuation() != null;
         }
 
         public byte[] getContinuation()
         {
+            if (operation != null)
+            {
+                try
+                {
+                    if (operation.isDone() && operation.get().hasContinuation())
+                    {
+                        return operation.get().getContinuation().getValue();
+                    }
+                }
+                catch (ExecutionException ex)
+                {
+                    // The failure is thrown from the iterator
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
             return continuation;
         }
 
+        /**
+         * Returns an iterator over the entries.
+         * <p>
+         * For a streaming query the entries can only be iterated once; 
+         * {@code hasNext()} blocks until more entries arrive and throws 
+         * a {@link StreamingResult.StreamFailedException} if the query fails.
+         * </p>
+         */
         @Override
         public Iterator<IndexEntry<T>> iterator()
         {
+            if (stream != null)
+            {
+                return stream;
+            }
             return unmodifiableList(entries).iterator();
         }
     }
@@ -229,6 +333,7 @@ public class FetchIndex<T> extends RiakCommand<FetchIndex.Response<T>>
 		private final Index<T> index;
 		private Criteria op;
 		private BinaryValue continuation;
+		private int maxBufferedChunks;
 
 		public Builder(Location bucket, Index<T> index)
 		{
@@ -254,6 +359,26 @@ public class FetchIndex<T> extends RiakCommand<FetchIndex.Response<T>>
 			return this;
 		}
 
+		/**
+		 * Stream the entries as they arrive rather than waiting for all of them.
+		 * <p>
+		 * The Response is available immediately and its iterator blocks 
+		 * until entries arrive. At most {@code maxBufferedChunks} responses 
+		 * from Riak are held in memory; beyond that reading from the 
+		 * connection pauses until the iterator catches up. The returned 
+		 * future completes straight away and does not report the outcome 
+		 * of the query; a failure is thrown from the iterator.
+		 * </p>
+		 * @param maxBufferedChunks the number of responses buffered, e.g. 
+		 * {@link StreamingResult#DEFAULT_MAX_BUFFERED_CHUNKS}
+		 * @return a reference to this object.
+		 */
+		public Builder<T> withStreaming(int maxBufferedChunks)
+		{
+			this.maxBufferedChunks = maxBufferedChunks;
+			return this;
+		}
+
 		public FetchIndex<T> build()
 		{
 			return new FetchIndex<T>(this);
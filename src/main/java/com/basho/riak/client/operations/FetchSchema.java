@@ -1,11 +1,10 @@
 package com.basho.riak.client.operations;
 
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
 import com.basho.riak.client.core.operations.YzGetSchemaOperation;
 import com.basho.riak.client.query.search.YokozunaSchema;
 
-import java.util.concurrent.ExecutionException;
-
 public class FetchSchema extends RiakCommand<YokozunaSchema>
 {
 	private final String schema;
@@ -16,10 +15,10 @@ public class FetchSchema extends RiakCommand<YokozunaSchema>
 	}
 
 	@Override
-	YokozunaSchema execute(RiakCluster cluster) throws ExecutionException, InterruptedException
+	RiakFuture<YokozunaSchema> executeAsync(RiakCluster cluster)
 	{
 		YzGetSchemaOperation operation = new YzGetSchemaOperation.Builder(schema).build();
-		return cluster.execute(operation).get();
+		return cluster.execute(operation);
 	}
 
 	public static class Builder
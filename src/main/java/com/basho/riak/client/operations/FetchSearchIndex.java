@@ -1,9 +1,11 @@
 package com.basho.riak.client.operations;
 
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
 import com.basho.riak.client.core.operations.YzFetchIndexOperation;
 import com.basho.riak.client.query.search.YokozunaIndex;
 
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 public class FetchSearchIndex extends RiakCommand<YokozunaIndex>
@@ -16,12 +18,21 @@ public class FetchSearchIndex extends RiakCommand<YokozunaIndex>
 	}
 
 	@Override
-	YokozunaIndex execute(RiakCluster cluster) throws ExecutionException, InterruptedException
+	RiakFuture<YokozunaIndex> executeAsync(RiakCluster cluster)
 	{
 	    YzFetchIndexOperation.Builder builder = new YzFetchIndexOperation.Builder();
 	    builder.withIndexName(index);
 	    YzFetchIndexOperation operation = builder.build();
-	    return cluster.execute(operation).get().get(1);
+	    CoreFutureAdapter<YokozunaIndex, List<YokozunaIndex>> future =
+	        new CoreFutureAdapter<YokozunaIndex, List<YokozunaIndex>>()
+	        {
+	            @Override
+	            YokozunaIndex convertResponse(List<YokozunaIndex> indexes) throws ExecutionException
+	            {
+	                return indexes.get(1);
+	            }
+	        };
+	    return future.listenTo(cluster.execute(operation));
 	}
 
 	public static class Builder
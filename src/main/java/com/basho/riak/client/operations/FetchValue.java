@@ -18,13 +18,18 @@ package com.basho.riak.client.operations;
 import com.basho.riak.client.cap.Quorum;
 import com.basho.riak.client.cap.VClock;
 import com.basho.riak.client.convert.Converter;
+import com.basho.riak.client.core.OperationPriority;
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
 import com.basho.riak.client.core.operations.FetchOperation;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static com.basho.riak.client.convert.Converters.convert;
 
@@ -38,18 +43,119 @@ public class FetchValue<T> extends RiakCommand<FetchValue.Response<T>>
 	private final Map<FetchOption<?>, Object> options =
 		new HashMap<FetchOption<?>, Object>();
 	private Converter<T> converter;
+	private final OperationPriority priority;
+	private final long deadlineNanos;
+	private final FetchCoalescer coalescer;
 
 	FetchValue(Builder<T> builder)
 	{
 		this.location = builder.location;
 		this.options.putAll(builder.options);
 		this.converter = builder.converter;
+		this.priority = builder.priority;
+		this.deadlineNanos = builder.deadlineNanos;
+		this.coalescer = builder.coalescer;
+	}
+
+	private FetchValue(FetchValue<T> fetch, VClock ifModified)
+	{
+		this.location = fetch.location;
+		this.options.putAll(fetch.options);
+		this.options.put(FetchOption.IF_MODIFIED, ifModified);
+		this.converter = fetch.converter;
+		this.priority = fetch.priority;
+		this.deadlineNanos = fetch.deadlineNanos;
+		this.coalescer = null;
 	}
 
 	@Override
-	Response<T> execute(RiakCluster cluster) throws ExecutionException, InterruptedException
+	RiakFuture<Response<T>> executeAsync(RiakCluster cluster)
+	{
+		return adapt(executeOperation(cluster));
+	}
+
+	/**
+	 * Starts the fetch, joining an identical one in flight if this fetch 
+	 * has a coalescer.
+	 */
+	RiakFuture<FetchOperation.Response> executeOperation(RiakCluster cluster)
+	{
+		FetchOperation operation = buildOperation();
+		if (coalescer != null && !isConditional())
+		{
+			return coalescer.execute(getKey(), cluster, operation);
+		}
+		return cluster.execute(operation);
+	}
+
+	/**
+	 * Converts the result of a fetch to this command's response.
+	 */
+	RiakFuture<Response<T>> adapt(RiakFuture<FetchOperation.Response> coreFuture)
+	{
+		CoreFutureAdapter<Response<T>, FetchOperation.Response> future =
+			new CoreFutureAdapter<Response<T>, FetchOperation.Response>()
+			{
+				@Override
+				Response<T> convertResponse(FetchOperation.Response response) throws ExecutionException
+				{
+					List<T> converted = convert(converter, response.getObjectList());
+
+					return new Response<T>(response.isNotFound(), response.isUnchanged(), converted, response.getVClock());
+				}
+			};
+		return future.listenTo(coreFuture);
+	}
+
+	/**
+	 * Identifies fetches that return the same result: the location and options.
+	 */
+	Object getKey()
+	{
+		return Arrays.asList(FetchOperation.class, location, options);
+	}
+
+	Location getLocation()
+	{
+		return location;
+	}
+
+	/**
+	 * Returns a copy of this fetch that only returns the object if it has 
+	 * changed since the given vclock.
+	 */
+	FetchValue<T> ifModified(VClock vClock)
+	{
+		return new FetchValue<T>(this, vClock);
+	}
+
+	/**
+	 * Returns whether the result depends on the caller's vclock.
+	 */
+	boolean isConditional()
+	{
+		return options.containsKey(FetchOption.IF_MODIFIED);
+	}
+
+	/**
+	 * Returns whether the fetch uses Riak's default options, so its result 
+	 * only depends on the location.
+	 */
+	boolean hasDefaultOptions()
 	{
+		return options.isEmpty();
+	}
 
+	/**
+	 * Returns the response Riak gives when there is no object at the location.
+	 */
+	Response<T> notFoundResponse()
+	{
+		return new Response<T>(true, false, new ArrayList<T>(), null);
+	}
+
+	private FetchOperation buildOperation()
+	{
 		FetchOperation.Builder builder = new FetchOperation.Builder(location.getBucket(), location.getKey());
 
 		if (location.hasType())
@@ -97,13 +203,19 @@ public class FetchValue<T> extends RiakCommand<FetchValue.Response<T>>
 
 		}
 
-		FetchOperation operation = builder.build();
-
-		FetchOperation.Response response = cluster.execute(operation).get();
-		List<T> converted = convert(converter, response.getObjectList());
+		if (deadlineNanos > 0 && !options.containsKey(FetchOption.TIMEOUT))
+		{
+			builder.withTimeout((int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadlineNanos)));
+		}
 
-		return new Response<T>(response.isNotFound(), response.isUnchanged(), converted, response.getVClock());
+		FetchOperation operation = builder.build();
+		operation.setPriority(priority);
+		if (deadlineNanos > 0)
+		{
+			operation.setDeadline(deadlineNanos, TimeUnit.NANOSECONDS);
+		}
 
+		return operation;
 	}
 
 	/**
@@ -166,6 +278,9 @@ public class FetchValue<T> extends RiakCommand<FetchValue.Response<T>>
 		private final Map<FetchOption<?>, Object> options =
 			new HashMap<FetchOption<?>, Object>();
 		private Converter<T> converter;
+		private OperationPriority priority = OperationPriority.NORMAL;
+		private long deadlineNanos;
+		private FetchCoalescer coalescer;
 
 		public Builder(Location location)
 		{
@@ -199,6 +314,60 @@ public class FetchValue<T> extends RiakCommand<FetchValue.Response<T>>
 			return this;
 		}
 
+		/**
+		 * Set the scheduling class used when this fetch has to wait for a connection.
+		 *
+		 * @param priority the priority; defaults to {@link OperationPriority#NORMAL}
+		 * @return this
+		 */
+		public Builder<T> withPriority(OperationPriority priority)
+		{
+			this.priority = priority;
+			return this;
+		}
+
+		/**
+		 * Set a deadline for this fetch, relative to when it is executed.
+		 * <p>
+		 * The fetch fails without being sent if the cluster estimates it 
+		 * can't complete in time, or if it is still waiting for a 
+		 * connection when the deadline passes. Unless 
+		 * {@link FetchOption#TIMEOUT} is also set, the remaining time is 
+		 * sent to Riak as the request timeout.
+		 * </p>
+		 *
+		 * @param timeout the amount of time the caller is willing to wait
+		 * @param unit the unit for timeout
+		 * @return this
+		 * @see com.basho.riak.client.core.FutureOperation#setDeadline(long, java.util.concurrent.TimeUnit) 
+		 */
+		public Builder<T> withDeadline(long timeout, TimeUnit unit)
+		{
+			if (timeout <= 0)
+			{
+				throw new IllegalArgumentException("Deadline must be positive");
+			}
+			this.deadlineNanos = unit.toNanos(timeout);
+			return this;
+		}
+
+		/**
+		 * Share this fetch with identical fetches already in flight.
+		 * <p>
+		 * Fetches of the same location with equal options made through 
+		 * the same coalescer while one is waiting for Riak take its result 
+		 * rather than sending another request.
+		 * </p>
+		 *
+		 * @param coalescer the coalescer shared by the fetches to combine
+		 * @return this
+		 */
+		public Builder<T> withCoalescer(FetchCoalescer coalescer)
+		{
+			this.coalescer = coalescer;
+			return this;
+		}
+
 		/**
 		 * Build a {@link FetchValue} object
 		 *
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+/**
+ * Estimates how often keys have been seen recently, for TinyLFU admission.
+ * <p>
+ * A count-min sketch: each key increments one counter in each of four 
+ * rows, and its frequency is the smallest of them. Counters saturate at 
+ * 15, and once there have been ten increments per counter in a row every 
+ * counter is halved, so old popularity fades. Not thread safe.
+ * </p>
+ *
+ * @since 2.0
+ */
+class FrequencySketch
+{
+    private static final int ROWS = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = { 0x97cb3127, 0x5bd1e995, 0xc2b2ae35, 0x27d4eb2f };
+
+    private final int[][] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param width the number of counters per row; rounded up to a power of two
+     */
+    FrequencySketch(int width)
+    {
+        int size = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+        counters = new int[ROWS][size];
+        mask = size - 1;
+        sampleSize = size * 10;
+    }
+
+    void increment(Object key)
+    {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < ROWS; row++)
+        {
+            int index = index(hash, row);
+            if (counters[row][index] < MAX_COUNT)
+            {
+                counters[row][index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize)
+        {
+            reset();
+        }
+    }
+
+    int frequency(Object key)
+    {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < ROWS; row++)
+        {
+            frequency = Math.min(frequency, counters[row][index(hash, row)]);
+        }
+        return frequency;
+    }
+
+    private void reset()
+    {
+        for (int[] row : counters)
+        {
+            for (int i = 0; i < row.length; i++)
+            {
+                row[i] >>>= 1;
+            }
+        }
+        additions /= 2;
+    }
+
+    private int index(int hash, int row)
+    {
+        int h = hash * SEEDS[row];
+        h ^= h >>> 16;
+        return h & mask;
+    }
+
+    private static int spread(int hash)
+    {
+        hash ^= hash >>> 17;
+        hash *= 0xed5ad4bb;
+        hash ^= hash >>> 11;
+        return hash;
+    }
+}
@@ -16,15 +16,20 @@
 package com.basho.riak.client.operations;
 
 import com.basho.riak.client.convert.Converter;
+import com.basho.riak.client.core.OperationPriority;
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 class KeyMultiFetch<T> extends MultiFetch<T>
 {
+    private static final Logger logger = LoggerFactory.getLogger(KeyMultiFetch.class);
 
     private final Converter<T> converter;
     private final ArrayList<Location> keys;
@@ -46,16 +51,65 @@ class KeyMultiFetch<T> extends MultiFetch<T>
     }
 
     @Override
-    Response<T> execute(RiakCluster cluster) throws ExecutionException, InterruptedException
+    RiakFuture<Response<T>> executeAsync(RiakCluster cluster)
     {
-
-        List<FetchValue.Response<T>> values = new ArrayList<FetchValue.Response<T>>();
-        for (Location key : keys)
+        if (strategy == Strategy.MAP_REDUCE 
+            || (strategy == Strategy.AUTO && keys.size() >= mapReduceThreshold))
         {
-            values.add(new FetchValue.Builder<T>(key).withConverter(converter).build().execute(cluster));
+            return MapReduceFetcher.fetch(cluster, keys, this, converter);
         }
+        return new BatchDispatcher<Location, FetchValue.Response<T>, Entry<T>, Response<T>>(cluster, keys, maxInFlight, null)
+        {
+            @Override
+            RiakFuture<FetchValue.Response<T>> execute(RiakCluster cluster, Location location)
+            {
+                return buildFetch(location).executeAsync(cluster);
+            }
 
-        return new Response<T>(values);
+            @Override
+            Entry<T> createEntry(Location location, FetchValue.Response<T> value, Throwable cause)
+            {
+                return new Entry<T>(location, value, cause);
+            }
 
+            @Override
+            Response<T> createResponse(List<Entry<T>> entries)
+            {
+                return new Response<T>(entries);
+            }
+
+            @Override
+            void entryCompleted(Entry<T> entry)
+            {
+                notifyListener(entry);
+            }
+        }.start();
+    }
+
+    void notifyListener(Entry<T> entry)
+    {
+        if (entryListener != null)
+        {
+            try
+            {
+                entryListener.onEntry(entry);
+            }
+            catch (RuntimeException ex)
+            {
+                logger.error("Exception thrown from EntryListener", ex);
+            }
+        }
+    }
+
+    FetchValue<T> buildFetch(Location location)
+    {
+        FetchValue.Builder<T> builder = new FetchValue.Builder<T>(location)
+                                            .withConverter(converter)
+                                            .withPriority(OperationPriority.BATCH);
+        if (deadlineNanos > 0)
+        {
+            builder.withDeadline(deadlineNanos, TimeUnit.NANOSECONDS);
+        }
+        return builder.build();
     }
 }
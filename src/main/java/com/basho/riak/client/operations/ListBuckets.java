@@ -15,7 +15,10 @@
  */
 package com.basho.riak.client.operations;
 
+import com.basho.riak.client.core.DefaultRiakFuture;
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.core.StreamingResult;
 import com.basho.riak.client.core.operations.ListBucketsOperation;
 import com.basho.riak.client.util.BinaryValue;
 
@@ -29,40 +32,81 @@ public class ListBuckets extends RiakCommand<ListBuckets.Response>
 
     private final int timeout;
     private final BinaryValue type;
+    private final int maxBufferedChunks;
 
     ListBuckets(Builder builder)
     {
 		this.timeout = builder.timeout;
 	    this.type = builder.type;
+        this.maxBufferedChunks = builder.maxBufferedChunks;
     }
 
     @Override
-    Response execute(RiakCluster cluster) throws ExecutionException, InterruptedException
+    RiakFuture<Response> executeAsync(RiakCluster cluster)
     {
         ListBucketsOperation.Builder builder = new ListBucketsOperation.Builder();
         if (timeout > 0)
         {
             builder.withTimeout(timeout);
         }
+        if (maxBufferedChunks > 0)
+        {
+            builder.withStreaming(maxBufferedChunks);
+            ListBucketsOperation operation = builder.build();
+            cluster.execute(operation);
+            // The buckets are consumed as they arrive; failures surface from the iterator
+            DefaultRiakFuture<Response> future = new DefaultRiakFuture<Response>();
+            future.setResponse(new Response(type, operation.getStreamingResult()));
+            return future;
+        }
         ListBucketsOperation operation = builder.build();
-        cluster.execute(operation);
-        return new Response(type, operation.get());
+        CoreFutureAdapter<Response, List<BinaryValue>> future =
+            new CoreFutureAdapter<Response, List<BinaryValue>>()
+            {
+                @Override
+                Response convertResponse(List<BinaryValue> buckets) throws ExecutionException
+                {
+                    return new Response(type, buckets);
+                }
+            };
+        return future.listenTo(cluster.execute(operation));
     }
 
     public static class Response implements Iterable<Location> {
 
         private final BinaryValue type;
         private final List<BinaryValue> buckets;
+        private final Iterator<BinaryValue> stream;
 
         public Response(BinaryValue type, List<BinaryValue> buckets)
         {
             this.type = type;
             this.buckets = buckets;
+            this.stream = null;
+        }
+
+        Response(BinaryValue type, Iterator<BinaryValue> stream)
+        {
+            this.type = type;
+            this.buckets = null;
+            this.stream = stream;
         }
 
+        /**
+         * Returns an iterator over the buckets.
+         * <p>
+         * For a streaming ListBuckets the buckets can only be iterated once; 
+         * {@code hasNext()} blocks until more arrive and throws a 
+         * {@link StreamingResult.StreamFailedException} if listing fails.
+         * </p>
+         */
         @Override
         public Iterator<Location> iterator()
         {
+            if (stream != null)
+            {
+                return new Itr(stream, type);
+            }
             return new Itr(buckets.iterator(), type);
         }
     }
@@ -101,6 +145,7 @@ public class ListBuckets extends RiakCommand<ListBuckets.Response>
 	public static class Builder
 	{
 		private int timeout;
+		private int maxBufferedChunks;
 		private final BinaryValue type;
 
 		public Builder(String type)
@@ -119,6 +164,23 @@ public class ListBuckets extends RiakCommand<ListBuckets.Response>
 			return this;
 		}
 
+		/**
+		 * Stream the buckets as they arrive rather than waiting for all of them.
+		 * <p>
+		 * As with {@link ListKeys.Builder#withStreaming(int)} the returned 
+		 * future completes straight away; a failure is thrown from the iterator.
+		 * </p>
+		 * @param maxBufferedChunks the number of responses from Riak held 
+		 * in memory before reading pauses
+		 * @return a reference to this object.
+		 * @see ListKeys.Builder#withStreaming(int) 
+		 */
+		public Builder withStreaming(int maxBufferedChunks)
+		{
+			this.maxBufferedChunks = maxBufferedChunks;
+			return this;
+		}
+
 		public ListBuckets build()
 		{
 			return new ListBuckets(this);
@@ -15,7 +15,10 @@
  */
 package com.basho.riak.client.operations;
 
+import com.basho.riak.client.core.DefaultRiakFuture;
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.core.StreamingResult;
 import com.basho.riak.client.core.operations.ListKeysOperation;
 import com.basho.riak.client.util.BinaryValue;
 
@@ -28,15 +31,17 @@ public class ListKeys extends RiakCommand<ListKeys.Response>
 
 	private final Location bucket;
 	private final int timeout;
+	private final int maxBufferedChunks;
 
 	ListKeys(Builder builder)
 	{
 		this.bucket = builder.bucket;
 		this.timeout = builder.timeout;
+		this.maxBufferedChunks = builder.maxBufferedChunks;
 	}
 
 	@Override
-	Response execute(RiakCluster cluster) throws ExecutionException, InterruptedException
+	RiakFuture<Response> executeAsync(RiakCluster cluster)
 	{
 		ListKeysOperation.Builder builder = new ListKeysOperation.Builder(bucket.getBucket());
 
@@ -50,10 +55,28 @@ public class ListKeys extends RiakCommand<ListKeys.Response>
 			builder.withBucketType(bucket.getType());
 		}
 
-		ListKeysOperation operation = builder.build();
-		cluster.execute(operation);
+		if (maxBufferedChunks > 0)
+		{
+			builder.withStreaming(maxBufferedChunks);
+			ListKeysOperation operation = builder.build();
+			cluster.execute(operation);
+			// The keys are consumed as they arrive; failures surface from the iterator
+			DefaultRiakFuture<Response> future = new DefaultRiakFuture<Response>();
+			future.setResponse(new Response(bucket.getBucket(), operation.getStreamingResult()));
+			return future;
+		}
 
-		return new Response(bucket.getBucket(), operation.get());
+		ListKeysOperation operation = builder.build();
+		CoreFutureAdapter<Response, List<BinaryValue>> future =
+			new CoreFutureAdapter<Response, List<BinaryValue>>()
+			{
+				@Override
+				Response convertResponse(List<BinaryValue> keys) throws ExecutionException
+				{
+					return new Response(bucket.getBucket(), keys);
+				}
+			};
+		return future.listenTo(cluster.execute(operation));
 	}
 
 	public static class Response implements Iterable<Location>
@@ -61,16 +84,37 @@ public class ListKeys extends RiakCommand<ListKeys.Response>
 
 		private final BinaryValue bucket;
 		private final List<BinaryValue> keys;
+		private final Iterator<BinaryValue> stream;
 
 		public Response(BinaryValue bucket, List<BinaryValue> keys)
 		{
 			this.bucket = bucket;
 			this.keys = keys;
+			this.stream = null;
+		}
+
+		Response(BinaryValue bucket, Iterator<BinaryValue> stream)
+		{
+			this.bucket = bucket;
+			this.keys = null;
+			this.stream = stream;
 		}
 
+		/**
+		 * Returns an iterator over the keys.
+		 * <p>
+		 * For a streaming ListKeys the keys can only be iterated once; 
+		 * {@code hasNext()} blocks until more keys arrive and throws 
+		 * a {@link StreamingResult.StreamFailedException} if listing fails.
+		 * </p>
+		 */
 		@Override
 		public Iterator<Location> iterator()
 		{
+			if (stream != null)
+			{
+				return new Itr(bucket, stream);
+			}
 			return new Itr(bucket, keys.iterator());
 		}
 	}
@@ -110,6 +154,7 @@ public class ListKeys extends RiakCommand<ListKeys.Response>
 	{
 		private final Location bucket;
 		private int timeout;
+		private int maxBufferedChunks;
 
 		public Builder(Location bucket)
 		{
@@ -122,6 +167,26 @@ public class ListKeys extends RiakCommand<ListKeys.Response>
 			return this;
 		}
 
+		/**
+		 * Stream the keys as they arrive rather than waiting for all of them.
+		 * <p>
+		 * The Response is available immediately and its iterator blocks 
+		 * until keys arrive. At most {@code maxBufferedChunks} responses 
+		 * from Riak are held in memory; beyond that reading from the 
+		 * connection pauses until the iterator catches up. The returned 
+		 * future completes straight away and does not report the outcome 
+		 * of the listing; a failure is thrown from the iterator.
+		 * </p>
+		 * @param maxBufferedChunks the number of responses buffered, e.g. 
+		 * {@link StreamingResult#DEFAULT_MAX_BUFFERED_CHUNKS}
+		 * @return a reference to this object.
+		 */
+		public Builder withStreaming(int maxBufferedChunks)
+		{
+			this.maxBufferedChunks = maxBufferedChunks;
+			return this;
+		}
+
 		public ListKeys build()
 		{
 			return new ListKeys(this);
@@ -148,9 +148,9 @@ public class Location
 	public int hashCode()
 	{
 		int result = 17;
-		result = 37 * result + getType().hashCode();
+		result = 37 * result + (hasType() ? getType().hashCode() : 0);
 		result = 37 * result + getBucket().hashCode();
-		result = 37 * result + getKey().hashCode();
+		result = 37 * result + (hasKey() ? getKey().hashCode() : 0);
 		return result;
 	}
 
@@ -0,0 +1,482 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.cap.BasicVClock;
+import com.basho.riak.client.convert.Converter;
+import com.basho.riak.client.core.DefaultRiakFuture;
+import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.core.RiakFutureListener;
+import com.basho.riak.client.core.operations.MapReduceOperation;
+import com.basho.riak.client.query.RiakObject;
+import com.basho.riak.client.util.BinaryValue;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.basho.riak.client.convert.Converters.convert;
+
+/**
+ * Reads the keys of a {@link MultiFetch} with MapReduce jobs.
+ * <p>
+ * Keys are grouped by bucket and split into batches; each batch is the 
+ * input to one job whose single map phase returns the stored objects. 
+ * Up to maxInFlight jobs run at once. Keys a job can't answer faithfully 
+ * are then read with a plain {@link KeyMultiFetch}: siblings, tombstones, 
+ * objects with links or indexes, keys absent from the results, keys that 
+ * can't be written as JSON, and every key of a failed job.
+ * </p>
+ * <p>
+ * The fallback fetches run in the job's slot of the window, which is 
+ * divided between the jobs that can be in flight together, so no more 
+ * than maxInFlight requests are outstanding overall.
+ * </p>
+ *
+ * @param <T> the value type
+ * @since 2.0
+ * @see MultiFetch.Strategy#MAP_REDUCE
+ */
+class MapReduceFetcher<T> extends BatchDispatcher<MapReduceFetcher.KeyBatch, List<MultiFetch.Entry<T>>, List<MultiFetch.Entry<T>>, MultiFetch.Response<T>>
+{
+    private static final Logger logger = LoggerFactory.getLogger(MapReduceFetcher.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    // Returns the object as Riak's JSON encoding: bucket, key, vclock and values.
+    // riak_kv_mapreduce:map_identity returns the whole object too, but as an 
+    // Erlang riak_object, which the PB interface can't encode as JSON.
+    static final String MAP_SOURCE = "function(v){return [v];}";
+
+    private final List<KeyBatch> batches;
+    private final KeyMultiFetch<T> multiFetch;
+    private final Converter<T> converter;
+    private final int keyCount;
+    private final int fallbackInFlight;
+
+    private MapReduceFetcher(RiakCluster cluster, List<KeyBatch> batches, int keyCount,
+                             KeyMultiFetch<T> multiFetch, Converter<T> converter)
+    {
+        super(cluster, batches, multiFetch.maxInFlight, null);
+        this.batches = batches;
+        this.multiFetch = multiFetch;
+        this.converter = converter;
+        this.keyCount = keyCount;
+        int concurrentJobs = Math.min(multiFetch.maxInFlight, batches.size());
+        this.fallbackInFlight = Math.max(1, multiFetch.maxInFlight / Math.max(1, concurrentJobs));
+    }
+
+    static <T> RiakFuture<MultiFetch.Response<T>> fetch(RiakCluster cluster, List<Location> keys, 
+                                                         KeyMultiFetch<T> multiFetch, Converter<T> converter)
+    {
+        List<KeyBatch> batches = partition(keys, multiFetch.mapReduceBatchSize);
+        return new MapReduceFetcher<T>(cluster, batches, keys.size(), multiFetch, converter).start();
+    }
+
+    /**
+     * Groups keys by bucket type and bucket, in the order each bucket is 
+     * first seen, and splits each group into batches.
+     */
+    static List<KeyBatch> partition(List<Location> keys, int batchSize)
+    {
+        Map<List<Object>, KeyBatch> open = new LinkedHashMap<List<Object>, KeyBatch>();
+        List<KeyBatch> batches = new ArrayList<KeyBatch>();
+        for (int i = 0; i < keys.size(); i++)
+        {
+            Location location = keys.get(i);
+            boolean json = isJsonSafe(location);
+            // Keys that can't be sent as JSON share batches per bucket and are fetched directly
+            List<Object> group = Arrays.<Object>asList(location.getType(), location.getBucket(), json);
+            KeyBatch batch = open.get(group);
+            if (batch == null)
+            {
+                batch = new KeyBatch(json);
+                open.put(group, batch);
+                batches.add(batch);
+            }
+            batch.add(i, location);
+            if (batch.size() == batchSize)
+            {
+                open.remove(group);
+            }
+        }
+        return batches;
+    }
+
+    private static boolean isJsonSafe(Location location)
+    {
+        return isUtf8(location.getBucket()) && isUtf8(location.getKey()) 
+            && (!location.hasType() || isUtf8(location.getType()));
+    }
+
+    private static boolean isUtf8(BinaryValue value)
+    {
+        return Arrays.equals(value.unsafeGetValue(), value.toStringUtf8().getBytes(UTF8));
+    }
+
+    @Override
+    RiakFuture<List<MultiFetch.Entry<T>>> execute(final RiakCluster cluster, final KeyBatch batch)
+    {
+        final DefaultRiakFuture<List<MultiFetch.Entry<T>>> future = 
+            new DefaultRiakFuture<List<MultiFetch.Entry<T>>>();
+        if (!batch.mapReduce)
+        {
+            fetchRemaining(cluster, batch, new HashMap<BinaryValue, FetchValue.Response<T>>(), future);
+            return future;
+        }
+
+        MapReduceOperation operation = 
+            new MapReduceOperation.Builder(createJob(batch, multiFetch.deadlineNanos), "application/json").build();
+        if (multiFetch.deadlineNanos > 0)
+        {
+            operation.setDeadline(multiFetch.deadlineNanos, TimeUnit.NANOSECONDS);
+        }
+        cluster.execute(operation).addListener(new RiakFutureListener<List<BinaryValue>>()
+        {
+            @Override
+            public void handle(RiakFuture<List<BinaryValue>> f)
+            {
+                Map<BinaryValue, FetchValue.Response<T>> found;
+                try
+                {
+                    found = parseResults(f.get(), converter);
+                }
+                catch (ExecutionException ex)
+                {
+                    logger.debug("MapReduce multi-get failed, fetching keys individually", ex.getCause());
+                    found = Collections.emptyMap();
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                    found = Collections.emptyMap();
+                }
+                fetchRemaining(cluster, batch, found, future);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Completes the batch, first fetching any keys missing from found.
+     */
+    private void fetchRemaining(RiakCluster cluster, final KeyBatch batch, 
+                                Map<BinaryValue, FetchValue.Response<T>> found,
+                                final DefaultRiakFuture<List<MultiFetch.Entry<T>>> future)
+    {
+        final List<MultiFetch.Entry<T>> entries = new ArrayList<MultiFetch.Entry<T>>(batch.size());
+        final List<Integer> missing = new ArrayList<Integer>();
+        List<Location> missingKeys = new ArrayList<Location>();
+        for (int i = 0; i < batch.size(); i++)
+        {
+            Location location = batch.keys.get(i);
+            FetchValue.Response<T> response = found.get(location.getKey());
+            if (response == null)
+            {
+                missing.add(i);
+                missingKeys.add(location);
+            }
+            entries.add(new MultiFetch.Entry<T>(location, response, null));
+        }
+        if (missing.isEmpty())
+        {
+            future.setResponse(entries);
+            return;
+        }
+
+        KeyMultiFetch<T> fallback = new KeyMultiFetch<T>(converter, missingKeys);
+        fallback.withMaxInFlight(fallbackInFlight);
+        if (multiFetch.deadlineNanos > 0)
+        {
+            fallback.withDeadline(multiFetch.deadlineNanos, TimeUnit.NANOSECONDS);
+        }
+        fallback.executeAsync(cluster).addListener(new RiakFutureListener<MultiFetch.Response<T>>()
+        {
+            @Override
+            public void handle(RiakFuture<MultiFetch.Response<T>> f)
+            {
+                try
+                {
+                    List<MultiFetch.Entry<T>> fetched = f.get().getEntries();
+                    for (int i = 0; i < missing.size(); i++)
+                    {
+                        entries.set(missing.get(i), fetched.get(i));
+                    }
+                    future.setResponse(entries);
+                }
+                catch (ExecutionException ex)
+                {
+                    future.setException(ex.getCause());
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                    future.setException(ex);
+                }
+            }
+        });
+    }
+
+    @Override
+    List<MultiFetch.Entry<T>> createEntry(KeyBatch batch, List<MultiFetch.Entry<T>> value, Throwable cause)
+    {
+        if (cause == null)
+        {
+            return value;
+        }
+        List<MultiFetch.Entry<T>> failed = new ArrayList<MultiFetch.Entry<T>>(batch.size());
+        for (Location location : batch.keys)
+        {
+            failed.add(new MultiFetch.Entry<T>(location, null, cause));
+        }
+        return failed;
+    }
+
+    @Override
+    void entryCompleted(List<MultiFetch.Entry<T>> entries)
+    {
+        for (MultiFetch.Entry<T> entry : entries)
+        {
+            multiFetch.notifyListener(entry);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    MultiFetch.Response<T> createResponse(List<List<MultiFetch.Entry<T>>> batchEntries)
+    {
+        MultiFetch.Entry<T>[] ordered = new MultiFetch.Entry[keyCount];
+        for (int b = 0; b < batchEntries.size(); b++)
+        {
+            KeyBatch batch = batches.get(b);
+            List<MultiFetch.Entry<T>> entries = batchEntries.get(b);
+            for (int i = 0; i < batch.size(); i++)
+            {
+                ordered[batch.indexes.get(i)] = entries.get(i);
+            }
+        }
+        return new MultiFetch.Response<T>(Arrays.asList(ordered));
+    }
+
+    /**
+     * Builds the JSON MapReduce job reading the batch's keys.
+     */
+    static BinaryValue createJob(KeyBatch batch, long timeoutNanos)
+    {
+        ObjectNode job = mapper.createObjectNode();
+        ArrayNode inputs = job.putArray("inputs");
+        for (Location location : batch.keys)
+        {
+            ArrayNode input = inputs.addArray();
+            input.add(location.getBucket().toStringUtf8());
+            input.add(location.getKey().toStringUtf8());
+            if (location.hasType())
+            {
+                input.add("");
+                input.add(location.getType().toStringUtf8());
+            }
+        }
+        ObjectNode map = job.putArray("query").addObject().putObject("map");
+        map.put("language", "javascript");
+        map.put("source", MAP_SOURCE);
+        map.put("keep", true);
+        if (timeoutNanos > 0)
+        {
+            job.put("timeout", Math.max(1, TimeUnit.NANOSECONDS.toMillis(timeoutNanos)));
+        }
+        try
+        {
+            return BinaryValue.unsafeCreate(mapper.writeValueAsBytes(job));
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Parses the map phase output into responses keyed by key.
+     * <p>
+     * Objects that can't be represented exactly are left out so they are 
+     * fetched individually.
+     * </p>
+     */
+    static <T> Map<BinaryValue, FetchValue.Response<T>> parseResults(List<BinaryValue> results, Converter<T> converter)
+    {
+        Map<BinaryValue, FetchValue.Response<T>> found = new HashMap<BinaryValue, FetchValue.Response<T>>();
+        for (BinaryValue result : results)
+        {
+            JsonNode phaseOutput;
+            try
+            {
+                phaseOutput = mapper.readTree(result.unsafeGetValue());
+            }
+            catch (IOException ex)
+            {
+                logger.debug("Unparseable MapReduce multi-get result", ex);
+                continue;
+            }
+            for (JsonNode object : phaseOutput)
+            {
+                try
+                {
+                    parseObject(object, converter, found);
+                }
+                catch (RuntimeException ex)
+                {
+                    logger.debug("Unusable MapReduce multi-get result", ex);
+                }
+            }
+        }
+        return found;
+    }
+
+    private static <T> void parseObject(JsonNode object, Converter<T> converter, 
+                                        Map<BinaryValue, FetchValue.Response<T>> found)
+    {
+        JsonNode notFound = object.get("not_found");
+        if (notFound != null)
+        {
+            BinaryValue key = BinaryValue.createFromUtf8(notFound.get("key").asText());
+            found.put(key, new FetchValue.Response<T>(true, false, convert(converter, Collections.<RiakObject>emptyList()), null));
+            return;
+        }
+
+        JsonNode values = object.get("values");
+        if (values == null || values.size() != 1)
+        {
+            // Siblings are left to a fetch, which resolves them as usual
+            return;
+        }
+        JsonNode metadata = values.get(0).get("metadata");
+        if (metadata.has("X-Riak-Deleted") || hasElements(metadata.get("Links")) || hasElements(metadata.get("index")))
+        {
+            return;
+        }
+
+        RiakObject riakObject = new RiakObject();
+        riakObject.setValue(BinaryValue.createFromUtf8(values.get(0).get("data").asText()));
+        if (metadata.has("content-type"))
+        {
+            riakObject.setContentType(metadata.get("content-type").asText());
+        }
+        if (metadata.has("charset"))
+        {
+            riakObject.setCharset(metadata.get("charset").asText());
+        }
+        if (metadata.has("X-Riak-VTag"))
+        {
+            riakObject.setVTag(metadata.get("X-Riak-VTag").asText());
+        }
+        if (metadata.has("X-Riak-Last-Modified"))
+        {
+            riakObject.setLastModified(parseDate(metadata.get("X-Riak-Last-Modified").asText()));
+        }
+        JsonNode userMeta = metadata.get("X-Riak-Meta");
+        if (userMeta != null)
+        {
+            Iterator<Map.Entry<String, JsonNode>> fields = userMeta.fields();
+            while (fields.hasNext())
+            {
+                Map.Entry<String, JsonNode> field = fields.next();
+                riakObject.getUserMeta().put(field.getKey(), field.getValue().asText(), UTF8);
+            }
+        }
+
+        BasicVClock vClock = null;
+        try
+        {
+            if (object.hasNonNull("vclock"))
+            {
+                vClock = new BasicVClock(object.get("vclock").binaryValue());
+            }
+        }
+        catch (IOException ex)
+        {
+            // Without its vclock the object can't be safely updated; fetch it instead
+            return;
+        }
+
+        BinaryValue key = BinaryValue.createFromUtf8(object.get("key").asText());
+        List<T> converted = convert(converter, Collections.singletonList(riakObject));
+        found.put(key, new FetchValue.Response<T>(false, false, converted, vClock));
+    }
+
+    private static boolean hasElements(JsonNode node)
+    {
+        return node != null && node.size() > 0;
+    }
+
+    private static long parseDate(String date)
+    {
+        // RFC 1123, as sent in HTTP headers
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try
+        {
+            return format.parse(date).getTime();
+        }
+        catch (ParseException ex)
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * Keys from one bucket read by one job, with their positions in the MultiFetch.
+     */
+    static class KeyBatch
+    {
+        final boolean mapReduce;
+        final List<Integer> indexes = new ArrayList<Integer>();
+        final List<Location> keys = new ArrayList<Location>();
+
+        KeyBatch(boolean mapReduce)
+        {
+            this.mapReduce = mapReduce;
+        }
+
+        void add(int index, Location location)
+        {
+            indexes.add(index);
+            keys.add(location);
+        }
+
+        int size()
+        {
+            return keys.size();
+        }
+    }
+}
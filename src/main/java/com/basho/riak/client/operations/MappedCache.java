@@ -0,0 +1,676 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.core.converters.RiakObjectConverter;
+import com.basho.riak.client.core.operations.FetchOperation;
+import com.basho.riak.client.query.RiakObject;
+import com.basho.riak.client.util.BinaryValue;
+import com.basho.riak.protobuf.RiakKvPB;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * A second cache tier for a {@link NearCache}, kept in a memory-mapped 
+ * file so it survives restarts.
+ * <p>
+ * Used by a NearCache built with 
+ * {@link NearCache.Builder#withSecondLevel(MappedCache)}. Every result 
+ * the near cache stores is also written here, whether or not the near 
+ * cache admits it, and a near cache miss is looked up here before going 
+ * to Riak. Only fetches without options use this tier, since the file is 
+ * keyed by location alone.
+ * </p>
+ * <p>
+ * The file is divided into fixed size slots, each holding one location's 
+ * objects in the protocol buffers form Riak sends them in: values, 
+ * content types, vclock, indexes, links and user metadata. Results 
+ * larger than a slot, not found results and tombstones aren't kept. When 
+ * the file is full, slots are reused in clock order, skipping once over 
+ * each slot read since the hand last passed it.
+ * </p>
+ * <p>
+ * When the file is opened again with the same size and slot size, its 
+ * entries are checked against their checksums and served at once. They 
+ * keep the age they had when written; an entry past the near cache's TTL 
+ * is served and revalidated in the background, so a restarted client 
+ * doesn't wait for Riak. Entries older than 
+ * {@link Builder#withMaxAge(long, TimeUnit) maxAge} are dropped. A file 
+ * can only be used by one process at a time; it is locked while open.
+ * </p>
+ *
+ * @since 2.0
+ */
+public class MappedCache implements Closeable
+{
+    private static final int MAGIC = 0x524b4332;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER = 64;
+    // Body length, checksum, write time and key length
+    private static final int SLOT_HEADER = 20;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int slotSize;
+    private final int slotCount;
+    private final long maxAgeMillis;
+    private final int recoveredCount;
+
+    // Guarded by this
+    private final Map<Location, Integer> slots = new HashMap<Location, Integer>();
+    private final Location[] owners;
+    private final boolean[] referenced;
+    private final ArrayDeque<Integer> free = new ArrayDeque<Integer>();
+    private int hand;
+    private boolean closed;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong rejectionCount = new AtomicLong();
+
+    MappedCache(Builder builder) throws IOException
+    {
+        this.slotSize = builder.slotSize;
+        this.slotCount = (int) ((builder.maxBytes - FILE_HEADER) / slotSize);
+        this.maxAgeMillis = builder.maxAgeMillis;
+        this.owners = new Location[slotCount];
+        this.referenced = new boolean[slotCount];
+
+        long length = FILE_HEADER + (long) slotCount * slotSize;
+        this.file = new RandomAccessFile(builder.file, "rw");
+        lock(builder.file);
+        boolean reopened = file.length() == length;
+        if (!reopened)
+        {
+            file.setLength(length);
+        }
+        this.buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        if (reopened && buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION
+            && buffer.getInt(8) == slotSize && buffer.getInt(12) == slotCount)
+        {
+            this.recoveredCount = recover();
+        }
+        else
+        {
+            format();
+            this.recoveredCount = 0;
+        }
+    }
+
+    /**
+     * Takes an exclusive lock on the file, held until it is closed, so a 
+     * second process (or a second cache in this one) can't map it too.
+     */
+    private void lock(File path) throws IOException
+    {
+        FileLock lock;
+        try
+        {
+            lock = file.getChannel().tryLock();
+        }
+        catch (OverlappingFileLockException ex)
+        {
+            lock = null;
+        }
+        if (lock == null)
+        {
+            file.close();
+            throw new IOException("Cache file is in use: " + path);
+        }
+    }
+
+    private void format()
+    {
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            buffer.putInt(offset(slot), 0);
+            free.add(slot);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, slotSize);
+        buffer.putInt(12, slotCount);
+    }
+
+    /**
+     * Indexes the entries left by a previous process, dropping torn and 
+     * expired ones.
+     * @return the number of entries kept
+     */
+    private int recover()
+    {
+        long now = System.currentTimeMillis();
+        Map<Location, Long> written = new HashMap<Location, Long>();
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            int offset = offset(slot);
+            int length = buffer.getInt(offset);
+            Location location = null;
+            long writtenMillis = 0;
+            if (length > 0 && length <= slotSize - SLOT_HEADER)
+            {
+                byte[] record = read(offset + 8, SLOT_HEADER - 8 + length);
+                CRC32 crc = new CRC32();
+                crc.update(record);
+                writtenMillis = buffer.getLong(offset + 8);
+                if ((int) crc.getValue() == buffer.getInt(offset + 4) && !isExpired(now - writtenMillis))
+                {
+                    location = decodeKey(ByteBuffer.wrap(record, 12, record.length - 12));
+                }
+            }
+            if (location == null)
+            {
+                buffer.putInt(offset, 0);
+                free.add(slot);
+                continue;
+            }
+            // A crash during a rewrite can leave two copies; keep the newer
+            Long other = written.get(location);
+            if (other != null)
+            {
+                int older = slots.get(location);
+                if (other > writtenMillis)
+                {
+                    older = slot;
+                }
+                else
+                {
+                    slots.put(location, slot);
+                    owners[slot] = location;
+                    written.put(location, writtenMillis);
+                }
+                buffer.putInt(offset(older), 0);
+                owners[older] = null;
+                free.add(older);
+                continue;
+            }
+            slots.put(location, slot);
+            owners[slot] = location;
+            written.put(location, writtenMillis);
+        }
+        return slots.size();
+    }
+
+    private int offset(int slot)
+    {
+        return FILE_HEADER + slot * slotSize;
+    }
+
+    private boolean isExpired(long ageMillis)
+    {
+        return ageMillis > maxAgeMillis || ageMillis < 0;
+    }
+
+    private byte[] read(int offset, int length)
+    {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Looks up the result of fetching a location.
+     * @return the result and its age, or null if there is none.
+     */
+    Hit get(Location location)
+    {
+        byte[] payload;
+        long ageMillis;
+        synchronized (this)
+        {
+            Integer slot = closed ? null : slots.get(location);
+            if (slot == null)
+            {
+                missCount.incrementAndGet();
+                return null;
+            }
+            int offset = offset(slot);
+            ageMillis = System.currentTimeMillis() - buffer.getLong(offset + 8);
+            if (isExpired(ageMillis))
+            {
+                release(location, slot);
+                missCount.incrementAndGet();
+                return null;
+            }
+            int keyLength = buffer.getInt(offset + 16);
+            payload = read(offset + SLOT_HEADER + keyLength, buffer.getInt(offset) - keyLength);
+            referenced[slot] = true;
+        }
+        try
+        {
+            FetchOperation.Response response =
+                FetchOperation.toResponse(RiakKvPB.RpbGetResp.parseFrom(payload));
+            hitCount.incrementAndGet();
+            return new Hit(response, ageMillis);
+        }
+        catch (InvalidProtocolBufferException ex)
+        {
+            remove(location);
+        }
+        catch (ExecutionException ex)
+        {
+            remove(location);
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores the result of fetching a location, replacing any other.
+     */
+    void put(Location location, FetchOperation.Response response)
+    {
+        byte[] payload = encode(response);
+        if (payload == null)
+        {
+            remove(location);
+            return;
+        }
+        byte[] key = encodeKey(location);
+        int length = key.length + payload.length;
+        if (SLOT_HEADER + length > slotSize)
+        {
+            rejectionCount.incrementAndGet();
+            remove(location);
+            return;
+        }
+        ByteBuffer record = ByteBuffer.allocate(SLOT_HEADER - 8 + length);
+        record.putLong(System.currentTimeMillis()).putInt(key.length).put(key).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(record.array());
+        synchronized (this)
+        {
+            if (closed)
+            {
+                return;
+            }
+            Integer slot = slots.get(location);
+            if (slot == null)
+            {
+                slot = allocate();
+                slots.put(location, slot);
+                owners[slot] = location;
+            }
+            int offset = offset(slot);
+            // Cleared first so a torn write is never taken for an entry
+            buffer.putInt(offset, 0);
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset + 8);
+            view.put(record.array());
+            buffer.putInt(offset + 4, (int) crc.getValue());
+            buffer.putInt(offset, length);
+        }
+    }
+
+    /**
+     * Takes a free slot, or evicts the first unreferenced one after the hand.
+     */
+    private int allocate()
+    {
+        Integer slot = free.poll();
+        if (slot != null)
+        {
+            return slot;
+        }
+        while (true)
+        {
+            int candidate = hand;
+            hand = (hand + 1) % slotCount;
+            if (referenced[candidate])
+            {
+                referenced[candidate] = false;
+            }
+            else
+            {
+                slots.remove(owners[candidate]);
+                owners[candidate] = null;
+                evictionCount.incrementAndGet();
+                return candidate;
+            }
+        }
+    }
+
+    private void release(Location location, int slot)
+    {
+        slots.remove(location);
+        owners[slot] = null;
+        referenced[slot] = false;
+        buffer.putInt(offset(slot), 0);
+        free.add(slot);
+    }
+
+    /**
+     * Removes the result for a location.
+     */
+    synchronized void remove(Location location)
+    {
+        Integer slot = closed ? null : slots.get(location);
+        if (slot != null)
+        {
+            release(location, slot);
+        }
+    }
+
+    /**
+     * Removes every result.
+     */
+    synchronized void clear()
+    {
+        if (closed)
+        {
+            return;
+        }
+        slots.clear();
+        free.clear();
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            owners[slot] = null;
+            referenced[slot] = false;
+        }
+        format();
+    }
+
+    private static byte[] encode(FetchOperation.Response response)
+    {
+        if (response.isNotFound() || response.getVClock() == null)
+        {
+            return null;
+        }
+        RiakKvPB.RpbGetResp.Builder builder = RiakKvPB.RpbGetResp.newBuilder()
+            .setVclock(ByteString.copyFrom(response.getVClock().getBytes()));
+        for (RiakObject object : response.getObjectList())
+        {
+            if (!object.hasValue())
+            {
+                return null;
+            }
+            // The converter only writes what a store sends
+            RiakKvPB.RpbContent.Builder content = RiakObjectConverter.convert(object).toBuilder();
+            if (object.getVTag() != null)
+            {
+                content.setVtag(ByteString.copyFromUtf8(object.getVTag()));
+            }
+            long lastModified = object.getLastModified();
+            if (lastModified > 0)
+            {
+                content.setLastMod((int) (lastModified / 1000));
+                content.setLastModUsecs((int) (lastModified % 1000) * 1000);
+            }
+            if (object.isDeleted())
+            {
+                content.setDeleted(true);
+            }
+            builder.addContent(content);
+        }
+        return builder.build().toByteArray();
+    }
+
+    private static byte[] encodeKey(Location location)
+    {
+        BinaryValue type = location.getType();
+        BinaryValue bucket = location.getBucket();
+        BinaryValue key = location.getKey();
+        ByteBuffer encoded = ByteBuffer.allocate(12 + (type == null ? 0 : type.length())
+            + bucket.length() + key.length());
+        encoded.putInt(type == null ? -1 : type.length());
+        if (type != null)
+        {
+            encoded.put(type.unsafeGetValue());
+        }
+        encoded.putInt(bucket.length()).put(bucket.unsafeGetValue());
+        encoded.putInt(key.length()).put(key.unsafeGetValue());
+        return encoded.array();
+    }
+
+    private static Location decodeKey(ByteBuffer encoded)
+    {
+        BinaryValue type = readBinary(encoded);
+        Location location = new Location(readBinary(encoded), readBinary(encoded));
+        return type == null ? location : location.withType(type);
+    }
+
+    private static BinaryValue readBinary(ByteBuffer encoded)
+    {
+        int length = encoded.getInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        encoded.get(bytes);
+        return BinaryValue.unsafeCreate(bytes);
+    }
+
+    /**
+     * Writes the cached entries to disk. The operating system does this 
+     * on its own as well; call it to bound what a crash can lose.
+     */
+    public synchronized void flush()
+    {
+        if (!closed)
+        {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Writes the cached entries to disk and closes the file. The cache 
+     * stops storing results and misses every lookup.
+     * @throws IOException if the file can't be closed
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (!closed)
+        {
+            buffer.force();
+            closed = true;
+            file.close();
+        }
+    }
+
+    /**
+     * @return the number of lookups answered from the file.
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of lookups not answered from the file.
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of entries replaced by clock eviction.
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return the number of results not stored because they didn't fit in a slot.
+     */
+    public long getRejectionCount()
+    {
+        return rejectionCount.get();
+    }
+
+    /**
+     * @return the number of entries found in the file when it was opened.
+     */
+    public int getRecoveredCount()
+    {
+        return recoveredCount;
+    }
+
+    /**
+     * @return the number of cached results.
+     */
+    public synchronized int getEntryCount()
+    {
+        return slots.size();
+    }
+
+    /**
+     * @return the number of slots in the file.
+     */
+    public int getSlotCount()
+    {
+        return slotCount;
+    }
+
+    /**
+     * A result found in the file, with how long ago it was stored.
+     */
+    static class Hit
+    {
+        final FetchOperation.Response response;
+        final long ageMillis;
+
+        Hit(FetchOperation.Response response, long ageMillis)
+        {
+            this.response = response;
+            this.ageMillis = ageMillis;
+        }
+    }
+
+    public static class Builder
+    {
+        /**
+         * The default size of the file: {@value #DEFAULT_MAX_BYTES} bytes
+         */
+        public final static long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+        /**
+         * The default size of a slot: {@value #DEFAULT_SLOT_SIZE} bytes
+         */
+        public final static int DEFAULT_SLOT_SIZE = 4096;
+        /**
+         * The default age after which entries are dropped: {@value #DEFAULT_MAX_AGE_MILLIS}ms
+         */
+        public final static long DEFAULT_MAX_AGE_MILLIS = 24L * 60 * 60 * 1000;
+
+        private final File file;
+        private long maxBytes = DEFAULT_MAX_BYTES;
+        private int slotSize = DEFAULT_SLOT_SIZE;
+        private long maxAgeMillis = DEFAULT_MAX_AGE_MILLIS;
+
+        /**
+         * @param file the file to keep entries in; created if it doesn't exist
+         */
+        public Builder(File file)
+        {
+            if (file == null)
+            {
+                throw new IllegalArgumentException("File cannot be null");
+            }
+            this.file = file;
+        }
+
+        /**
+         * Set the size of the file. Changing it discards the entries 
+         * in an existing file.
+         * @param maxBytes the size in bytes, at most 2GB
+         * @return this
+         * @see #DEFAULT_MAX_BYTES
+         */
+        public Builder withMaxBytes(long maxBytes)
+        {
+            if (maxBytes > Integer.MAX_VALUE)
+            {
+                throw new IllegalArgumentException("maxBytes cannot be more than 2GB");
+            }
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Set the size of a slot, which bounds the size of a cached 
+         * result. Changing it discards the entries in an existing file.
+         * @param slotSize the size in bytes
+         * @return this
+         * @see #DEFAULT_SLOT_SIZE
+         */
+        public Builder withSlotSize(int slotSize)
+        {
+            if (slotSize < 256)
+            {
+                throw new IllegalArgumentException("Slot size must be at least 256 bytes");
+            }
+            this.slotSize = slotSize;
+            return this;
+        }
+
+        /**
+         * Set the age after which entries are dropped rather than served 
+         * while they are revalidated.
+         * @param maxAge the maximum age
+         * @param unit the unit for maxAge
+         * @return this
+         * @see #DEFAULT_MAX_AGE_MILLIS
+         */
+        public Builder withMaxAge(long maxAge, TimeUnit unit)
+        {
+            if (maxAge <= 0)
+            {
+                throw new IllegalArgumentException("Max age must be positive");
+            }
+            this.maxAgeMillis = unit.toMillis(maxAge);
+            return this;
+        }
+
+        /**
+         * Opens the file, keeping the entries in it if it was written 
+         * with the same size and slot size.
+         * @return the cache
+         * @throws IOException if the file can't be opened or mapped, or is 
+         * already in use by another MappedCache
+         */
+        public MappedCache build() throws IOException
+        {
+            if (maxBytes < FILE_HEADER + slotSize)
+            {
+                throw new IllegalArgumentException("maxBytes must hold at least one slot");
+            }
+            return new MappedCache(this);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Executes a mixed set of commands in parallel.
+ * <p>
+ * Up to {@link Builder#withMaxInFlight(int) maxInFlight} commands run at 
+ * once, each started from the completion of another so no thread waits on 
+ * them. With {@link ErrorMode#COLLECT_ALL} every command runs and the 
+ * {@link Response} records each one's result or exception. With 
+ * {@link ErrorMode#FAIL_FAST} the first failure fails the whole 
+ * MultiCommand and no further commands are started; those already in 
+ * flight still complete.
+ * </p>
+ * <p>
+ * Results can be read in the order the commands were added via 
+ * {@link Response#getEntries()}, or in the order they completed via 
+ * {@link Response#getEntriesInCompletionOrder()}. To act on each result 
+ * as it arrives, register an {@link EntryListener}.
+ * </p>
+ *
+ * @since 2.0
+ * @see RiakClient#executeAll(java.util.Collection)
+ */
+public class MultiCommand extends RiakCommand<MultiCommand.Response>
+{
+    /**
+     * How a MultiCommand handles a failed command.
+     */
+    public enum ErrorMode
+    {
+        /**
+         * Fail on the first failed command and start no more.
+         */
+        FAIL_FAST,
+        /**
+         * Run every command and record each failure in its entry.
+         */
+        COLLECT_ALL
+    }
+
+    /**
+     * Notified as each command completes.
+     * <p>
+     * Called on the thread that completed the command, usually a network 
+     * I/O thread, so it must not block.
+     * </p>
+     */
+    public interface EntryListener
+    {
+        void onEntry(Entry entry);
+    }
+
+    private final List<RiakCommand<?>> commands;
+    private final int maxInFlight;
+    private final ErrorMode errorMode;
+    private final EntryListener entryListener;
+
+    MultiCommand(Builder builder)
+    {
+        this.commands = new ArrayList<RiakCommand<?>>(builder.commands);
+        this.maxInFlight = builder.maxInFlight;
+        this.errorMode = builder.errorMode;
+        this.entryListener = builder.entryListener;
+    }
+
+    List<RiakCommand<?>> getCommands()
+    {
+        return commands;
+    }
+
+    @Override
+    RiakFuture<Response> executeAsync(RiakCluster cluster)
+    {
+        final Queue<Entry> completionOrder = new ConcurrentLinkedQueue<Entry>();
+        return new BatchDispatcher<RiakCommand<?>, Object, Entry, Response>(cluster, commands, maxInFlight, null)
+        {
+            @Override
+            @SuppressWarnings("unchecked")
+            RiakFuture<Object> execute(RiakCluster cluster, RiakCommand<?> command)
+            {
+                return ((RiakCommand<Object>) command).executeAsync(cluster);
+            }
+
+            @Override
+            Entry createEntry(RiakCommand<?> command, Object value, Throwable cause)
+            {
+                return new Entry(command, value, cause);
+            }
+
+            @Override
+            Response createResponse(List<Entry> entries)
+            {
+                return new Response(entries, new ArrayList<Entry>(completionOrder));
+            }
+
+            @Override
+            Throwable abortCause(Entry entry)
+            {
+                return errorMode == ErrorMode.FAIL_FAST ? entry.getException() : null;
+            }
+
+            @Override
+            void entryCompleted(Entry entry)
+            {
+                completionOrder.add(entry);
+                if (entryListener != null)
+                {
+                    entryListener.onEntry(entry);
+                }
+            }
+        }.start();
+    }
+
+    /**
+     * The outcome of one command.
+     */
+    public static final class Entry
+    {
+        private final RiakCommand<?> command;
+        private final Object response;
+        private final Throwable exception;
+
+        Entry(RiakCommand<?> command, Object response, Throwable exception)
+        {
+            this.command = command;
+            this.response = response;
+            this.exception = exception;
+        }
+
+        public RiakCommand<?> getCommand()
+        {
+            return command;
+        }
+
+        /**
+         * Returns whether the command succeeded.
+         * @return true if {@link #getResponse()} holds the result.
+         */
+        public boolean isSuccess()
+        {
+            return exception == null;
+        }
+
+        /**
+         * @return the command's result, or null if it failed.
+         */
+        public Object getResponse()
+        {
+            return response;
+        }
+
+        /**
+         * @return the exception the command failed with, or null if it succeeded.
+         */
+        public Throwable getException()
+        {
+            return exception;
+        }
+    }
+
+    /**
+     * The results of a MultiCommand.
+     */
+    public static final class Response
+    {
+        private final List<Entry> entries;
+        private final List<Entry> completionOrder;
+
+        Response(List<Entry> entries, List<Entry> completionOrder)
+        {
+            this.entries = entries;
+            this.completionOrder = completionOrder;
+        }
+
+        /**
+         * @return an entry per command, in the order they were added.
+         */
+        public List<Entry> getEntries()
+        {
+            return unmodifiableList(entries);
+        }
+
+        /**
+         * @return an entry per command, in the order they completed.
+         */
+        public List<Entry> getEntriesInCompletionOrder()
+        {
+            return unmodifiableList(completionOrder);
+        }
+
+        /**
+         * Returns the result of one of the commands.
+         * <p>
+         * If a command was added more than once, the first result is returned.
+         * </p>
+         * @param command a command that was part of the MultiCommand
+         * @param <T> the command's result type
+         * @return its result
+         * @throws ExecutionException if the command failed
+         * @throws IllegalArgumentException if the command wasn't part of the MultiCommand
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T getResponse(RiakCommand<T> command) throws ExecutionException
+        {
+            for (Entry entry : entries)
+            {
+                if (entry.command == command)
+                {
+                    if (entry.exception != null)
+                    {
+                        throw new ExecutionException(entry.exception);
+                    }
+                    return (T) entry.response;
+                }
+            }
+            throw new IllegalArgumentException("Command was not part of this MultiCommand");
+        }
+
+        /**
+         * Returns whether any command failed.
+         * @return true if at least one entry holds an exception.
+         */
+        public boolean hasFailures()
+        {
+            for (Entry entry : entries)
+            {
+                if (!entry.isSuccess())
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    public static class Builder
+    {
+        /**
+         * The default number of commands in flight at once: {@value #DEFAULT_MAX_IN_FLIGHT}
+         */
+        public final static int DEFAULT_MAX_IN_FLIGHT = 10;
+
+        private final List<RiakCommand<?>> commands = new ArrayList<RiakCommand<?>>();
+        private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        private ErrorMode errorMode = ErrorMode.COLLECT_ALL;
+        private EntryListener entryListener;
+
+        public Builder()
+        {
+        }
+
+        /**
+         * Add a command to execute.
+         * @param command the command
+         * @return this
+         */
+        public Builder add(RiakCommand<?> command)
+        {
+            if (command == null)
+            {
+                throw new IllegalArgumentException("Command cannot be null");
+            }
+            commands.add(command);
+            return this;
+        }
+
+        /**
+         * Add commands to execute.
+         * @param commands the commands
+         * @return this
+         */
+        public Builder addAll(Collection<? extends RiakCommand<?>> commands)
+        {
+            for (RiakCommand<?> command : commands)
+            {
+                add(command);
+            }
+            return this;
+        }
+
+        /**
+         * Set the maximum number of commands in flight at once.
+         * @param maxInFlight the window size
+         * @return this
+         * @see #DEFAULT_MAX_IN_FLIGHT
+         */
+        public Builder withMaxInFlight(int maxInFlight)
+        {
+            if (maxInFlight < 1)
+            {
+                throw new IllegalArgumentException("maxInFlight must be >= 1");
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Set how failed commands are handled.
+         * @param errorMode the error mode; {@link ErrorMode#COLLECT_ALL} by default
+         * @return this
+         */
+        public Builder withErrorMode(ErrorMode errorMode)
+        {
+            if (errorMode == null)
+            {
+                throw new IllegalArgumentException("Error mode cannot be null");
+            }
+            this.errorMode = errorMode;
+            return this;
+        }
+
+        /**
+         * Set a listener notified as each command completes.
+         * @param listener the listener
+         * @return this
+         */
+        public Builder withEntryListener(EntryListener listener)
+        {
+            this.entryListener = listener;
+            return this;
+        }
+
+        public MultiCommand build()
+        {
+            return new MultiCommand(this);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.cap.VClock;
+import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Deletes multiple keys in parallel.
+ * <p>
+ * Up to {@link Builder#withMaxInFlight(int) maxInFlight} deletes are 
+ * outstanding at any time and, if a rate limit is set, no more than that 
+ * many are started per second. Options set on the builder apply to every 
+ * delete. The {@link Response} holds an {@link Entry} for every key, in 
+ * the order they were added, each recording whether that delete succeeded.
+ * </p>
+ *
+ * @since 2.0
+ */
+public class MultiDelete extends RiakCommand<MultiDelete.Response>
+{
+    private final List<Item> items;
+    private final Map<DeleteOption<?>, Object> options;
+    private final int maxInFlight;
+    private final int rateLimit;
+
+    MultiDelete(Builder builder)
+    {
+        this.items = new ArrayList<Item>(builder.items);
+        this.options = new HashMap<DeleteOption<?>, Object>(builder.options);
+        this.maxInFlight = builder.maxInFlight;
+        this.rateLimit = builder.rateLimit;
+    }
+
+    /**
+     * Returns the locations deleted, in the order they were added.
+     */
+    List<Location> getLocations()
+    {
+        List<Location> locations = new ArrayList<Location>(items.size());
+        for (Item item : items)
+        {
+            locations.add(item.location);
+        }
+        return locations;
+    }
+
+    @Override
+    RiakFuture<Response> executeAsync(RiakCluster cluster)
+    {
+        RateLimiter limiter = rateLimit > 0 ? new RateLimiter(rateLimit) : null;
+        return new BatchDispatcher<Item, DeleteValue.Response, Entry, Response>(cluster, items, maxInFlight, limiter)
+        {
+            @Override
+            RiakFuture<DeleteValue.Response> execute(RiakCluster cluster, Item item)
+            {
+                return buildDelete(item).executeAsync(cluster);
+            }
+
+            @Override
+            Entry createEntry(Item item, DeleteValue.Response value, Throwable cause)
+            {
+                return new Entry(item.location, cause);
+            }
+
+            @Override
+            Response createResponse(List<Entry> entries)
+            {
+                return new Response(entries);
+            }
+        }.start();
+    }
+
+    @SuppressWarnings("unchecked")
+    private DeleteValue buildDelete(Item item)
+    {
+        DeleteValue.Builder builder = new DeleteValue.Builder(item.location);
+        if (item.vClock != null)
+        {
+            builder.withVClock(item.vClock);
+        }
+        for (Map.Entry<DeleteOption<?>, Object> option : options.entrySet())
+        {
+            builder.withOption((DeleteOption<Object>) option.getKey(), option.getValue());
+        }
+        return builder.build();
+    }
+
+    private static class Item
+    {
+        private final Location location;
+        private final VClock vClock;
+
+        Item(Location location, VClock vClock)
+        {
+            this.location = location;
+            this.vClock = vClock;
+        }
+    }
+
+    /**
+     * The outcome of deleting one key.
+     */
+    public static final class Entry
+    {
+        private final Location location;
+        private final Throwable exception;
+
+        Entry(Location location, Throwable exception)
+        {
+            this.location = location;
+            this.exception = exception;
+        }
+
+        public Location getLocation()
+        {
+            return location;
+        }
+
+        /**
+         * Returns whether the delete succeeded.
+         * @return true if Riak accepted the delete.
+         */
+        public boolean isSuccess()
+        {
+            return exception == null;
+        }
+
+        /**
+         * @return the exception the delete failed with, or null if it succeeded.
+         */
+        public Throwable getException()
+        {
+            return exception;
+        }
+    }
+
+    /**
+     * The results of a MultiDelete, in the order the keys were added.
+     */
+    public static final class Response
+    {
+        private final List<Entry> entries;
+
+        Response(List<Entry> entries)
+        {
+            this.entries = entries;
+        }
+
+        public List<Entry> getEntries()
+        {
+            return unmodifiableList(entries);
+        }
+
+        /**
+         * Returns whether any delete failed.
+         * @return true if at least one entry holds an exception.
+         */
+        public boolean hasFailures()
+        {
+            for (Entry entry : entries)
+            {
+                if (!entry.isSuccess())
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    public static class Builder
+    {
+        /**
+         * The default number of deletes in flight at once: {@value #DEFAULT_MAX_IN_FLIGHT}
+         */
+        public final static int DEFAULT_MAX_IN_FLIGHT = 10;
+
+        private final List<Item> items = new ArrayList<Item>();
+        private final Map<DeleteOption<?>, Object> options =
+            new HashMap<DeleteOption<?>, Object>();
+        private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        private int rateLimit;
+
+        public Builder()
+        {
+        }
+
+        /**
+         * Add a key to delete.
+         * @param location the key
+         * @return this
+         */
+        public Builder add(Location location)
+        {
+            return add(location, null);
+        }
+
+        /**
+         * Add a key to delete with the vclock of the version being deleted.
+         * @param location the key
+         * @param vClock the vclock; may be null
+         * @return this
+         */
+        public Builder add(Location location, VClock vClock)
+        {
+            items.add(new Item(location, vClock));
+            return this;
+        }
+
+        /**
+         * Add keys to delete.
+         * @param locations the keys
+         * @return this
+         */
+        public Builder addAll(Iterable<Location> locations)
+        {
+            for (Location location : locations)
+            {
+                add(location);
+            }
+            return this;
+        }
+
+        /**
+         * Add an option applied to every delete.
+         * @param option the option
+         * @param value the value associated with the option
+         * @param <T> the type required by the option
+         * @return this
+         */
+        public <T> Builder withOption(DeleteOption<T> option, T value)
+        {
+            options.put(option, value);
+            return this;
+        }
+
+        /**
+         * Set the maximum number of deletes in flight at once.
+         * @param maxInFlight the window size
+         * @return this
+         * @see #DEFAULT_MAX_IN_FLIGHT
+         */
+        public Builder withMaxInFlight(int maxInFlight)
+        {
+            if (maxInFlight < 1)
+            {
+                throw new IllegalArgumentException("maxInFlight must be >= 1");
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Limit how many deletes are started per second.
+         * Delayed deletes are scheduled on the cluster's executor.
+         * @param permitsPerSecond the maximum rate; by default there is no limit
+         * @return this
+         */
+        public Builder withRateLimit(int permitsPerSecond)
+        {
+            if (permitsPerSecond < 1)
+            {
+                throw new IllegalArgumentException("Rate must be >= 1 per second");
+            }
+            this.rateLimit = permitsPerSecond;
+            return this;
+        }
+
+        public MultiDelete build()
+        {
+            return new MultiDelete(this);
+        }
+    }
+}
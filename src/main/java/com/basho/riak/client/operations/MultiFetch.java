@@ -18,19 +18,191 @@ package com.basho.riak.client.operations;
 import com.basho.riak.client.convert.Converter;
 import com.basho.riak.client.convert.PassThroughConverter;
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
 import com.basho.riak.client.query.RiakObject;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Collections.unmodifiableList;
 
-public abstract class MultiFetch<T> extends RiakCommand<MultiFetch.Response>
+/**
+ * Fetches multiple values in parallel.
+ * <p>
+ * Up to {@link #withMaxInFlight(int) maxInFlight} fetches are outstanding at
+ * any time; as each completes the next key is dispatched. A fetch that fails 
+ * doesn't fail the others: the {@link Response} holds an {@link Entry} for 
+ * every key, in the order the keys were given, each either a value or the 
+ * exception that fetch failed with. 
+ * </p>
+ * <p>
+ * To process values as they complete rather than waiting for all of them, 
+ * supply an {@link EntryListener}. It is called once per key in completion 
+ * order, on the thread that completed the fetch, and must not block.
+ * </p>
+ * <p>
+ * For large batches of small objects, {@link Strategy#MAP_REDUCE} reads 
+ * many keys per round trip; see {@link #withStrategy(Strategy)}.
+ * </p>
+ */
+public abstract class MultiFetch<T> extends RiakCommand<MultiFetch.Response<T>>
 {
+    /**
+     * The default number of fetches in flight at once: {@value #DEFAULT_MAX_IN_FLIGHT}
+     */
+    public final static int DEFAULT_MAX_IN_FLIGHT = 10;
+
+    /**
+     * The default number of keys read by each MapReduce job: {@value #DEFAULT_MAP_REDUCE_BATCH_SIZE}
+     */
+    public final static int DEFAULT_MAP_REDUCE_BATCH_SIZE = 100;
+    /**
+     * The default number of keys from which {@link Strategy#AUTO} uses 
+     * MapReduce: {@value #DEFAULT_MAP_REDUCE_THRESHOLD}
+     * <p>
+     * This is a conservative starting point rather than a measured 
+     * crossover: five full default batches, so the cost of setting up each 
+     * job is spread over many keys. MultiFetchBenchmark only measures the 
+     * client side decoding cost; where MapReduce pays off also depends on 
+     * the round trip time and the load it puts on the cluster, so tune it 
+     * with {@link #withMapReduceThreshold(int)}.
+     * </p>
+     */
+    public final static int DEFAULT_MAP_REDUCE_THRESHOLD = 500;
+
+    /**
+     * How a MultiFetch reads its keys.
+     */
+    public enum Strategy
+    {
+        /**
+         * One fetch per key.
+         */
+        GET,
+        /**
+         * MapReduce jobs over batches of keys.
+         * <p>
+         * Each job takes its batch of keys as inputs and returns the 
+         * objects from a single map phase, saving a round trip per key. 
+         * Keys the job can't answer faithfully are fetched individually: 
+         * those with siblings, tombstones, keys missing from the job's 
+         * results, or the whole batch if the job fails. Values are 
+         * returned through JSON, so this suits text values; read 
+         * binary values with {@link #GET}. Fetch options such as R are 
+         * not applied to the MapReduce read.
+         * </p>
+         */
+        MAP_REDUCE,
+        /**
+         * {@link #MAP_REDUCE} if there are at least as many keys as the 
+         * threshold, otherwise {@link #GET}.
+         * @see MultiFetch#withMapReduceThreshold(int)
+         */
+        AUTO
+    }
+
+    int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    long deadlineNanos;
+    EntryListener<T> entryListener;
+    Strategy strategy = Strategy.GET;
+    int mapReduceBatchSize = DEFAULT_MAP_REDUCE_BATCH_SIZE;
+    int mapReduceThreshold = DEFAULT_MAP_REDUCE_THRESHOLD;
 
     @Override
-    abstract Response execute(RiakCluster cluster) throws ExecutionException, InterruptedException;
+    abstract RiakFuture<Response<T>> executeAsync(RiakCluster cluster);
+
+    /**
+     * Set the maximum number of fetches in flight at once.
+     * @param maxInFlight the window size
+     * @return this
+     * @see #DEFAULT_MAX_IN_FLIGHT
+     */
+    public MultiFetch<T> withMaxInFlight(int maxInFlight)
+    {
+        if (maxInFlight < 1)
+        {
+            throw new IllegalArgumentException("maxInFlight must be >= 1");
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Set a deadline for each fetch, relative to when that fetch is dispatched.
+     * @param timeout the time allowed for each fetch
+     * @param unit the unit for timeout
+     * @return this
+     * @see FetchValue.Builder#withDeadline(long, java.util.concurrent.TimeUnit) 
+     */
+    public MultiFetch<T> withDeadline(long timeout, TimeUnit unit)
+    {
+        if (timeout <= 0)
+        {
+            throw new IllegalArgumentException("Deadline must be positive");
+        }
+        this.deadlineNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * Set a listener called as each fetch completes.
+     * @param listener the listener
+     * @return this
+     */
+    public MultiFetch<T> withEntryListener(EntryListener<T> listener)
+    {
+        this.entryListener = listener;
+        return this;
+    }
+
+    /**
+     * Set how the keys are read.
+     * @param strategy the strategy; {@link Strategy#GET} by default
+     * @return this
+     */
+    public MultiFetch<T> withStrategy(Strategy strategy)
+    {
+        if (strategy == null)
+        {
+            throw new IllegalArgumentException("Strategy cannot be null");
+        }
+        this.strategy = strategy;
+        return this;
+    }
+
+    /**
+     * Set the number of keys read by each MapReduce job.
+     * @param batchSize the keys per job
+     * @return this
+     * @see #DEFAULT_MAP_REDUCE_BATCH_SIZE
+     */
+    public MultiFetch<T> withMapReduceBatchSize(int batchSize)
+    {
+        if (batchSize < 1)
+        {
+            throw new IllegalArgumentException("Batch size must be >= 1");
+        }
+        this.mapReduceBatchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Set the number of keys from which {@link Strategy#AUTO} uses MapReduce.
+     * @param threshold the minimum number of keys
+     * @return this
+     * @see #DEFAULT_MAP_REDUCE_THRESHOLD
+     */
+    public MultiFetch<T> withMapReduceThreshold(int threshold)
+    {
+        if (threshold < 1)
+        {
+            throw new IllegalArgumentException("Threshold must be >= 1");
+        }
+        this.mapReduceThreshold = threshold;
+        return this;
+    }
 
     public static MultiFetch<RiakObject> multiFetch(Location... keys)
     {
@@ -52,14 +224,105 @@ public abstract class MultiFetch<T> extends RiakCommand<MultiFetch.Response>
       return new KeyMultiFetch<U>(conterver, keys);
     }
 
+    /**
+     * Called as each fetch in a MultiFetch completes.
+     * @param <T> the value type
+     */
+    public interface EntryListener<T>
+    {
+        void onEntry(Entry<T> entry);
+    }
+
+    /**
+     * The outcome of fetching one key.
+     * @param <T> the value type
+     */
+    public static final class Entry<T>
+    {
+        private final Location location;
+        private final FetchValue.Response<T> response;
+        private final Throwable exception;
+
+        Entry(Location location, FetchValue.Response<T> response, Throwable exception)
+        {
+            this.location = location;
+            this.response = response;
+            this.exception = exception;
+        }
+
+        public Location getLocation()
+        {
+            return location;
+        }
+
+        /**
+         * Returns whether the fetch succeeded.
+         * @return true if {@link #getResponse()} holds the result.
+         */
+        public boolean isSuccess()
+        {
+            return exception == null;
+        }
+
+        /**
+         * @return the response, or null if the fetch failed.
+         */
+        public FetchValue.Response<T> getResponse()
+        {
+            return response;
+        }
+
+        /**
+         * @return the exception the fetch failed with, or null if it succeeded.
+         */
+        public Throwable getException()
+        {
+            return exception;
+        }
+    }
+
+    /**
+     * The results of a MultiFetch, in the order the keys were given.
+     * <p>
+     * Iterating a Response yields the values that were fetched successfully; 
+     * use {@link #getEntries()} to see failures as well.
+     * </p>
+     */
     public static final class Response<T> implements Iterable<FetchValue.Response<T>>
     {
 
+        private final List<Entry<T>> entries;
         private final List<FetchValue.Response<T>> responses;
 
-        Response(List<FetchValue.Response<T>> responses)
+        Response(List<Entry<T>> entries)
+        {
+            this.entries = entries;
+            this.responses = new ArrayList<FetchValue.Response<T>>(entries.size());
+            for (Entry<T> entry : entries)
+            {
+                if (entry.isSuccess())
+                {
+                    responses.add(entry.getResponse());
+                }
+            }
+        }
+
+        /**
+         * Returns the outcome for every key, in the order the keys were given.
+         * @return the entries
+         */
+        public List<Entry<T>> getEntries()
+        {
+            return unmodifiableList(entries);
+        }
+
+        /**
+         * Returns whether any fetch failed.
+         * @return true if at least one entry holds an exception.
+         */
+        public boolean hasFailures()
         {
-            this.responses = responses;
+            return responses.size() != entries.size();
         }
 
         @Override
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.cap.VClock;
+import com.basho.riak.client.convert.Converter;
+import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Stores multiple values in parallel.
+ * <p>
+ * Up to {@link Builder#withMaxInFlight(int) maxInFlight} stores are 
+ * outstanding at any time and, if a rate limit is set, no more than that 
+ * many are started per second. Options set on the builder apply to every 
+ * store. A store that fails doesn't fail the others: the {@link Response} 
+ * holds an {@link Entry} for every value, in the order they were added, 
+ * each either the store's response (including the new vclock) or the 
+ * exception it failed with.
+ * </p>
+ *
+ * @param <V> the type of the values being stored
+ * @since 2.0
+ */
+public class MultiStore<V> extends RiakCommand<MultiStore.Response<V>>
+{
+    private final List<Item<V>> items;
+    private final Map<StoreOption<?>, Object> options;
+    private final Converter<V> converter;
+    private final int maxInFlight;
+    private final int rateLimit;
+
+    MultiStore(Builder<V> builder)
+    {
+        this.items = new ArrayList<Item<V>>(builder.items);
+        this.options = new HashMap<StoreOption<?>, Object>(builder.options);
+        this.converter = builder.converter;
+        this.maxInFlight = builder.maxInFlight;
+        this.rateLimit = builder.rateLimit;
+    }
+
+    /**
+     * Returns the locations written, in the order they were added.
+     */
+    List<Location> getLocations()
+    {
+        List<Location> locations = new ArrayList<Location>(items.size());
+        for (Item<V> item : items)
+        {
+            locations.add(item.location);
+        }
+        return locations;
+    }
+
+    @Override
+    RiakFuture<Response<V>> executeAsync(RiakCluster cluster)
+    {
+        RateLimiter limiter = rateLimit > 0 ? new RateLimiter(rateLimit) : null;
+        return new BatchDispatcher<Item<V>, StoreValue.Response<V>, Entry<V>, Response<V>>(cluster, items, maxInFlight, limiter)
+        {
+            @Override
+            RiakFuture<StoreValue.Response<V>> execute(RiakCluster cluster, Item<V> item)
+            {
+                return buildStore(item).executeAsync(cluster);
+            }
+
+            @Override
+            Entry<V> createEntry(Item<V> item, StoreValue.Response<V> value, Throwable cause)
+            {
+                return new Entry<V>(item.location, value, cause);
+            }
+
+            @Override
+            Response<V> createResponse(List<Entry<V>> entries)
+            {
+                return new Response<V>(entries);
+            }
+        }.start();
+    }
+
+    @SuppressWarnings("unchecked")
+    private StoreValue<V> buildStore(Item<V> item)
+    {
+        StoreValue.Builder<V> builder = new StoreValue.Builder<V>(item.location, item.value);
+        if (item.vClock != null)
+        {
+            builder.withVectorClock(item.vClock);
+        }
+        if (converter != null)
+        {
+            builder.withConverter(converter);
+        }
+        for (Map.Entry<StoreOption<?>, Object> option : options.entrySet())
+        {
+            builder.withOption((StoreOption<Object>) option.getKey(), option.getValue());
+        }
+        return builder.build();
+    }
+
+    private static class Item<V>
+    {
+        private final Location location;
+        private final V value;
+        private final VClock vClock;
+
+        Item(Location location, V value, VClock vClock)
+        {
+            this.location = location;
+            this.value = value;
+            this.vClock = vClock;
+        }
+    }
+
+    /**
+     * The outcome of storing one value.
+     * @param <V> the value type
+     */
+    public static final class Entry<V>
+    {
+        private final Location location;
+        private final StoreValue.Response<V> response;
+        private final Throwable exception;
+
+        Entry(Location location, StoreValue.Response<V> response, Throwable exception)
+        {
+            this.location = location;
+            this.response = response;
+            this.exception = exception;
+        }
+
+        public Location getLocation()
+        {
+            return location;
+        }
+
+        /**
+         * Returns whether the store succeeded.
+         * @return true if {@link #getResponse()} holds the result.
+         */
+        public boolean isSuccess()
+        {
+            return exception == null;
+        }
+
+        /**
+         * @return the response, or null if the store failed.
+         */
+        public StoreValue.Response<V> getResponse()
+        {
+            return response;
+        }
+
+        /**
+         * @return the vclock returned by Riak, or null if the store failed 
+         * or none was returned.
+         */
+        public VClock getvClock()
+        {
+            return response == null ? null : response.getvClock();
+        }
+
+        /**
+         * @return the exception the store failed with, or null if it succeeded.
+         */
+        public Throwable getException()
+        {
+            return exception;
+        }
+    }
+
+    /**
+     * The results of a MultiStore, in the order the values were added.
+     * @param <V> the value type
+     */
+    public static final class Response<V>
+    {
+        private final List<Entry<V>> entries;
+
+        Response(List<Entry<V>> entries)
+        {
+            this.entries = entries;
+        }
+
+        public List<Entry<V>> getEntries()
+        {
+            return unmodifiableList(entries);
+        }
+
+        /**
+         * Returns whether any store failed.
+         * @return true if at least one entry holds an exception.
+         */
+        public boolean hasFailures()
+        {
+            for (Entry<V> entry : entries)
+            {
+                if (!entry.isSuccess())
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    public static class Builder<V>
+    {
+        /**
+         * The default number of stores in flight at once: {@value #DEFAULT_MAX_IN_FLIGHT}
+         */
+        public final static int DEFAULT_MAX_IN_FLIGHT = 10;
+
+        private final List<Item<V>> items = new ArrayList<Item<V>>();
+        private final Map<StoreOption<?>, Object> options =
+            new HashMap<StoreOption<?>, Object>();
+        private Converter<V> converter;
+        private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        private int rateLimit;
+
+        public Builder()
+        {
+        }
+
+        /**
+         * Add a value to store.
+         * @param location where to store it
+         * @param value the value
+         * @return this
+         */
+        public Builder<V> add(Location location, V value)
+        {
+            return add(location, value, null);
+        }
+
+        /**
+         * Add a value to store with the vclock of the version it replaces.
+         * @param location where to store it
+         * @param value the value
+         * @param vClock the vclock; may be null
+         * @return this
+         */
+        public Builder<V> add(Location location, V value, VClock vClock)
+        {
+            items.add(new Item<V>(location, value, vClock));
+            return this;
+        }
+
+        /**
+         * Add an option applied to every store.
+         * @param option the option
+         * @param value the value associated with the option
+         * @param <T> the type required by the option
+         * @return this
+         */
+        public <T> Builder<V> withOption(StoreOption<T> option, T value)
+        {
+            options.put(option, value);
+            return this;
+        }
+
+        /**
+         * Add a domain converter used for every value.
+         * @param converter a domain object converter
+         * @return this
+         */
+        public Builder<V> withConverter(Converter<V> converter)
+        {
+            this.converter = converter;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of stores in flight at once.
+         * @param maxInFlight the window size
+         * @return this
+         * @see #DEFAULT_MAX_IN_FLIGHT
+         */
+        public Builder<V> withMaxInFlight(int maxInFlight)
+        {
+            if (maxInFlight < 1)
+            {
+                throw new IllegalArgumentException("maxInFlight must be >= 1");
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Limit how many stores are started per second.
+         * Delayed stores are scheduled on the cluster's executor.
+         * @param permitsPerSecond the maximum rate; by default there is no limit
+         * @return this
+         */
+        public Builder<V> withRateLimit(int permitsPerSecond)
+        {
+            if (permitsPerSecond < 1)
+            {
+                throw new IllegalArgumentException("Rate must be >= 1 per second");
+            }
+            this.rateLimit = permitsPerSecond;
+            return this;
+        }
+
+        public MultiStore<V> build()
+        {
+            return new MultiStore<V>(this);
+        }
+    }
+}
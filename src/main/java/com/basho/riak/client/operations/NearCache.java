@@ -0,0 +1,933 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.core.DefaultRiakFuture;
+import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.core.RiakFutureListener;
+import com.basho.riak.client.core.operations.FetchOperation;
+import com.basho.riak.client.query.RiakObject;
+import com.basho.riak.client.util.BinaryValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An in-process cache of {@link FetchValue} results.
+ * <p>
+ * Used by a {@link RiakClient} built with 
+ * {@link RiakClient.Builder#withNearCache(NearCache)}. Fetches made through 
+ * that client are answered from the cache while the entry for their 
+ * location and options is younger than the TTL; otherwise they go to Riak 
+ * and the result is cached. Conditional fetches 
+ * ({@link FetchOption#IF_MODIFIED}) always go to Riak.
+ * </p>
+ * <p>
+ * The cache holds at most {@link Builder#withMaxBytes(long) maxBytes} of 
+ * estimated object size. When it is full, a new entry is only admitted if 
+ * its key has been requested more often recently than the least recently 
+ * used entry it would evict (TinyLFU), so a scan of cold keys doesn't 
+ * flush the popular ones.
+ * </p>
+ * <p>
+ * Stores, updates and deletes made through the same client, including 
+ * those in a {@link MultiStore}, {@link MultiDelete} or {@link MultiCommand}, 
+ * invalidate the location before they are sent and again when they 
+ * complete (for a batch, when the whole batch completes), and a fetch 
+ * that was in flight across a write never fills the cache. Writes made by 
+ * other clients are only seen once the entry expires; call 
+ * {@link #invalidate(Location)} for writes the application knows about.
+ * </p>
+ * <p>
+ * With {@link Builder#withRefreshAhead(double) refresh-ahead}, a hit on an 
+ * entry past the given fraction of its TTL returns the cached value and 
+ * starts a background fetch to replace it, so popular keys don't expire 
+ * and stall their readers.
+ * </p>
+ * <p>
+ * With {@link Builder#withRevalidation(boolean) revalidation}, an entry 
+ * past its TTL is checked with a conditional fetch carrying its vclock, 
+ * so an unchanged object costs a round trip but not a transfer. TTLs can 
+ * be set per bucket with {@link Builder#withBucketTtl(Location, long, TimeUnit)}.
+ * </p>
+ * <p>
+ * With a {@link Builder#withSecondLevel(MappedCache) second level}, 
+ * results are also kept in a memory-mapped file that outlives the 
+ * process, so a restarted client starts with a warm cache.
+ * </p>
+ * <p>
+ * Cached {@link RiakObject}s are shared by every fetch that hits them and 
+ * must be treated as read only.
+ * </p>
+ *
+ * @since 2.0
+ */
+public class NearCache
+{
+    // Rough per-object bookkeeping cost beyond the value itself
+    private static final int OBJECT_OVERHEAD = 128;
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final long maxBytes;
+    private final long ttlNanos;
+    private final Map<List<BinaryValue>, Long> bucketTtlNanos;
+    private final double refreshAhead;
+    private final boolean revalidate;
+    private final MappedCache secondLevel;
+
+    // Guarded by this
+    private final LinkedHashMap<Object, Entry> entries =
+        new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+    private final Map<Location, Set<Object>> keysByLocation =
+        new HashMap<Location, Set<Object>>();
+    private final FrequencySketch sketch;
+    private long weightedSize;
+
+    // Fills are dropped if their location was invalidated after the fetch started
+    private final WriteStamps invalidated = new WriteStamps();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong rejectionCount = new AtomicLong();
+    private final AtomicLong expirationCount = new AtomicLong();
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+    private final AtomicLong revalidationCount = new AtomicLong();
+    private final AtomicLong unchangedCount = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final AtomicLong secondLevelHitCount = new AtomicLong();
+
+    NearCache(Builder builder)
+    {
+        this.maxBytes = builder.maxBytes;
+        this.ttlNanos = builder.ttlNanos;
+        this.bucketTtlNanos = new HashMap<List<BinaryValue>, Long>(builder.bucketTtlNanos);
+        this.refreshAhead = builder.refreshAhead;
+        this.revalidate = builder.revalidate;
+        this.secondLevel = builder.secondLevel;
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(256, maxBytes / 1024)));
+    }
+
+    /**
+     * Executes a command through the cache.
+     */
+    @SuppressWarnings("unchecked")
+    <T> RiakFuture<T> execute(RiakCommand<T> command, RiakCluster cluster)
+    {
+        if (command instanceof FetchValue)
+        {
+            return (RiakFuture<T>) fetch((FetchValue<?>) command, cluster);
+        }
+        List<Location> written = writtenLocations(command);
+        if (!written.isEmpty())
+        {
+            return write(command, written, cluster);
+        }
+        return command.executeAsync(cluster);
+    }
+
+    /**
+     * Returns the keys a command writes. The commands of a 
+     * {@link MultiCommand} run without going through the cache, so 
+     * everything they write is included; the fetches among them neither 
+     * read nor fill it.
+     */
+    static List<Location> writtenLocations(RiakCommand<?> command)
+    {
+        List<Location> locations = new ArrayList<Location>();
+        addWrittenLocations(command, locations);
+        return locations;
+    }
+
+    private static void addWrittenLocations(RiakCommand<?> command, List<Location> locations)
+    {
+        if (command instanceof StoreValue)
+        {
+            addKeyed(((StoreValue<?>) command).getLocation(), locations);
+        }
+        else if (command instanceof UpdateValue)
+        {
+            addKeyed(((UpdateValue<?>) command).getLocation(), locations);
+        }
+        else if (command instanceof DeleteValue)
+        {
+            addKeyed(((DeleteValue) command).getLocation(), locations);
+        }
+        else if (command instanceof MultiStore)
+        {
+            for (Location location : ((MultiStore<?>) command).getLocations())
+            {
+                addKeyed(location, locations);
+            }
+        }
+        else if (command instanceof MultiDelete)
+        {
+            for (Location location : ((MultiDelete) command).getLocations())
+            {
+                addKeyed(location, locations);
+            }
+        }
+        else if (command instanceof MultiCommand)
+        {
+            for (RiakCommand<?> c : ((MultiCommand) command).getCommands())
+            {
+                addWrittenLocations(c, locations);
+            }
+        }
+    }
+
+    private static void addKeyed(Location location, List<Location> locations)
+    {
+        // A store without a key creates a new one; nothing can be cached for it
+        if (location != null && location.hasKey())
+        {
+            locations.add(location);
+        }
+    }
+
+    private <T> RiakFuture<T> write(RiakCommand<T> command, final List<Location> locations, RiakCluster cluster)
+    {
+        invalidate(locations);
+        RiakFuture<T> future = command.executeAsync(cluster);
+        future.addListener(new RiakFutureListener<T>()
+        {
+            @Override
+            public void handle(RiakFuture<T> f)
+            {
+                // Also drops fills by fetches that overlapped the write
+                invalidate(locations);
+            }
+        });
+        return future;
+    }
+
+    private void invalidate(List<Location> locations)
+    {
+        for (Location location : locations)
+        {
+            invalidate(location);
+        }
+    }
+
+    <T> RiakFuture<FetchValue.Response<T>> fetch(final FetchValue<T> fetch, RiakCluster cluster)
+    {
+        if (fetch.isConditional())
+        {
+            return fetch.executeAsync(cluster);
+        }
+        Object key = fetch.getKey();
+        long ttl = ttlFor(fetch.getLocation());
+        Entry entry = get(key, ttl);
+        if (entry == null)
+        {
+            if (secondLevel != null && fetch.hasDefaultOptions())
+            {
+                RiakFuture<FetchOperation.Response> promoted = promote(fetch, key, ttl, cluster);
+                if (promoted != null)
+                {
+                    return fetch.adapt(promoted);
+                }
+            }
+            missCount.incrementAndGet();
+            return fetch.adapt(load(fetch, key, cluster));
+        }
+        long age = System.nanoTime() - entry.createdNanos;
+        if (age >= ttl)
+        {
+            // Kept past its TTL only to be revalidated
+            return fetch.adapt(refresh(fetch, entry, cluster));
+        }
+        hitCount.incrementAndGet();
+        if (refreshAhead > 0 && age >= ttl * refreshAhead && entry.refresh.get() == null 
+            && startRefresh(fetch, entry, cluster) != null)
+        {
+            refreshCount.incrementAndGet();
+        }
+        DefaultRiakFuture<FetchOperation.Response> cached = new DefaultRiakFuture<FetchOperation.Response>();
+        cached.setResponse(entry.response);
+        return fetch.adapt(cached);
+    }
+
+    /**
+     * Answers a fetch from the second level, moving the result into this 
+     * cache with the age it had there. A result past its TTL is served 
+     * while it is refreshed in the background.
+     * @return the result, or null if the second level can't answer it.
+     */
+    private RiakFuture<FetchOperation.Response> promote(FetchValue<?> fetch, Object key, long ttl, RiakCluster cluster)
+    {
+        Location location = fetch.getLocation();
+        long started = invalidated.current();
+        MappedCache.Hit hit = secondLevel.get(location);
+        if (hit == null)
+        {
+            return null;
+        }
+        long age = TimeUnit.MILLISECONDS.toNanos(hit.ageMillis);
+        Entry entry = put(key, location, hit.response, started, age, false);
+        if (age >= ttl)
+        {
+            if (entry == null)
+            {
+                // Not admitted, so there is nothing to refresh
+                return null;
+            }
+            startRefresh(fetch, entry, cluster);
+        }
+        hitCount.incrementAndGet();
+        secondLevelHitCount.incrementAndGet();
+        DefaultRiakFuture<FetchOperation.Response> cached = new DefaultRiakFuture<FetchOperation.Response>();
+        cached.setResponse(hit.response);
+        return cached;
+    }
+
+    private RiakFuture<FetchOperation.Response> load(final FetchValue<?> fetch, final Object key, RiakCluster cluster)
+    {
+        final Location location = fetch.getLocation();
+        final long started = invalidated.current();
+        RiakFuture<FetchOperation.Response> future = fetch.executeOperation(cluster);
+        future.addListener(new RiakFutureListener<FetchOperation.Response>()
+        {
+            @Override
+            public void handle(RiakFuture<FetchOperation.Response> f)
+            {
+                FetchOperation.Response response = responseOf(f);
+                if (response != null)
+                {
+                    put(key, location, response, started, 0, fetch.hasDefaultOptions());
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Returns the refresh of an entry in progress, starting one if needed.
+     */
+    private RiakFuture<FetchOperation.Response> refresh(FetchValue<?> fetch, Entry entry, RiakCluster cluster)
+    {
+        while (true)
+        {
+            RiakFuture<FetchOperation.Response> running = entry.refresh.get();
+            if (running != null)
+            {
+                return running;
+            }
+            running = startRefresh(fetch, entry, cluster);
+            if (running != null)
+            {
+                return running;
+            }
+        }
+    }
+
+    /**
+     * Fetches an entry again and caches the result. If revalidating, only 
+     * a changed object is transferred.
+     * @return the refreshed response, or null if a refresh is already running.
+     */
+    private RiakFuture<FetchOperation.Response> startRefresh(final FetchValue<?> fetch, final Entry entry, RiakCluster cluster)
+    {
+        final DefaultRiakFuture<FetchOperation.Response> refreshed = new DefaultRiakFuture<FetchOperation.Response>();
+        if (!entry.refresh.compareAndSet(null, refreshed))
+        {
+            return null;
+        }
+        final long started = invalidated.current();
+        RiakFuture<FetchOperation.Response> future;
+        try
+        {
+            if (entry.isRevalidatable(revalidate))
+            {
+                revalidationCount.incrementAndGet();
+                future = fetch.ifModified(entry.response.getVClock()).executeOperation(cluster);
+            }
+            else
+            {
+                future = fetch.executeOperation(cluster);
+            }
+        }
+        catch (RuntimeException ex)
+        {
+            // e.g. the cluster isn't running; a refresh left in place 
+            // would never complete and later fetches would wait on it
+            entry.refresh.set(null);
+            refreshed.setException(ex);
+            throw ex;
+        }
+        future.addListener(new RiakFutureListener<FetchOperation.Response>()
+        {
+            @Override
+            public void handle(RiakFuture<FetchOperation.Response> f)
+            {
+                FetchOperation.Response response;
+                try
+                {
+                    response = f.get();
+                }
+                catch (ExecutionException ex)
+                {
+                    // Let a later fetch try again
+                    entry.refresh.set(null);
+                    refreshed.setException(ex.getCause());
+                    return;
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                    entry.refresh.set(null);
+                    refreshed.setException(ex);
+                    return;
+                }
+                if (response.isUnchanged())
+                {
+                    unchangedCount.incrementAndGet();
+                    bytesSaved.addAndGet(entry.valueBytes);
+                    response = entry.response;
+                }
+                if (put(entry.key, entry.location, response, started, 0, fetch.hasDefaultOptions()) == null)
+                {
+                    // Not admitted, e.g. after a write to another location 
+                    // stamped the same stripe; the old entry would otherwise 
+                    // be served, with its refresh done, until it expires
+                    discard(entry);
+                }
+                refreshed.setResponse(response);
+            }
+        });
+        return refreshed;
+    }
+
+    private static FetchOperation.Response responseOf(RiakFuture<FetchOperation.Response> f)
+    {
+        try
+        {
+            return f.get();
+        }
+        catch (ExecutionException ex)
+        {
+            return null;
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private synchronized Entry get(Object key, long ttl)
+    {
+        sketch.increment(key);
+        Entry entry = entries.get(key);
+        // An expired entry with a refresh running is kept so the fetch 
+        // joins that refresh rather than starting another
+        if (entry != null && System.nanoTime() - entry.createdNanos >= ttl
+            && !entry.isRevalidatable(revalidate) && entry.refresh.get() == null)
+        {
+            remove(entry);
+            expirationCount.incrementAndGet();
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Caches a result unless its location was written since the fetch 
+     * started, also writing it to the second level if persist is set.
+     * @return the new entry, or null if it wasn't admitted.
+     */
+    private Entry put(Object key, Location location, FetchOperation.Response response, 
+                      long started, long ageNanos, boolean persist)
+    {
+        if (invalidated.writtenSince(location, started))
+        {
+            return null;
+        }
+        if (persist && secondLevel != null)
+        {
+            // Not under this cache's lock; the second level has its own. 
+            // A write that lands meanwhile either sees this result to 
+            // remove it or is seen here.
+            secondLevel.put(location, response);
+            if (invalidated.writtenSince(location, started))
+            {
+                secondLevel.remove(location);
+                return null;
+            }
+        }
+        return admit(key, location, response, started, ageNanos);
+    }
+
+    private synchronized Entry admit(Object key, Location location, FetchOperation.Response response, 
+                                     long started, long ageNanos)
+    {
+        if (invalidated.writtenSince(location, started))
+        {
+            return null;
+        }
+        long weight = weigh(location, response);
+        if (weight > maxBytes)
+        {
+            rejectionCount.incrementAndGet();
+            return null;
+        }
+        Entry existing = entries.get(key);
+        if (existing != null)
+        {
+            remove(existing);
+        }
+        Iterator<Entry> lru = entries.values().iterator();
+        while (weightedSize + weight > maxBytes)
+        {
+            Entry victim = lru.next();
+            if (existing == null && sketch.frequency(key) <= sketch.frequency(victim.key))
+            {
+                rejectionCount.incrementAndGet();
+                return null;
+            }
+            lru.remove();
+            unlink(victim);
+            evictionCount.incrementAndGet();
+        }
+        Entry entry = new Entry(key, location, response, weight, ageNanos);
+        entries.put(key, entry);
+        Set<Object> keys = keysByLocation.get(location);
+        if (keys == null)
+        {
+            keys = new HashSet<Object>();
+            keysByLocation.put(location, keys);
+        }
+        keys.add(key);
+        weightedSize += weight;
+        return entry;
+    }
+
+    /**
+     * Removes an entry if it is still the one cached for its key.
+     */
+    private synchronized void discard(Entry entry)
+    {
+        if (entries.get(entry.key) == entry)
+        {
+            remove(entry);
+        }
+    }
+
+    private void remove(Entry entry)
+    {
+        entries.remove(entry.key);
+        unlink(entry);
+    }
+
+    // Removes what remove(Entry) does other than the entries map
+    private void unlink(Entry entry)
+    {
+        weightedSize -= entry.weight;
+        Set<Object> keys = keysByLocation.get(entry.location);
+        if (keys != null)
+        {
+            keys.remove(entry.key);
+            if (keys.isEmpty())
+            {
+                keysByLocation.remove(entry.location);
+            }
+        }
+    }
+
+    private static long weigh(Location location, FetchOperation.Response response)
+    {
+        long weight = ENTRY_OVERHEAD + location.getBucket().length() + location.getKey().length();
+        for (RiakObject object : response.getObjectList())
+        {
+            weight += OBJECT_OVERHEAD + (object.hasValue() ? object.getValue().length() : 0);
+        }
+        return weight;
+    }
+
+    private long ttlFor(Location location)
+    {
+        if (bucketTtlNanos.isEmpty())
+        {
+            return ttlNanos;
+        }
+        Long ttl = bucketTtlNanos.get(bucketOf(location));
+        return ttl != null ? ttl : ttlNanos;
+    }
+
+    private static List<BinaryValue> bucketOf(Location location)
+    {
+        return Arrays.asList(location.getType(), location.getBucket());
+    }
+
+    /**
+     * Removes every cached result for a location.
+     * <p>
+     * Fetches of the location already in flight won't cache their result.
+     * </p>
+     * @param location the location that was written
+     */
+    public void invalidate(Location location)
+    {
+        invalidated.stamp(location);
+        invalidationCount.incrementAndGet();
+        if (secondLevel != null)
+        {
+            secondLevel.remove(location);
+        }
+        synchronized (this)
+        {
+            Set<Object> keys = keysByLocation.remove(location);
+            if (keys != null)
+            {
+                for (Object key : keys)
+                {
+                    Entry entry = entries.remove(key);
+                    weightedSize -= entry.weight;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes every cached result.
+     */
+    public void invalidateAll()
+    {
+        invalidated.stampAll();
+        invalidationCount.incrementAndGet();
+        if (secondLevel != null)
+        {
+            secondLevel.clear();
+        }
+        synchronized (this)
+        {
+            entries.clear();
+            keysByLocation.clear();
+            weightedSize = 0;
+        }
+    }
+
+    /**
+     * @return the number of fetches answered from the cache.
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of fetches that went to Riak, excluding conditional fetches.
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the fraction of fetches answered from the cache.
+     * @return between 0 and 1; 0 if there have been no fetches.
+     */
+    public double getHitRatio()
+    {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return the number of entries evicted to make room for others.
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return the number of results not cached because they were requested 
+     * less often than what they would have evicted, or were larger than the cache.
+     */
+    public long getRejectionCount()
+    {
+        return rejectionCount.get();
+    }
+
+    /**
+     * @return the number of entries removed because they outlived the TTL.
+     */
+    public long getExpirationCount()
+    {
+        return expirationCount.get();
+    }
+
+    /**
+     * @return the number of refresh-ahead fetches started.
+     */
+    public long getRefreshCount()
+    {
+        return refreshCount.get();
+    }
+
+    /**
+     * @return the number of invalidations, including those made by writes.
+     */
+    public long getInvalidationCount()
+    {
+        return invalidationCount.get();
+    }
+
+    /**
+     * @return the number of conditional fetches sent to revalidate entries.
+     */
+    public long getRevalidationCount()
+    {
+        return revalidationCount.get();
+    }
+
+    /**
+     * @return the number of revalidations to which Riak replied unchanged.
+     */
+    public long getUnchangedCount()
+    {
+        return unchangedCount.get();
+    }
+
+    /**
+     * @return the bytes of object values not transferred because a 
+     * revalidation found the cached object unchanged.
+     */
+    public long getBytesSaved()
+    {
+        return bytesSaved.get();
+    }
+
+    /**
+     * @return the number of hits answered from the second level, 
+     * including stale results served while they were refreshed.
+     */
+    public long getSecondLevelHitCount()
+    {
+        return secondLevelHitCount.get();
+    }
+
+    /**
+     * @return the estimated size of the cached objects in bytes.
+     */
+    public synchronized long getWeightedSize()
+    {
+        return weightedSize;
+    }
+
+    /**
+     * @return the number of cached results.
+     */
+    public synchronized int getEntryCount()
+    {
+        return entries.size();
+    }
+
+    private static class Entry
+    {
+        final Object key;
+        final Location location;
+        final FetchOperation.Response response;
+        final long weight;
+        final long valueBytes;
+        final long createdNanos;
+        // The refresh in progress, if any
+        final AtomicReference<RiakFuture<FetchOperation.Response>> refresh =
+            new AtomicReference<RiakFuture<FetchOperation.Response>>();
+
+        Entry(Object key, Location location, FetchOperation.Response response, long weight, long ageNanos)
+        {
+            this.createdNanos = System.nanoTime() - ageNanos;
+            this.key = key;
+            this.location = location;
+            this.response = response;
+            this.weight = weight;
+            long bytes = 0;
+            for (RiakObject object : response.getObjectList())
+            {
+                bytes += object.hasValue() ? object.getValue().length() : 0;
+            }
+            this.valueBytes = bytes;
+        }
+
+        /**
+         * Returns whether a conditional fetch can tell if this entry is current.
+         */
+        boolean isRevalidatable(boolean revalidate)
+        {
+            return revalidate && !response.isNotFound() && response.getVClock() != null;
+        }
+    }
+
+    public static class Builder
+    {
+        /**
+         * The default bound on the estimated size of cached objects: {@value #DEFAULT_MAX_BYTES} bytes
+         */
+        public final static long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+        /**
+         * The default time a result is served from the cache: {@value #DEFAULT_TTL_MILLIS}ms
+         */
+        public final static long DEFAULT_TTL_MILLIS = 60000;
+
+        private long maxBytes = DEFAULT_MAX_BYTES;
+        private long ttlNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TTL_MILLIS);
+        private final Map<List<BinaryValue>, Long> bucketTtlNanos = 
+            new HashMap<List<BinaryValue>, Long>();
+        private double refreshAhead;
+        private boolean revalidate;
+        private MappedCache secondLevel;
+
+        public Builder()
+        {
+        }
+
+        /**
+         * Set the bound on the estimated size of cached objects.
+         * @param maxBytes the maximum size in bytes
+         * @return this
+         * @see #DEFAULT_MAX_BYTES
+         */
+        public Builder withMaxBytes(long maxBytes)
+        {
+            if (maxBytes < 1)
+            {
+                throw new IllegalArgumentException("maxBytes must be positive");
+            }
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Set how long a result is served from the cache.
+         * @param ttl the time to live
+         * @param unit the unit for ttl
+         * @return this
+         * @see #DEFAULT_TTL_MILLIS
+         */
+        public Builder withTtl(long ttl, TimeUnit unit)
+        {
+            if (ttl <= 0)
+            {
+                throw new IllegalArgumentException("TTL must be positive");
+            }
+            this.ttlNanos = unit.toNanos(ttl);
+            return this;
+        }
+
+        /**
+         * Set how long results from one bucket are served from the cache, 
+         * overriding {@link #withTtl(long, TimeUnit)}.
+         * <p>
+         * A TTL of 0 serves nothing from the cache without checking with 
+         * Riak first; with {@link #withRevalidation(boolean) revalidation}, 
+         * every fetch becomes a conditional fetch that only transfers 
+         * changed objects.
+         * </p>
+         * @param bucket the bucket, and its type if it has one
+         * @param ttl the time to live; 0 for always stale
+         * @param unit the unit for ttl
+         * @return this
+         */
+        public Builder withBucketTtl(Location bucket, long ttl, TimeUnit unit)
+        {
+            if (ttl < 0)
+            {
+                throw new IllegalArgumentException("TTL cannot be negative");
+            }
+            bucketTtlNanos.put(bucketOf(bucket), unit.toNanos(ttl));
+            return this;
+        }
+
+        /**
+         * Revalidate entries past their TTL rather than dropping them.
+         * <p>
+         * A fetch of a stale entry sends a conditional fetch with the 
+         * cached vclock. If Riak replies unchanged the cached object is 
+         * served and its TTL restarts, without the value being transferred 
+         * again; otherwise the new object replaces it. Concurrent fetches 
+         * of a stale entry share one conditional fetch. Refresh-ahead 
+         * fetches are conditional too. Entries without a vclock, such as 
+         * not found results, expire as usual.
+         * </p>
+         * @param revalidate true to revalidate stale entries; false by default
+         * @return this
+         */
+        public Builder withRevalidation(boolean revalidate)
+        {
+            this.revalidate = revalidate;
+            return this;
+        }
+
+        /**
+         * Refresh entries in the background once they are past a fraction 
+         * of their TTL.
+         * @param fraction of the TTL after which a hit refreshes the 
+         * entry, e.g. 0.8; by default entries aren't refreshed
+         * @return this
+         */
+        public Builder withRefreshAhead(double fraction)
+        {
+            if (fraction <= 0 || fraction >= 1)
+            {
+                throw new IllegalArgumentException("Refresh-ahead fraction must be between 0 and 1");
+            }
+            this.refreshAhead = fraction;
+            return this;
+        }
+
+        /**
+         * Look up misses in a second, larger tier kept in a memory-mapped 
+         * file, so results survive a restart.
+         * <p>
+         * Results found there are moved into this cache with the age they 
+         * had when written. One past its TTL is served at once and 
+         * refreshed in the background, with a conditional fetch if 
+         * {@link #withRevalidation(boolean) revalidation} is on. Only 
+         * fetches without options use the second level. Writes and 
+         * invalidations through this cache apply to it too.
+         * </p>
+         * @param secondLevel the second level; closing it is up to the caller
+         * @return this
+         * @see MappedCache
+         */
+        public Builder withSecondLevel(MappedCache secondLevel)
+        {
+            this.secondLevel = secondLevel;
+            return this;
+        }
+
+        public NearCache build()
+        {
+            return new NearCache(this);
+        }
+    }
+}
@@ -0,0 +1,773 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.core.DefaultRiakFuture;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.core.RiakFutureListener;
+import com.basho.riak.client.core.StreamingResult;
+import com.basho.riak.client.core.operations.SecondaryIndexQueryOperation;
+import com.basho.riak.client.util.BinaryValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers fetches of keys that don't exist without going to Riak.
+ * <p>
+ * Used by a {@link RiakClient} built with 
+ * {@link RiakClient.Builder#withNotFoundCache(NotFoundCache)}. It has two 
+ * parts:
+ * </p>
+ * <ul>
+ * <li>A negative cache: a fetch Riak answered not found is answered not 
+ * found locally for the TTL, for up to 
+ * {@link Builder#withMaxEntries(int) maxEntries} locations.</li>
+ * <li>Optional per bucket Bloom filters, built by 
+ * {@link #seed(RiakClient, Location, long, SeedSource) seeding} from a 
+ * streamed key listing. A fetch of a key the filter has definitely not 
+ * seen is answered not found locally. A key the filter may have seen 
+ * goes to Riak; with probability 
+ * {@link Builder#withFalsePositiveProbability(double) falsePositiveProbability} 
+ * it doesn't exist after all, which only costs the round trip.</li>
+ * </ul>
+ * <p>
+ * Stores and updates made through the same client, including those in a 
+ * {@link MultiStore} or {@link MultiCommand}, remove their location 
+ * from the negative cache and add their key to the bucket's filter, both 
+ * before they are sent and when they complete, and a not found result 
+ * that was in flight across a write is not cached. Conditional fetches 
+ * always go to Riak.
+ * </p>
+ * <p>
+ * <b>Consistency.</b> A not found answered locally can be wrong:
+ * </p>
+ * <ul>
+ * <li>A key created by another client is reported not found until its 
+ * negative entry expires, and by a seeded filter until the bucket is 
+ * seeded again. Use {@link #markWritten(Location)} for writes the 
+ * application knows about.</li>
+ * <li>A not found cached under one set of read options (say r=1 during a 
+ * partition) is returned for fetches with any options.</li>
+ * <li>Filters never forget keys, so deleted keys go to Riak; this only 
+ * costs a round trip.</li>
+ * </ul>
+ * <p>
+ * Only use it for buckets where a briefly stale not found is acceptable. 
+ * To find out how often a filter is wrong, set a 
+ * {@link Builder#withVerifyFraction(double) verify fraction}: that share of 
+ * the fetches a filter would answer go to Riak anyway, and if Riak finds 
+ * the key the filter is dropped until the bucket is seeded again.
+ * </p>
+ *
+ * @since 2.0
+ */
+public class NotFoundCache
+{
+    private static final BinaryValue BUCKET_INDEX = BinaryValue.create("$bucket");
+
+    /**
+     * Where {@link NotFoundCache#seed(RiakClient, Location, long, SeedSource)} 
+     * lists a bucket's keys from.
+     */
+    public enum SeedSource
+    {
+        /**
+         * A streaming {@link ListKeys}. Works on any backend but walks 
+         * every key in the cluster.
+         */
+        LIST_KEYS,
+        /**
+         * A streaming query of the {@code $bucket} secondary index. 
+         * Cheaper than listing keys, but needs a backend with 2i.
+         */
+        BUCKET_INDEX
+    }
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final double falsePositiveProbability;
+    private final double verifyFraction;
+    private final Random random = new Random();
+
+    // Guarded by this; location to expiry
+    private final LinkedHashMap<Location, Long> notFound;
+    // Keyed by bucket type and name
+    private final ConcurrentHashMap<List<BinaryValue>, BloomFilter> filters =
+        new ConcurrentHashMap<List<BinaryValue>, BloomFilter>();
+    // Filters being seeded; writes go to these too
+    private final ConcurrentHashMap<List<BinaryValue>, BloomFilter> seeding =
+        new ConcurrentHashMap<List<BinaryValue>, BloomFilter>();
+    private final WriteStamps written = new WriteStamps();
+
+    private final AtomicLong negativeHitCount = new AtomicLong();
+    private final AtomicLong filterHitCount = new AtomicLong();
+    private final AtomicLong verificationCount = new AtomicLong();
+    private final AtomicLong falseNotFoundCount = new AtomicLong();
+    private final AtomicLong falsePositiveCount = new AtomicLong();
+
+    NotFoundCache(Builder builder)
+    {
+        this.ttlNanos = builder.ttlNanos;
+        this.maxEntries = builder.maxEntries;
+        this.falsePositiveProbability = builder.falsePositiveProbability;
+        this.verifyFraction = builder.verifyFraction;
+        this.notFound = new LinkedHashMap<Location, Long>()
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Location, Long> eldest)
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Executes a command through the cache.
+     */
+    @SuppressWarnings("unchecked")
+    <T> RiakFuture<T> execute(RiakCommand<T> command, CommandExecutor next)
+    {
+        if (command instanceof FetchValue)
+        {
+            return (RiakFuture<T>) fetch((FetchValue<?>) command, next);
+        }
+        if (command instanceof StoreValue)
+        {
+            return (RiakFuture<T>) store((StoreValue<?>) command, next);
+        }
+        if (command instanceof UpdateValue)
+        {
+            return write(command, ((UpdateValue<?>) command).getLocation(), next);
+        }
+        if (command instanceof MultiStore || command instanceof MultiCommand)
+        {
+            return batchWrite(command, next);
+        }
+        return next.execute(command);
+    }
+
+    /**
+     * A MultiStore or MultiCommand; the stores in it don't go through this 
+     * cache, so every key they write is marked here, including keys Riak 
+     * picks, which are read from the response.
+     */
+    private <T> RiakFuture<T> batchWrite(RiakCommand<T> command, CommandExecutor next)
+    {
+        final List<Location> locations = new ArrayList<Location>();
+        addWrittenLocations(command, locations);
+        for (Location location : locations)
+        {
+            markWritten(location);
+        }
+        RiakFuture<T> future = next.execute(command);
+        future.addListener(new RiakFutureListener<T>()
+        {
+            @Override
+            public void handle(RiakFuture<T> f)
+            {
+                for (Location location : locations)
+                {
+                    markWritten(location);
+                }
+                markStored(responseOf(f));
+            }
+        });
+        return future;
+    }
+
+    private static void addWrittenLocations(RiakCommand<?> command, List<Location> locations)
+    {
+        if (command instanceof StoreValue && ((StoreValue<?>) command).getLocation().hasKey())
+        {
+            locations.add(((StoreValue<?>) command).getLocation());
+        }
+        else if (command instanceof UpdateValue)
+        {
+            locations.add(((UpdateValue<?>) command).getLocation());
+        }
+        else if (command instanceof MultiStore)
+        {
+            for (Location location : ((MultiStore<?>) command).getLocations())
+            {
+                if (location.hasKey())
+                {
+                    locations.add(location);
+                }
+            }
+        }
+        else if (command instanceof MultiCommand)
+        {
+            for (RiakCommand<?> c : ((MultiCommand) command).getCommands())
+            {
+                addWrittenLocations(c, locations);
+            }
+        }
+    }
+
+    /**
+     * Marks the keys in the response to a batch that stored values.
+     */
+    private void markStored(Object response)
+    {
+        if (response instanceof StoreValue.Response)
+        {
+            Location key = ((StoreValue.Response<?>) response).getKey();
+            if (key != null)
+            {
+                markWritten(key);
+            }
+        }
+        else if (response instanceof MultiStore.Response)
+        {
+            for (MultiStore.Entry<?> entry : ((MultiStore.Response<?>) response).getEntries())
+            {
+                markStored(entry.getResponse());
+            }
+        }
+        else if (response instanceof MultiCommand.Response)
+        {
+            for (MultiCommand.Entry entry : ((MultiCommand.Response) response).getEntries())
+            {
+                markStored(entry.getResponse());
+            }
+        }
+    }
+
+    private <V> RiakFuture<StoreValue.Response<V>> store(StoreValue<V> store, CommandExecutor next)
+    {
+        Location location = store.getLocation();
+        if (location.hasKey())
+        {
+            return write(store, location, next);
+        }
+        // Riak picks the key; it is only known once the store completes
+        RiakFuture<StoreValue.Response<V>> future = next.execute(store);
+        future.addListener(new RiakFutureListener<StoreValue.Response<V>>()
+        {
+            @Override
+            public void handle(RiakFuture<StoreValue.Response<V>> f)
+            {
+                StoreValue.Response<V> response = responseOf(f);
+                if (response != null && response.getKey() != null)
+                {
+                    markWritten(response.getKey());
+                }
+            }
+        });
+        return future;
+    }
+
+    private <T> RiakFuture<T> write(RiakCommand<T> command, final Location location, CommandExecutor next)
+    {
+        markWritten(location);
+        RiakFuture<T> future = next.execute(command);
+        future.addListener(new RiakFutureListener<T>()
+        {
+            @Override
+            public void handle(RiakFuture<T> f)
+            {
+                // Also drops not founds from fetches that overlapped the write
+                markWritten(location);
+            }
+        });
+        return future;
+    }
+
+    <T> RiakFuture<FetchValue.Response<T>> fetch(FetchValue<T> fetch, CommandExecutor next)
+    {
+        if (fetch.isConditional())
+        {
+            return next.execute(fetch);
+        }
+        final Location location = fetch.getLocation();
+        if (isCachedNotFound(location))
+        {
+            negativeHitCount.incrementAndGet();
+            return notFound(fetch);
+        }
+        final BloomFilter filter = filters.get(bucketOf(location));
+        final boolean absent = filter != null && !filter.mightContain(location.getKey());
+        if (absent)
+        {
+            if (verifyFraction == 0 || random.nextDouble() >= verifyFraction)
+            {
+                filterHitCount.incrementAndGet();
+                return notFound(fetch);
+            }
+            verificationCount.incrementAndGet();
+        }
+        final long started = written.current();
+        RiakFuture<FetchValue.Response<T>> future = next.execute(fetch);
+        future.addListener(new RiakFutureListener<FetchValue.Response<T>>()
+        {
+            @Override
+            public void handle(RiakFuture<FetchValue.Response<T>> f)
+            {
+                FetchValue.Response<T> response = responseOf(f);
+                if (response == null)
+                {
+                    return;
+                }
+                if (response.isNotFound())
+                {
+                    if (filter != null && !absent)
+                    {
+                        falsePositiveCount.incrementAndGet();
+                    }
+                    if (!written.writtenSince(location, started))
+                    {
+                        putNotFound(location);
+                    }
+                }
+                else if (absent)
+                {
+                    // The filter missed a key; stop trusting it
+                    falseNotFoundCount.incrementAndGet();
+                    filters.remove(bucketOf(location), filter);
+                }
+            }
+        });
+        return future;
+    }
+
+    private static <T> RiakFuture<FetchValue.Response<T>> notFound(FetchValue<T> fetch)
+    {
+        DefaultRiakFuture<FetchValue.Response<T>> future = new DefaultRiakFuture<FetchValue.Response<T>>();
+        future.setResponse(fetch.notFoundResponse());
+        return future;
+    }
+
+    private static <T> T responseOf(RiakFuture<T> f)
+    {
+        try
+        {
+            return f.get();
+        }
+        catch (ExecutionException ex)
+        {
+            return null;
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private synchronized boolean isCachedNotFound(Location location)
+    {
+        Long expires = notFound.get(location);
+        if (expires == null)
+        {
+            return false;
+        }
+        if (System.nanoTime() - expires >= 0)
+        {
+            notFound.remove(location);
+            return false;
+        }
+        return true;
+    }
+
+    private synchronized void putNotFound(Location location)
+    {
+        notFound.put(location, System.nanoTime() + ttlNanos);
+    }
+
+    private static List<BinaryValue> bucketOf(Location location)
+    {
+        return Arrays.asList(location.getType(), location.getBucket());
+    }
+
+    /**
+     * Records that a key now exists, for keys written other than through 
+     * this cache's client.
+     * <p>
+     * Removes the location from the negative cache, adds its key to the 
+     * bucket's filter, and stops fetches of it in flight from caching a 
+     * not found.
+     * </p>
+     * @param location the location that was written
+     */
+    public void markWritten(Location location)
+    {
+        written.stamp(location);
+        List<BinaryValue> bucket = bucketOf(location);
+        // Seeding filters first: a seed installs its filter before it stops taking writes
+        BloomFilter filter = seeding.get(bucket);
+        if (filter != null)
+        {
+            filter.put(location.getKey());
+        }
+        filter = filters.get(bucket);
+        if (filter != null)
+        {
+            filter.put(location.getKey());
+        }
+        synchronized (this)
+        {
+            notFound.remove(location);
+        }
+    }
+
+    /**
+     * Builds a Bloom filter of a bucket's keys by listing them.
+     * <p>
+     * Blocks until the listing completes. The keys are streamed into the 
+     * filter rather than held in memory, and the filter is only used once 
+     * the listing is complete; until then any previous filter for the 
+     * bucket stays in use. Keys written through this cache's client 
+     * during the listing are included.
+     * </p>
+     * <p>
+     * The filter is sized for {@code expectedKeys} at the configured false 
+     * positive probability. If the bucket has more keys the filter still 
+     * works, but more of the keys it hasn't seen go to Riak. Seed again 
+     * periodically to pick up keys created by other clients.
+     * </p>
+     * @param client the client to list keys with
+     * @param bucket the bucket, and its type if it has one
+     * @param expectedKeys the number of keys the bucket is expected to hold
+     * @param source how to list the keys
+     * @return the number of keys listed
+     * @throws ExecutionException if listing the keys failed; the previous 
+     * filter, if any, stays in use
+     * @throws InterruptedException
+     */
+    public long seed(RiakClient client, Location bucket, long expectedKeys, SeedSource source)
+        throws ExecutionException, InterruptedException
+    {
+        List<BinaryValue> id = bucketOf(bucket);
+        // Registered before the listing starts so no write can fall between the two
+        BloomFilter filter = startSeeding(id, expectedKeys);
+        try
+        {
+            Iterator<BinaryValue> keys = source == SeedSource.LIST_KEYS
+                ? listKeys(client, bucket)
+                : queryBucketIndex(client, bucket);
+            return fill(id, filter, keys);
+        }
+        catch (StreamingResult.StreamFailedException ex)
+        {
+            throw new ExecutionException(ex.getCause());
+        }
+        finally
+        {
+            seeding.remove(id, filter);
+        }
+    }
+
+    /**
+     * Builds a bucket's filter from its keys.
+     */
+    long seed(Location bucket, long expectedKeys, Iterator<BinaryValue> keys)
+    {
+        List<BinaryValue> id = bucketOf(bucket);
+        BloomFilter filter = startSeeding(id, expectedKeys);
+        try
+        {
+            return fill(id, filter, keys);
+        }
+        finally
+        {
+            seeding.remove(id, filter);
+        }
+    }
+
+    private BloomFilter startSeeding(List<BinaryValue> id, long expectedKeys)
+    {
+        if (expectedKeys < 1)
+        {
+            throw new IllegalArgumentException("expectedKeys must be positive");
+        }
+        BloomFilter filter = new BloomFilter(expectedKeys, falsePositiveProbability);
+        if (seeding.putIfAbsent(id, filter) != null)
+        {
+            throw new IllegalStateException("Bucket is already being seeded");
+        }
+        return filter;
+    }
+
+    /**
+     * Adds the keys to a filter being seeded and installs it.
+     */
+    private long fill(List<BinaryValue> id, BloomFilter filter, Iterator<BinaryValue> keys)
+    {
+        long count = 0;
+        while (keys.hasNext())
+        {
+            filter.put(keys.next());
+            count++;
+        }
+        filters.put(id, filter);
+        return count;
+    }
+
+    private static Iterator<BinaryValue> listKeys(RiakClient client, Location bucket)
+        throws ExecutionException, InterruptedException
+    {
+        ListKeys listKeys = new ListKeys.Builder(bucket)
+            .withStreaming(StreamingResult.DEFAULT_MAX_BUFFERED_CHUNKS)
+            .build();
+        final Iterator<Location> locations = client.execute(listKeys).iterator();
+        return new Iterator<BinaryValue>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return locations.hasNext();
+            }
+
+            @Override
+            public BinaryValue next()
+            {
+                return locations.next().getKey();
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static Iterator<BinaryValue> queryBucketIndex(RiakClient client, Location bucket)
+    {
+        SecondaryIndexQueryOperation operation =
+            new SecondaryIndexQueryOperation.Builder(bucket.getBucket(), BUCKET_INDEX)
+                .withBucketType(bucket.getType())
+                .withIndexKey(bucket.getBucket())
+                .withStreaming(StreamingResult.DEFAULT_MAX_BUFFERED_CHUNKS)
+                .build();
+        client.getCluster().execute(operation);
+        final Iterator<SecondaryIndexQueryOperation.Response.Entry> entries = operation.getStreamingResult();
+        return new Iterator<BinaryValue>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return entries.hasNext();
+            }
+
+            @Override
+            public BinaryValue next()
+            {
+                return entries.next().getObjectKey();
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Stops answering fetches of a bucket from its filter.
+     * @param bucket the bucket, and its type if it has one
+     */
+    public void dropFilter(Location bucket)
+    {
+        filters.remove(bucketOf(bucket));
+    }
+
+    /**
+     * Removes every negative entry and filter.
+     */
+    public void clear()
+    {
+        written.stampAll();
+        filters.clear();
+        synchronized (this)
+        {
+            notFound.clear();
+        }
+    }
+
+    /**
+     * @return the number of fetches answered from the negative cache.
+     */
+    public long getNegativeHitCount()
+    {
+        return negativeHitCount.get();
+    }
+
+    /**
+     * @return the number of fetches answered from a bucket's filter.
+     */
+    public long getFilterHitCount()
+    {
+        return filterHitCount.get();
+    }
+
+    /**
+     * @return the number of fetches a filter would have answered that 
+     * were sent to Riak to check it.
+     */
+    public long getVerificationCount()
+    {
+        return verificationCount.get();
+    }
+
+    /**
+     * @return the number of verifications that found the key, each of 
+     * which dropped its bucket's filter.
+     */
+    public long getFalseNotFoundCount()
+    {
+        return falseNotFoundCount.get();
+    }
+
+    /**
+     * @return the number of fetches a filter let through for keys Riak 
+     * didn't have, including keys deleted since they were added.
+     */
+    public long getFalsePositiveCount()
+    {
+        return falsePositiveCount.get();
+    }
+
+    /**
+     * @return the number of locations in the negative cache, including expired ones not yet removed.
+     */
+    public synchronized int getEntryCount()
+    {
+        return notFound.size();
+    }
+
+    /**
+     * @return the number of buckets with a filter in use.
+     */
+    public int getFilterCount()
+    {
+        return filters.size();
+    }
+
+    public static class Builder
+    {
+        /**
+         * The default time a not found is answered locally: {@value #DEFAULT_TTL_MILLIS}ms
+         */
+        public final static long DEFAULT_TTL_MILLIS = 10000;
+        /**
+         * The default bound on locations in the negative cache: {@value #DEFAULT_MAX_ENTRIES}
+         */
+        public final static int DEFAULT_MAX_ENTRIES = 10000;
+        /**
+         * The default false positive probability filters are sized for: {@value #DEFAULT_FALSE_POSITIVE_PROBABILITY}
+         */
+        public final static double DEFAULT_FALSE_POSITIVE_PROBABILITY = 0.01;
+
+        private long ttlNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TTL_MILLIS);
+        private int maxEntries = DEFAULT_MAX_ENTRIES;
+        private double falsePositiveProbability = DEFAULT_FALSE_POSITIVE_PROBABILITY;
+        private double verifyFraction;
+
+        public Builder()
+        {
+        }
+
+        /**
+         * Set how long a not found from Riak is answered locally.
+         * @param ttl the time to live
+         * @param unit the unit for ttl
+         * @return this
+         * @see #DEFAULT_TTL_MILLIS
+         */
+        public Builder withTtl(long ttl, TimeUnit unit)
+        {
+            if (ttl <= 0)
+            {
+                throw new IllegalArgumentException("TTL must be positive");
+            }
+            this.ttlNanos = unit.toNanos(ttl);
+            return this;
+        }
+
+        /**
+         * Set the bound on locations in the negative cache. The oldest 
+         * entries are dropped first.
+         * @param maxEntries the maximum number of locations
+         * @return this
+         * @see #DEFAULT_MAX_ENTRIES
+         */
+        public Builder withMaxEntries(int maxEntries)
+        {
+            if (maxEntries < 1)
+            {
+                throw new IllegalArgumentException("maxEntries must be positive");
+            }
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * Set the probability that a filter lets through a key it hasn't 
+         * seen, for the expected number of keys. Lower probabilities 
+         * use more memory: about 10 bits per key at 0.01 and 14 at 0.001.
+         * @param probability between 0 and 1
+         * @return this
+         * @see #DEFAULT_FALSE_POSITIVE_PROBABILITY
+         */
+        public Builder withFalsePositiveProbability(double probability)
+        {
+            if (probability <= 0 || probability >= 1)
+            {
+                throw new IllegalArgumentException("False positive probability must be between 0 and 1");
+            }
+            this.falsePositiveProbability = probability;
+            return this;
+        }
+
+        /**
+         * Send a fraction of the fetches a filter would answer to Riak anyway.
+         * <p>
+         * If Riak has the key, the filter was stale: it is dropped, and 
+         * the bucket's fetches go to Riak until it is seeded again.
+         * </p>
+         * @param fraction between 0 and 1; 0, the default, trusts filters
+         * @return this
+         */
+        public Builder withVerifyFraction(double fraction)
+        {
+            if (fraction < 0 || fraction > 1)
+            {
+                throw new IllegalArgumentException("Verify fraction must be between 0 and 1");
+            }
+            this.verifyFraction = fraction;
+            return this;
+        }
+
+        public NotFoundCache build()
+        {
+            return new NotFoundCache(this);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces out the commands of a batch so they start at no more than a 
+ * fixed rate.
+ * <p>
+ * Each call to {@link #reserve()} claims the next free start time and 
+ * returns how long the caller must wait for it. Idle time is not banked, 
+ * so a batch can't burst after a pause.
+ * </p>
+ *
+ * @since 2.0
+ */
+class RateLimiter
+{
+    private final long intervalNanos;
+    private long nextFreeNanos;
+
+    RateLimiter(int permitsPerSecond)
+    {
+        if (permitsPerSecond < 1)
+        {
+            throw new IllegalArgumentException("Rate must be >= 1 per second");
+        }
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    /**
+     * Reserves the next start time.
+     * @return the nanoseconds to wait before starting; 0 to start now.
+     */
+    synchronized long reserve()
+    {
+        long now = System.nanoTime();
+        if (nextFreeNanos - now < 0)
+        {
+            nextFreeNanos = now;
+        }
+        long wait = nextFreeNanos - now;
+        nextFreeNanos += intervalNanos;
+        return wait;
+    }
+}
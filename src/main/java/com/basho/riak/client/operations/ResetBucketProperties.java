@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.core.operations.ResetBucketPropsOperation;
+
+/**
+ * Resets a bucket's properties to those of its bucket type.
+ *
+ * @since 2.0
+ */
+public class ResetBucketProperties extends RiakCommand<Boolean>
+{
+
+	private final Location location;
+
+	ResetBucketProperties(Builder builder)
+	{
+		this.location = builder.location;
+	}
+
+	Location getLocation()
+	{
+		return location;
+	}
+
+	@Override
+	RiakFuture<Boolean> executeAsync(RiakCluster cluster)
+	{
+		ResetBucketPropsOperation.Builder operation = new ResetBucketPropsOperation.Builder(location.getBucket());
+
+		if (location.hasType())
+		{
+			operation.withBucketType(location.getType());
+		}
+
+		return cluster.execute(operation.build());
+	}
+
+	public static class Builder
+	{
+
+		private final Location location;
+
+		public Builder(Location location)
+		{
+			this.location = location;
+		}
+
+		public ResetBucketProperties build()
+		{
+			return new ResetBucketProperties(this);
+		}
+	}
+
+}
@@ -16,7 +16,9 @@
 package com.basho.riak.client.operations;
 
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
 
+import java.util.Collection;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
@@ -28,6 +30,8 @@ public class RiakClient
 {
 
 	private final RiakCluster cluster;
+	// The outermost of the client side layers the client was built with
+	private final CommandExecutor executor;
 
 	/**
 	 * Create a new RiakClient to perform operations on the given cluster
@@ -38,6 +42,62 @@ public class RiakClient
 	public RiakClient(RiakCluster cluster)
 	{
 		this.cluster = cluster;
+		this.executor = direct(cluster, null);
+	}
+
+	RiakClient(Builder builder)
+	{
+		this.cluster = builder.cluster;
+		CommandExecutor executor = direct(cluster, builder.nearCache);
+		if (builder.bucketPropertiesCache != null)
+		{
+			executor = through(builder.bucketPropertiesCache, executor);
+		}
+		if (builder.notFoundCache != null)
+		{
+			executor = through(builder.notFoundCache, executor);
+		}
+		this.executor = executor;
+	}
+
+	private static CommandExecutor direct(final RiakCluster cluster, final NearCache nearCache)
+	{
+		return new CommandExecutor()
+		{
+			@Override
+			public <T> RiakFuture<T> execute(RiakCommand<T> command)
+			{
+				if (nearCache != null)
+				{
+					return nearCache.execute(command, cluster);
+				}
+				return command.executeAsync(cluster);
+			}
+		};
+	}
+
+	private static CommandExecutor through(final BucketPropertiesCache cache, final CommandExecutor next)
+	{
+		return new CommandExecutor()
+		{
+			@Override
+			public <T> RiakFuture<T> execute(RiakCommand<T> command)
+			{
+				return cache.execute(command, next);
+			}
+		};
+	}
+
+	private static CommandExecutor through(final NotFoundCache cache, final CommandExecutor next)
+	{
+		return new CommandExecutor()
+		{
+			@Override
+			public <T> RiakFuture<T> execute(RiakCommand<T> command)
+			{
+				return cache.execute(command, next);
+			}
+		};
 	}
 
 	/**
@@ -53,7 +113,79 @@ public class RiakClient
 	 */
 	public <T> T execute(RiakCommand<T> command) throws ExecutionException, InterruptedException
 	{
-		return command.execute(cluster);
+		return RiakCommand.await(executeAsync(command));
+	}
+
+	/**
+	 * Execute a command against Riak without waiting for the result
+	 * <p>
+	 * The calling thread is never blocked; the returned future completes 
+	 * when the command does. Listeners added to it run on the thread 
+	 * that completes it. That is a network I/O thread, on which they must 
+	 * not block, unless the cluster was built with 
+	 * {@link RiakCluster.Builder#withListenerExecutor(java.util.concurrent.Executor)}, 
+	 * in which case it is a thread of that executor. A listener added with 
+	 * {@link RiakFuture#addListener(com.basho.riak.client.core.RiakFutureListener, java.util.concurrent.Executor)} 
+	 * runs on the executor given instead.
+	 * </p>
+	 *
+	 * @param command
+	 * 	The command
+	 * @param <T>
+	 * 	The command's return type
+	 * @return a future for the response from Riak
+	 */
+	public <T> RiakFuture<T> executeAsync(RiakCommand<T> command)
+	{
+		return executor.execute(command);
+	}
+
+	/**
+	 * Execute a set of commands against Riak in parallel
+	 * <p>
+	 * Up to {@value MultiCommand.Builder#DEFAULT_MAX_IN_FLIGHT} commands run 
+	 * at once and every command runs; failures are recorded in the 
+	 * response rather than thrown. Use {@link MultiCommand.Builder} for 
+	 * other settings.
+	 * </p>
+	 *
+	 * @param commands
+	 * 	The commands, of any type
+	 * @return an entry per command, in order
+	 * @throws ExecutionException
+	 * @throws InterruptedException
+	 */
+	public MultiCommand.Response executeAll(Collection<? extends RiakCommand<?>> commands)
+		throws ExecutionException, InterruptedException
+	{
+		return executeAll(commands, MultiCommand.Builder.DEFAULT_MAX_IN_FLIGHT,
+			MultiCommand.ErrorMode.COLLECT_ALL);
+	}
+
+	/**
+	 * Execute a set of commands against Riak in parallel
+	 *
+	 * @param commands
+	 * 	The commands, of any type
+	 * @param maxInFlight
+	 * 	The maximum number of commands running at once
+	 * @param errorMode
+	 * 	Whether to stop at the first failure or run every command
+	 * @return an entry per command, in order
+	 * @throws ExecutionException
+	 * 	if errorMode is {@link MultiCommand.ErrorMode#FAIL_FAST} and a command failed
+	 * @throws InterruptedException
+	 */
+	public MultiCommand.Response executeAll(Collection<? extends RiakCommand<?>> commands,
+		int maxInFlight, MultiCommand.ErrorMode errorMode)
+		throws ExecutionException, InterruptedException
+	{
+		MultiCommand multiCommand = new MultiCommand.Builder()
+			.addAll(commands)
+			.withMaxInFlight(maxInFlight)
+			.withErrorMode(errorMode)
+			.build();
+		return multiCommand.execute(cluster);
 	}
 
 	/**
@@ -66,4 +198,85 @@ public class RiakClient
 		return cluster.shutdown();
 	}
 
+	RiakCluster getCluster()
+	{
+		return cluster;
+	}
+
+	/**
+	 * Builds a RiakClient with optional client side features.
+	 */
+	public static class Builder
+	{
+		private final RiakCluster cluster;
+		private NearCache nearCache;
+		private NotFoundCache notFoundCache;
+		private BucketPropertiesCache bucketPropertiesCache;
+
+		/**
+		 * @param cluster
+		 * 	the cluster to perform operations against
+		 */
+		public Builder(RiakCluster cluster)
+		{
+			this.cluster = cluster;
+		}
+
+		/**
+		 * Answer fetches from an in-process cache.
+		 * <p>
+		 * Commands run by {@link RiakClient#executeAll(Collection)} 
+		 * bypass the cache.
+		 * </p>
+		 *
+		 * @param nearCache
+		 * 	the cache
+		 * @return this
+		 * @see NearCache
+		 */
+		public Builder withNearCache(NearCache nearCache)
+		{
+			this.nearCache = nearCache;
+			return this;
+		}
+
+		/**
+		 * Answer fetches of keys known not to exist without going to Riak.
+		 * <p>
+		 * The not-found cache sees commands before the near cache. 
+		 * Commands run by {@link RiakClient#executeAll(Collection)} 
+		 * bypass it.
+		 * </p>
+		 *
+		 * @param notFoundCache
+		 * 	the cache
+		 * @return this
+		 * @see NotFoundCache
+		 */
+		public Builder withNotFoundCache(NotFoundCache notFoundCache)
+		{
+			this.notFoundCache = notFoundCache;
+			return this;
+		}
+
+		/**
+		 * Answer fetches of bucket properties from an in-process cache.
+		 *
+		 * @param bucketPropertiesCache
+		 * 	the cache
+		 * @return this
+		 * @see BucketPropertiesCache
+		 */
+		public Builder withBucketPropertiesCache(BucketPropertiesCache bucketPropertiesCache)
+		{
+			this.bucketPropertiesCache = bucketPropertiesCache;
+			return this;
+		}
+
+		public RiakClient build()
+		{
+			return new RiakClient(this);
+		}
+	}
+
 }
@@ -16,10 +16,49 @@
 package com.basho.riak.client.operations;
 
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
 
 import java.util.concurrent.ExecutionException;
 
 public abstract class RiakCommand<T>
 {
-    abstract T execute(RiakCluster cluster) throws ExecutionException, InterruptedException;
-}
\ No newline at end of file
+    T execute(RiakCluster cluster) throws ExecutionException, InterruptedException
+    {
+        return await(executeAsync(cluster));
+    }
+    
+    /**
+     * Waits for a command's result.
+     * @param future the command's future
+     * @return the result
+     * @throws ExecutionException if the command failed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    static <T> T await(RiakFuture<T> future) throws ExecutionException, InterruptedException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException ex)
+        {
+            // Exceptions such as UnresolvedConflictException are thrown as-is
+            if (ex.getCause() instanceof ExecutionException)
+            {
+                throw (ExecutionException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+    
+    /**
+     * Starts this command without waiting for it to complete.
+     * <p>
+     * No thread is parked while the command runs; commands made up of several
+     * operations start each step from the completion of the previous one.
+     * </p>
+     * @param cluster the cluster to execute against
+     * @return a future that completes with the command's result
+     */
+    abstract RiakFuture<T> executeAsync(RiakCluster cluster);
+}
@@ -16,11 +16,11 @@
 package com.basho.riak.client.operations;
 
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
 import com.basho.riak.client.core.operations.SearchOperation;
 import com.basho.riak.client.util.BinaryValue;
 
 import java.util.*;
-import java.util.concurrent.ExecutionException;
 
 public class Search extends RiakCommand<SearchOperation.Response>
 {
@@ -63,7 +63,7 @@ public class Search extends RiakCommand<SearchOperation.Response>
 
 
     @Override
-    SearchOperation.Response execute(RiakCluster cluster) throws ExecutionException, InterruptedException
+    RiakFuture<SearchOperation.Response> executeAsync(RiakCluster cluster)
     {
 
         SearchOperation.Builder builder = new SearchOperation.Builder(BinaryValue.create(index), query);
@@ -114,7 +114,7 @@ public class Search extends RiakCommand<SearchOperation.Response>
         }
 
         SearchOperation operation = builder.build();
-        return cluster.execute(operation).get();
+        return cluster.execute(operation);
 
     }
 
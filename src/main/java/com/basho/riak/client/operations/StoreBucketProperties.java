@@ -1,11 +1,10 @@
 package com.basho.riak.client.operations;
 
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
 import com.basho.riak.client.core.operations.StoreBucketPropsOperation;
 import com.basho.riak.client.query.functions.Function;
 
-import java.util.concurrent.ExecutionException;
-
 public class StoreBucketProperties extends RiakCommand<Boolean>
 {
 
@@ -62,8 +61,13 @@ public class StoreBucketProperties extends RiakCommand<Boolean>
 
 	}
 
+	Location getLocation()
+	{
+		return location;
+	}
+
 	@Override
-	Boolean execute(RiakCluster cluster) throws ExecutionException, InterruptedException
+	RiakFuture<Boolean> executeAsync(RiakCluster cluster)
 	{
 
 		StoreBucketPropsOperation.Builder builder = new StoreBucketPropsOperation.Builder(location.getBucket());
@@ -183,7 +187,7 @@ public class StoreBucketProperties extends RiakCommand<Boolean>
 			builder.withSearchIndex(searchIndex);
 		}
 
-		return cluster.execute(builder.build()).get();
+		return cluster.execute(builder.build());
 
 	}
 
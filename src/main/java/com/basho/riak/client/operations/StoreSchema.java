@@ -1,11 +1,10 @@
 package com.basho.riak.client.operations;
 
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
 import com.basho.riak.client.core.operations.YzPutSchemaOperation;
 import com.basho.riak.client.query.search.YokozunaSchema;
 
-import java.util.concurrent.ExecutionException;
-
 public class StoreSchema extends RiakCommand<Boolean>
 {
 	private final YokozunaSchema schema;
@@ -16,10 +15,10 @@ public class StoreSchema extends RiakCommand<Boolean>
 	}
 
 	@Override
-	Boolean execute(RiakCluster cluster) throws ExecutionException, InterruptedException
+	RiakFuture<Boolean> executeAsync(RiakCluster cluster)
 	{
 	    YzPutSchemaOperation operation = new YzPutSchemaOperation.Builder(schema).build();
-	    return cluster.execute(operation).get();
+	    return cluster.execute(operation);
 	}
 
 	public static class Builder
@@ -1,11 +1,10 @@
 package com.basho.riak.client.operations;
 
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
 import com.basho.riak.client.core.operations.YzPutIndexOperation;
 import com.basho.riak.client.query.search.YokozunaIndex;
 
-import java.util.concurrent.ExecutionException;
-
 public class StoreSearchIndex extends RiakCommand<Boolean>
 {
 	private final YokozunaIndex index;
@@ -16,10 +15,10 @@ public class StoreSearchIndex extends RiakCommand<Boolean>
 	}
 
 	@Override
-	Boolean execute(RiakCluster cluster) throws ExecutionException, InterruptedException
+	RiakFuture<Boolean> executeAsync(RiakCluster cluster)
 	{
 	    YzPutIndexOperation operation = new YzPutIndexOperation.Builder(index).build();
-	    return cluster.execute(operation).get();
+	    return cluster.execute(operation);
 	}
 
 	public static class Builder
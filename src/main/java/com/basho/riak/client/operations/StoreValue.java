@@ -19,6 +19,7 @@ import com.basho.riak.client.cap.Quorum;
 import com.basho.riak.client.cap.VClock;
 import com.basho.riak.client.convert.Converter;
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
 import com.basho.riak.client.core.operations.StoreOperation;
 import com.basho.riak.client.util.BinaryValue;
 
@@ -48,8 +49,13 @@ public class StoreValue<V> extends RiakCommand<StoreValue.Response<V>>
 	    this.vClock = builder.vClock;
     }
 
+    Location getLocation()
+    {
+        return location;
+    }
+
     @Override
-    public Response<V> execute(RiakCluster cluster) throws ExecutionException, InterruptedException
+    public RiakFuture<Response<V>> executeAsync(RiakCluster cluster)
     {
 
         StoreOperation.Builder builder = new StoreOperation.Builder(location.getBucket());
@@ -125,22 +131,30 @@ public class StoreValue<V> extends RiakCommand<StoreValue.Response<V>>
 
         StoreOperation operation = builder.build();
 
-        StoreOperation.Response response = cluster.execute(operation).get();
-        List<V> converted = convert(converter, response.getObjectList());
-
-	    BinaryValue returnedKey = response.hasGeneratedKey()
-		    ? response.getGeneratedKey()
-		    : location.getKey();
-
-        Location k = new Location(location.getBucket(), returnedKey);
-	    if (location.hasType())
-	    {
-			k.withType(location.getType());
-	    }
-
-        VClock clock = response.getVClock();
-
-        return new Response<V>(converted, clock, k);
+        CoreFutureAdapter<Response<V>, StoreOperation.Response> future =
+            new CoreFutureAdapter<Response<V>, StoreOperation.Response>()
+            {
+                @Override
+                Response<V> convertResponse(StoreOperation.Response response) throws ExecutionException
+                {
+                    List<V> converted = convert(converter, response.getObjectList());
+
+                    BinaryValue returnedKey = response.hasGeneratedKey()
+                        ? response.getGeneratedKey()
+                        : location.getKey();
+
+                    Location k = new Location(location.getBucket(), returnedKey);
+                    if (location.hasType())
+                    {
+                        k.withType(location.getType());
+                    }
+
+                    VClock clock = response.getVClock();
+
+                    return new Response<V>(converted, clock, k);
+                }
+            };
+        return future.listenTo(cluster.execute(operation));
 
     }
 
@@ -17,6 +17,7 @@ package com.basho.riak.client.operations;
 
 import com.basho.riak.client.cap.Quorum;
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
 import com.basho.riak.client.core.operations.DtUpdateOperation;
 import com.basho.riak.client.operations.datatypes.*;
 import com.basho.riak.client.query.crdt.types.CrdtElement;
@@ -59,7 +60,7 @@ public class UpdateDatatype<T extends RiakDatatype> extends RiakCommand<UpdateDa
 
     @Override
     @SuppressWarnings("unchecked")
-    public Response<T> execute(RiakCluster cluster) throws ExecutionException, InterruptedException
+    public RiakFuture<Response<T>> executeAsync(RiakCluster cluster)
     {
         DtUpdateOperation.Builder builder = new DtUpdateOperation.Builder(loc.getBucket(), loc.getType());
 
@@ -108,31 +109,39 @@ public class UpdateDatatype<T extends RiakDatatype> extends RiakCommand<UpdateDa
         }
 
         DtUpdateOperation operation = builder.build();
-        DtUpdateOperation.Response crdtResponse = cluster.execute(operation).get();
-        CrdtElement element = crdtResponse.getCrdtElement();
-
-        T riakDatatype = null;
-        if (element.isMap())
-        {
-            riakDatatype = (T) new RiakMap(element.getAsMap());
-        }
-        else if (element.isSet())
-        {
-            riakDatatype = (T) new RiakSet(element.getAsSet());
-        }
-        else if (element.isCounter())
-        {
-            riakDatatype = (T) new RiakCounter(element.getAsCounter());
-        }
-
-	    BinaryValue returnedKey = crdtResponse.hasGeneratedKey()
-		    ? crdtResponse.getGeneratedKey()
-		    : loc.getKey();
-
-        Location key = new Location(loc.getBucket(), returnedKey).withType(loc.getType());
-        Context returnedCtx = new Context(crdtResponse.getContext().getValue());
-
-        return new Response<T>(key, returnedCtx, riakDatatype);
+        CoreFutureAdapter<Response<T>, DtUpdateOperation.Response> future =
+            new CoreFutureAdapter<Response<T>, DtUpdateOperation.Response>()
+            {
+                @Override
+                Response<T> convertResponse(DtUpdateOperation.Response crdtResponse) throws ExecutionException
+                {
+                    CrdtElement element = crdtResponse.getCrdtElement();
+
+                    T riakDatatype = null;
+                    if (element.isMap())
+                    {
+                        riakDatatype = (T) new RiakMap(element.getAsMap());
+                    }
+                    else if (element.isSet())
+                    {
+                        riakDatatype = (T) new RiakSet(element.getAsSet());
+                    }
+                    else if (element.isCounter())
+                    {
+                        riakDatatype = (T) new RiakCounter(element.getAsCounter());
+                    }
+
+                    BinaryValue returnedKey = crdtResponse.hasGeneratedKey()
+                        ? crdtResponse.getGeneratedKey()
+                        : loc.getKey();
+
+                    Location key = new Location(loc.getBucket(), returnedKey).withType(loc.getType());
+                    Context returnedCtx = new Context(crdtResponse.getContext().getValue());
+
+                    return new Response<T>(key, returnedCtx, riakDatatype);
+                }
+            };
+        return future.listenTo(cluster.execute(operation));
 
     }
 
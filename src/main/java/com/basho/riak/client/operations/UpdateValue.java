@@ -18,8 +18,12 @@ package com.basho.riak.client.operations;
 import com.basho.riak.client.cap.ConflictResolver;
 import com.basho.riak.client.cap.VClock;
 import com.basho.riak.client.convert.Converter;
+import com.basho.riak.client.core.DefaultRiakFuture;
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.query.BucketProperties;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +31,14 @@ import java.util.concurrent.ExecutionException;
 
 /**
  * Perform an full cycle update of a Riak value: fetch, resolve, modify, store.
+ * <p>
+ * An {@link Update} that {@link Update#ignoresOriginal() ignores the original} 
+ * value can skip the fetch and be stored blind when the bucket has 
+ * last_write_wins set or allow_mult unset, since Riak then keeps the 
+ * latest write whatever its vclock. Say so with 
+ * {@link Builder#withBlindWrite(boolean)}, or leave it to a client built 
+ * with a {@link BucketPropertiesCache} to check the bucket's properties.
+ * </p>
  *
  * @param <T> the datatype that is being operated on
  */
@@ -41,6 +53,8 @@ public class UpdateValue<T> extends RiakCommand<UpdateValue.Response<T>>
 	    new HashMap<FetchOption<?>, Object>();
     private final Map<StoreOption<?>, Object> storeOptions =
 	    new HashMap<StoreOption<?>, Object>();
+    // Null to let the client decide from the bucket's properties
+    private final Boolean blindWrite;
 
     UpdateValue(Builder<T> builder)
     {
@@ -50,12 +64,60 @@ public class UpdateValue<T> extends RiakCommand<UpdateValue.Response<T>>
         this.update = builder.update;
 	    this.fetchOptions.putAll(builder.fetchOptions);
 	    this.storeOptions.putAll(builder.storeOptions);
+        this.blindWrite = builder.blindWrite;
+    }
+
+    private UpdateValue(UpdateValue<T> update, boolean blindWrite)
+    {
+        this.location = update.location;
+        this.converter = update.converter;
+        this.resolver = update.resolver;
+        this.update = update.update;
+        this.fetchOptions.putAll(update.fetchOptions);
+        this.storeOptions.putAll(update.storeOptions);
+        this.blindWrite = blindWrite;
+    }
+
+    Location getLocation()
+    {
+        return location;
+    }
+
+    /**
+     * Returns whether this update could be stored blind, depending on the 
+     * bucket's properties.
+     */
+    boolean dependsOnBucketProperties()
+    {
+        return blindWrite == null && update.ignoresOriginal();
+    }
+
+    /**
+     * Returns a copy of this update that is stored blind, or not.
+     */
+    UpdateValue<T> withBlindWrite(boolean blindWrite)
+    {
+        return new UpdateValue<T>(this, blindWrite);
+    }
+
+    /**
+     * Returns whether Riak keeps the latest write to a bucket regardless 
+     * of vclocks.
+     */
+    static boolean allowsBlindWrites(BucketProperties properties)
+    {
+        return Boolean.TRUE.equals(properties.getLastWriteWins())
+            || Boolean.FALSE.equals(properties.getAllowMulti());
     }
 
     @Override
     @SuppressWarnings("unchecked")
-    public Response<T> execute(RiakCluster cluster) throws ExecutionException, InterruptedException
+    public RiakFuture<Response<T>> executeAsync(final RiakCluster cluster)
     {
+        if (Boolean.TRUE.equals(blindWrite) && update.ignoresOriginal())
+        {
+            return storeBlind(cluster);
+        }
 
         FetchValue.Builder<T> fetchBuilder = new FetchValue.Builder<T>(location).withConverter(converter);
         for (Map.Entry<FetchOption<?>, Object> optPair : fetchOptions.entrySet())
@@ -63,31 +125,82 @@ public class UpdateValue<T> extends RiakCommand<UpdateValue.Response<T>>
             fetchBuilder.withOption((FetchOption<Object>) optPair.getKey(), optPair.getValue());
         }
 
-        FetchValue.Response<T> fetchResponse = fetchBuilder.build().execute(cluster);
+        // The store is started from the fetch's completion; no thread waits
+        // between the two.
+        CoreFutureAdapter<Response<T>, FetchValue.Response<T>> future =
+            new ChainedFutureAdapter<Response<T>, FetchValue.Response<T>>()
+            {
+                @Override
+                void onResponse(FetchValue.Response<T> fetchResponse) throws ExecutionException
+                {
+                    List<T> value = fetchResponse.getValue();
+                    T resolved = resolver.resolve(value);
+                    T updated = update.apply(resolved);
+
+                    if (update.isModified())
+                    {
+                        completeFrom(store(cluster, updated, fetchResponse.getvClock()));
+                    }
+                    else
+                    {
+                        setResponse(new Response<T>(value, fetchResponse.getvClock()));
+                    }
+                }
+            };
+        return future.listenTo(fetchBuilder.build().executeAsync(cluster));
+    }
 
-        List<T> value = fetchResponse.getValue();
-        T resolved = resolver.resolve(value);
-        T updated = update.apply(resolved);
+    private RiakFuture<Response<T>> storeBlind(RiakCluster cluster)
+    {
+        T updated;
+        try
+        {
+            updated = update.apply(null);
+        }
+        catch (RuntimeException ex)
+        {
+            DefaultRiakFuture<Response<T>> failed = new DefaultRiakFuture<Response<T>>();
+            failed.setException(ex);
+            return failed;
+        }
+        if (!update.isModified())
+        {
+            DefaultRiakFuture<Response<T>> unchanged = new DefaultRiakFuture<Response<T>>();
+            unchanged.setResponse(new Response<T>(Collections.<T>emptyList(), null));
+            return unchanged;
+        }
+        return store(cluster, updated, null);
+    }
 
-        if (update.isModified())
+    @SuppressWarnings("unchecked")
+    private RiakFuture<Response<T>> store(RiakCluster cluster, T updated, VClock vClock)
+    {
+        // Without the fetched vclock Riak would keep the update as a new
+        // sibling on buckets that allow them.
+        StoreValue.Builder<T> store = new StoreValue.Builder<T>(location, updated)
+            .withConverter(converter);
+        if (vClock != null)
+        {
+            store.withVectorClock(vClock);
+        }
+        for (Map.Entry<StoreOption<?>, Object> optPair : storeOptions.entrySet())
         {
+            store.withOption((StoreOption<Object>) optPair.getKey(), optPair.getValue());
+        }
 
-            StoreValue.Builder<T> store = new StoreValue.Builder<T>(location, updated)
-	            .withConverter(converter);
-            for (Map.Entry<StoreOption<?>, Object> optPair : storeOptions.entrySet())
+        CoreFutureAdapter<Response<T>, StoreValue.Response<T>> future =
+            new CoreFutureAdapter<Response<T>, StoreValue.Response<T>>()
             {
-                store.withOption((StoreOption<Object>) optPair.getKey(), optPair.getValue());
-            }
-            StoreValue.Response<T> storeResponse = store.build().execute(cluster);
-
-            List<T> values = storeResponse.getValue();
-            VClock clock = storeResponse.getvClock();
-
-            return new Response<T>(values, clock);
-
-        }
+                @Override
+                Response<T> convertResponse(StoreValue.Response<T> storeResponse)
+                {
+                    List<T> values = storeResponse.getValue();
+                    VClock clock = storeResponse.getvClock();
 
-        return new Response<T>(value, fetchResponse.getvClock());
+                    return new Response<T>(values, clock);
+                }
+            };
+        return future.listenTo(store.build().executeAsync(cluster));
     }
 
     /**
@@ -127,6 +240,7 @@ public class UpdateValue<T> extends RiakCommand<UpdateValue.Response<T>>
     {
 
         private boolean modified = true;
+        private boolean ignoresOriginal;
 
         /**
          * Modify the input value and return the modification. It is OK to
@@ -158,6 +272,29 @@ public class UpdateValue<T> extends RiakCommand<UpdateValue.Response<T>>
             return modified;
         }
 
+        /**
+         * Declare that {@link #apply(Object)} doesn't use its input, so the 
+         * update may be stored without fetching the original; it is then 
+         * passed null. Defaults to {@code false}
+         *
+         * @param ignoresOriginal true if the input is not used
+         */
+        protected void setIgnoresOriginal(boolean ignoresOriginal)
+        {
+            this.ignoresOriginal = ignoresOriginal;
+        }
+
+        /**
+         * true if this Update doesn't use the original value, defaults to 
+         * {@code false}
+         *
+         * @return true if the original value is not used
+         */
+        public boolean ignoresOriginal()
+        {
+            return ignoresOriginal;
+        }
+
         public static <T> Update<T> noopUpdate()
         {
             return new Update<T>()
@@ -169,6 +306,26 @@ public class UpdateValue<T> extends RiakCommand<UpdateValue.Response<T>>
                 }
             };
         }
+
+        /**
+         * An update that replaces the value, whatever it was.
+         *
+         * @param value the new value
+         * @return an update that {@link #ignoresOriginal() ignores the original}
+         */
+        public static <T> Update<T> replaceWith(final T value)
+        {
+            Update<T> update = new Update<T>()
+            {
+                @Override
+                public T apply(T original)
+                {
+                    return value;
+                }
+            };
+            update.setIgnoresOriginal(true);
+            return update;
+        }
     }
 
 	public static class Builder<T>
@@ -181,6 +338,7 @@ public class UpdateValue<T> extends RiakCommand<UpdateValue.Response<T>>
 			new HashMap<FetchOption<?>, Object>();
 		private final Map<StoreOption<?>, Object> storeOptions =
 			new HashMap<StoreOption<?>, Object>();
+		private Boolean blindWrite;
 
 		public Builder(Location location)
 		{
@@ -233,6 +391,25 @@ public class UpdateValue<T> extends RiakCommand<UpdateValue.Response<T>>
 			return this;
 		}
 
+		/**
+		 * Say whether an update that {@link Update#ignoresOriginal() ignores 
+		 * the original} may skip the fetch and store its value directly.
+		 * <p>
+		 * Only pass true for buckets with last_write_wins set or allow_mult 
+		 * unset; elsewhere a blind write creates a sibling. If not set, a 
+		 * client with a {@link BucketPropertiesCache} decides from the 
+		 * bucket's properties, and any other client fetches first.
+		 * </p>
+		 *
+		 * @param blindWrite true to store without fetching
+		 * @return this
+		 */
+		public Builder<T> withBlindWrite(boolean blindWrite)
+		{
+			this.blindWrite = blindWrite;
+			return this;
+		}
+
 		public UpdateValue<T> build()
 		{
 			return new UpdateValue<T>(this);
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.cap.ConflictResolver;
+import com.basho.riak.client.convert.Converter;
+
+import java.util.List;
+
+/**
+ * Store a value at a location, replacing whatever is there.
+ * <p>
+ * On buckets with last_write_wins set or allow_mult unset this is a single 
+ * store. Elsewhere the current object is fetched first, as by 
+ * {@link UpdateValue}, and its siblings are replaced by the value. Whether 
+ * the bucket allows the single store is given by 
+ * {@link Builder#withBlindWrite(boolean)} or, if not given, taken from the 
+ * client's {@link BucketPropertiesCache}.
+ * </p>
+ *
+ * @param <T> the datatype that is being stored
+ * @since 2.0
+ */
+public class Upsert<T> extends UpdateValue<T>
+{
+
+	Upsert(UpdateValue.Builder<T> builder)
+	{
+		super(builder);
+	}
+
+	public static class Builder<T>
+	{
+		private final UpdateValue.Builder<T> update;
+
+		public Builder(Location location, T value)
+		{
+			this.update = new UpdateValue.Builder<T>(location)
+				.withUpdate(Update.replaceWith(value))
+				.withResolver(new ConflictResolver<T>()
+				{
+					@Override
+					public T resolve(List<T> objectList)
+					{
+						// The value replaces every sibling
+						return null;
+					}
+				});
+		}
+
+		public Builder<T> withConverter(Converter<T> converter)
+		{
+			update.withConverter(converter);
+			return this;
+		}
+
+		/**
+		 * Add an option for the fetch made when the bucket doesn't allow 
+		 * a blind write
+		 *
+		 * @param option the option
+		 * @param value  the option's value
+		 * @param <U>    the type of the option's value
+		 * @return this
+		 */
+		public <U> Builder<T> withFetchOption(FetchOption<U> option, U value)
+		{
+			update.withFetchOption(option, value);
+			return this;
+		}
+
+		/**
+		 * Add an option for the store
+		 *
+		 * @param option the option
+		 * @param value  the option's value
+		 * @param <U>    the type of the option's value
+		 * @return this
+		 */
+		public <U> Builder<T> withStoreOption(StoreOption<U> option, U value)
+		{
+			update.withStoreOption(option, value);
+			return this;
+		}
+
+		/**
+		 * Say whether the bucket has last_write_wins set or allow_mult 
+		 * unset, so the value can be stored without a fetch.
+		 *
+		 * @param blindWrite true to store without fetching
+		 * @return this
+		 * @see UpdateValue.Builder#withBlindWrite(boolean)
+		 */
+		public Builder<T> withBlindWrite(boolean blindWrite)
+		{
+			update.withBlindWrite(blindWrite);
+			return this;
+		}
+
+		public Upsert<T> build()
+		{
+			return new Upsert<T>(update);
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records when locations were last written, so a cache can drop results of 
+ * reads that were in flight across a write.
+ * <p>
+ * Locations are hashed onto a fixed number of stripes; a write to one 
+ * location also marks the others on its stripe, which only costs a fill.
+ * </p>
+ *
+ * @since 2.0
+ */
+class WriteStamps
+{
+    private static final int STRIPES = 1024;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLongArray stamps = new AtomicLongArray(STRIPES);
+
+    /**
+     * Returns a stamp to pass to {@link #writtenSince(Location, long)} 
+     * once a read completes.
+     */
+    long current()
+    {
+        return sequence.get();
+    }
+
+    void stamp(Location location)
+    {
+        raise(stripe(location), sequence.incrementAndGet());
+    }
+
+    void stampAll()
+    {
+        long seq = sequence.incrementAndGet();
+        for (int i = 0; i < STRIPES; i++)
+        {
+            raise(i, seq);
+        }
+    }
+
+    // Concurrent writes can set a stripe out of order; a lower stamp 
+    // landing last would hide the higher one from reads between the two.
+    private void raise(int stripe, long seq)
+    {
+        long cur = stamps.get(stripe);
+        while (cur < seq && !stamps.compareAndSet(stripe, cur, seq))
+        {
+            cur = stamps.get(stripe);
+        }
+    }
+
+    /**
+     * Returns whether a location may have been written after a stamp was taken.
+     */
+    boolean writtenSince(Location location, long stamp)
+    {
+        return stamps.get(stripe(location)) > stamp;
+    }
+
+    static int stripe(Location location)
+    {
+        int hash = location.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import io.netty.bootstrap.Bootstrap;
+import java.net.UnknownHostException;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ClientResourcesTest
+{
+    @Test
+    public void releasedWhenCountReachesZero()
+    {
+        ClientResources resources = new ClientResources.Builder().withEventLoopThreads(1).build();
+        assertEquals(1, resources.referenceCount());
+        
+        resources.retain();
+        assertFalse(resources.release());
+        assertFalse(resources.getScheduler().isShutdown());
+        
+        assertTrue(resources.release());
+        assertEquals(0, resources.referenceCount());
+        assertTrue(resources.getScheduler().isShutdown());
+        assertTrue(resources.getEventLoopGroup().isShuttingDown());
+        
+        try
+        {
+            resources.retain();
+            fail("Released resources were retained");
+        }
+        catch (IllegalStateException ex)
+        {
+            // expected
+        }
+    }
+    
+    @Test
+    public void sweeperRunsEveryRegisteredNode() throws UnknownHostException
+    {
+        NodeSweeper sweeper = new NodeSweeper();
+        RiakNode failing = mock(RiakNode.class);
+        RiakNode node = mock(RiakNode.class);
+        doThrow(new IllegalStateException()).when(failing).sweep();
+        sweeper.register(failing);
+        sweeper.register(node);
+        sweeper.register(node);
+        assertEquals(2, sweeper.size());
+        
+        sweeper.run();
+        verify(node).sweep();
+        
+        sweeper.unregister(node);
+        sweeper.run();
+        verify(node, times(1)).sweep();
+        verify(failing, times(2)).sweep();
+    }
+    
+    @Test
+    public void clustersShareAndReleaseResources() throws UnknownHostException
+    {
+        ClientResources resources = new ClientResources.Builder().withEventLoopThreads(1).build();
+        RiakNode node1 = new RiakNode.Builder().build();
+        RiakNode node2 = new RiakNode.Builder().build();
+        RiakCluster c1 = new RiakCluster.Builder(node1).withClientResources(resources).build();
+        RiakCluster c2 = new RiakCluster.Builder(node2).withClientResources(resources).build();
+        resources.release();
+        assertEquals(2, resources.referenceCount());
+        
+        Bootstrap b1 = Whitebox.getInternalState(c1, "bootstrap");
+        Bootstrap b2 = Whitebox.getInternalState(c2, "bootstrap");
+        assertSame(resources.getEventLoopGroup(), b1.group());
+        assertSame(b1.group(), b2.group());
+        assertSame(resources.getSweeper(), Whitebox.getInternalState(node1, "sweeper"));
+        
+        c1.nodeStateChanged(node1, RiakNode.State.SHUTDOWN);
+        assertEquals(1, resources.referenceCount());
+        assertFalse(resources.getEventLoopGroup().isShuttingDown());
+        
+        c2.nodeStateChanged(node2, RiakNode.State.SHUTDOWN);
+        assertEquals(0, resources.referenceCount());
+        assertTrue(resources.getEventLoopGroup().isShuttingDown());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(FutureOperation.class)
+public class ConsistentHashNodeManagerTest
+{
+    @Test
+    public void sameKeyGoesToSameNode()
+    {
+        List<RiakNode> nodes = nodes(3);
+        ConsistentHashNodeManager nodeManager = new ConsistentHashNodeManager();
+        nodeManager.init(nodes);
+        
+        byte[] key = "bucket/key".getBytes();
+        RiakNode owner = nodeManager.getOwner(key);
+        FutureOperation operation = keyedOperation(key);
+        doReturn(true).when(owner).execute(operation);
+        
+        for (int i = 0; i < 5; i++)
+        {
+            assertTrue(nodeManager.executeOnNode(operation, null));
+        }
+        verify(owner, times(5)).execute(operation);
+        assertEquals(5, nodeManager.getPreferredCount());
+    }
+    
+    @Test
+    public void removingNodeOnlyMovesItsKeys()
+    {
+        List<RiakNode> nodes = nodes(4);
+        ConsistentHashNodeManager nodeManager = new ConsistentHashNodeManager();
+        nodeManager.init(nodes);
+        
+        Map<String, RiakNode> before = new HashMap<String, RiakNode>();
+        for (int i = 0; i < 1000; i++)
+        {
+            before.put("key" + i, nodeManager.getOwner(("key" + i).getBytes()));
+        }
+        
+        RiakNode removed = nodes.get(2);
+        nodeManager.removeNode(removed);
+        
+        int moved = 0;
+        for (Map.Entry<String, RiakNode> e : before.entrySet())
+        {
+            RiakNode now = nodeManager.getOwner(e.getKey().getBytes());
+            assertNotSame(removed, now);
+            if (e.getValue() != removed && now != e.getValue())
+            {
+                moved++;
+            }
+        }
+        assertEquals(0, moved);
+    }
+    
+    @Test
+    public void fallsBackWhenOwnerUnhealthy()
+    {
+        List<RiakNode> nodes = nodes(3);
+        ConsistentHashNodeManager nodeManager = new ConsistentHashNodeManager();
+        nodeManager.init(nodes);
+        
+        byte[] key = "bucket/key".getBytes();
+        RiakNode owner = nodeManager.getOwner(key);
+        FutureOperation operation = keyedOperation(key);
+        for (RiakNode node : nodes)
+        {
+            doReturn(true).when(node).execute(operation);
+        }
+        
+        nodeManager.nodeStateChanged(owner, RiakNode.State.HEALTH_CHECKING);
+        assertTrue(nodeManager.executeOnNode(operation, null));
+        verify(owner, never()).execute(operation);
+        assertEquals(1, nodeManager.getFallbackCount());
+        
+        nodeManager.nodeStateChanged(owner, RiakNode.State.RUNNING);
+        assertTrue(nodeManager.executeOnNode(operation, null));
+        verify(owner).execute(operation);
+    }
+    
+    private FutureOperation keyedOperation(byte[] key)
+    {
+        FutureOperation operation = PowerMockito.mock(FutureOperation.class);
+        doReturn(key).when(operation).getRoutingKey();
+        return operation;
+    }
+    
+    private List<RiakNode> nodes(int count)
+    {
+        List<RiakNode> nodes = new ArrayList<RiakNode>();
+        for (int i = 0; i < count; i++)
+        {
+            RiakNode node = mock(RiakNode.class);
+            doReturn("10.0.0." + i).when(node).getRemoteAddress();
+            doReturn(8087).when(node).getPort();
+            nodes.add(node);
+        }
+        return nodes;
+    }
+}
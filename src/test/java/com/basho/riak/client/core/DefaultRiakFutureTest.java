@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class DefaultRiakFutureTest
+{
+    @Test
+    @SuppressWarnings("unchecked")
+    public void listenersFireOnceOnCompletion() throws Exception
+    {
+        DefaultRiakFuture<String> future = new DefaultRiakFuture<String>();
+        RiakFutureListener<String> before = mock(RiakFutureListener.class);
+        future.addListener(before);
+        verify(before, never()).handle(future);
+        
+        assertTrue(future.setResponse("value"));
+        assertFalse(future.setException(new Exception()));
+        assertTrue(future.isDone());
+        assertEquals("value", future.get());
+        verify(before).handle(future);
+        
+        // Added after completion; fired on the caller's thread
+        RiakFutureListener<String> after = mock(RiakFutureListener.class);
+        future.addListener(after);
+        verify(after).handle(future);
+    }
+    
+    @Test
+    public void exceptionIsWrapped() throws InterruptedException
+    {
+        DefaultRiakFuture<String> future = new DefaultRiakFuture<String>();
+        Exception cause = new Exception();
+        future.setException(cause);
+        try
+        {
+            future.get();
+            fail("Expected ExecutionException");
+        }
+        catch (ExecutionException ex)
+        {
+            assertSame(cause, ex.getCause());
+        }
+    }
+    
+    @Test(expected = TimeoutException.class)
+    public void getTimesOut() throws Exception
+    {
+        new DefaultRiakFuture<String>().get(1, TimeUnit.MILLISECONDS);
+    }
+}
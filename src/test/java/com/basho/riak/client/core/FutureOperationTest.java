@@ -23,8 +23,11 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.powermock.reflect.Whitebox;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -337,6 +340,144 @@ public class FutureOperationTest
 
     }
 
+    @Test
+    public void notifiesEachListenerOnce()
+    {
+        FutureOperation<String, ?> operation = PowerMockito.spy(new FutureOperationImpl());
+        RiakMessage response = PowerMockito.mock(RiakMessage.class);
+
+        final AtomicInteger called = new AtomicInteger(0);
+        RiakFutureListener<String> removed = null;
+        for (int i = 0; i < 3; i++)
+        {
+            RiakFutureListener<String> listener = new RiakFutureListener<String>()
+            {
+                @Override
+                public void handle(RiakFuture<String> f)
+                {
+                    called.incrementAndGet();
+                }
+            };
+            operation.addListener(listener);
+            operation.addListener(listener);
+            removed = listener;
+        }
+        operation.removeListener(removed);
+
+        operation.setResponse(response);
+
+        assertEquals(2, called.get());
+    }
+
+    @Test
+    public void terminalExceptionAfterCompleteIsIgnored() throws Exception
+    {
+        FutureOperation<String, ?> operation = PowerMockito.spy(new FutureOperationImpl());
+        RiakMessage response = PowerMockito.mock(RiakMessage.class);
+
+        operation.setResponse(response);
+
+        assertFalse(operation.setTerminalException(new Exception()));
+        assertEquals("Fake!", operation.get());
+    }
+
+    @Test
+    public void getWaitsForCompletionOnAnotherThread() throws Exception
+    {
+        final FutureOperation<String, ?> operation = new FutureOperationImpl();
+        final RiakMessage response = new RiakMessage((byte) 0, new byte[0]);
+
+        Thread t = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep(50);
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                operation.setResponse(response);
+            }
+        });
+        t.start();
+
+        assertEquals("Fake!", operation.get(5, TimeUnit.SECONDS));
+        t.join();
+    }
+
+    @Test
+    public void listenersOnAnExecutorRunInOrderFromOneTask()
+    {
+        FutureOperation<String, ?> operation = new FutureOperationImpl();
+        RiakMessage response = new RiakMessage((byte) 0, new byte[0]);
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        Executor executor = new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                tasks.add(command);
+            }
+        };
+
+        final List<Integer> order = new ArrayList<Integer>();
+        for (int i = 0; i < 3; i++)
+        {
+            final int n = i;
+            operation.addListener(new RiakFutureListener<String>()
+            {
+                @Override
+                public void handle(RiakFuture<String> f)
+                {
+                    order.add(n);
+                }
+            }, executor);
+        }
+
+        operation.setResponse(response);
+        assertTrue(order.isEmpty());
+        assertEquals(1, tasks.size());
+
+        tasks.get(0).run();
+        assertEquals(Arrays.asList(0, 1, 2), order);
+    }
+
+    @Test
+    public void defaultListenerExecutorIsUsed()
+    {
+        FutureOperation<String, ?> operation = new FutureOperationImpl();
+        RiakMessage response = new RiakMessage((byte) 0, new byte[0]);
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        operation.setListenerExecutor(new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                tasks.add(command);
+            }
+        });
+
+        final AtomicBoolean called = new AtomicBoolean(false);
+        operation.addListener(new RiakFutureListener<String>()
+        {
+            @Override
+            public void handle(RiakFuture<String> f)
+            {
+                called.set(true);
+            }
+        });
+
+        operation.setResponse(response);
+        assertFalse(called.get());
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertTrue(called.get());
+    }
+
     private class FutureOperationImpl extends FutureOperation<String, Message>
     {
         public FutureOperationImpl()
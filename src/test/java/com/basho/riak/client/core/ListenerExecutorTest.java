@@ -0,0 +1,109 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ListenerExecutorTest
+{
+    @Test
+    public void recordsQueueDelayOfSuppliedExecutor()
+    {
+        final AtomicReference<Runnable> queued = new AtomicReference<Runnable>();
+        ListenerExecutor executor = new ListenerExecutor.Builder()
+            .withExecutor(new Executor()
+            {
+                @Override
+                public void execute(Runnable command)
+                {
+                    queued.set(command);
+                }
+            })
+            .build();
+
+        executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        });
+        assertEquals(1, executor.getQueueSize());
+        assertEquals(0, executor.getExecutedCount());
+
+        queued.get().run();
+        assertEquals(0, executor.getQueueSize());
+        assertEquals(1, executor.getExecutedCount());
+        assertEquals(executor.getMaxQueueDelayNanos(), executor.getMeanQueueDelayNanos());
+    }
+
+    @Test
+    public void fullQueueRunsOnCaller() throws InterruptedException
+    {
+        ListenerExecutor executor = new ListenerExecutor.Builder()
+            .withThreads(1)
+            .withQueueSize(1)
+            .build();
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blocker = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        // One running, one queued
+        executor.execute(blocker);
+        executor.execute(blocker);
+
+        final AtomicReference<Thread> ranOn = new AtomicReference<Thread>();
+        executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ranOn.set(Thread.currentThread());
+            }
+        });
+
+        assertSame(Thread.currentThread(), ranOn.get());
+        assertEquals(1, executor.getOverflowCount());
+
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderValidatesThreads()
+    {
+        new ListenerExecutor.Builder().withThreads(0).build();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import static org.junit.Assert.*;
+
+public class OutlierDetectorTest
+{
+    private final OutlierDetector detector = 
+        new OutlierDetector.Builder()
+            .withMinRequests(10)
+            .withEjectionTime(50, 1000, TimeUnit.MILLISECONDS)
+            .build();
+    
+    @Test
+    public void slowNodeIsEjectedAndReturned() throws Exception
+    {
+        List<RiakNode> nodes = nodes(4);
+        record(nodes.get(0), 1, true);
+        record(nodes.get(1), 1, true);
+        record(nodes.get(2), 1, true);
+        record(nodes.get(3), 20, true);
+        
+        detector.evaluate(nodes);
+        assertTrue(nodes.get(3).isEjected());
+        assertFalse(nodes.get(0).isEjected());
+        assertEquals(1, detector.getEjectionCount());
+        
+        Thread.sleep(60);
+        detector.evaluate(nodes);
+        assertFalse(nodes.get(3).isEjected());
+        assertEquals(0, nodes.get(3).getStatistics().snapshot().getCount());
+    }
+    
+    @Test
+    public void failingNodeIsEjected() throws Exception
+    {
+        List<RiakNode> nodes = nodes(3);
+        record(nodes.get(0), 1, true);
+        record(nodes.get(1), 1, true);
+        record(nodes.get(2), 1, false);
+        
+        detector.evaluate(nodes);
+        assertTrue(nodes.get(2).isEjected());
+    }
+    
+    @Test
+    public void ejectionsAreCapped() throws Exception
+    {
+        List<RiakNode> nodes = nodes(5);
+        record(nodes.get(0), 1, true);
+        record(nodes.get(1), 1, true);
+        record(nodes.get(2), 1, true);
+        record(nodes.get(3), 20, true);
+        record(nodes.get(4), 20, true);
+        
+        detector.evaluate(nodes);
+        assertEquals(1, detector.getEjectionCount());
+        assertTrue(nodes.get(3).isEjected() ^ nodes.get(4).isEjected());
+    }
+    
+    @Test
+    public void repeatOffenderIsEjectedForLonger() throws Exception
+    {
+        List<RiakNode> nodes = nodes(3);
+        RiakNode slow = nodes.get(2);
+        
+        record(nodes.get(0), 1, true);
+        record(nodes.get(1), 1, true);
+        record(slow, 20, true);
+        detector.evaluate(nodes);
+        assertTrue(slow.isEjected());
+        
+        Thread.sleep(60);
+        detector.evaluate(nodes);
+        assertFalse(slow.isEjected());
+        
+        record(slow, 20, true);
+        detector.evaluate(nodes);
+        assertTrue(slow.isEjected());
+        
+        // second ejection lasts 100ms
+        Thread.sleep(60);
+        detector.evaluate(nodes);
+        assertTrue(slow.isEjected());
+        Thread.sleep(50);
+        detector.evaluate(nodes);
+        assertFalse(slow.isEjected());
+    }
+    
+    @Test
+    public void ejectionTimeStopsAtMaxWithoutOverflowing()
+    {
+        OutlierDetector defaults = new OutlierDetector.Builder().build();
+        long base = TimeUnit.MILLISECONDS.toNanos(OutlierDetector.Builder.DEFAULT_BASE_EJECTION_TIME);
+        long max = TimeUnit.MILLISECONDS.toNanos(OutlierDetector.Builder.DEFAULT_MAX_EJECTION_TIME);
+        
+        assertEquals(base, defaults.ejectionNanos(0));
+        assertEquals(base * 8, defaults.ejectionNanos(3));
+        assertEquals(max, defaults.ejectionNanos(4));
+        assertEquals(max, defaults.ejectionNanos(28));
+        assertEquals(max, defaults.ejectionNanos(100));
+    }
+    
+    private void record(RiakNode node, long latencyMillis, boolean success)
+    {
+        for (int i = 0; i < 20; i++)
+        {
+            node.getStatistics().record(TimeUnit.MILLISECONDS.toNanos(latencyMillis), success);
+        }
+    }
+    
+    private List<RiakNode> nodes(int count) throws UnknownHostException
+    {
+        List<RiakNode> nodes = new ArrayList<RiakNode>();
+        for (int i = 0; i < count; i++)
+        {
+            RiakNode node = new RiakNode.Builder().build();
+            node.setStatistics(detector.createStatistics());
+            Whitebox.setInternalState(node, "state", RiakNode.State.RUNNING);
+            nodes.add(node);
+        }
+        return nodes;
+    }
+}
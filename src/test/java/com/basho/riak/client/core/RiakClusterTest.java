@@ -17,16 +17,26 @@ package com.basho.riak.client.core;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.powermock.reflect.Whitebox;
 
+import com.basho.riak.client.core.netty.RiakResponseException;
+import com.google.protobuf.Message;
 import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 
@@ -117,4 +127,237 @@ public class RiakClusterTest
         
         
     }
+    
+    @Test
+    public void clusterShedsOperationThatCannotMeetDeadline() throws Exception
+    {
+        NodeManager nodeManager = mock(NodeManager.class);
+        RiakNode node = mock(RiakNode.class);
+        doReturn(RiakNode.State.RUNNING).when(node).getNodeState();
+        doReturn(TimeUnit.MILLISECONDS.toNanos(50)).when(node).getEstimatedWaitNanos();
+        doReturn(TimeUnit.MILLISECONDS.toNanos(10)).when(node).getAverageLatencyNanos();
+        
+        RiakCluster cluster = new RiakCluster.Builder(node).withNodeManager(nodeManager).build();
+        Whitebox.setInternalState(cluster, "state", RiakCluster.State.RUNNING);
+        
+        FutureOperationImpl operation = new FutureOperationImpl();
+        operation.setDeadline(20, TimeUnit.MILLISECONDS);
+        cluster.execute(operation);
+        
+        assertTrue(operation.isDone());
+        verify(nodeManager, never()).executeOnNode(operation, null);
+        assertEquals(1, cluster.getShedCount());
+        assertEquals(1, cluster.getSubmittedCount());
+        try
+        {
+            operation.get();
+            fail("Expected ExecutionException");
+        }
+        catch (ExecutionException ex)
+        {
+            assertTrue(ex.getCause() instanceof OperationShedException);
+        }
+        
+        FutureOperationImpl roomy = new FutureOperationImpl();
+        roomy.setDeadline(1, TimeUnit.SECONDS);
+        cluster.execute(roomy);
+        verify(nodeManager).executeOnNode(roomy, null);
+        assertEquals(1, cluster.getShedCount());
+    }
+    
+    @Test
+    public void clusterQueuesOperationWhenNoNodeAvailable() throws Exception
+    {
+        NodeManager nodeManager = mock(NodeManager.class);
+        RiakNode node = mock(RiakNode.class);
+        
+        RiakCluster cluster = new RiakCluster.Builder(node)
+                                .withNodeManager(nodeManager)
+                                .withExecutor(mock(ScheduledExecutorService.class))
+                                .withExecutionAttempts(1)
+                                .withOperationQueueMaxDepth(1)
+                                .build();
+        Whitebox.setInternalState(cluster, "state", RiakCluster.State.RUNNING);
+        
+        FutureOperationImpl queued = new FutureOperationImpl();
+        cluster.execute(queued);
+        assertFalse(queued.isDone());
+        assertEquals(1, cluster.getOperationQueueDepth());
+        assertEquals(1, cluster.getQueuedCount());
+        
+        FutureOperationImpl rejected = new FutureOperationImpl();
+        cluster.execute(rejected);
+        assertTrue(rejected.isDone());
+        assertEquals(1, cluster.getQueueRejectedCount());
+        try
+        {
+            rejected.get();
+            fail("Expected ExecutionException");
+        }
+        catch (ExecutionException ex)
+        {
+            assertTrue(ex.getCause() instanceof NoNodesAvailableException);
+        }
+        
+        doReturn(true).when(nodeManager).executeOnNode(queued, null);
+        Whitebox.invokeMethod(cluster, "dispatchQueued");
+        assertEquals(0, cluster.getOperationQueueDepth());
+        verify(nodeManager, times(2)).executeOnNode(queued, null);
+    }
+    
+    @Test
+    public void queuedOperationExpiresAtDeadline() throws Exception
+    {
+        NodeManager nodeManager = mock(NodeManager.class);
+        RiakNode node = mock(RiakNode.class);
+        
+        RiakCluster cluster = new RiakCluster.Builder(node)
+                                .withNodeManager(nodeManager)
+                                .withExecutor(mock(ScheduledExecutorService.class))
+                                .withOperationQueueMaxDepth(10)
+                                .build();
+        Whitebox.setInternalState(cluster, "state", RiakCluster.State.RUNNING);
+        
+        FutureOperationImpl operation = new FutureOperationImpl();
+        operation.setDeadline(50, TimeUnit.MILLISECONDS);
+        cluster.execute(operation);
+        assertEquals(1, cluster.getOperationQueueDepth());
+        
+        Thread.sleep(60);
+        Whitebox.invokeMethod(cluster, "expireQueued");
+        
+        // Expired operations aren't retried even though attempts remain
+        assertTrue(operation.isDone());
+        assertEquals(0, cluster.getOperationQueueDepth());
+        assertEquals(1, cluster.getQueueExpiredCount());
+        assertEquals(0, cluster.inFlightCount());
+        assertTrue(cluster.getMaxQueueWaitNanos() > 0);
+    }
+    
+    @Test
+    public void nodesShutDownWhenLastOperationCompletes() throws Exception
+    {
+        NodeManager nodeManager = mock(NodeManager.class);
+        RiakNode node = mock(RiakNode.class);
+        ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+        
+        RiakCluster cluster = new RiakCluster.Builder(node)
+                                .withNodeManager(nodeManager)
+                                .withExecutor(executor)
+                                .withExecutionAttempts(1)
+                                .build();
+        Whitebox.setInternalState(cluster, "state", RiakCluster.State.RUNNING);
+        
+        FutureOperationImpl operation = new FutureOperationImpl();
+        doReturn(true).when(nodeManager).executeOnNode(operation, null);
+        cluster.execute(operation);
+        
+        cluster.shutdown();
+        verify(executor, never()).execute(any(Runnable.class));
+        
+        operation.setException(new Exception());
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(task.capture());
+        task.getValue().run();
+        verify(node).shutdown();
+    }
+    
+    @Test
+    public void nodesShutDownWhenExecutorRejectsShutdownTask() throws Exception
+    {
+        NodeManager nodeManager = mock(NodeManager.class);
+        RiakNode node = mock(RiakNode.class);
+        ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+        
+        RiakCluster cluster = new RiakCluster.Builder(node)
+                                .withNodeManager(nodeManager)
+                                .withExecutor(executor)
+                                .withExecutionAttempts(1)
+                                .build();
+        Whitebox.setInternalState(cluster, "state", RiakCluster.State.RUNNING);
+        
+        FutureOperationImpl operation = new FutureOperationImpl();
+        doReturn(true).when(nodeManager).executeOnNode(operation, null);
+        cluster.execute(operation);
+        
+        cluster.shutdown();
+        doThrow(new RejectedExecutionException()).when(executor).execute(any(Runnable.class));
+        operation.setException(new Exception());
+        verify(node).shutdown();
+    }
+    
+    @Test
+    public void shutdownDeadlineFailsRemainingOperations() throws Exception
+    {
+        NodeManager nodeManager = mock(NodeManager.class);
+        RiakNode node = mock(RiakNode.class);
+        ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+        
+        RiakCluster cluster = new RiakCluster.Builder(node)
+                                .withNodeManager(nodeManager)
+                                .withExecutor(executor)
+                                .build();
+        Whitebox.setInternalState(cluster, "state", RiakCluster.State.RUNNING);
+        
+        FutureOperationImpl retrying = new FutureOperationImpl();
+        doReturn(true).when(nodeManager).executeOnNode(retrying, null);
+        cluster.execute(retrying);
+        retrying.setException(new Exception());
+        assertFalse(retrying.isDone());
+        
+        cluster.shutdown(1, TimeUnit.SECONDS);
+        ArgumentCaptor<Runnable> deadline = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).schedule(deadline.capture(), eq(1L), eq(TimeUnit.SECONDS));
+        deadline.getValue().run();
+        
+        assertTrue(retrying.isDone());
+        try
+        {
+            retrying.get();
+            fail("Expected ExecutionException");
+        }
+        catch (ExecutionException ex)
+        {
+            assertTrue(ex.getCause() instanceof ClusterShutdownException);
+        }
+        
+        // Failing the retry left nothing in flight, which starts the node shutdown
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(task.capture());
+        task.getValue().run();
+        verify(node).shutdown();
+        verify(node).abortInProgress(any(ClusterShutdownException.class));
+    }
+    
+    @Test
+    public void onlyOverloadFailuresCountAsDrops()
+    {
+        assertTrue(RiakCluster.isOverload(new ConnectionFailedException(new java.io.IOException())));
+        assertTrue(RiakCluster.isOverload(new java.util.concurrent.TimeoutException()));
+        assertTrue(RiakCluster.isOverload(new RiakResponseException(0, "overload")));
+        assertFalse(RiakCluster.isOverload(new RiakResponseException(0, "notfound")));
+        assertFalse(RiakCluster.isOverload(new IllegalStateException()));
+        assertFalse(RiakCluster.isOverload(null));
+    }
+    
+    private class FutureOperationImpl extends FutureOperation<String, Message>
+    {
+        @Override
+        protected String convert(List<Message> rawResponse) throws ExecutionException
+        {
+            return "value";
+        }
+
+        @Override
+        protected Message decode(RiakMessage rawMessage)
+        {
+            return null;
+        }
+
+        @Override
+        protected RiakMessage createChannelMessage()
+        {
+            return new RiakMessage((byte) 0, new byte[0]);
+        }
+    }
 }
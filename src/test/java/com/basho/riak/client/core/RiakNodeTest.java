@@ -24,6 +24,8 @@ import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelPipeline;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -248,6 +250,19 @@ public class RiakNodeTest
             listener.operationComplete(future);
         }
 
+        // The health check connects asynchronously; complete it right away
+        doAnswer(new Answer<ChannelFuture>()
+        {
+            @Override
+            public ChannelFuture answer(InvocationOnMock invocation) throws Throwable
+            {
+                ChannelFutureListener l = (ChannelFutureListener) invocation.getArguments()[0];
+                ChannelFuture f = (ChannelFuture) invocation.getMock();
+                l.operationComplete(f);
+                return f;
+            }
+        }).when(future).addListener(any(ChannelFutureListener.class));
+
         NodeStateListener listener = mock(NodeStateListener.class);
         node.addStateListener(listener);
         Whitebox.setInternalState(node, "state", State.RUNNING);
@@ -367,6 +382,113 @@ public class RiakNodeTest
         await().atMost(500, TimeUnit.MILLISECONDS).until(fieldIn(operation).ofType(Throwable.class).andWithName("exception"), equalTo(t));
     }
 
+    @Test
+    public void shutdownCompletesWhenLastOperationFinishes() throws InterruptedException, UnknownHostException
+    {
+        Channel channel = mock(Channel.class);
+        ChannelPipeline channelPipeline = mock(ChannelPipeline.class);
+        ChannelFuture future = mock(ChannelFuture.class);
+        FutureOperation operation = PowerMockito.spy(new FutureOperationImpl());
+        Bootstrap bootstrap = PowerMockito.spy(new Bootstrap());
+
+        doReturn(future).when(channel).closeFuture();
+        doReturn(true).when(channel).isOpen();
+        doReturn(channelPipeline).when(channel).pipeline();
+        doReturn(future).when(channel).writeAndFlush(operation);
+        doReturn(future).when(future).await();
+        doReturn(true).when(future).isSuccess();
+        doReturn(channel).when(future).channel();
+        doReturn(future).when(bootstrap).connect();
+        doReturn(bootstrap).when(bootstrap).clone();
+
+        RiakNode node = new RiakNode.Builder().withBootstrap(bootstrap)
+                            .withExecutor(mock(ScheduledExecutorService.class)).build();
+        node.start();
+        assertTrue(node.execute(operation));
+        
+        node.shutdown();
+        assertEquals(State.SHUTTING_DOWN, node.getNodeState());
+        
+        node.onException(channel, mock(Throwable.class));
+        assertEquals(State.SHUTDOWN, node.getNodeState());
+        verify(channel, atLeastOnce()).close();
+    }
+
+    @Test
+    public void abortFailsInProgressOperations() throws InterruptedException, UnknownHostException
+    {
+        Channel channel = mock(Channel.class);
+        ChannelPipeline channelPipeline = mock(ChannelPipeline.class);
+        ChannelFuture future = mock(ChannelFuture.class);
+        FutureOperation operation = PowerMockito.spy(new FutureOperationImpl());
+        Bootstrap bootstrap = PowerMockito.spy(new Bootstrap());
+
+        doReturn(future).when(channel).closeFuture();
+        doReturn(true).when(channel).isOpen();
+        doReturn(channelPipeline).when(channel).pipeline();
+        doReturn(future).when(channel).writeAndFlush(operation);
+        doReturn(future).when(future).await();
+        doReturn(true).when(future).isSuccess();
+        doReturn(channel).when(future).channel();
+        doReturn(future).when(bootstrap).connect();
+        doReturn(bootstrap).when(bootstrap).clone();
+
+        RiakNode node = new RiakNode.Builder().withBootstrap(bootstrap)
+                            .withExecutor(mock(ScheduledExecutorService.class)).build();
+        node.start();
+        assertTrue(node.execute(operation));
+        node.shutdown();
+        
+        Throwable cause = new ClusterShutdownException();
+        node.abortInProgress(cause);
+        assertTrue(operation.isDone());
+        assertEquals(cause, Whitebox.getInternalState(operation, "exception"));
+        assertEquals(State.SHUTDOWN, node.getNodeState());
+    }
+
+    @Test
+    public void operationsRoutedToSeparatePools() throws InterruptedException, UnknownHostException
+    {
+        Channel channel = mock(Channel.class);
+        ChannelPipeline channelPipeline = mock(ChannelPipeline.class);
+        ChannelFuture future = mock(ChannelFuture.class);
+        Bootstrap bootstrap = PowerMockito.spy(new Bootstrap());
+
+        doReturn(future).when(channel).closeFuture();
+        doReturn(true).when(channel).isOpen();
+        doReturn(channelPipeline).when(channel).pipeline();
+        doReturn(future).when(channel).writeAndFlush(any());
+        doReturn(future).when(future).await();
+        doReturn(true).when(future).isSuccess();
+        doReturn(channel).when(future).channel();
+        doReturn(future).when(bootstrap).connect();
+        doReturn(bootstrap).when(bootstrap).clone();
+
+        RiakNode node = new RiakNode.Builder()
+                            .withBootstrap(bootstrap)
+                            .withMinConnections(0)
+                            .withConnectionPool("slow", 0, 1)
+                            .withConnectionPoolRule(
+                                ConnectionPoolRules.byOperationType("slow", SlowOperationImpl.class))
+                            .build();
+        node.start();
+        
+        assertTrue(node.execute(new SlowOperationImpl()));
+        assertFalse(node.execute(new SlowOperationImpl()));
+        assertTrue(node.execute(new FutureOperationImpl()));
+        
+        RiakNode.PoolStats slow = node.getPoolStats("slow");
+        assertEquals(1, slow.getMaxConnections());
+        assertEquals(1, slow.getInUse());
+        assertEquals(1, slow.getAcquiredCount());
+        assertEquals(1, slow.getRefusedCount());
+        assertEquals(1, node.getPoolStats(RiakNode.DEFAULT_POOL).getAcquiredCount());
+    }
+
+    private class SlowOperationImpl extends FutureOperationImpl
+    {
+    }
+
     private class FutureOperationImpl extends FutureOperation<String, Message>
     {
 
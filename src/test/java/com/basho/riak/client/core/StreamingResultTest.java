@@ -0,0 +1,140 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class StreamingResultTest
+{
+    private final RiakMessage done = new RiakMessage((byte) 1, new byte[0]);
+    private final RiakMessage chunk = new RiakMessage((byte) 0, new byte[0]);
+
+    @Test
+    public void deliversChunksAsTheyArrive()
+    {
+        StreamingOperation operation = new StreamingOperation(16);
+
+        operation.setResponse(chunk);
+        assertTrue(operation.stream.hasNext());
+        assertEquals(Integer.valueOf(0), operation.stream.next());
+        assertEquals(Integer.valueOf(1), operation.stream.next());
+
+        operation.setResponse(done);
+        List<Integer> rest = new ArrayList<Integer>();
+        while (operation.stream.hasNext())
+        {
+            rest.add(operation.stream.next());
+        }
+        assertEquals(Arrays.asList(2, 3), rest);
+    }
+
+    @Test
+    public void pausesReadingUntilDrained()
+    {
+        StreamingOperation operation = new StreamingOperation(2);
+        Channel channel = mock(Channel.class);
+        ChannelConfig config = mock(ChannelConfig.class);
+        when(channel.config()).thenReturn(config);
+        operation.setChannel(channel);
+
+        operation.setResponse(chunk);
+        verify(config, never()).setAutoRead(false);
+        operation.setResponse(chunk);
+        verify(config).setAutoRead(false);
+
+        // one chunk left of two; half the limit
+        operation.stream.next();
+        verify(config).setAutoRead(true);
+    }
+
+    @Test
+    public void failureIsThrownFromIteratorAndNotRetried()
+    {
+        StreamingOperation operation = new StreamingOperation(16);
+        OperationRetrier retrier = mock(OperationRetrier.class);
+        operation.setRetrier(retrier, 3);
+
+        operation.setResponse(chunk);
+        operation.setException(new Exception("boom"));
+        assertTrue(operation.isDone());
+        verify(retrier).operationFailed(operation, 0);
+
+        operation.stream.next();
+        operation.stream.next();
+        try
+        {
+            operation.stream.hasNext();
+            fail("Expected StreamFailedException");
+        }
+        catch (StreamingResult.StreamFailedException ex)
+        {
+            assertEquals("boom", ex.getCause().getMessage());
+        }
+    }
+
+    private static class StreamingOperation extends FutureOperation<Void, RiakMessage>
+    {
+        private final StreamingResult<Integer> stream;
+        private int next;
+
+        StreamingOperation(int maxBufferedChunks)
+        {
+            stream = new StreamingResult<Integer>(this, maxBufferedChunks);
+            setStreamingResult(stream, new ResponseStream<RiakMessage>()
+            {
+                @Override
+                public void streamResponse(RiakMessage message)
+                {
+                    stream.offer(Arrays.asList(next++, next++));
+                }
+            });
+        }
+
+        @Override
+        protected boolean done(RiakMessage message)
+        {
+            return message.getCode() == 1;
+        }
+
+        @Override
+        protected Void convert(List<RiakMessage> rawResponse) throws ExecutionException
+        {
+            assertTrue(rawResponse.isEmpty());
+            return null;
+        }
+
+        @Override
+        protected RiakMessage createChannelMessage()
+        {
+            return null;
+        }
+
+        @Override
+        protected RiakMessage decode(RiakMessage rawMessage)
+        {
+            return rawMessage;
+        }
+    }
+}
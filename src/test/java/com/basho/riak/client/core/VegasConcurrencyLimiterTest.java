@@ -0,0 +1,117 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class VegasConcurrencyLimiterTest
+{
+    @Test
+    public void rejectsBeyondLimit()
+    {
+        VegasConcurrencyLimiter limiter =
+            new VegasConcurrencyLimiter.Builder().withInitialLimit(2).build();
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+
+        limiter.release(0, false);
+        assertEquals(1, limiter.getInFlight());
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void dropReducesLimit()
+    {
+        VegasConcurrencyLimiter limiter =
+            new VegasConcurrencyLimiter.Builder().withInitialLimit(20).build();
+
+        // establish a baseline
+        limiter.tryAcquire();
+        limiter.release(1000000, false);
+
+        limiter.tryAcquire();
+        limiter.release(2000000, true);
+        assertEquals(18, limiter.getLimit());
+    }
+
+    @Test
+    public void fastDropReducesLimitWithoutResettingBaseline()
+    {
+        VegasConcurrencyLimiter limiter =
+            new VegasConcurrencyLimiter.Builder().withInitialLimit(20).build();
+
+        limiter.tryAcquire();
+        limiter.release(1000000, false);
+
+        // e.g. a refused connection, failing long before any response
+        limiter.tryAcquire();
+        limiter.release(1000, true);
+        assertEquals(18, limiter.getLimit());
+        assertEquals(1000000, limiter.getNoLoadRtt());
+    }
+
+    @Test
+    public void lowLatencyUnderLoadGrowsLimit()
+    {
+        VegasConcurrencyLimiter limiter =
+            new VegasConcurrencyLimiter.Builder().withInitialLimit(10).build();
+
+        fill(limiter);
+        limiter.release(1000000, false);
+
+        for (int i = 0; i < 5; i++)
+        {
+            fill(limiter);
+            limiter.release(1000000, false);
+        }
+        assertTrue(limiter.getLimit() > 10);
+    }
+
+    @Test
+    public void queueingLatencyShrinksLimit()
+    {
+        VegasConcurrencyLimiter limiter =
+            new VegasConcurrencyLimiter.Builder().withInitialLimit(100).build();
+
+        fill(limiter);
+        limiter.release(1000000, false);
+
+        for (int i = 0; i < 5; i++)
+        {
+            fill(limiter);
+            limiter.release(10000000, false);
+        }
+        assertTrue(limiter.getLimit() < 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderValidatesLimits()
+    {
+        new VegasConcurrencyLimiter.Builder().withMinLimit(10).withMaxLimit(5).build();
+    }
+
+    private void fill(ConcurrencyLimiter limiter)
+    {
+        while (limiter.tryAcquire())
+        {
+        }
+    }
+}
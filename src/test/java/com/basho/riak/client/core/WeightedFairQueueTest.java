@@ -0,0 +1,111 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WeightedFairQueueTest
+{
+    @Test
+    public void lanesAreServedInProportionToWeight()
+    {
+        Map<OperationPriority, Integer> weights = 
+            new EnumMap<OperationPriority, Integer>(OperationPriority.class);
+        weights.put(OperationPriority.INTERACTIVE, 3);
+        weights.put(OperationPriority.BATCH, 1);
+        WeightedFairQueue<String> queue = new WeightedFairQueue<String>(weights);
+        
+        for (int i = 0; i < 100; i++)
+        {
+            queue.add(OperationPriority.BATCH, "batch");
+        }
+        for (int i = 0; i < 100; i++)
+        {
+            queue.add(OperationPriority.INTERACTIVE, "interactive");
+        }
+        
+        int interactive = 0;
+        for (int i = 0; i < 40; i++)
+        {
+            if ("interactive".equals(queue.poll()))
+            {
+                interactive++;
+            }
+        }
+        assertEquals(30, interactive);
+        assertEquals(160, queue.size());
+    }
+    
+    @Test
+    public void idleLaneDoesNotBuildCredit()
+    {
+        WeightedFairQueue<String> queue = 
+            new WeightedFairQueue<String>(Collections.<OperationPriority, Integer>emptyMap());
+        
+        for (int i = 0; i < 50; i++)
+        {
+            queue.add(OperationPriority.BATCH, "batch");
+        }
+        for (int i = 0; i < 40; i++)
+        {
+            queue.poll();
+        }
+        
+        // NORMAL arrives late; it shouldn't be owed the 40 slots batch used
+        for (int i = 0; i < 20; i++)
+        {
+            queue.add(OperationPriority.NORMAL, "normal");
+        }
+        int batch = 0;
+        for (int i = 0; i < 10; i++)
+        {
+            if ("batch".equals(queue.poll()))
+            {
+                batch++;
+            }
+        }
+        assertTrue(batch > 0 && batch <= 2);
+    }
+    
+    @Test
+    public void iteratorRemovesEntries()
+    {
+        WeightedFairQueue<String> queue = 
+            new WeightedFairQueue<String>(Collections.<OperationPriority, Integer>emptyMap());
+        queue.add(OperationPriority.NORMAL, "a");
+        queue.add(OperationPriority.BATCH, "b");
+        queue.add(OperationPriority.INTERACTIVE, "c");
+        
+        for (Iterator<String> i = queue.iterator(); i.hasNext(); )
+        {
+            if ("b".equals(i.next()))
+            {
+                i.remove();
+            }
+        }
+        assertEquals(2, queue.size());
+        assertEquals("c", queue.poll());
+        assertEquals("a", queue.poll());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+}
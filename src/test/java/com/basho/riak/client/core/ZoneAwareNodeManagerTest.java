@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.core;
+
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(FutureOperation.class)
+public class ZoneAwareNodeManagerTest
+{
+    @Test
+    public void prefersLocalNodesAndSpillsOver()
+    {
+        RiakNode sameRack = node("us-east-1a", "r1");
+        RiakNode sameZone = node("us-east-1a", "r2");
+        RiakNode remote = node("us-east-1b", "r1");
+        FutureOperation operation = PowerMockito.mock(FutureOperation.class);
+        
+        ZoneAwareNodeManager nodeManager = new ZoneAwareNodeManager("us-east-1a", "r1");
+        nodeManager.init(Arrays.asList(remote, sameZone, sameRack));
+        
+        doReturn(true).when(sameRack).execute(operation);
+        assertTrue(nodeManager.executeOnNode(operation, null));
+        verify(sameZone, never()).execute(operation);
+        verify(remote, never()).execute(operation);
+        
+        // local rack saturated
+        doReturn(false).when(sameRack).execute(operation);
+        doReturn(true).when(sameZone).execute(operation);
+        assertTrue(nodeManager.executeOnNode(operation, null));
+        verify(remote, never()).execute(operation);
+        
+        // local zone unhealthy
+        nodeManager.nodeStateChanged(sameZone, RiakNode.State.HEALTH_CHECKING);
+        doReturn(true).when(remote).execute(operation);
+        assertTrue(nodeManager.executeOnNode(operation, null));
+        verify(remote).execute(operation);
+        
+        assertEquals(1, nodeManager.getLocalRackCount());
+        assertEquals(2, nodeManager.getLocalZoneCount());
+        assertEquals(1, nodeManager.getCrossZoneCount());
+    }
+    
+    @Test
+    public void returnsFalseWhenNoNodeAccepts()
+    {
+        RiakNode local = node("a", null);
+        RiakNode unlabeled = node(null, null);
+        FutureOperation operation = PowerMockito.mock(FutureOperation.class);
+        
+        ZoneAwareNodeManager nodeManager = new ZoneAwareNodeManager("a");
+        nodeManager.init(Arrays.asList(local, unlabeled));
+        
+        assertFalse(nodeManager.executeOnNode(operation, null));
+        verify(local).execute(operation);
+        verify(unlabeled).execute(operation);
+        assertEquals(0, nodeManager.getCrossZoneCount());
+    }
+    
+    private RiakNode node(String zone, String rack)
+    {
+        RiakNode node = mock(RiakNode.class);
+        doReturn(zone).when(node).getZone();
+        doReturn(rack).when(node).getRack();
+        return node;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.convert.PassThroughConverter;
+import com.basho.riak.client.core.DefaultRiakFuture;
+import com.basho.riak.client.core.FutureOperation;
+import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.core.operations.ResetBucketPropsOperation;
+import com.basho.riak.client.core.operations.StoreBucketPropsOperation;
+import com.basho.riak.client.query.BucketProperties;
+import com.basho.riak.client.query.RiakObject;
+import com.basho.riak.client.util.BinaryValue;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class BucketPropertiesCacheTest
+{
+    private final Location bucket = new Location("bucket").withType("type");
+    private final BucketProperties properties = new BucketProperties.Builder().withAllowMulti(false).build();
+    @Mock RiakCluster mockCluster;
+    private List<FutureOperation> operations;
+    private List<DefaultRiakFuture<Object>> dispatched;
+
+    @Before
+    public void init()
+    {
+        MockitoAnnotations.initMocks(this);
+        DispatchingCluster cluster = DispatchingCluster.dispatch(mockCluster);
+        operations = cluster.operations;
+        dispatched = cluster.dispatched;
+    }
+
+    @Test
+    public void servesRepeatFetchesUntilTheyExpire() throws Exception
+    {
+        BucketPropertiesCache cache = new BucketPropertiesCache.Builder().withTtl(200, TimeUnit.MILLISECONDS).build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withBucketPropertiesCache(cache).build();
+
+        RiakFuture<BucketProperties> first = client.executeAsync(fetch());
+        RiakFuture<BucketProperties> joined = client.executeAsync(fetch());
+        assertNull(cache.getIfPresent(bucket));
+        dispatched.get(0).setResponse(properties);
+        assertSame(properties, first.get());
+        assertSame(properties, joined.get());
+        assertSame(properties, cache.getIfPresent(bucket));
+        assertNull(cache.getIfPresent(new Location("bucket")));
+
+        client.executeAsync(fetch());
+        assertEquals(1, dispatched.size());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        Thread.sleep(250);
+        assertNull(cache.getIfPresent(bucket));
+        client.executeAsync(fetch());
+        assertEquals(2, dispatched.size());
+    }
+
+    @Test
+    public void storeAndResetInvalidate() throws Exception
+    {
+        BucketPropertiesCache cache = new BucketPropertiesCache.Builder().build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withBucketPropertiesCache(cache).build();
+
+        client.executeAsync(fetch());
+        dispatched.get(0).setResponse(properties);
+
+        // A fetch in flight while the store runs must not be cached
+        client.executeAsync(new StoreBucketProperties.Builder(bucket).withAllowMulti(true).build());
+        assertTrue(operations.get(1) instanceof StoreBucketPropsOperation);
+        assertNull(cache.getIfPresent(bucket));
+        client.executeAsync(fetch());
+        dispatched.get(1).setResponse(true);
+        dispatched.get(2).setResponse(properties);
+        assertNull(cache.getIfPresent(bucket));
+
+        client.executeAsync(fetch());
+        dispatched.get(3).setResponse(properties);
+        assertNotNull(cache.getIfPresent(bucket));
+
+        client.executeAsync(new ResetBucketProperties.Builder(bucket).build());
+        assertTrue(operations.get(4) instanceof ResetBucketPropsOperation);
+        assertNull(cache.getIfPresent(bucket));
+    }
+
+    @Test
+    public void failedFetchesAreNotCached() throws Exception
+    {
+        BucketPropertiesCache cache = new BucketPropertiesCache.Builder().build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withBucketPropertiesCache(cache).build();
+
+        client.executeAsync(fetch());
+        dispatched.get(0).setException(new Exception("down"));
+        assertEquals(0, cache.getEntryCount());
+        client.executeAsync(fetch());
+        assertEquals(2, dispatched.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void synchronousFailureIsNotCached() throws Exception
+    {
+        BucketPropertiesCache cache = new BucketPropertiesCache.Builder().build();
+        RiakCluster stopped = mock(RiakCluster.class);
+        when(stopped.execute(any(FutureOperation.class))).thenThrow(new IllegalStateException("not running"));
+        try
+        {
+            new RiakClient.Builder(stopped).withBucketPropertiesCache(cache).build().executeAsync(fetch());
+            fail("Expected IllegalStateException");
+        }
+        catch (IllegalStateException ex)
+        {
+            assertEquals(0, cache.getEntryCount());
+        }
+
+        RiakClient client = new RiakClient.Builder(mockCluster).withBucketPropertiesCache(cache).build();
+        client.executeAsync(fetch());
+        assertEquals(1, dispatched.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void updateFailsWhenItCantBeSent() throws Exception
+    {
+        BucketPropertiesCache cache = new BucketPropertiesCache.Builder().build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withBucketPropertiesCache(cache).build();
+
+        RiakFuture<UpdateValue.Response<RiakObject>> future = client.executeAsync(
+            new UpdateValue.Builder<RiakObject>(new Location("bucket", "key").withType("type"))
+                .withConverter(new PassThroughConverter())
+                .withUpdate(UpdateValue.Update.replaceWith(new RiakObject().setValue(BinaryValue.create("value"))))
+                .build());
+        assertEquals(1, dispatched.size());
+
+        doThrow(new IllegalStateException("not running")).when(mockCluster).execute(any(FutureOperation.class));
+        dispatched.get(0).setResponse(properties);
+        assertTrue(future.isDone());
+        try
+        {
+            future.get();
+            fail("Expected ExecutionException");
+        }
+        catch (ExecutionException ex)
+        {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    private FetchBucketProperties fetch()
+    {
+        return new FetchBucketProperties.Builder(bucket).build();
+    }
+}
@@ -55,6 +55,7 @@ public class DeleteValueTest
         when(mockFuture.get(anyLong(), any(TimeUnit.class))).thenReturn(null);
         when(mockFuture.isCancelled()).thenReturn(false);
         when(mockFuture.isDone()).thenReturn(true);
+        ImmediateRiakFuture.fireListenersOnAdd(mockFuture);
         when(mockCluster.<DeleteOperation>execute(any(FutureOperation.class))).thenReturn(mockFuture);
         client = new RiakClient(mockCluster);
     }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2013 Basho Technologies Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.core.DefaultRiakFuture;
+import com.basho.riak.client.core.FutureOperation;
+import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Answers every operation executed on a mocked cluster with a new, pending
+ * future, so a test can complete each one when it chooses.
+ */
+class DispatchingCluster implements Answer<RiakFuture<Object>>
+{
+    final List<FutureOperation> operations = new CopyOnWriteArrayList<FutureOperation>();
+    final List<DefaultRiakFuture<Object>> dispatched = new CopyOnWriteArrayList<DefaultRiakFuture<Object>>();
+
+    @Override
+    public RiakFuture<Object> answer(InvocationOnMock invocation)
+    {
+        operations.add((FutureOperation) invocation.getArguments()[0]);
+        DefaultRiakFuture<Object> f = new DefaultRiakFuture<Object>();
+        dispatched.add(f);
+        return f;
+    }
+
+    /**
+     * Stubs a mocked cluster to answer its operations with pending futures.
+     */
+    @SuppressWarnings("unchecked")
+    static DispatchingCluster dispatch(RiakCluster mockCluster)
+    {
+        DispatchingCluster cluster = new DispatchingCluster();
+        when(mockCluster.execute(any(FutureOperation.class))).thenAnswer(cluster);
+        return cluster;
+    }
+}
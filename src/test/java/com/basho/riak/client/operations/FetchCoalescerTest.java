@@ -0,0 +1,161 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.cap.BasicVClock;
+import com.basho.riak.client.core.DefaultRiakFuture;
+import com.basho.riak.client.core.FutureOperation;
+import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.core.operations.FetchOperation;
+import com.basho.riak.client.query.RiakObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class FetchCoalescerTest
+{
+    private final FetchCoalescer coalescer = new FetchCoalescer();
+    @Mock RiakCluster mockCluster;
+    @Mock FetchOperation.Response mockResponse;
+    private List<DefaultRiakFuture<Object>> dispatched;
+
+    @Before
+    public void init()
+    {
+        MockitoAnnotations.initMocks(this);
+        when(mockResponse.getObjectList()).thenReturn(new ArrayList<RiakObject>());
+        dispatched = DispatchingCluster.dispatch(mockCluster).dispatched;
+    }
+
+    @Test
+    public void concurrentIdenticalFetchesShareOneRequest() throws Exception
+    {
+        RiakFuture<FetchValue.Response<RiakObject>> first = fetch(new Location("bucket", "key")).executeAsync(mockCluster);
+        RiakFuture<FetchValue.Response<RiakObject>> second = fetch(new Location("bucket", "key")).executeAsync(mockCluster);
+        RiakFuture<FetchValue.Response<RiakObject>> other = fetch(new Location("bucket", "other")).executeAsync(mockCluster);
+
+        assertEquals(2, dispatched.size());
+        assertEquals(2, coalescer.getInFlightCount());
+
+        dispatched.get(0).setResponse(mockResponse);
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        assertNotSame(first.get(), second.get());
+        assertFalse(other.isDone());
+        assertEquals(1, coalescer.getInFlightCount());
+
+        // Once complete the fetch isn't joined
+        fetch(new Location("bucket", "key")).executeAsync(mockCluster);
+        assertEquals(3, dispatched.size());
+
+        assertEquals(4, coalescer.getRequestCount());
+        assertEquals(1, coalescer.getCoalescedCount());
+        assertEquals(0.25, coalescer.getCoalescingRatio(), 0.001);
+    }
+
+    @Test
+    public void failureIsSharedToo() throws Exception
+    {
+        RiakFuture<FetchValue.Response<RiakObject>> first = fetch(new Location("bucket", "key")).executeAsync(mockCluster);
+        RiakFuture<FetchValue.Response<RiakObject>> second = fetch(new Location("bucket", "key")).executeAsync(mockCluster);
+
+        dispatched.get(0).setException(new Exception("failed"));
+        assertEquals("failed", cause(first).getMessage());
+        assertEquals("failed", cause(second).getMessage());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void synchronousFailureIsNotLeftInFlight() throws Exception
+    {
+        RiakCluster stopped = mock(RiakCluster.class);
+        when(stopped.execute(any(FutureOperation.class))).thenThrow(new IllegalStateException("not running"));
+        try
+        {
+            fetch(new Location("bucket", "key")).executeAsync(stopped);
+            fail("Expected IllegalStateException");
+        }
+        catch (IllegalStateException ex)
+        {
+            assertEquals(0, coalescer.getInFlightCount());
+        }
+
+        fetch(new Location("bucket", "key")).executeAsync(mockCluster);
+        assertEquals(1, dispatched.size());
+    }
+
+    @Test
+    public void differentOptionsAndConditionalFetchesAreNotCoalesced()
+    {
+        Location location = new Location("bucket", "key");
+        fetch(location).executeAsync(mockCluster);
+        new FetchValue.Builder<RiakObject>(location)
+            .withOption(FetchOption.HEAD, true)
+            .withCoalescer(coalescer)
+            .build()
+            .executeAsync(mockCluster);
+        assertEquals(2, dispatched.size());
+
+        for (int i = 0; i < 2; i++)
+        {
+            new FetchValue.Builder<RiakObject>(location)
+                .withOption(FetchOption.IF_MODIFIED, new BasicVClock(new byte[] { 1 }))
+                .withCoalescer(coalescer)
+                .build()
+                .executeAsync(mockCluster);
+        }
+        assertEquals(4, dispatched.size());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void locationWithoutTypeCanBeHashed()
+    {
+        assertEquals(new Location("bucket", "key").hashCode(), new Location("bucket", "key").hashCode());
+        new Location("bucket").hashCode();
+    }
+
+    private Throwable cause(RiakFuture<?> future) throws InterruptedException
+    {
+        try
+        {
+            future.get();
+            fail("Expected ExecutionException");
+            return null;
+        }
+        catch (ExecutionException ex)
+        {
+            return ex.getCause();
+        }
+    }
+
+    private FetchValue<RiakObject> fetch(Location location)
+    {
+        return new FetchValue.Builder<RiakObject>(location)
+            .withCoalescer(coalescer)
+            .build();
+    }
+}
@@ -60,6 +60,7 @@ public class FetchDatatypeTest
         when(mockFuture.get(anyLong(), any(TimeUnit.class))).thenReturn(mockResponse);
         when(mockFuture.isCancelled()).thenReturn(false);
         when(mockFuture.isDone()).thenReturn(true);
+        ImmediateRiakFuture.fireListenersOnAdd(mockFuture);
         when(mockCluster.execute(any(FutureOperation.class))).thenReturn(mockFuture);
         client = new RiakClient(mockCluster);
     }
@@ -18,10 +18,17 @@ package com.basho.riak.client.operations;
 import com.basho.riak.client.core.RiakFuture;
 import com.basho.riak.client.core.RiakFutureListener;
 
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+
 class ImmediateRiakFuture<V> implements RiakFuture<V>
 {
 
@@ -68,9 +75,39 @@ class ImmediateRiakFuture<V> implements RiakFuture<V>
         listener.handle(this);
     }
 
+    @Override
+    public void addListener(final RiakFutureListener<V> listener, Executor executor)
+    {
+        executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                listener.handle(ImmediateRiakFuture.this);
+            }
+        });
+    }
+
     @Override
     public void removeListener(RiakFutureListener<V> listener)
     {
         //no-op
     }
+
+    /**
+     * Makes a mocked, already completed future call listeners as they are added.
+     */
+    @SuppressWarnings("unchecked")
+    static void fireListenersOnAdd(final RiakFuture mockFuture)
+    {
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation)
+            {
+                ((RiakFutureListener) invocation.getArguments()[0]).handle(mockFuture);
+                return null;
+            }
+        }).when(mockFuture).addListener(any(RiakFutureListener.class));
+    }
 }
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.convert.PassThroughConverter;
+import com.basho.riak.client.core.DefaultRiakFuture;
+import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.core.operations.FetchOperation;
+import com.basho.riak.client.query.RiakObject;
+import com.basho.riak.client.query.indexes.IndexType;
+import com.basho.riak.client.query.indexes.RawIndex;
+import com.basho.riak.client.util.BinaryValue;
+import com.basho.riak.protobuf.RiakKvPB;
+import com.basho.riak.protobuf.RiakPB;
+import com.google.protobuf.ByteString;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class MappedCacheTest
+{
+    @Mock RiakCluster mockCluster;
+    private List<DefaultRiakFuture<Object>> dispatched;
+    private File file;
+
+    @Before
+    public void init() throws Exception
+    {
+        file = File.createTempFile("riak-l2", ".cache");
+        file.delete();
+        MockitoAnnotations.initMocks(this);
+        dispatched = DispatchingCluster.dispatch(mockCluster).dispatched;
+    }
+
+    @After
+    public void cleanup()
+    {
+        file.delete();
+    }
+
+    @Test
+    public void entriesSurviveReopening() throws Exception
+    {
+        MappedCache cache = new MappedCache.Builder(file).withMaxBytes(64 * 1024).build();
+        Location location = new Location("bucket", "key").withType("type");
+        cache.put(location, response("value"));
+        cache.close();
+
+        cache = new MappedCache.Builder(file).withMaxBytes(64 * 1024).build();
+        assertEquals(1, cache.getRecoveredCount());
+        MappedCache.Hit hit = cache.get(location);
+        assertNotNull(hit);
+        RiakObject object = hit.response.getObjectList().get(0);
+        assertEquals("value", object.getValue().toString());
+        assertEquals("text/plain", object.getContentType());
+        assertEquals("vtag", object.getVTag());
+        assertEquals(1234000L, object.getLastModified());
+        assertTrue(object.getIndexes().getIndex(new RawIndex.Name("age_int", IndexType.INT))
+            .hasValue(BinaryValue.create("42")));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, hit.response.getVClock().getBytes());
+        assertNull(cache.get(new Location("bucket", "key")));
+        cache.close();
+
+        // A different layout discards the old entries
+        cache = new MappedCache.Builder(file).withMaxBytes(64 * 1024).withSlotSize(1024).build();
+        assertEquals(0, cache.getRecoveredCount());
+        assertNull(cache.get(location));
+        cache.close();
+    }
+
+    @Test
+    public void clockEvictsUnreadEntries() throws Exception
+    {
+        // Room for two entries
+        MappedCache cache = new MappedCache.Builder(file).withMaxBytes(64 + 2 * 256).withSlotSize(256).build();
+        cache.put(new Location("bucket", "read"), response("a"));
+        cache.put(new Location("bucket", "unread"), response("b"));
+        assertNotNull(cache.get(new Location("bucket", "read")));
+
+        cache.put(new Location("bucket", "new"), response("c"));
+        assertEquals(1, cache.getEvictionCount());
+        assertNotNull(cache.get(new Location("bucket", "read")));
+        assertNull(cache.get(new Location("bucket", "unread")));
+
+        char[] large = new char[300];
+        cache.put(new Location("bucket", "large"), response(new String(large)));
+        assertEquals(1, cache.getRejectionCount());
+        cache.close();
+    }
+
+    @Test
+    public void restartedNearCacheServesFromFile() throws Exception
+    {
+        MappedCache secondLevel = new MappedCache.Builder(file).withMaxBytes(64 * 1024).build();
+        NearCache cache = new NearCache.Builder().withSecondLevel(secondLevel).build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withNearCache(cache).build();
+        client.executeAsync(fetch());
+        dispatched.get(0).setResponse(response("value"));
+        secondLevel.close();
+
+        secondLevel = new MappedCache.Builder(file).withMaxBytes(64 * 1024).build();
+        cache = new NearCache.Builder().withSecondLevel(secondLevel).build();
+        client = new RiakClient.Builder(mockCluster).withNearCache(cache).build();
+        RiakFuture<FetchValue.Response<RiakObject>> future = client.executeAsync(fetch());
+        assertTrue(future.isDone());
+        assertEquals("value", future.get().getValue().get(0).getValue().toString());
+        assertEquals(1, dispatched.size());
+        assertEquals(1, cache.getSecondLevelHitCount());
+        assertEquals(1, cache.getEntryCount());
+        secondLevel.close();
+    }
+
+    @Test
+    public void staleEntriesAreServedAndRevalidated() throws Exception
+    {
+        MappedCache secondLevel = new MappedCache.Builder(file).withMaxBytes(64 * 1024).build();
+        secondLevel.put(new Location("bucket", "key"), response("value"));
+        Thread.sleep(60);
+        NearCache cache = new NearCache.Builder()
+            .withTtl(50, TimeUnit.MILLISECONDS)
+            .withRevalidation(true)
+            .withSecondLevel(secondLevel)
+            .build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withNearCache(cache).build();
+
+        RiakFuture<FetchValue.Response<RiakObject>> future = client.executeAsync(fetch());
+        assertTrue(future.isDone());
+        assertEquals("value", future.get().getValue().get(0).getValue().toString());
+        assertEquals(1, dispatched.size());
+        assertEquals(1, cache.getRevalidationCount());
+        secondLevel.close();
+    }
+
+    @Test
+    public void staleEntryIsRefreshedOnce() throws Exception
+    {
+        MappedCache secondLevel = new MappedCache.Builder(file).withMaxBytes(64 * 1024).build();
+        secondLevel.put(new Location("bucket", "key"), response("value"));
+        Thread.sleep(60);
+        NearCache cache = new NearCache.Builder()
+            .withTtl(50, TimeUnit.MILLISECONDS)
+            .withSecondLevel(secondLevel)
+            .build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withNearCache(cache).build();
+
+        assertTrue(client.executeAsync(fetch()).isDone());
+        assertEquals(1, dispatched.size());
+        // Later reads join the refresh rather than promoting and fetching again
+        RiakFuture<FetchValue.Response<RiakObject>> joined = client.executeAsync(fetch());
+        client.executeAsync(fetch());
+        assertEquals(1, dispatched.size());
+
+        dispatched.get(0).setResponse(response("fresh"));
+        assertEquals("fresh", joined.get().getValue().get(0).getValue().toString());
+        assertEquals(1, cache.getSecondLevelHitCount());
+        secondLevel.close();
+    }
+
+    @Test
+    public void fileCanOnlyBeOpenedOnce() throws Exception
+    {
+        MappedCache cache = new MappedCache.Builder(file).withMaxBytes(64 * 1024).build();
+        try
+        {
+            new MappedCache.Builder(file).withMaxBytes(64 * 1024).build();
+            fail("Expected IOException");
+        }
+        catch (IOException ex)
+        {
+            // expected
+        }
+        cache.close();
+        new MappedCache.Builder(file).withMaxBytes(64 * 1024).build().close();
+    }
+
+    @Test
+    public void invalidationRemovesFromFile() throws Exception
+    {
+        MappedCache secondLevel = new MappedCache.Builder(file).withMaxBytes(64 * 1024).build();
+        NearCache cache = new NearCache.Builder().withSecondLevel(secondLevel).build();
+        secondLevel.put(new Location("bucket", "key"), response("value"));
+        cache.invalidate(new Location("bucket", "key"));
+        assertEquals(0, secondLevel.getEntryCount());
+        secondLevel.close();
+    }
+
+    private FetchValue<RiakObject> fetch()
+    {
+        return new FetchValue.Builder<RiakObject>(new Location("bucket", "key"))
+            .withConverter(new PassThroughConverter())
+            .build();
+    }
+
+    private FetchOperation.Response response(String value) throws Exception
+    {
+        RiakKvPB.RpbContent content = RiakKvPB.RpbContent.newBuilder()
+            .setValue(ByteString.copyFromUtf8(value))
+            .setContentType(ByteString.copyFromUtf8("text/plain"))
+            .setVtag(ByteString.copyFromUtf8("vtag"))
+            .setLastMod(1234)
+            .addIndexes(RiakPB.RpbPair.newBuilder()
+                .setKey(ByteString.copyFromUtf8("age_int"))
+                .setValue(ByteString.copyFromUtf8("42")))
+            .build();
+        return FetchOperation.toResponse(RiakKvPB.RpbGetResp.newBuilder()
+            .addContent(content)
+            .setVclock(ByteString.copyFrom(new byte[] { 1, 2, 3 }))
+            .build());
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.core.DefaultRiakFuture;
+import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class MultiCommandTest
+{
+    private final RiakCluster mockCluster = mock(RiakCluster.class);
+
+    @Test
+    public void collectsResultsInBothOrders() throws Exception
+    {
+        StubCommand<String> first = new StubCommand<String>();
+        StubCommand<Integer> second = new StubCommand<Integer>();
+        StubCommand<String> third = new StubCommand<String>();
+
+        RiakFuture<MultiCommand.Response> future = new MultiCommand.Builder()
+            .add(first).add(second).add(third)
+            .withMaxInFlight(2)
+            .build()
+            .executeAsync(mockCluster);
+
+        assertTrue(first.started());
+        assertTrue(second.started());
+        assertFalse(third.started());
+
+        second.future.setResponse(42);
+        assertTrue(third.started());
+        third.future.setException(new Exception("failed"));
+        first.future.setResponse("value");
+
+        MultiCommand.Response response = future.get();
+        List<MultiCommand.Entry> entries = response.getEntries();
+        assertSame(first, entries.get(0).getCommand());
+        assertSame(second, entries.get(1).getCommand());
+        assertSame(third, entries.get(2).getCommand());
+
+        List<MultiCommand.Entry> completed = response.getEntriesInCompletionOrder();
+        assertSame(second, completed.get(0).getCommand());
+        assertSame(third, completed.get(1).getCommand());
+        assertSame(first, completed.get(2).getCommand());
+
+        assertEquals("value", response.getResponse(first));
+        assertEquals(Integer.valueOf(42), response.getResponse(second));
+        assertTrue(response.hasFailures());
+        try
+        {
+            response.getResponse(third);
+            fail("Expected ExecutionException");
+        }
+        catch (ExecutionException ex)
+        {
+            assertEquals("failed", ex.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void failFastStopsDispatching() throws Exception
+    {
+        StubCommand<String> first = new StubCommand<String>();
+        StubCommand<String> second = new StubCommand<String>();
+
+        RiakFuture<MultiCommand.Response> future = new MultiCommand.Builder()
+            .add(first).add(second)
+            .withMaxInFlight(1)
+            .withErrorMode(MultiCommand.ErrorMode.FAIL_FAST)
+            .build()
+            .executeAsync(mockCluster);
+
+        first.future.setException(new Exception("failed"));
+        assertTrue(future.isDone());
+        assertFalse(second.started());
+        try
+        {
+            future.get();
+            fail("Expected ExecutionException");
+        }
+        catch (ExecutionException ex)
+        {
+            assertEquals("failed", ex.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void throwingListenerDoesNotStallBatch() throws Exception
+    {
+        StubCommand<String> first = new StubCommand<String>();
+        StubCommand<String> second = new StubCommand<String>();
+
+        RiakFuture<MultiCommand.Response> future = new MultiCommand.Builder()
+            .add(first).add(second)
+            .withMaxInFlight(1)
+            .withEntryListener(new MultiCommand.EntryListener()
+            {
+                @Override
+                public void onEntry(MultiCommand.Entry entry)
+                {
+                    throw new IllegalStateException("listener");
+                }
+            })
+            .build()
+            .executeAsync(mockCluster);
+
+        first.future.setResponse("one");
+        assertTrue(second.started());
+        second.future.setResponse("two");
+        assertTrue(future.isDone());
+        assertEquals("two", future.get().getResponse(second));
+    }
+
+    private static class StubCommand<T> extends RiakCommand<T>
+    {
+        private final DefaultRiakFuture<T> future = new DefaultRiakFuture<T>();
+        private boolean started;
+
+        @Override
+        RiakFuture<T> executeAsync(RiakCluster cluster)
+        {
+            started = true;
+            return future;
+        }
+
+        boolean started()
+        {
+            return started;
+        }
+    }
+}
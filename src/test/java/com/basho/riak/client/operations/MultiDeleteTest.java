@@ -0,0 +1,111 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.core.DefaultRiakFuture;
+import com.basho.riak.client.core.FutureOperation;
+import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class MultiDeleteTest
+{
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    @Mock RiakCluster mockCluster;
+    private List<DefaultRiakFuture<Object>> dispatched;
+
+    @Before
+    public void init()
+    {
+        MockitoAnnotations.initMocks(this);
+        when(mockCluster.getExecutor()).thenReturn(executor);
+        dispatched = DispatchingCluster.dispatch(mockCluster).dispatched;
+    }
+
+    @After
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void recordsEachDeleteInOrder() throws Exception
+    {
+        MultiDelete multiDelete = new MultiDelete.Builder()
+            .add(new Location("bucket", "key0"))
+            .add(new Location("bucket", "key1"))
+            .add(new Location("bucket", "key2"))
+            .withOption(DeleteOption.TIMEOUT, 1000)
+            .withMaxInFlight(2)
+            .build();
+
+        RiakFuture<MultiDelete.Response> future = multiDelete.executeAsync(mockCluster);
+        assertEquals(2, dispatched.size());
+
+        dispatched.get(1).setException(new Exception("failed"));
+        assertEquals(3, dispatched.size());
+        dispatched.get(0).setResponse(true);
+        assertFalse(future.isDone());
+        dispatched.get(2).setResponse(true);
+
+        List<MultiDelete.Entry> entries = future.get().getEntries();
+        assertEquals(3, entries.size());
+        assertTrue(entries.get(0).isSuccess());
+        assertEquals(new Location("bucket", "key1"), entries.get(1).getLocation());
+        assertFalse(entries.get(1).isSuccess());
+        assertEquals("failed", entries.get(1).getException().getMessage());
+        assertTrue(future.get().hasFailures());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void rateLimitSpacesOutDeletes() throws Exception
+    {
+        reset(mockCluster);
+        DefaultRiakFuture<Boolean> done = new DefaultRiakFuture<Boolean>();
+        done.setResponse(true);
+        when(mockCluster.getExecutor()).thenReturn(executor);
+        when(mockCluster.execute(any(FutureOperation.class))).thenReturn(done);
+
+        MultiDelete.Builder builder = new MultiDelete.Builder().withRateLimit(20);
+        for (int i = 0; i < 5; i++)
+        {
+            builder.add(new Location("bucket", "key" + i));
+        }
+
+        long start = System.nanoTime();
+        MultiDelete.Response response = 
+            builder.build().executeAsync(mockCluster).get(5, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(5, response.getEntries().size());
+        assertFalse(response.hasFailures());
+        // 5 starts at 20/s; the first is immediate
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(190));
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.core.DefaultRiakFuture;
+import com.basho.riak.client.core.FutureOperation;
+import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.core.operations.FetchOperation;
+import com.basho.riak.client.core.operations.MapReduceOperation;
+import com.basho.riak.client.query.RiakObject;
+import com.basho.riak.client.util.BinaryValue;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class MultiFetchTest
+{
+    @Mock RiakCluster mockCluster;
+    @Mock FetchOperation.Response mockResponse;
+    private List<DefaultRiakFuture<Object>> dispatched;
+
+    @Before
+    public void init()
+    {
+        MockitoAnnotations.initMocks(this);
+        when(mockResponse.getObjectList()).thenReturn(new ArrayList<RiakObject>());
+        dispatched = DispatchingCluster.dispatch(mockCluster).dispatched;
+    }
+
+    @Test
+    public void keepsWindowOfFetchesInFlight() throws Exception
+    {
+        final List<Location> completed = new ArrayList<Location>();
+        MultiFetch<RiakObject> multiFetch = MultiFetch.multiFetch(keys(5))
+            .withMaxInFlight(2)
+            .withEntryListener(new MultiFetch.EntryListener<RiakObject>()
+            {
+                @Override
+                public void onEntry(MultiFetch.Entry<RiakObject> entry)
+                {
+                    completed.add(entry.getLocation());
+                }
+            });
+
+        RiakFuture<MultiFetch.Response<RiakObject>> future = multiFetch.executeAsync(mockCluster);
+        assertEquals(2, dispatched.size());
+
+        dispatched.get(1).setResponse(mockResponse);
+        assertEquals(3, dispatched.size());
+        assertEquals(new Location("bucket", "key1"), completed.get(0));
+
+        dispatched.get(0).setException(new Exception("failed"));
+        dispatched.get(2).setResponse(mockResponse);
+        dispatched.get(3).setResponse(mockResponse);
+        assertFalse(future.isDone());
+        dispatched.get(4).setResponse(mockResponse);
+        assertEquals(5, dispatched.size());
+
+        MultiFetch.Response<RiakObject> response = future.get();
+        List<MultiFetch.Entry<RiakObject>> entries = response.getEntries();
+        assertEquals(5, entries.size());
+        assertEquals(new Location("bucket", "key0"), entries.get(0).getLocation());
+        assertFalse(entries.get(0).isSuccess());
+        assertEquals("failed", entries.get(0).getException().getMessage());
+        assertTrue(entries.get(1).isSuccess());
+        assertTrue(response.hasFailures());
+        assertEquals(5, completed.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void completedFetchesDontRecurse() throws Exception
+    {
+        reset(mockCluster);
+        DefaultRiakFuture<FetchOperation.Response> done = new DefaultRiakFuture<FetchOperation.Response>();
+        done.setResponse(mockResponse);
+        when(mockCluster.execute(any(FutureOperation.class))).thenReturn(done);
+
+        MultiFetch.Response<RiakObject> response = 
+            MultiFetch.multiFetch(keys(5000)).withMaxInFlight(1).executeAsync(mockCluster).get();
+
+        assertEquals(5000, response.getEntries().size());
+        assertFalse(response.hasFailures());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mapReduceStrategyFetchesWhatTheJobCantAnswer() throws Exception
+    {
+        reset(mockCluster);
+        final List<FutureOperation> executed = new ArrayList<FutureOperation>();
+        final DefaultRiakFuture<List<BinaryValue>> mapReduce = new DefaultRiakFuture<List<BinaryValue>>();
+        final DefaultRiakFuture<FetchOperation.Response> fetch = new DefaultRiakFuture<FetchOperation.Response>();
+        fetch.setResponse(mockResponse);
+        when(mockCluster.execute(any(FutureOperation.class))).thenAnswer(new Answer<RiakFuture<?>>()
+        {
+            @Override
+            public RiakFuture<?> answer(InvocationOnMock invocation)
+            {
+                FutureOperation operation = (FutureOperation) invocation.getArguments()[0];
+                executed.add(operation);
+                return operation instanceof MapReduceOperation ? mapReduce : fetch;
+            }
+        });
+
+        RiakFuture<MultiFetch.Response<RiakObject>> future = MultiFetch.multiFetch(keys(4))
+            .withStrategy(MultiFetch.Strategy.AUTO)
+            .withMapReduceThreshold(4)
+            .executeAsync(mockCluster);
+        assertEquals(1, executed.size());
+        assertTrue(executed.get(0) instanceof MapReduceOperation);
+
+        // key0 found, key1 not found, key2 has siblings, key3 is missing
+        String results = "[{\"bucket\":\"bucket\",\"key\":\"key0\",\"vclock\":\"AQID\","
+            + "\"values\":[{\"metadata\":{\"content-type\":\"text/plain\",\"X-Riak-VTag\":\"vtag\"},\"data\":\"value0\"}]},"
+            + "{\"not_found\":{\"bucket\":\"bucket\",\"key\":\"key1\",\"keydata\":\"\"}},"
+            + "{\"bucket\":\"bucket\",\"key\":\"key2\",\"vclock\":\"AQID\",\"values\":["
+            + "{\"metadata\":{},\"data\":\"a\"},{\"metadata\":{},\"data\":\"b\"}]}]";
+        mapReduce.setResponse(Arrays.asList(BinaryValue.create(results)));
+
+        assertEquals(3, executed.size());
+        assertTrue(executed.get(1) instanceof FetchOperation);
+        assertTrue(executed.get(2) instanceof FetchOperation);
+
+        List<MultiFetch.Entry<RiakObject>> entries = future.get().getEntries();
+        assertEquals(4, entries.size());
+        FetchValue.Response<RiakObject> found = entries.get(0).getResponse();
+        assertEquals("value0", found.getValue().get(0).getValue().toString());
+        assertEquals("text/plain", found.getValue().get(0).getContentType());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, found.getvClock().getBytes());
+        assertTrue(entries.get(1).getResponse().isNotFound());
+        assertEquals(new Location("bucket", "key2"), entries.get(2).getLocation());
+        assertTrue(entries.get(2).isSuccess());
+        assertEquals(new Location("bucket", "key3"), entries.get(3).getLocation());
+        assertTrue(entries.get(3).isSuccess());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void failedMapReduceFallsBackToFetches() throws Exception
+    {
+        reset(mockCluster);
+        final DefaultRiakFuture<List<BinaryValue>> mapReduce = new DefaultRiakFuture<List<BinaryValue>>();
+        mapReduce.setException(new Exception("JavaScript VM unavailable"));
+        final DefaultRiakFuture<FetchOperation.Response> fetch = new DefaultRiakFuture<FetchOperation.Response>();
+        fetch.setResponse(mockResponse);
+        when(mockCluster.execute(any(FutureOperation.class))).thenAnswer(new Answer<RiakFuture<?>>()
+        {
+            @Override
+            public RiakFuture<?> answer(InvocationOnMock invocation)
+            {
+                return invocation.getArguments()[0] instanceof MapReduceOperation ? mapReduce : fetch;
+            }
+        });
+
+        MultiFetch.Response<RiakObject> response = MultiFetch.multiFetch(keys(5))
+            .withStrategy(MultiFetch.Strategy.MAP_REDUCE)
+            .withMapReduceBatchSize(2)
+            .executeAsync(mockCluster)
+            .get();
+
+        assertEquals(5, response.getEntries().size());
+        assertFalse(response.hasFailures());
+        verify(mockCluster, times(3 + 5)).execute(any(FutureOperation.class));
+    }
+
+    @Test
+    public void partitionsKeysByBucket()
+    {
+        List<Location> keys = Arrays.asList(new Location("a", "1"), new Location("b", "1"),
+            new Location("a", "2"), new Location("a", "3"), new Location("a", "4").withType("t"));
+
+        List<MapReduceFetcher.KeyBatch> batches = MapReduceFetcher.partition(keys, 2);
+
+        assertEquals(4, batches.size());
+        assertEquals(Arrays.asList(0, 2), batches.get(0).indexes);
+        assertEquals(Arrays.asList(1), batches.get(1).indexes);
+        assertEquals(Arrays.asList(3), batches.get(2).indexes);
+        assertEquals(Arrays.asList(4), batches.get(3).indexes);
+    }
+
+    private List<Location> keys(int count)
+    {
+        List<Location> keys = new ArrayList<Location>(count);
+        for (int i = 0; i < count; i++)
+        {
+            keys.add(new Location("bucket", "key" + i));
+        }
+        return keys;
+    }
+}
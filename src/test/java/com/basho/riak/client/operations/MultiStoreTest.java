@@ -0,0 +1,138 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.cap.BasicVClock;
+import com.basho.riak.client.cap.VClock;
+import com.basho.riak.client.convert.PassThroughConverter;
+import com.basho.riak.client.core.DefaultRiakFuture;
+import com.basho.riak.client.core.FutureOperation;
+import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.core.operations.StoreOperation;
+import com.basho.riak.client.query.RiakObject;
+import com.basho.riak.client.util.BinaryValue;
+import com.basho.riak.protobuf.RiakKvPB;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.powermock.reflect.Whitebox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class MultiStoreTest
+{
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    @Mock RiakCluster mockCluster;
+    private List<FutureOperation> operations;
+    private List<DefaultRiakFuture<Object>> dispatched;
+    private RiakObject riakObject;
+
+    @Before
+    public void init()
+    {
+        riakObject = new RiakObject();
+        riakObject.setValue(BinaryValue.create("value"));
+
+        MockitoAnnotations.initMocks(this);
+        when(mockCluster.getExecutor()).thenReturn(executor);
+        DispatchingCluster cluster = DispatchingCluster.dispatch(mockCluster);
+        operations = cluster.operations;
+        dispatched = cluster.dispatched;
+    }
+
+    @After
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    private StoreOperation.Response storeResponse(VClock vClock)
+    {
+        StoreOperation.Response response = mock(StoreOperation.Response.class);
+        when(response.getObjectList()).thenReturn(new ArrayList<RiakObject>(Arrays.asList(riakObject)));
+        when(response.getVClock()).thenReturn(vClock);
+        return response;
+    }
+
+    private RiakKvPB.RpbPutReq.Builder request(int i)
+    {
+        return Whitebox.getInternalState(operations.get(i), "reqBuilder");
+    }
+
+    @Test
+    public void sendsEachValueWithItsOwnVClock() throws Exception
+    {
+        VClock vClock = new BasicVClock(new byte[]{'1'});
+        MultiStore<RiakObject> multiStore = new MultiStore.Builder<RiakObject>()
+            .add(new Location("bucket", "key0"), riakObject, vClock)
+            .add(new Location("bucket", "key1"), riakObject)
+            .withConverter(new PassThroughConverter())
+            .build();
+
+        multiStore.executeAsync(mockCluster);
+        assertEquals(2, operations.size());
+
+        assertTrue(request(0).hasVclock());
+        assertArrayEquals(vClock.getBytes(), request(0).getVclock().toByteArray());
+        assertEquals("key0", request(0).getKey().toStringUtf8());
+        assertFalse(request(1).hasVclock());
+        assertEquals("key1", request(1).getKey().toStringUtf8());
+    }
+
+    @Test
+    public void recordsEachStoreInOrderAndCompletesOnce() throws Exception
+    {
+        VClock returned = new BasicVClock(new byte[]{'2'});
+        MultiStore<RiakObject> multiStore = new MultiStore.Builder<RiakObject>()
+            .add(new Location("bucket", "key0"), riakObject)
+            .add(new Location("bucket", "key1"), riakObject)
+            .add(new Location("bucket", "key2"), riakObject)
+            .withConverter(new PassThroughConverter())
+            .withMaxInFlight(2)
+            .build();
+
+        RiakFuture<MultiStore.Response<RiakObject>> future = multiStore.executeAsync(mockCluster);
+        assertEquals(2, dispatched.size());
+
+        dispatched.get(1).setException(new Exception("failed"));
+        assertEquals(3, dispatched.size());
+        dispatched.get(0).setResponse(storeResponse(returned));
+        assertFalse(future.isDone());
+        dispatched.get(2).setResponse(storeResponse(returned));
+        assertTrue(future.isDone());
+
+        List<MultiStore.Entry<RiakObject>> entries = future.get().getEntries();
+        assertEquals(3, entries.size());
+        assertTrue(entries.get(0).isSuccess());
+        assertEquals(returned, entries.get(0).getvClock());
+        assertEquals(new Location("bucket", "key1"), entries.get(1).getLocation());
+        assertFalse(entries.get(1).isSuccess());
+        assertNull(entries.get(1).getvClock());
+        assertEquals("failed", entries.get(1).getException().getMessage());
+        assertTrue(entries.get(2).isSuccess());
+        assertTrue(future.get().hasFailures());
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.cap.BasicVClock;
+import com.basho.riak.client.cap.VClock;
+import com.basho.riak.client.convert.PassThroughConverter;
+import com.basho.riak.client.core.DefaultRiakFuture;
+import com.basho.riak.client.core.FutureOperation;
+import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.core.operations.DeleteOperation;
+import com.basho.riak.client.core.operations.FetchOperation;
+import com.basho.riak.client.query.RiakObject;
+import com.basho.riak.client.util.BinaryValue;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class NearCacheTest
+{
+    @Mock RiakCluster mockCluster;
+    @Mock FetchOperation.Response mockResponse;
+    private List<FutureOperation> operations;
+    private List<DefaultRiakFuture<Object>> dispatched;
+
+    @Before
+    public void init()
+    {
+        MockitoAnnotations.initMocks(this);
+        RiakObject object = new RiakObject().setValue(BinaryValue.create("value"));
+        when(mockResponse.getObjectList()).thenReturn(Arrays.asList(object));
+        DispatchingCluster cluster = DispatchingCluster.dispatch(mockCluster);
+        operations = cluster.operations;
+        dispatched = cluster.dispatched;
+    }
+
+    @Test
+    public void servesRepeatFetchesUntilTheyExpire() throws Exception
+    {
+        NearCache cache = new NearCache.Builder().withTtl(200, TimeUnit.MILLISECONDS).build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withNearCache(cache).build();
+
+        RiakFuture<FetchValue.Response<RiakObject>> first = client.executeAsync(fetch("key"));
+        dispatched.get(0).setResponse(mockResponse);
+        assertEquals("value", first.get().getValue().get(0).getValue().toString());
+
+        RiakFuture<FetchValue.Response<RiakObject>> second = client.executeAsync(fetch("key"));
+        assertTrue(second.isDone());
+        assertEquals("value", second.get().getValue().get(0).getValue().toString());
+        assertEquals(1, dispatched.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getEntryCount());
+        assertTrue(cache.getWeightedSize() > 5);
+
+        Thread.sleep(250);
+        client.executeAsync(fetch("key"));
+        assertEquals(2, dispatched.size());
+        assertEquals(1, cache.getExpirationCount());
+    }
+
+    @Test
+    public void writesThroughTheClientInvalidate() throws Exception
+    {
+        NearCache cache = new NearCache.Builder().build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withNearCache(cache).build();
+
+        client.executeAsync(fetch("key"));
+        dispatched.get(0).setResponse(mockResponse);
+        assertEquals(1, cache.getEntryCount());
+
+        // A fetch in flight while the delete runs must not fill the cache
+        client.executeAsync(new DeleteValue.Builder(new Location("bucket", "key")).build());
+        assertTrue(operations.get(1) instanceof DeleteOperation);
+        assertEquals(0, cache.getEntryCount());
+        client.executeAsync(fetch("key"));
+        dispatched.get(1).setResponse(true);
+        dispatched.get(2).setResponse(mockResponse);
+        assertEquals(0, cache.getEntryCount());
+
+        client.executeAsync(fetch("key"));
+        assertEquals(4, dispatched.size());
+    }
+
+    @Test
+    public void batchWritesInvalidateEveryKey() throws Exception
+    {
+        NearCache cache = new NearCache.Builder().build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withNearCache(cache).build();
+
+        client.executeAsync(fetch("key0"));
+        client.executeAsync(fetch("key1"));
+        dispatched.get(0).setResponse(mockResponse);
+        dispatched.get(1).setResponse(mockResponse);
+        assertEquals(2, cache.getEntryCount());
+
+        MultiDelete multiDelete = new MultiDelete.Builder()
+            .add(new Location("bucket", "key0"))
+            .build();
+        client.executeAsync(new MultiCommand.Builder().add(multiDelete).build());
+        assertEquals(1, cache.getEntryCount());
+
+        client.executeAsync(fetch("key1"));
+        assertEquals(3, dispatched.size());
+    }
+
+    @Test
+    public void conditionalFetchesBypassTheCache() throws Exception
+    {
+        NearCache cache = new NearCache.Builder().build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withNearCache(cache).build();
+
+        client.executeAsync(fetch("key"));
+        dispatched.get(0).setResponse(mockResponse);
+        client.executeAsync(new FetchValue.Builder<RiakObject>(new Location("bucket", "key"))
+            .withOption(FetchOption.IF_MODIFIED, (VClock) new BasicVClock(new byte[] { 1 }))
+            .build());
+        assertEquals(2, dispatched.size());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void frequentKeysAreNotDisplacedByColdOnes() throws Exception
+    {
+        // Room for one entry
+        NearCache cache = new NearCache.Builder().withMaxBytes(300).build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withNearCache(cache).build();
+
+        client.executeAsync(fetch("hot"));
+        dispatched.get(0).setResponse(mockResponse);
+        for (int i = 0; i < 3; i++)
+        {
+            client.executeAsync(fetch("hot"));
+        }
+
+        client.executeAsync(fetch("cold"));
+        dispatched.get(1).setResponse(mockResponse);
+        assertEquals(1, cache.getRejectionCount());
+        client.executeAsync(fetch("hot"));
+        assertEquals(2, dispatched.size());
+
+        // Once the cold key is more popular it displaces the hot one
+        for (int i = 0; i < 5; i++)
+        {
+            client.executeAsync(fetch("cold"));
+            dispatched.get(dispatched.size() - 1).setResponse(mockResponse);
+        }
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    @Test
+    public void refreshesAheadOfExpiry() throws Exception
+    {
+        NearCache cache = new NearCache.Builder()
+            .withTtl(10, TimeUnit.SECONDS)
+            .withRefreshAhead(0.0001)
+            .build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withNearCache(cache).build();
+
+        client.executeAsync(fetch("key"));
+        dispatched.get(0).setResponse(mockResponse);
+        Thread.sleep(5);
+
+        RiakFuture<FetchValue.Response<RiakObject>> hit = client.executeAsync(fetch("key"));
+        assertTrue(hit.isDone());
+        assertEquals(2, dispatched.size());
+        // Only one refresh at a time
+        client.executeAsync(fetch("key"));
+        assertEquals(2, dispatched.size());
+        assertEquals(1, cache.getRefreshCount());
+
+        dispatched.get(1).setResponse(mockResponse);
+        client.executeAsync(fetch("key"));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    @Test
+    public void refreshNotAdmittedDropsStaleEntry() throws Exception
+    {
+        NearCache cache = new NearCache.Builder()
+            .withTtl(10, TimeUnit.SECONDS)
+            .withRefreshAhead(0.0001)
+            .build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withNearCache(cache).build();
+
+        client.executeAsync(fetch("key"));
+        dispatched.get(0).setResponse(mockResponse);
+        Thread.sleep(5);
+        client.executeAsync(fetch("key"));
+        assertEquals(2, dispatched.size());
+
+        // A write to another location on the same stripe rejects the refresh
+        Location key = new Location("bucket", "key");
+        Location colliding = null;
+        for (int i = 0; colliding == null; i++)
+        {
+            Location candidate = new Location("bucket", "other" + i);
+            if (WriteStamps.stripe(candidate) == WriteStamps.stripe(key))
+            {
+                colliding = candidate;
+            }
+        }
+        cache.invalidate(colliding);
+        dispatched.get(1).setResponse(mockResponse);
+        assertEquals(0, cache.getEntryCount());
+
+        client.executeAsync(fetch("key"));
+        assertEquals(3, dispatched.size());
+    }
+
+    @Test
+    public void revalidatesStaleEntriesConditionally() throws Exception
+    {
+        when(mockResponse.getVClock()).thenReturn(new BasicVClock(new byte[] { 1 }));
+        FetchOperation.Response unchanged = mock(FetchOperation.Response.class);
+        when(unchanged.isUnchanged()).thenReturn(true);
+        when(unchanged.getObjectList()).thenReturn(new ArrayList<RiakObject>());
+
+        NearCache cache = new NearCache.Builder()
+            .withRevalidation(true)
+            .withBucketTtl(new Location("bucket"), 0, TimeUnit.MILLISECONDS)
+            .build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withNearCache(cache).build();
+
+        client.executeAsync(fetch("key"));
+        dispatched.get(0).setResponse(mockResponse);
+
+        // Both stale fetches wait on one conditional fetch
+        RiakFuture<FetchValue.Response<RiakObject>> first = client.executeAsync(fetch("key"));
+        RiakFuture<FetchValue.Response<RiakObject>> second = client.executeAsync(fetch("key"));
+        assertEquals(2, dispatched.size());
+        assertFalse(first.isDone());
+
+        dispatched.get(1).setResponse(unchanged);
+        assertEquals("value", first.get().getValue().get(0).getValue().toString());
+        assertEquals("value", second.get().getValue().get(0).getValue().toString());
+        assertFalse(first.get().isUnchanged());
+        assertEquals(1, cache.getRevalidationCount());
+        assertEquals(1, cache.getUnchangedCount());
+        assertEquals(5, cache.getBytesSaved());
+
+        // A changed object replaces the entry
+        FetchOperation.Response changed = mock(FetchOperation.Response.class);
+        when(changed.getObjectList()).thenReturn(Arrays.asList(new RiakObject().setValue(BinaryValue.create("new"))));
+        when(changed.getVClock()).thenReturn(new BasicVClock(new byte[] { 2 }));
+        RiakFuture<FetchValue.Response<RiakObject>> third = client.executeAsync(fetch("key"));
+        dispatched.get(2).setResponse(changed);
+        assertEquals("new", third.get().getValue().get(0).getValue().toString());
+        assertEquals(1, cache.getUnchangedCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void refreshThatFailsToStartIsNotJoined() throws Exception
+    {
+        when(mockResponse.getVClock()).thenReturn(new BasicVClock(new byte[] { 1 }));
+        NearCache cache = new NearCache.Builder()
+            .withRevalidation(true)
+            .withBucketTtl(new Location("bucket"), 0, TimeUnit.MILLISECONDS)
+            .build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withNearCache(cache).build();
+
+        client.executeAsync(fetch("key"));
+        dispatched.get(0).setResponse(mockResponse);
+
+        doThrow(new IllegalStateException("not running")).when(mockCluster).execute(any(FutureOperation.class));
+        try
+        {
+            client.executeAsync(fetch("key"));
+            fail("Expected IllegalStateException");
+        }
+        catch (IllegalStateException ex)
+        {
+            assertEquals("not running", ex.getMessage());
+        }
+
+        // Once the cluster runs again the stale entry is refreshed
+        reset(mockCluster);
+        dispatched = DispatchingCluster.dispatch(mockCluster).dispatched;
+        RiakFuture<FetchValue.Response<RiakObject>> refreshed = client.executeAsync(fetch("key"));
+        assertEquals(1, dispatched.size());
+        dispatched.get(0).setResponse(mockResponse);
+        assertEquals("value", refreshed.get().getValue().get(0).getValue().toString());
+    }
+
+    @Test
+    public void bucketTtlOverridesDefault() throws Exception
+    {
+        NearCache cache = new NearCache.Builder()
+            .withBucketTtl(new Location("volatile"), 0, TimeUnit.MILLISECONDS)
+            .build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withNearCache(cache).build();
+
+        client.executeAsync(fetch("key"));
+        dispatched.get(0).setResponse(mockResponse);
+        client.executeAsync(fetch("key"));
+        assertEquals(1, dispatched.size());
+
+        FetchValue<RiakObject> volatileFetch = new FetchValue.Builder<RiakObject>(new Location("volatile", "key"))
+            .withConverter(new PassThroughConverter())
+            .build();
+        client.executeAsync(volatileFetch);
+        dispatched.get(1).setResponse(mockResponse);
+        client.executeAsync(volatileFetch);
+        assertEquals(3, dispatched.size());
+    }
+
+    private FetchValue<RiakObject> fetch(String key)
+    {
+        return new FetchValue.Builder<RiakObject>(new Location("bucket", key))
+            .withConverter(new PassThroughConverter())
+            .build();
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2013 Basho Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.basho.riak.client.operations;
+
+import com.basho.riak.client.convert.PassThroughConverter;
+import com.basho.riak.client.core.DefaultRiakFuture;
+import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.core.operations.FetchOperation;
+import com.basho.riak.client.core.operations.StoreOperation;
+import com.basho.riak.client.query.RiakObject;
+import com.basho.riak.client.util.BinaryValue;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class NotFoundCacheTest
+{
+    @Mock RiakCluster mockCluster;
+    @Mock FetchOperation.Response notFound;
+    @Mock FetchOperation.Response found;
+    private List<DefaultRiakFuture<Object>> dispatched;
+
+    @Before
+    public void init()
+    {
+        MockitoAnnotations.initMocks(this);
+        when(notFound.isNotFound()).thenReturn(true);
+        when(notFound.getObjectList()).thenReturn(Collections.<RiakObject>emptyList());
+        RiakObject object = new RiakObject().setValue(BinaryValue.create("value"));
+        when(found.getObjectList()).thenReturn(Arrays.asList(object));
+        dispatched = DispatchingCluster.dispatch(mockCluster).dispatched;
+    }
+
+    @Test
+    public void cachesNotFoundUntilItExpires() throws Exception
+    {
+        NotFoundCache cache = new NotFoundCache.Builder().withTtl(200, TimeUnit.MILLISECONDS).build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withNotFoundCache(cache).build();
+
+        client.executeAsync(fetch("key"));
+        dispatched.get(0).setResponse(notFound);
+        assertEquals(1, cache.getEntryCount());
+
+        RiakFuture<FetchValue.Response<RiakObject>> second = client.executeAsync(fetch("key"));
+        assertTrue(second.isDone());
+        assertTrue(second.get().isNotFound());
+        assertTrue(second.get().getValue().isEmpty());
+        assertEquals(1, dispatched.size());
+        assertEquals(1, cache.getNegativeHitCount());
+
+        Thread.sleep(250);
+        client.executeAsync(fetch("key"));
+        assertEquals(2, dispatched.size());
+    }
+
+    @Test
+    public void writesThroughTheClientClearNotFound() throws Exception
+    {
+        NotFoundCache cache = new NotFoundCache.Builder().build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withNotFoundCache(cache).build();
+
+        client.executeAsync(fetch("key"));
+        dispatched.get(0).setResponse(notFound);
+        assertEquals(1, cache.getEntryCount());
+
+        // A not found from a fetch that overlapped the store must not stay cached
+        client.executeAsync(new StoreValue.Builder<RiakObject>(new Location("bucket", "key"),
+            new RiakObject().setValue(BinaryValue.create("value")))
+            .withConverter(new PassThroughConverter())
+            .build());
+        assertEquals(0, cache.getEntryCount());
+        client.executeAsync(fetch("key"));
+        dispatched.get(2).setResponse(notFound);
+        dispatched.get(1).setResponse(mock(StoreOperation.Response.class));
+        assertEquals(0, cache.getEntryCount());
+
+        client.executeAsync(fetch("key"));
+        assertEquals(4, dispatched.size());
+    }
+
+    @Test
+    public void batchStoresClearNotFound() throws Exception
+    {
+        NotFoundCache cache = new NotFoundCache.Builder().build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withNotFoundCache(cache).build();
+
+        client.executeAsync(fetch("key"));
+        dispatched.get(0).setResponse(notFound);
+        assertEquals(1, cache.getEntryCount());
+
+        MultiStore<RiakObject> multiStore = new MultiStore.Builder<RiakObject>()
+            .add(new Location("bucket", "key"), new RiakObject().setValue(BinaryValue.create("value")))
+            .withConverter(new PassThroughConverter())
+            .build();
+        client.executeAsync(new MultiCommand.Builder().add(multiStore).build());
+        assertEquals(0, cache.getEntryCount());
+
+        client.executeAsync(fetch("key"));
+        assertEquals(3, dispatched.size());
+    }
+
+    @Test
+    public void seededFilterAnswersAbsentKeys() throws Exception
+    {
+        NotFoundCache cache = new NotFoundCache.Builder().build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withNotFoundCache(cache).build();
+        List<BinaryValue> keys = new ArrayList<BinaryValue>();
+        for (int i = 0; i < 1000; i++)
+        {
+            keys.add(BinaryValue.create("key" + i));
+        }
+        assertEquals(1000, cache.seed(new Location("bucket"), 1000, keys.iterator()));
+        assertEquals(1, cache.getFilterCount());
+
+        client.executeAsync(fetch("key7"));
+        assertEquals(1, dispatched.size());
+
+        int answered = 0;
+        for (int i = 0; i < 1000; i++)
+        {
+            if (client.executeAsync(fetch("missing" + i)).isDone())
+            {
+                answered++;
+            }
+        }
+        // Sized for a 1% false positive rate
+        assertTrue(answered > 950);
+        assertEquals(answered, cache.getFilterHitCount());
+
+        // Once written through the client, a key is no longer absent
+        cache.markWritten(new Location("bucket", "new"));
+        assertFalse(client.executeAsync(fetch("new")).isDone());
+    }
+
+    @Test
+    public void verificationDropsStaleFilter() throws Exception
+    {
+        NotFoundCache cache = new NotFoundCache.Builder().withVerifyFraction(1).build();
+        RiakClient client = new RiakClient.Builder(mockCluster).withNotFoundCache(cache).build();
+        cache.seed(new Location("bucket"), 10, Arrays.asList(BinaryValue.create("key")).iterator());
+
+        // Created by another client after seeding
+        client.executeAsync(fetch("other"));
+        assertEquals(1, cache.getVerificationCount());
+        dispatched.get(0).setResponse(found);
+        assertEquals(1, cache.getFalseNotFoundCount());
+        assertEquals(0, cache.getFilterCount());
+    }
+
+    private FetchValue<RiakObject> fetch(String key)
+    {
+        return new FetchValue.Builder<RiakObject>(new Location("bucket", key))
+            .withConverter(new PassThroughConverter())
+            .build();
+    }
+}
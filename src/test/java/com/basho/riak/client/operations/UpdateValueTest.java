@@ -15,24 +15,37 @@
  */
 package com.basho.riak.client.operations;
 
+import com.basho.riak.client.cap.BasicVClock;
 import com.basho.riak.client.cap.ConflictResolver;
 import com.basho.riak.client.cap.DefaultResolver;
+import com.basho.riak.client.cap.VClock;
 import com.basho.riak.client.convert.Converter;
 import com.basho.riak.client.convert.PassThroughConverter;
+import com.basho.riak.client.core.DefaultRiakFuture;
 import com.basho.riak.client.core.FutureOperation;
 import com.basho.riak.client.core.RiakCluster;
+import com.basho.riak.client.core.RiakFuture;
+import com.basho.riak.client.core.operations.FetchBucketPropsOperation;
 import com.basho.riak.client.core.operations.FetchOperation;
 import com.basho.riak.client.core.operations.StoreOperation;
+import com.basho.riak.client.query.BucketProperties;
 import com.basho.riak.client.query.RiakObject;
 import com.basho.riak.client.util.BinaryValue;
+import com.basho.riak.protobuf.RiakKvPB;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.powermock.reflect.Whitebox;
 
 import java.util.ArrayList;
 import java.util.concurrent.ExecutionException;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
@@ -94,6 +107,127 @@ public class UpdateValueTest
 
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testUpdateValueAsync() throws ExecutionException, InterruptedException
+	{
+		RiakCluster cluster = mock(RiakCluster.class);
+		DefaultRiakFuture<FetchOperation.Response> fetchFuture =
+			new DefaultRiakFuture<FetchOperation.Response>();
+		DefaultRiakFuture<StoreOperation.Response> storeFuture =
+			new DefaultRiakFuture<StoreOperation.Response>();
+		when(cluster.execute(any(FutureOperation.class)))
+			.thenReturn(fetchFuture)
+			.thenReturn(storeFuture);
+
+		UpdateValue<RiakObject> update =
+			new UpdateValue.Builder<RiakObject>(key)
+				.withConverter(new PassThroughConverter())
+				.withResolver(new DefaultResolver<RiakObject>())
+				.withUpdate(new NoopUpdate())
+				.build();
+
+		RiakFuture<UpdateValue.Response<RiakObject>> future =
+			new RiakClient(cluster).executeAsync(update);
+		verify(cluster, times(1)).execute(any(FutureOperation.class));
+		assertFalse(future.isDone());
+
+		// The store is started by the fetch completing
+		ArrayList<RiakObject> objects = new ArrayList<RiakObject>();
+		objects.add(riakObject);
+		FetchOperation.Response fetchResponse = mock(FetchOperation.Response.class);
+		when(fetchResponse.getObjectList()).thenReturn(objects);
+		fetchFuture.setResponse(fetchResponse);
+		verify(cluster, times(2)).execute(any(FutureOperation.class));
+		assertFalse(future.isDone());
+
+		StoreOperation.Response storeResponse = mock(StoreOperation.Response.class);
+		when(storeResponse.getObjectList()).thenReturn(objects);
+		storeFuture.setResponse(storeResponse);
+		assertTrue(future.isDone());
+		assertEquals(1, future.get().getValue().size());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testBlindWriteSkipsFetch() throws ExecutionException, InterruptedException
+	{
+		RiakCluster cluster = mock(RiakCluster.class);
+		StoreOperation.Response storeResponse = mock(StoreOperation.Response.class);
+		when(cluster.execute(any(FutureOperation.class)))
+			.thenReturn(new ImmediateRiakFuture<StoreOperation.Response>(storeResponse));
+
+		Upsert<RiakObject> upsert = new Upsert.Builder<RiakObject>(key, riakObject)
+			.withConverter(new PassThroughConverter())
+			.withBlindWrite(true)
+			.build();
+		new RiakClient(cluster).execute(upsert);
+
+		ArgumentCaptor<FutureOperation> captor = ArgumentCaptor.forClass(FutureOperation.class);
+		verify(cluster, times(1)).execute(captor.capture());
+		assertTrue(captor.getValue() instanceof StoreOperation);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testBlindWriteFromBucketProperties() throws ExecutionException, InterruptedException
+	{
+		RiakCluster cluster = mock(RiakCluster.class);
+		StoreOperation.Response storeResponse = mock(StoreOperation.Response.class);
+		BucketProperties lww = new BucketProperties.Builder().withLastWriteWins(true).build();
+		when(cluster.execute(any(FutureOperation.class)))
+			.thenReturn(new ImmediateRiakFuture<BucketProperties>(lww))
+			.thenReturn(new ImmediateRiakFuture<StoreOperation.Response>(storeResponse));
+		BucketPropertiesCache cache = new BucketPropertiesCache.Builder().build();
+		RiakClient cachingClient = new RiakClient.Builder(cluster).withBucketPropertiesCache(cache).build();
+
+		for (int i = 0; i < 2; i++)
+		{
+			cachingClient.execute(new UpdateValue.Builder<RiakObject>(key)
+				.withConverter(new PassThroughConverter())
+				.withUpdate(UpdateValue.Update.replaceWith(riakObject))
+				.build());
+		}
+
+		ArgumentCaptor<FutureOperation> captor = ArgumentCaptor.forClass(FutureOperation.class);
+		verify(cluster, times(3)).execute(captor.capture());
+		assertTrue(captor.getAllValues().get(0) instanceof FetchBucketPropsOperation);
+		assertTrue(captor.getAllValues().get(1) instanceof StoreOperation);
+		assertTrue(captor.getAllValues().get(2) instanceof StoreOperation);
+		assertEquals(2, cache.getBlindWriteCount());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testUpsertFetchesWhenBucketAllowsSiblings() throws ExecutionException, InterruptedException
+	{
+		BucketProperties siblings = new BucketProperties.Builder().withAllowMulti(true).build();
+		VClock vClock = new BasicVClock(new byte[]{'1'});
+		FetchOperation.Response fetched = mock(FetchOperation.Response.class);
+		when(fetched.getVClock()).thenReturn(vClock);
+		RiakCluster cluster = mock(RiakCluster.class);
+		when(cluster.execute(any(FutureOperation.class)))
+			.thenReturn(new ImmediateRiakFuture<BucketProperties>(siblings))
+			.thenReturn(new ImmediateRiakFuture<FetchOperation.Response>(fetched))
+			.thenReturn(new ImmediateRiakFuture<StoreOperation.Response>(mock(StoreOperation.Response.class)));
+		BucketPropertiesCache cache = new BucketPropertiesCache.Builder().build();
+		RiakClient cachingClient = new RiakClient.Builder(cluster).withBucketPropertiesCache(cache).build();
+
+		cachingClient.execute(new Upsert.Builder<RiakObject>(key, riakObject)
+			.withConverter(new PassThroughConverter())
+			.build());
+
+		ArgumentCaptor<FutureOperation> captor = ArgumentCaptor.forClass(FutureOperation.class);
+		verify(cluster, times(3)).execute(captor.capture());
+		assertTrue(captor.getAllValues().get(1) instanceof FetchOperation);
+		assertTrue(captor.getAllValues().get(2) instanceof StoreOperation);
+		assertEquals(0, cache.getBlindWriteCount());
+
+		RiakKvPB.RpbPutReq.Builder stored = Whitebox.getInternalState(captor.getAllValues().get(2), "reqBuilder");
+		assertTrue(stored.hasVclock());
+		assertArrayEquals(vClock.getBytes(), stored.getVclock().toByteArray());
+	}
+
 	private static class NoopUpdate extends UpdateValue.Update<RiakObject>
 	{
 		@Override